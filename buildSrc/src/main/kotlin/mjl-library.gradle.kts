@@ -23,7 +23,11 @@ plugins {
     `maven-publish`
 }
 
-val artifactName = "mjl-options${if (name == "modules.annotations") "-annotations" else ""}"
+val artifactName = "mjl-options${when (name) {
+    "modules.annotations" -> "-annotations"
+    "modules.annotations-processor" -> "-processor"
+    else -> ""
+}}"
 
 java {
     sourceCompatibility = JavaVersion.VERSION_1_8
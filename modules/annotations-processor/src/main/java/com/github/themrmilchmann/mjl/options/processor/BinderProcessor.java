@@ -0,0 +1,727 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import com.github.themrmilchmann.mjl.options.annotations.ArgumentHolder;
+import com.github.themrmilchmann.mjl.options.annotations.DefaultValueRef;
+import com.github.themrmilchmann.mjl.options.annotations.MarkerValueRef;
+import com.github.themrmilchmann.mjl.options.annotations.OptionHolder;
+import com.github.themrmilchmann.mjl.options.annotations.ValueParserRef;
+import com.github.themrmilchmann.mjl.options.annotations.VarargHolder;
+import com.github.themrmilchmann.mjl.options.annotations.WildcardHolder;
+
+/**
+ * An annotation processor that generates binders for annotated data classes at compile time.
+ *
+ * <p>For every class that declares fields annotated with {@link ArgumentHolder}, {@link OptionHolder},
+ * {@link VarargHolder}, or {@link WildcardHolder}, a class named {@code <Class>Binder} (with the names of enclosing
+ * classes prepended and separated by underscores) is generated in the same package. The generated binder constructs
+ * the induced {@code OptionPool} directly and assigns parsed values to the fields of the data class without any
+ * reflection:</p>
+ *
+ * <pre><code>
+ * Data data = DataBinder.parseLine("--count 3 input");
+ * </code></pre>
+ *
+ * <p>Configuration errors that are reported as {@code ClassPoolConfigurationException} by
+ * {@code OptionParser.compile} are reported as compilation errors instead. Additionally, the processor reports errors
+ * that would otherwise only surface when the pool is built or a value is injected (such as invalid tokens or references
+ * to values of the wrong type).</p>
+ *
+ * <p>Since the generated binder is placed in the package of the data class, the data class, its no-arg constructor, and
+ * the annotated fields must not be private.</p>
+ *
+ * @since   0.4.0
+ *
+ * @author  Leon Linhart
+ */
+public final class BinderProcessor extends AbstractProcessor {
+
+    private static final String PACKAGE = "com.github.themrmilchmann.mjl.options";
+
+    private static final String ARGUMENT = PACKAGE + ".Argument";
+    private static final String OPTION = PACKAGE + ".Option";
+    private static final String OPTION_PARSER = PACKAGE + ".OptionParser";
+    private static final String OPTION_POOL = PACKAGE + ".OptionPool";
+    private static final String OPTION_SET = PACKAGE + ".OptionSet";
+    private static final String PARSING_EXCEPTION = PACKAGE + ".ParsingException";
+    private static final String VALUE_PARSER = PACKAGE + ".ValueParser";
+
+    /* Keep in sync with OptionParser#REGEX_LONG_TOKEN (verified by BinderProcessorTests) */
+    private static final Pattern LONG_TOKEN = Pattern.compile("[A-Za-z]([A-Za-z0-9]|-|\\.)*");
+
+    private static final List<Class<?>> HOLDERS = Collections.unmodifiableList(Arrays.asList(
+        ArgumentHolder.class,
+        OptionHolder.class,
+        VarargHolder.class,
+        WildcardHolder.class
+    ));
+
+    private final Set<String> processed = new HashSet<>();
+
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> types = new LinkedHashSet<>();
+        for (Class<?> holder : HOLDERS) types.add(holder.getCanonicalName());
+
+        return types;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        this.elements = this.processingEnv.getElementUtils();
+        this.types = this.processingEnv.getTypeUtils();
+        this.messager = this.processingEnv.getMessager();
+
+        Set<TypeElement> dataClasses = new LinkedHashSet<>();
+
+        for (TypeElement annotation : annotations) {
+            for (VariableElement field : ElementFilter.fieldsIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                dataClasses.add((TypeElement) field.getEnclosingElement());
+            }
+        }
+
+        for (TypeElement dataClass : dataClasses) {
+            if (this.processed.add(dataClass.getQualifiedName().toString())) this.process(dataClass);
+        }
+
+        return false;
+    }
+
+    private void process(TypeElement dataClass) {
+        boolean isValid = this.checkDataClass(dataClass);
+
+        Map<Integer, Binding> argsByIndex = new HashMap<>();
+        List<Binding> args = new ArrayList<>();
+        List<Binding> opts = new ArrayList<>();
+        Map<String, Binding> lTokens = new HashMap<>();
+        Map<Character, Binding> sTokens = new HashMap<>();
+        Binding vararg = null;
+        VariableElement wildcardField = null;
+
+        for (VariableElement field : ElementFilter.fieldsIn(dataClass.getEnclosedElements())) {
+            ArgumentHolder argHolder = field.getAnnotation(ArgumentHolder.class);
+            OptionHolder optHolder = field.getAnnotation(OptionHolder.class);
+            VarargHolder varargHolder = field.getAnnotation(VarargHolder.class);
+            WildcardHolder wildcardHolder = field.getAnnotation(WildcardHolder.class);
+
+            int i = 0;
+            if (argHolder != null) i++;
+            if (optHolder != null) i++;
+            if (varargHolder != null) i++;
+            if (wildcardHolder != null) i++;
+
+            if (i == 0) continue;
+
+            if (i > 1) {
+                isValid = this.error(field, null, "Field must be at most one of: @ArgumentHolder, @OptionHolder, @VarargHolder, @WildcardHolder");
+                continue;
+            }
+
+            AnnotationMirror defaultValueRef = this.getAnnotationMirror(field, DefaultValueRef.class);
+            AnnotationMirror markerValueRef = this.getAnnotationMirror(field, MarkerValueRef.class);
+            AnnotationMirror valueParserRef = this.getAnnotationMirror(field, ValueParserRef.class);
+
+            if (wildcardHolder != null) {
+                AnnotationMirror holder = this.getAnnotationMirror(field, WildcardHolder.class);
+
+                if (wildcardField != null) isValid = this.error(field, holder, "There must be at most one @WildcardHolder");
+                if (defaultValueRef != null) isValid = this.error(field, defaultValueRef, "@WildcardHolder may not have a @DefaultValueRef");
+                if (markerValueRef != null) isValid = this.error(field, markerValueRef, "@WildcardHolder may not have a @MarkerValueRef");
+                if (valueParserRef != null) isValid = this.error(field, valueParserRef, "@WildcardHolder may not have a @ValueParserRef");
+
+                wildcardField = field;
+                continue;
+            }
+
+            isValid &= this.checkField(field);
+
+            Binding binding = new Binding(field);
+            TypeMirror valueType = field.asType();
+
+            if (varargHolder != null) {
+                AnnotationMirror holder = this.getAnnotationMirror(field, VarargHolder.class);
+
+                if (vararg != null) isValid = this.error(field, holder, "There must be at most one @VarargHolder");
+                if (defaultValueRef != null) isValid = this.error(field, defaultValueRef, "@VarargHolder may not have a @DefaultValueRef");
+                if (markerValueRef != null) isValid = this.error(field, markerValueRef, "@VarargHolder may not have a @MarkerValueRef");
+
+                /*
+                 * The values of a vararg argument are collected into a list. Thus, the parser is inferred from the type
+                 * argument of the field's type (if any).
+                 */
+                TypeElement list = this.elements.getTypeElement(List.class.getCanonicalName());
+
+                if (!this.types.isAssignable(this.types.erasure(list.asType()), this.types.erasure(field.asType()))) {
+                    isValid = this.error(field, holder, "@VarargHolder field must be assignable from java.util.List");
+                    continue;
+                }
+
+                List<? extends TypeMirror> typeArgs = (field.asType().getKind() == TypeKind.DECLARED)
+                    ? ((DeclaredType) field.asType()).getTypeArguments()
+                    : Collections.emptyList();
+
+                valueType = (typeArgs.size() == 1) ? typeArgs.get(0) : null;
+
+                binding.kind = Binding.Kind.VARARG;
+                binding.isOptional = varargHolder.optional();
+
+                vararg = binding;
+            } else if (argHolder != null) {
+                if (markerValueRef != null) isValid = this.error(field, markerValueRef, "@ArgumentHolder may not have a @MarkerValueRef");
+
+                binding.kind = Binding.Kind.ARGUMENT;
+                binding.index = argHolder.index();
+                binding.isOptional = argHolder.optional();
+
+                Binding prev = argsByIndex.put(binding.index, binding);
+
+                if (prev != null) {
+                    String msg = String.format("Duplicate argument index (%s) at field '%s' and '%s'", binding.index, prev.field.getSimpleName(), field.getSimpleName());
+                    isValid = this.error(field, this.getAnnotationMirror(field, ArgumentHolder.class), msg);
+                    continue;
+                }
+
+                args.add(binding);
+            } else {
+                AnnotationMirror holder = this.getAnnotationMirror(field, OptionHolder.class);
+
+                binding.kind = Binding.Kind.OPTION;
+                binding.longToken = optHolder.longToken();
+                binding.shortToken = optHolder.shortToken();
+
+                if (!LONG_TOKEN.matcher(binding.longToken).matches()) {
+                    isValid = this.error(field, holder, "Invalid long option token: \"" + binding.longToken + "\"");
+                } else {
+                    Binding prev = lTokens.put(binding.longToken, binding);
+                    if (prev != null) isValid = this.error(field, holder, String.format("Duplicate long option token (%s) at field '%s' and '%s'", binding.longToken, prev.field.getSimpleName(), field.getSimpleName()));
+                }
+
+                if (binding.shortToken != '\0') {
+                    if (!Character.isAlphabetic(binding.shortToken)) {
+                        isValid = this.error(field, holder, "Short option tokens must be alphabetic");
+                    } else {
+                        Binding prev = sTokens.put(binding.shortToken, binding);
+                        if (prev != null) isValid = this.error(field, holder, String.format("Duplicate short option token (%s) at field '%s' and '%s'", binding.shortToken, prev.field.getSimpleName(), field.getSimpleName()));
+                    }
+                }
+
+                opts.add(binding);
+            }
+
+            TypeMirror boxedType = (valueType == null) ? null : this.box(valueType);
+
+            if (valueParserRef != null) {
+                TypeElement valueParser = this.elements.getTypeElement(VALUE_PARSER);
+
+                TypeMirror expected = null;
+
+                if (valueParser != null) {
+                    expected = (boxedType == null || boxedType.getKind() == TypeKind.TYPEVAR)
+                        ? this.types.erasure(valueParser.asType())
+                        : this.types.getDeclaredType(valueParser, boxedType);
+                }
+
+                binding.parser = this.resolveRef(field, valueParserRef, field.getAnnotation(ValueParserRef.class).value(), expected);
+                isValid &= (binding.parser != null);
+            } else {
+                binding.parser = (valueType == null) ? null : inferValueParser(valueType, binding.kind == Binding.Kind.VARARG);
+
+                if (binding.parser == null) {
+                    isValid = this.error(field, null, "Failed to infer ValueParser for field");
+                    continue;
+                }
+            }
+
+            binding.type = (boxedType == null) ? "java.lang.Object" : this.types.erasure(boxedType).toString();
+
+            if (binding.kind != Binding.Kind.VARARG) {
+                if (defaultValueRef != null) {
+                    binding.defaultValue = this.resolveRef(field, defaultValueRef, field.getAnnotation(DefaultValueRef.class).value(), boxedType);
+                    isValid &= (binding.defaultValue != null);
+                }
+
+                if (markerValueRef != null && binding.kind == Binding.Kind.OPTION) {
+                    MarkerValueRef ref = field.getAnnotation(MarkerValueRef.class);
+
+                    binding.markerValue = this.resolveRef(field, markerValueRef, ref.value(), boxedType);
+                    binding.isMarkerOnly = ref.markerOnly();
+                    isValid &= (binding.markerValue != null);
+                }
+            }
+        }
+
+        args.sort((alpha, beta) -> Integer.compare(alpha.index, beta.index));
+
+        /* The pool requires optional arguments (and a vararg argument) to be the last ones. */
+        Binding prevArg = null;
+
+        for (Binding arg : args) {
+            if (prevArg != null && prevArg.isOptional) {
+                isValid = this.error(arg.field, this.getAnnotationMirror(arg.field, ArgumentHolder.class), String.format("Argument at field '%s' must be optional since it follows the optional argument at field '%s'", arg.field.getSimpleName(), prevArg.field.getSimpleName()));
+            }
+
+            prevArg = arg;
+        }
+
+        if (vararg != null && prevArg != null && prevArg.isOptional) {
+            isValid = this.error(vararg.field, this.getAnnotationMirror(vararg.field, VarargHolder.class), String.format("@VarargHolder may not follow the optional argument at field '%s'", prevArg.field.getSimpleName()));
+        }
+
+        if (!isValid) return;
+
+        if (vararg != null) args.add(vararg);
+        this.writeBinder(dataClass, args, opts);
+    }
+
+    private boolean checkDataClass(TypeElement dataClass) {
+        boolean isValid = true;
+
+        if (dataClass.getKind() != ElementKind.CLASS || dataClass.getModifiers().contains(Modifier.ABSTRACT)) {
+            isValid = this.error(dataClass, null, "Data class must be a concrete class");
+        }
+
+        for (Element element = dataClass; element.getKind() != ElementKind.PACKAGE; element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                isValid = this.error(dataClass, null, "Data class (and its enclosing classes) must not be private");
+            }
+
+            if (element != dataClass && element.getKind().isClass() && !dataClass.getModifiers().contains(Modifier.STATIC)) {
+                isValid = this.error(dataClass, null, "Nested data class must be static");
+                break;
+            }
+        }
+
+        boolean hasConstructor = false;
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(dataClass.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                hasConstructor = true;
+                break;
+            }
+        }
+
+        if (!hasConstructor) isValid = this.error(dataClass, null, "Data class must have a non-private zero-arg constructor");
+
+        return isValid;
+    }
+
+    private boolean checkField(VariableElement field) {
+        boolean isValid = true;
+
+        if (field.getModifiers().contains(Modifier.PRIVATE)) isValid = this.error(field, null, "Field must not be private");
+        if (field.getModifiers().contains(Modifier.FINAL)) isValid = this.error(field, null, "Field must not be final");
+        if (field.getModifiers().contains(Modifier.STATIC)) isValid = this.error(field, null, "Field must not be static");
+
+        return isValid;
+    }
+
+    /*
+     * Resolves the given reference and returns an equivalent Java expression (or null, if the reference could not be
+     * resolved). If the expected type is known, the type of the referenced value is checked against it.
+     */
+    @Nullable
+    private String resolveRef(VariableElement field, AnnotationMirror annotation, String ref, @Nullable TypeMirror expected) {
+        PackageElement pkg = this.elements.getPackageOf(field);
+
+        String clsName;
+        String memberName = null;
+
+        int separator = ref.indexOf("::");
+
+        if (separator >= 0) {
+            clsName = ref.substring(0, separator);
+            memberName = ref.substring(separator + 2);
+        } else {
+            clsName = ref;
+        }
+
+        // References are resolved at runtime by their binary names.
+        TypeElement cls = this.elements.getTypeElement(clsName.replace('$', '.'));
+
+        if (cls == null) {
+            this.error(field, annotation, "Failed to resolve reference: Class not found: " + clsName);
+            return null;
+        } else if (!this.isAccessible(cls, pkg)) {
+            this.error(field, annotation, "Failed to resolve reference: Class is not accessible: " + clsName);
+            return null;
+        }
+
+        String expression;
+        TypeMirror type;
+
+        if (memberName == null) {
+            boolean hasConstructor = false;
+
+            for (ExecutableElement constructor : ElementFilter.constructorsIn(cls.getEnclosedElements())) {
+                if (constructor.getParameters().isEmpty() && this.isAccessible(constructor, pkg)) {
+                    hasConstructor = true;
+                    break;
+                }
+            }
+
+            if (!hasConstructor || cls.getModifiers().contains(Modifier.ABSTRACT)) {
+                this.error(field, annotation, "Failed to resolve reference: Class has no accessible zero-arg constructor: " + clsName);
+                return null;
+            }
+
+            expression = "new " + cls.getQualifiedName() + "()";
+            type = this.types.erasure(cls.asType());
+        } else if (memberName.endsWith("()")) {
+            String methodName = memberName.substring(0, memberName.length() - 2);
+            ExecutableElement method = null;
+
+            for (ExecutableElement candidate : ElementFilter.methodsIn(cls.getEnclosedElements())) {
+                if (candidate.getSimpleName().contentEquals(methodName) && candidate.getParameters().isEmpty()) {
+                    method = candidate;
+                    break;
+                }
+            }
+
+            if (method == null || !method.getModifiers().contains(Modifier.STATIC) || !this.isAccessible(method, pkg)) {
+                this.error(field, annotation, "Failed to resolve referenced method: No accessible static zero-arg method: " + ref);
+                return null;
+            }
+
+            expression = cls.getQualifiedName() + "." + methodName + "()";
+            type = method.getReturnType();
+        } else {
+            VariableElement member = null;
+
+            for (VariableElement candidate : ElementFilter.fieldsIn(cls.getEnclosedElements())) {
+                if (candidate.getSimpleName().contentEquals(memberName)) {
+                    member = candidate;
+                    break;
+                }
+            }
+
+            if (member == null || !member.getModifiers().contains(Modifier.STATIC) || !this.isAccessible(member, pkg)) {
+                this.error(field, annotation, "Failed to resolve referenced field: No accessible static field: " + ref);
+                return null;
+            }
+
+            expression = cls.getQualifiedName() + "." + memberName;
+            type = member.asType();
+        }
+
+        if (expected != null && expected.getKind() != TypeKind.TYPEVAR && !this.types.isAssignable(type, expected)) {
+            this.error(field, annotation, String.format("Referenced value of type %s is not assignable to %s", type, expected));
+            return null;
+        }
+
+        return expression;
+    }
+
+    private boolean isAccessible(Element element, PackageElement pkg) {
+        for (; element.getKind() != ElementKind.PACKAGE; element = element.getEnclosingElement()) {
+            Set<Modifier> modifiers = element.getModifiers();
+
+            if (modifiers.contains(Modifier.PRIVATE)) return false;
+            if (!modifiers.contains(Modifier.PUBLIC) && !this.elements.getPackageOf(element).equals(pkg)) return false;
+        }
+
+        return true;
+    }
+
+    private TypeMirror box(TypeMirror type) {
+        return type.getKind().isPrimitive() ? this.types.boxedClass(this.types.getPrimitiveType(type.getKind())).asType() : type;
+    }
+
+    /*
+     * Returns the predefined parser for the given type, or null. Boxed types are only inferred for the elements of vararg
+     * arguments. (The types of other fields are inferred like in ClassBinder.)
+     */
+    @Nullable
+    private static String inferValueParser(TypeMirror type, boolean isBoxedAllowed) {
+        switch (type.getKind()) {
+            case BOOLEAN: return VALUE_PARSER + ".BOOLEAN";
+            case BYTE: return VALUE_PARSER + ".BYTE";
+            case CHAR: return VALUE_PARSER + ".CHARACTER";
+            case SHORT: return VALUE_PARSER + ".SHORT";
+            case INT: return VALUE_PARSER + ".INT";
+            case LONG: return VALUE_PARSER + ".LONG";
+            case FLOAT: return VALUE_PARSER + ".FLOAT";
+            case DOUBLE: return VALUE_PARSER + ".DOUBLE";
+            case DECLARED: {
+                String name = type.toString();
+                if (name.equals("java.lang.String")) return VALUE_PARSER + ".STRING";
+                if (!isBoxedAllowed) return null;
+
+                switch (name) {
+                    case "java.lang.Boolean": return VALUE_PARSER + ".BOOLEAN";
+                    case "java.lang.Byte": return VALUE_PARSER + ".BYTE";
+                    case "java.lang.Character": return VALUE_PARSER + ".CHARACTER";
+                    case "java.lang.Short": return VALUE_PARSER + ".SHORT";
+                    case "java.lang.Integer": return VALUE_PARSER + ".INT";
+                    case "java.lang.Long": return VALUE_PARSER + ".LONG";
+                    case "java.lang.Float": return VALUE_PARSER + ".FLOAT";
+                    case "java.lang.Double": return VALUE_PARSER + ".DOUBLE";
+                    default: return null;
+                }
+            }
+            default:
+                return null;
+        }
+    }
+
+    private void writeBinder(TypeElement dataClass, List<Binding> args, List<Binding> opts) {
+        String pkg = this.elements.getPackageOf(dataClass).getQualifiedName().toString();
+        String simpleName = binderSimpleName(dataClass);
+        String qualifiedName = pkg.isEmpty() ? simpleName : (pkg + "." + simpleName);
+        String dataClassName = dataClass.getQualifiedName().toString();
+
+        boolean isPublic = true;
+
+        for (Element element = dataClass; element.getKind() != ElementKind.PACKAGE; element = element.getEnclosingElement()) {
+            isPublic &= element.getModifiers().contains(Modifier.PUBLIC);
+        }
+
+        StringBuilder src = new StringBuilder();
+
+        if (!pkg.isEmpty()) src.append("package ").append(pkg).append(";\n\n");
+
+        src.append("/**\n")
+            .append(" * A binder for {@link ").append(dataClassName).append("}.\n")
+            .append(" *\n")
+            .append(" * <p>This class has been generated by ").append(BinderProcessor.class.getName()).append(". Do not modify.</p>\n")
+            .append(" */\n")
+            .append("@SuppressWarnings({ \"cast\", \"rawtypes\", \"unchecked\" })\n")
+            .append(isPublic ? "public " : "").append("final class ").append(simpleName).append(" {\n\n");
+
+        for (Binding arg : args) {
+            src.append("    private static final ").append(ARGUMENT);
+
+            if (arg.kind == Binding.Kind.VARARG) {
+                src.append("<?>");
+            } else {
+                src.append('<').append(arg.type).append('>');
+            }
+
+            src.append(' ').append(arg.constantName()).append(" = ").append(ARGUMENT).append(".builder((").append(VALUE_PARSER).append('<').append(arg.type).append(">) (").append(VALUE_PARSER).append(") ").append(arg.parser).append(')');
+
+            if (arg.isOptional) src.append("\n        .optional(true)");
+            if (arg.defaultValue != null) src.append("\n        .withDefaultValue((").append(arg.type).append(") ").append(arg.defaultValue).append(')');
+
+            src.append("\n        .build();\n\n");
+        }
+
+        for (Binding opt : opts) {
+            src.append("    private static final ").append(OPTION).append('<').append(opt.type).append("> ").append(opt.constantName()).append(" = ").append(OPTION).append(".builder(\"").append(opt.longToken).append("\", (").append(VALUE_PARSER).append('<').append(opt.type).append(">) (").append(VALUE_PARSER).append(") ").append(opt.parser).append(')');
+
+            if (opt.shortToken != '\0') {
+                // Non-ASCII tokens are escaped to avoid depending on the encoding of the generated source.
+                String shortToken = (opt.shortToken < 0x80) ? String.valueOf(opt.shortToken) : String.format("\\u%04x", (int) opt.shortToken);
+                src.append("\n        .withShortToken('").append(shortToken).append("')");
+            }
+            if (opt.markerValue != null) src.append("\n        .withMarkerValue((").append(opt.type).append(") ").append(opt.markerValue).append(", ").append(opt.isMarkerOnly).append(')');
+            if (opt.defaultValue != null) src.append("\n        .withDefaultValue((").append(opt.type).append(") ").append(opt.defaultValue).append(')');
+
+            src.append("\n        .build();\n\n");
+        }
+
+        src.append("    private static final ").append(OPTION_POOL).append(" POOL = ").append(OPTION_POOL).append(".builder()");
+
+        for (Binding opt : opts) src.append("\n        .withOption(").append(opt.constantName()).append(')');
+
+        for (Binding arg : args) {
+            src.append("\n        .").append(arg.kind == Binding.Kind.VARARG ? "withVarargArg(" : "withArg(").append(arg.constantName()).append(')');
+        }
+
+        src.append("\n        .build();\n\n");
+
+        src.append("    private ").append(simpleName).append("() {}\n\n")
+            .append("    /**\n")
+            .append("     * Returns the pool induced by {@link ").append(dataClassName).append("}.\n")
+            .append("     *\n")
+            .append("     * @return  the pool induced by the data class\n")
+            .append("     */\n")
+            .append("    public static ").append(OPTION_POOL).append(" getPool() {\n")
+            .append("        return POOL;\n")
+            .append("    }\n\n");
+
+        src.append("    /**\n")
+            .append("     * Parses parameters from the given input into a new instance of {@link ").append(dataClassName).append("}.\n")
+            .append("     *\n")
+            .append("     * @param fragments the input to be parsed\n")
+            .append("     *\n")
+            .append("     * @return  a data object holding parsed values\n")
+            .append("     */\n")
+            .append("    public static ").append(dataClassName).append(" parseFragments(String... fragments) {\n")
+            .append("        ").append(dataClassName).append(" instance = new ").append(dataClassName).append("();\n")
+            .append("        ").append(OPTION_SET).append(" set = ").append(OPTION_PARSER).append(".parseFragments(POOL, fragments);\n");
+
+        for (Binding arg : args) {
+            src.append("\n        if (set.isSet(").append(arg.constantName()).append(")) {\n")
+                .append("            instance.").append(arg.field.getSimpleName()).append(" = ").append(arg.getter()).append(";\n")
+                .append("        }");
+
+            if (!arg.isOptional) {
+                src.append(" else {\n")
+                    .append("            throw new ").append(PARSING_EXCEPTION).append("(\"Required argument has not been specified\");\n")
+                    .append("        }");
+            }
+
+            src.append('\n');
+        }
+
+        for (Binding opt : opts) {
+            src.append("\n        if (set.isSet(").append(opt.constantName()).append(")) {\n")
+                .append("            instance.").append(opt.field.getSimpleName()).append(" = ").append(opt.getter()).append(";\n")
+                .append("        }\n");
+        }
+
+        src.append("\n        return instance;\n")
+            .append("    }\n\n");
+
+        src.append("    /**\n")
+            .append("     * Parses parameters from the given input into a new instance of {@link ").append(dataClassName).append("}.\n")
+            .append("     *\n")
+            .append("     * @param line  the input to be parsed\n")
+            .append("     *\n")
+            .append("     * @return  a data object holding parsed values\n")
+            .append("     */\n")
+            .append("    public static ").append(dataClassName).append(" parseLine(String line) {\n")
+            .append("        return parseFragments(").append(OPTION_PARSER).append(".lineToFragments(line));\n")
+            .append("    }\n\n")
+            .append("}\n");
+
+        try (Writer writer = this.processingEnv.getFiler().createSourceFile(qualifiedName, dataClass).openWriter()) {
+            writer.write(src.toString());
+        } catch (IOException e) {
+            this.error(dataClass, null, "Failed to write binder: " + e.getMessage());
+        }
+    }
+
+    private static String binderSimpleName(TypeElement dataClass) {
+        StringBuilder name = new StringBuilder(dataClass.getSimpleName());
+
+        for (Element element = dataClass.getEnclosingElement(); element.getKind() != ElementKind.PACKAGE; element = element.getEnclosingElement()) {
+            name.insert(0, '_').insert(0, element.getSimpleName());
+        }
+
+        return name.append("Binder").toString();
+    }
+
+    @Nullable
+    private AnnotationMirror getAnnotationMirror(Element element, Class<?> annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation.getCanonicalName())) return mirror;
+        }
+
+        return null;
+    }
+
+    /*
+     * Reports an error and returns false (which makes it convenient to update a validity flag).
+     */
+    private boolean error(Element element, @Nullable AnnotationMirror annotation, String msg) {
+        this.messager.printMessage(Diagnostic.Kind.ERROR, msg, element, annotation);
+        return false;
+    }
+
+    private static final class Binding {
+
+        enum Kind {
+            ARGUMENT,
+            OPTION,
+            VARARG
+        }
+
+        private final VariableElement field;
+        private Kind kind;
+
+        /* The (erased and boxed) type of the parameter's values */
+        private String type;
+
+        private String parser;
+        @Nullable
+        private String defaultValue, markerValue;
+
+        private int index;
+        private boolean isOptional;
+
+        private String longToken;
+        private char shortToken;
+        private boolean isMarkerOnly;
+
+        private Binding(VariableElement field) {
+            this.field = field;
+        }
+
+        private String constantName() {
+            return (this.kind == Kind.OPTION ? "OPT_" : "ARG_") + this.field.getSimpleName();
+        }
+
+        private String getter() {
+            String constant = this.constantName();
+
+            if (this.kind == Kind.VARARG) {
+                return "(" + this.field.asType() + ") set.get(" + constant + ")";
+            }
+
+            switch (this.field.asType().getKind()) {
+                case BOOLEAN: return "set.getBoolean(" + constant + ")";
+                case INT: return "set.getInt(" + constant + ")";
+                case LONG: return "set.getLong(" + constant + ")";
+                case DOUBLE: return "set.getDouble(" + constant + ")";
+                default: return "set.get(" + constant + ")";
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.processor.test;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.ParsingException;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import com.github.themrmilchmann.mjl.options.processor.BinderProcessor;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public final class BinderProcessorTests {
+
+    private static final String IMPORTS =
+        "package test;\n" +
+        "import java.util.List;\n" +
+        "import com.github.themrmilchmann.mjl.options.annotations.*;\n";
+
+    @Test
+    public void testGenerate() throws Exception {
+        Compilation compilation = compile("test.Data", IMPORTS +
+            "public final class Data {\n" +
+            "    @ArgumentHolder(index = 0) String input;\n" +
+            "    @OptionHolder(longToken = \"count\") int count;\n" +
+            "    @OptionHolder(longToken = \"byte\") @DefaultValueRef(\"test.Data::DEFAULT_BYTE\") byte byteValue = 7;\n" +
+            "    @OptionHolder(longToken = \"verbose\", shortToken = 'v') @MarkerValueRef(value = \"java.lang.Boolean::TRUE\", markerOnly = true) boolean verbose;\n" +
+            "    @OptionHolder(longToken = \"name\") @ValueParserRef(\"test.Data::upperCase()\") String name;\n" +
+            "    @VarargHolder(optional = true) List<Integer> rest;\n" +
+            "    static final Byte DEFAULT_BYTE = 3;\n" +
+            "    static com.github.themrmilchmann.mjl.options.ValueParser<String> upperCase() { return String::toUpperCase; }\n" +
+            "}\n"
+        );
+
+        assertTrue(compilation.isSuccess, compilation.diagnostics.toString());
+
+        try (URLClassLoader loader = compilation.loader()) {
+            Class<?> binder = loader.loadClass("test.DataBinder");
+
+            OptionPool pool = (OptionPool) binder.getMethod("getPool").invoke(null);
+            assertEquals(pool.getArgumentCount(), 2);
+            assertTrue(pool.isLastVararg());
+            assertNotNull(pool.getOption("count"));
+            assertNotNull(pool.getOption('v'));
+
+            Object data = binder.getMethod("parseFragments", String[].class).invoke(null, (Object) new String[] { "--count=3", "-v", "--name=foo", "input", "1", "2" });
+            assertEquals(get(data, "input"), "input");
+            assertEquals(get(data, "count"), 3);
+            assertEquals(get(data, "byteValue"), (byte) 7);
+            assertEquals(get(data, "verbose"), true);
+            assertEquals(get(data, "name"), "FOO");
+            assertEquals(get(data, "rest"), Arrays.asList(1, 2));
+
+            Object other = binder.getMethod("parseLine", String.class).invoke(null, "--count 5 --byte 1 other");
+            assertEquals(get(other, "input"), "other");
+            assertEquals(get(other, "count"), 5);
+            assertEquals(get(other, "byteValue"), (byte) 1);
+            assertEquals(get(other, "verbose"), false);
+            assertNull(get(other, "rest"));
+
+            Method parseFragments = binder.getMethod("parseFragments", String[].class);
+            InvocationTargetException e = expectThrows(InvocationTargetException.class, () -> parseFragments.invoke(null, (Object) new String[] { "--count=3" }));
+            assertTrue(e.getCause() instanceof ParsingException);
+        }
+    }
+
+    @Test
+    public void testGenerate_Nested() throws Exception {
+        Compilation compilation = compile("test.Outer", IMPORTS +
+            "public final class Outer {\n" +
+            "    public static final class Data {\n" +
+            "        @OptionHolder(longToken = \"value\") @DefaultValueRef(\"test.Outer::defaultValue()\") long value;\n" +
+            "    }\n" +
+            "    static long defaultValue() { return 42L; }\n" +
+            "}\n"
+        );
+
+        assertTrue(compilation.isSuccess, compilation.diagnostics.toString());
+
+        try (URLClassLoader loader = compilation.loader()) {
+            Class<?> binder = loader.loadClass("test.Outer_DataBinder");
+            Object data = binder.getMethod("parseLine", String.class).invoke(null, "--value 7");
+            assertEquals(get(data, "value"), 7L);
+
+            OptionPool pool = (OptionPool) binder.getMethod("getPool").invoke(null);
+            assertEquals(pool.getOption("value").getDefaultValue(), 42L);
+        }
+    }
+
+    @Test
+    public void testError_MultipleHolders() throws IOException {
+        assertError("Field must be at most one of", IMPORTS +
+            "public final class Data {\n" +
+            "    @ArgumentHolder(index = 0) @OptionHolder(longToken = \"both\") String both;\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testError_DuplicateIndex() throws IOException {
+        assertError("Duplicate argument index (0)", IMPORTS +
+            "public final class Data {\n" +
+            "    @ArgumentHolder(index = 0) String a;\n" +
+            "    @ArgumentHolder(index = 0) String b;\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testError_InferValueParser() throws IOException {
+        assertError("Failed to infer ValueParser", IMPORTS +
+            "public final class Data {\n" +
+            "    @OptionHolder(longToken = \"object\") Object object;\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testError_InferValueParser_Boxed() throws IOException {
+        // As in ClassBinder, only primitive types and String are inferred for fields other than varargs.
+        assertError("Failed to infer ValueParser", IMPORTS +
+            "public final class Data {\n" +
+            "    @OptionHolder(longToken = \"count\") Integer count;\n" +
+            "}\n"
+        );
+
+        assertError("Failed to infer ValueParser", IMPORTS +
+            "public final class Data {\n" +
+            "    @ArgumentHolder(index = 0) Boolean flag;\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testError_Wildcard() throws IOException {
+        assertError("@WildcardHolder may not have a @ValueParserRef", IMPORTS +
+            "public final class Data {\n" +
+            "    @WildcardHolder @ValueParserRef(\"test.Data::PARSER\") Object wildcard;\n" +
+            "    static final com.github.themrmilchmann.mjl.options.ValueParser<String> PARSER = com.github.themrmilchmann.mjl.options.ValueParser.STRING;\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testError_MultipleVarargs() throws IOException {
+        assertError("There must be at most one @VarargHolder", IMPORTS +
+            "public final class Data {\n" +
+            "    @VarargHolder List<String> a;\n" +
+            "    @VarargHolder List<String> b;\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testError_ArgumentMarker() throws IOException {
+        assertError("@ArgumentHolder may not have a @MarkerValueRef", IMPORTS +
+            "public final class Data {\n" +
+            "    @ArgumentHolder(index = 0) @MarkerValueRef(\"java.lang.Boolean::TRUE\") boolean a;\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testError_OptionalOrder() throws IOException {
+        assertError("must be optional", IMPORTS +
+            "public final class Data {\n" +
+            "    @ArgumentHolder(index = 0, optional = true) String a;\n" +
+            "    @ArgumentHolder(index = 1) String b;\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testError_InvalidToken() throws IOException {
+        assertError("Invalid long option token", IMPORTS +
+            "public final class Data {\n" +
+            "    @OptionHolder(longToken = \"-count\") int count;\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testError_InvalidToken_Parity() throws IOException {
+        // The processor must reject exactly the long tokens that are rejected by Option.Builder.
+        String alphabet = "aZ09-._\u00E4";
+        List<String> tokens = new ArrayList<>(Collections.singletonList(""));
+
+        for (char c0 : alphabet.toCharArray()) {
+            tokens.add(String.valueOf(c0));
+            for (char c1 : alphabet.toCharArray()) tokens.add(new String(new char[] { c0, c1 }));
+        }
+
+        StringBuilder source = new StringBuilder(IMPORTS).append("public final class Data {\n");
+
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i).replace("\u00E4", "\\u00E4");
+            source.append("    @OptionHolder(longToken = \"").append(token).append("\") int f").append(i).append(";\n");
+        }
+
+        Compilation compilation = compile("test.Data", source.append("}\n").toString());
+
+        try {
+            Set<String> rejected = compilation.diagnostics.stream()
+                .filter(it -> it.getKind() == Diagnostic.Kind.ERROR)
+                .map(it -> it.getMessage(null))
+                .filter(it -> it.startsWith("Invalid long option token: "))
+                .map(it -> it.substring(it.indexOf('"') + 1, it.lastIndexOf('"')))
+                .collect(Collectors.toSet());
+
+            for (String token : tokens) {
+                boolean isValid;
+
+                try {
+                    Option.builder(token, ValueParser.STRING);
+                    isValid = true;
+                } catch (IllegalArgumentException e) {
+                    isValid = false;
+                }
+
+                assertEquals(!rejected.contains(token), isValid, "\"" + token + "\"");
+            }
+        } finally {
+            compilation.delete();
+        }
+    }
+
+    @Test
+    public void testError_UnresolvedRef() throws IOException {
+        assertError("Failed to resolve referenced field", IMPORTS +
+            "public final class Data {\n" +
+            "    @OptionHolder(longToken = \"count\") @DefaultValueRef(\"test.Data::MISSING\") int count;\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testError_RefType() throws IOException {
+        assertError("is not assignable to", IMPORTS +
+            "public final class Data {\n" +
+            "    @OptionHolder(longToken = \"count\") @DefaultValueRef(\"java.lang.Boolean::TRUE\") int count;\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testError_PrivateField() throws IOException {
+        assertError("Field must not be private", IMPORTS +
+            "public final class Data {\n" +
+            "    @OptionHolder(longToken = \"count\") private int count;\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testError_Constructor() throws IOException {
+        assertError("zero-arg constructor", IMPORTS +
+            "public final class Data {\n" +
+            "    @OptionHolder(longToken = \"count\") int count;\n" +
+            "    private Data() {}\n" +
+            "}\n"
+        );
+    }
+
+    private static Object get(Object instance, String field) throws ReflectiveOperationException {
+        java.lang.reflect.Field f = instance.getClass().getDeclaredField(field);
+        f.setAccessible(true);
+
+        return f.get(instance);
+    }
+
+    private static void assertError(String msg, String source) throws IOException {
+        Compilation compilation = compile("test.Data", source);
+
+        try {
+            assertFalse(compilation.isSuccess);
+            assertTrue(compilation.diagnostics.stream().anyMatch(it -> it.getKind() == Diagnostic.Kind.ERROR && it.getMessage(null).contains(msg)), compilation.diagnostics.toString());
+            assertFalse(Files.exists(compilation.output.resolve("test/DataBinder.class")));
+        } finally {
+            compilation.delete();
+        }
+    }
+
+    private static Compilation compile(String className, String source) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler, "Tests require a JDK");
+
+        Path output = Files.createTempDirectory("mjl-options-processor");
+
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+
+        };
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d", output.toString(), "-s", output.toString());
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new BinderProcessor()));
+
+        boolean isSuccess = task.call();
+        return new Compilation(isSuccess, diagnostics.getDiagnostics(), output);
+    }
+
+    private static final class Compilation {
+
+        private final boolean isSuccess;
+        private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+        private final Path output;
+
+        private Compilation(boolean isSuccess, List<Diagnostic<? extends JavaFileObject>> diagnostics, Path output) {
+            this.isSuccess = isSuccess;
+            this.diagnostics = diagnostics;
+            this.output = output;
+        }
+
+        private URLClassLoader loader() throws IOException {
+            return new URLClassLoader(new URL[] { this.output.toUri().toURL() }, BinderProcessorTests.class.getClassLoader()) {
+
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    Compilation.this.delete();
+                }
+
+            };
+        }
+
+        private void delete() throws IOException {
+            try (Stream<Path> files = Files.walk(this.output)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) Files.delete(path);
+            }
+        }
+
+    }
+
+}
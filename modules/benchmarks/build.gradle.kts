@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+plugins {
+    java
+    id("me.champeau.gradle.jmh") version "0.5.0"
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+jmh {
+    jmhVersion = "1.23"
+
+    resultFormat = "JSON"
+    resultsFile = buildDir.resolve("reports/jmh/results.json")
+
+    val includes = project.findProperty("jmhIncludes") as String?
+    if (includes != null) include = listOf(includes)
+
+    val profilers = project.findProperty("jmhProfilers") as String?
+    if (profilers != null) this.profilers = profilers.split(",")
+}
+
+dependencies {
+    jmh(project(":modules.core"))
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import com.github.themrmilchmann.mjl.options.Argument;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.ParseContext;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares parsing a file of command lines with {@link ParseContext#parseLines(Path, com.github.themrmilchmann.mjl.options.LineConsumer)}
+ * to reading each line into a string and parsing it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchParseBenchmark {
+
+    @Param({ "10000", "100000" })
+    private int lines;
+
+    private OptionPool pool;
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        this.pool = OptionPool.builder()
+            .withArg(Argument.build(ValueParser.STRING))
+            .withOption(Option.build("name", ValueParser.STRING))
+            .withOption(Option.build("count", ValueParser.INT))
+            .withOption(Option.builder("verbose", ValueParser.BOOLEAN).withMarkerValue(true, true).build())
+            .build();
+
+        this.file = Files.createTempFile("mjl-options-batch", ".txt");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < this.lines; i++) {
+                writer.write("--name \"job " + i + "\" --count " + i + ((i % 2 == 0) ? " --verbose" : "") + " input-" + i);
+                writer.newLine();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(this.file);
+    }
+
+    @Benchmark
+    public void parseLines(Blackhole bh) throws IOException {
+        OptionParser.parseLines(this.pool, this.file, (lineNumber, set) -> bh.consume(set));
+    }
+
+    @Benchmark
+    public void parseLine_readLine(Blackhole bh) throws IOException {
+        ParseContext context = ParseContext.of(this.pool);
+
+        try (BufferedReader reader = Files.newBufferedReader(this.file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) bh.consume(context.parseLine(line));
+        }
+    }
+
+}
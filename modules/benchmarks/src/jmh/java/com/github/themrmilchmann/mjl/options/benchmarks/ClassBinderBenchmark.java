@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+import com.github.themrmilchmann.mjl.options.ClassBinder;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.annotations.ArgumentHolder;
+import com.github.themrmilchmann.mjl.options.annotations.MarkerValueRef;
+import com.github.themrmilchmann.mjl.options.annotations.OptionHolder;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Covers the annotation-driven path: compiling a binder, parsing with a compiled binder and parsing via the (cached)
+ * static entry point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassBinderBenchmark {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private ClassBinder<Data> binder;
+    private String[] fragments;
+
+    @Setup
+    public void setup() {
+        this.binder = OptionParser.compile(Data.class, LOOKUP);
+        this.fragments = new String[] { "--name=value", "--count", "42", "-v", "--ratio=0.5", "input" };
+    }
+
+    @Benchmark
+    public ClassBinder<Data> compile() {
+        return OptionParser.compile(Data.class, LOOKUP);
+    }
+
+    @Benchmark
+    public Data parseFragments_binder() {
+        return this.binder.parseFragments(this.fragments);
+    }
+
+    @Benchmark
+    public Data parseFragments_static() {
+        return OptionParser.parseFragments(Data.class, LOOKUP, this.fragments);
+    }
+
+    public static class Data {
+
+        @ArgumentHolder(index = 0)
+        String input;
+
+        @OptionHolder(longToken = "name")
+        String name;
+
+        @OptionHolder(longToken = "count", shortToken = 'c')
+        int count;
+
+        @OptionHolder(longToken = "ratio")
+        double ratio;
+
+        @OptionHolder(longToken = "verbose", shortToken = 'v')
+        @MarkerValueRef(value = "java.lang.Boolean::TRUE", markerOnly = true)
+        boolean verbose;
+
+    }
+
+}
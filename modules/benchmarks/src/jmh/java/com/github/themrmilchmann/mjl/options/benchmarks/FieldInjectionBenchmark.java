@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import com.github.themrmilchmann.mjl.options.internal.FieldAccess;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the handle-based field injection used by {@code ClassBinder} against the reflective injection that was used
+ * previously.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldInjectionBenchmark {
+
+    private Data instance;
+
+    private Field intField, stringField;
+    private MethodHandle hIntSetter, hStringSetter;
+
+    private Object intValue, stringValue;
+
+    @Setup
+    public void setup() throws NoSuchFieldException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        this.instance = new Data();
+
+        this.intField = Data.class.getDeclaredField("intValue");
+        this.stringField = Data.class.getDeclaredField("stringValue");
+
+        this.hIntSetter = FieldAccess.setter(this.intField, lookup);
+        this.hStringSetter = FieldAccess.setter(this.stringField, lookup).asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+        this.intValue = 42;
+        this.stringValue = "value";
+    }
+
+    @Benchmark
+    public void reflective_int() throws IllegalAccessException {
+        reflectiveSet(this.intField, this.instance, this.intValue);
+    }
+
+    @Benchmark
+    public void reflective_String() throws IllegalAccessException {
+        reflectiveSet(this.stringField, this.instance, this.stringValue);
+    }
+
+    @Benchmark
+    public void methodHandle_int() throws Throwable {
+        this.hIntSetter.invokeExact((Object) this.instance, (int) this.intValue);
+    }
+
+    @Benchmark
+    public void methodHandle_String() throws Throwable {
+        this.hStringSetter.invokeExact((Object) this.instance, this.stringValue);
+    }
+
+    /* The reflective injection as previously implemented by FieldAccess#set. */
+    private static void reflectiveSet(Field field, Object instance, Object value) throws IllegalAccessException {
+        boolean wasAccessible = field.isAccessible();
+
+        if (!wasAccessible) field.setAccessible(true);
+
+        Class<?> type = field.getType();
+
+        if (type == boolean.class) {
+            field.setBoolean(instance, (boolean) value);
+        } else if (type == byte.class) {
+            field.setByte(instance, (byte) value);
+        } else if (type == char.class) {
+            field.setChar(instance, (char) value);
+        } else if (type == short.class) {
+            field.setShort(instance, (short) value);
+        } else if (type == int.class) {
+            field.setInt(instance, (int) value);
+        } else if (type == long.class) {
+            field.setLong(instance, (long) value);
+        } else if (type == float.class) {
+            field.setFloat(instance, (float) value);
+        } else if (type == double.class) {
+            field.setDouble(instance, (double) value);
+        } else {
+            field.set(instance, value);
+        }
+
+        if (!wasAccessible) field.setAccessible(false);
+    }
+
+    public static class Data {
+
+        private int intValue;
+        private String stringValue;
+
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineToFragmentsBenchmark {
+
+    @Param({ "short", "long" })
+    private String length;
+
+    private String line;
+
+    @Setup
+    public void setup() {
+        String shortLine = "--output \"some file.txt\" -vx --level=3 \"a \\\"quoted\\\" value\" input";
+
+        if ("short".equals(this.length)) {
+            this.line = shortLine;
+        } else {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 1024; i++) sb.append(shortLine).append(' ');
+
+            this.line = sb.toString();
+        }
+    }
+
+    @Benchmark
+    public String[] lineToFragments() {
+        return OptionParser.lineToFragments(this.line);
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.OptionSet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reads values from a parsed {@link OptionSet} (five set options and five unset options) for pools of different sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptionSetBenchmark {
+
+    @Param({ "5", "50", "500" })
+    private int optionCount;
+
+    private OptionSet set;
+    private Option<?>[] reads;
+
+    @Setup
+    public void setup() {
+        Option<?>[] options = Pools.options(this.optionCount);
+        this.reads = new Option<?>[10];
+
+        String[] fragments = new String[5];
+
+        for (int i = 0; i < 5; i++) {
+            Option<?> option = options[this.optionCount - 1 - i * (this.optionCount / 5)];
+
+            fragments[i] = "--" + option.getLongToken() + "=value";
+            this.reads[i] = option;
+            this.reads[5 + i] = options[i * (this.optionCount / 5)];
+        }
+
+        this.set = OptionParser.parseFragments(Pools.builder(options).build(), fragments);
+    }
+
+    @Benchmark
+    public void get(Blackhole bh) {
+        for (Option<?> option : this.reads) bh.consume(this.set.get(option));
+    }
+
+    @Benchmark
+    public void isSet(Blackhole bh) {
+        for (Option<?> option : this.reads) bh.consume(this.set.isSet(option));
+    }
+
+}
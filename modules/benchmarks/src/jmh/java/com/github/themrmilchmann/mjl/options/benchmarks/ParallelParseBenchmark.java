@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import com.github.themrmilchmann.mjl.options.Argument;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.OptionSet;
+import com.github.themrmilchmann.mjl.options.ParseContext;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures how {@link OptionParser#parseAll(OptionPool, java.util.Spliterator, java.util.concurrent.Executor)} scales
+ * with the number of worker threads.
+ *
+ * <p>{@code sequential} parses the same batch with a single reused {@link ParseContext} on the benchmark thread and
+ * serves as baseline. (It does not depend on the number of workers and is thus only run once.) The speedup for
+ * {@code n} workers is {@code sequential / parseAll(n)}. Since the baseline does not copy the parsed sets into
+ * immutable ones, the speedup is understated. (Run with {@code -p workers=1,2,4,...} up to the number of available cores
+ * to obtain the full curve.)</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelParseBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Input {
+
+        @Param({ "100000" })
+        private int inputs;
+
+        private OptionPool pool;
+        private String[][] fragments;
+        private ParseContext context;
+
+        @Setup
+        public void setup() {
+            this.pool = OptionPool.builder()
+                .withArg(Argument.build(ValueParser.STRING))
+                .withOption(Option.build("name", ValueParser.STRING))
+                .withOption(Option.build("count", ValueParser.INT))
+                .withOption(Option.build("ratio", ValueParser.DOUBLE))
+                .withOption(Option.builder("verbose", ValueParser.BOOLEAN).withMarkerValue(true, true).build())
+                .build();
+
+            this.fragments = new String[this.inputs][];
+
+            for (int i = 0; i < this.inputs; i++) {
+                this.fragments[i] = new String[] { "--name", "job-" + i, "--count=" + i, "--ratio", (i / 7.0) + "", "--verbose", "input-" + i };
+            }
+
+            this.context = ParseContext.of(this.pool);
+        }
+
+    }
+
+    @State(Scope.Benchmark)
+    public static class Workers {
+
+        @Param({ "1", "2", "4", "8" })
+        private int workers;
+
+        private ForkJoinPool executor;
+
+        @Setup
+        public void setup() {
+            this.executor = new ForkJoinPool(this.workers);
+        }
+
+        @TearDown
+        public void tearDown() {
+            this.executor.shutdown();
+        }
+
+    }
+
+    @Benchmark
+    public List<OptionSet> parseAll(Input input, Workers workers) {
+        return OptionParser.parseAll(input.pool, Arrays.spliterator(input.fragments), workers.executor);
+    }
+
+    @Benchmark
+    public void sequential(Input input, Blackhole bh) {
+        for (String[] fragments : input.fragments) bh.consume(input.context.parseFragments(fragments));
+    }
+
+}
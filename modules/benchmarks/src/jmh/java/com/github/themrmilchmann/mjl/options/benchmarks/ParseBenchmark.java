@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import com.github.themrmilchmann.mjl.options.Argument;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.OptionSet;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parses a fixed command line (five options and an argument) against pools of different sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({ "5", "50", "500" })
+    private int optionCount;
+
+    private OptionPool pool;
+    private String[] fragments;
+
+    @Setup
+    public void setup() {
+        Option<?>[] options = Pools.options(this.optionCount);
+
+        this.pool = Pools.builder(options)
+            .withArg(Argument.build(ValueParser.STRING))
+            .build();
+
+        int step = this.optionCount / 5;
+
+        this.fragments = new String[] {
+            "--" + options[0].getLongToken() + "=value",
+            "--" + options[step].getLongToken() + "=value",
+            "--" + options[2 * step].getLongToken(), "value",
+            "--" + options[3 * step].getLongToken() + "=value",
+            "--" + options[4 * step].getLongToken(), "value",
+            "argument"
+        };
+    }
+
+    @Benchmark
+    public OptionSet parseFragments() {
+        return OptionParser.parseFragments(this.pool, this.fragments);
+    }
+
+}
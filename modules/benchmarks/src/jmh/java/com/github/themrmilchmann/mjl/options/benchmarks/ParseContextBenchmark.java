@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import com.github.themrmilchmann.mjl.options.Argument;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.OptionSet;
+import com.github.themrmilchmann.mjl.options.ParseContext;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares parsing with a reused {@link ParseContext} to parsing with a new context per invocation.
+ *
+ * <p>This benchmark is meant to be run with the GC profiler ({@code -prof gc}) which reports the allocated memory per
+ * operation ({@code gc.alloc.rate.norm}). For the reused context, that number should be zero. (All values in the input
+ * are either strings or parsed by primitive specializations of {@code ValueParser}.) When parsing a line, the strings
+ * for the string values are allocated (but neither the fragments nor an array of them). When parsing UTF-8 encoded
+ * bytes, only the string values are decoded.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseContextBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(ParseContextBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+
+    private OptionPool pool;
+    private ParseContext context;
+    private String[] fragments;
+    private String line;
+    private byte[] lineBytes;
+
+    private ParseContext numericContext;
+    private String[] numericFragments;
+
+    @Setup
+    public void setup() {
+        this.pool = OptionPool.builder()
+            .withArg(Argument.build(ValueParser.STRING))
+            .withOption(Option.build("name", ValueParser.STRING))
+            .withOption(Option.build("count", ValueParser.INT))
+            .withOption(Option.builder("verbose", ValueParser.BOOLEAN).withMarkerValue(true, true).build())
+            .build();
+
+        this.context = ParseContext.of(this.pool);
+        this.fragments = new String[] { "--name", "value", "--count", "42", "--verbose", "input" };
+        this.line = String.join(" ", this.fragments);
+        this.lineBytes = this.line.getBytes(StandardCharsets.UTF_8);
+
+        this.numericContext = ParseContext.of(OptionPool.builder()
+            .withArg(Argument.build(ValueParser.DOUBLE))
+            .withOption(Option.build("int", ValueParser.INT))
+            .withOption(Option.build("long", ValueParser.LONG))
+            .build());
+
+        this.numericFragments = new String[] { "--int", "123456789", "--long", "1234567890123", "3.14159" };
+    }
+
+    @Benchmark
+    public OptionSet parseFragments_context() {
+        return this.context.parseFragments(this.fragments);
+    }
+
+    @Benchmark
+    public OptionSet parseFragments_context_numeric() {
+        return this.numericContext.parseFragments(this.numericFragments);
+    }
+
+    @Benchmark
+    public OptionSet parseLine_context() {
+        return this.context.parseLine(this.line);
+    }
+
+    @Benchmark
+    public OptionSet parseLine_context_decoded() {
+        return this.context.parseLine(new String(this.lineBytes, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public OptionSet parseLine_context_bytes() {
+        return this.context.parseLine(this.lineBytes, 0, this.lineBytes.length);
+    }
+
+    @Benchmark
+    public OptionSet parseFragments_static() {
+        return OptionParser.parseFragments(this.pool, this.fragments);
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.Restriction;
+import com.github.themrmilchmann.mjl.options.ValueParserRegistry;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link OptionPool.Builder#build()} (and thus the reachability checks) for growing numbers of restrictions.
+ *
+ * <p>{@code IMPLICATION} uses disjoint pairs of options where the first implies the presence of the second.
+ * {@code EXCLUSION} uses a chain of options where each option excludes its successor and implies the presence of the
+ * option after its successor. {@code CLUSTERS} uses many small independent groups of options with mixed restrictions
+ * (as commonly found in real pools).</p>
+ *
+ * <ul>
+ * <li>{@code build} measures building a pool from a fresh builder.</li>
+ * <li>{@code build_Unchanged} measures building a pool from a builder that has been used to build a pool before.</li>
+ * <li>{@code build_Incremental} measures adding the restrictions one by one and building a pool after each one (as
+ * done when multiple components contribute to a pool).</li>
+ * <li>{@code build_ProofCache} measures building a pool from a fresh builder when a reachability proof for the pool
+ * has been cached (as done by short-lived processes).</li>
+ * <li>{@code readSnapshot} measures reading the pool from a snapshot.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolBuildBenchmark {
+
+    @Param({ "1", "10", "100" })
+    private int restrictionCount;
+
+    @Param({ "IMPLICATION", "EXCLUSION", "CLUSTERS" })
+    private String kind;
+
+    private Option<?>[] options;
+    private List<Restriction> restrictions;
+
+    private OptionPool.Builder builder;
+    private Path proofCache;
+    private byte[] snapshot;
+
+    @Setup
+    public void setup() throws IOException {
+        Option<?>[] options = this.options = Pools.options(4 * this.restrictionCount + 2);
+        this.restrictions = new ArrayList<>();
+
+        for (int i = 0; i < this.restrictionCount; i++) {
+            if ("CLUSTERS".equals(this.kind)) {
+                Option<?> a = options[4 * i], b = options[4 * i + 1], c = options[4 * i + 2], d = options[4 * i + 3];
+
+                this.restrictions.add(Restriction.mutuallyExclude(a, b));
+                this.restrictions.add(Restriction.implyPresenceOf(Collections.singleton(c), Collections.singleton(a)));
+                this.restrictions.add(Restriction.implyPresenceOfUnless(Collections.singleton(d), Collections.singleton(b), Collections.singleton(c)));
+            } else if ("IMPLICATION".equals(this.kind)) {
+                Option<?> trigger = options[2 * i];
+                Option<?> target = options[2 * i + 1];
+
+                this.restrictions.add(Restriction.implyPresenceOf(Collections.singleton(trigger), Collections.singleton(target)));
+            } else {
+                this.restrictions.add(Restriction.mutuallyExclude(options[i], options[i + 1]));
+                this.restrictions.add(Restriction.implyPresenceOf(Collections.singleton(options[i]), Collections.singleton(options[i + 2])));
+            }
+        }
+
+        this.builder = Pools.builder(options);
+        this.restrictions.forEach(this.builder::withRestriction);
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        this.builder.build().writeSnapshot(snapshot, ValueParserRegistry.defaults());
+        this.snapshot = snapshot.toByteArray();
+
+        this.proofCache = Files.createTempDirectory("mjl-options-benchmark");
+        this.build_ProofCache();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(this.proofCache)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+
+        Files.delete(this.proofCache);
+    }
+
+    @Benchmark
+    public OptionPool build() {
+        OptionPool.Builder builder = Pools.builder(this.options);
+        this.restrictions.forEach(builder::withRestriction);
+
+        return builder.build();
+    }
+
+    @Benchmark
+    public OptionPool build_Unchanged() {
+        return this.builder.build();
+    }
+
+    @Benchmark
+    public OptionPool build_Incremental() {
+        OptionPool.Builder builder = Pools.builder(this.options);
+        OptionPool pool = builder.build();
+
+        for (Restriction restriction : this.restrictions) {
+            builder.withRestriction(restriction);
+            pool = builder.build();
+        }
+
+        return pool;
+    }
+
+    @Benchmark
+    public OptionPool build_ProofCache() {
+        OptionPool.Builder builder = Pools.builder(this.options);
+        this.restrictions.forEach(builder::withRestriction);
+
+        return builder.withProofCache(this.proofCache).build();
+    }
+
+    @Benchmark
+    public OptionPool readSnapshot() throws IOException {
+        return OptionPool.readSnapshot(new ByteArrayInputStream(this.snapshot), ValueParserRegistry.defaults());
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+
+/** Fixtures shared between multiple benchmarks. */
+final class Pools {
+
+    static Option<?>[] options(int count) {
+        Option<?>[] options = new Option<?>[count];
+        for (int i = 0; i < count; i++) options[i] = Option.build("option" + i, ValueParser.STRING);
+
+        return options;
+    }
+
+    static OptionPool.Builder builder(Option<?>... options) {
+        OptionPool.Builder builder = OptionPool.builder();
+        for (Option<?> option : options) builder.withOption(option);
+
+        return builder;
+    }
+
+    private Pools() {}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import com.github.themrmilchmann.mjl.options.Argument;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.ParseContext;
+import com.github.themrmilchmann.mjl.options.ParseResult;
+import com.github.themrmilchmann.mjl.options.ParsingException;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the cost of rejecting invalid input (an unrecognized option) with a throwing context, a context with
+ * stackless exceptions, and the result-returning API.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RejectionBenchmark {
+
+    private ParseContext context, stacklessContext;
+    private String[] fragments;
+
+    @Setup
+    public void setup() {
+        OptionPool pool = OptionPool.builder()
+            .withArg(Argument.build(ValueParser.STRING))
+            .withOption(Option.build("name", ValueParser.STRING))
+            .withOption(Option.build("count", ValueParser.INT))
+            .build();
+
+        this.context = ParseContext.of(pool);
+        this.stacklessContext = ParseContext.builder(pool).withStacklessExceptions(true).build();
+        this.fragments = new String[] { "--name", "value", "--unknown", "42", "input" };
+    }
+
+    @Benchmark
+    public Object parseFragments_exception() {
+        try {
+            return this.context.parseFragments(this.fragments);
+        } catch (ParsingException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object parseFragments_stacklessException() {
+        try {
+            return this.stacklessContext.parseFragments(this.fragments);
+        } catch (ParsingException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public ParseResult tryParseFragments() {
+        return this.context.tryParseFragments(this.fragments);
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.OptionSet;
+import com.github.themrmilchmann.mjl.options.ParseContext;
+import com.github.themrmilchmann.mjl.options.Restriction;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parses a fixed command line (that satisfies all restrictions) against pools with growing numbers of restrictions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestrictionCheckBenchmark {
+
+    @Param({ "0", "10", "100", "500" })
+    private int restrictionCount;
+
+    private ParseContext context;
+    private String[] fragments;
+
+    @Setup
+    public void setup() {
+        Option<?>[] options = Pools.options(Math.max(2 * this.restrictionCount, 4));
+        OptionPool.Builder builder = Pools.builder(options);
+
+        for (int i = 0; i < this.restrictionCount; i++) {
+            builder.withRestriction(Restriction.implyPresenceOf(Collections.singleton(options[2 * i]), Collections.singleton(options[2 * i + 1])));
+        }
+
+        this.context = ParseContext.of(builder.build());
+        this.fragments = new String[] { "--option0=value", "--option1=value", "--option3=value" };
+    }
+
+    @Benchmark
+    public OptionSet parseFragments() {
+        return this.context.parseFragments(this.fragments);
+    }
+
+}
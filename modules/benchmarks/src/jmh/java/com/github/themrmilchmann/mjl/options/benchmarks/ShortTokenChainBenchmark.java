@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.OptionSet;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parses a single chain of short tokens (such as {@code -abc}) of different lengths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShortTokenChainBenchmark {
+
+    @Param({ "1", "8", "26" })
+    private int chainLength;
+
+    private OptionPool pool;
+    private String[] fragments;
+
+    @Setup
+    public void setup() {
+        OptionPool.Builder builder = OptionPool.builder();
+        StringBuilder chain = new StringBuilder("-");
+
+        for (int i = 0; i < 26; i++) {
+            char token = (char) ('a' + i);
+
+            builder.withOption(Option.builder("option-" + token, ValueParser.BOOLEAN)
+                .withShortToken(token)
+                .withMarkerValue(true)
+                .build());
+
+            if (i < this.chainLength) chain.append(token);
+        }
+
+        this.pool = builder.build();
+        this.fragments = new String[] { chain.toString() };
+    }
+
+    @Benchmark
+    public OptionSet parseFragments() {
+        return OptionParser.parseFragments(this.pool, this.fragments);
+    }
+
+}
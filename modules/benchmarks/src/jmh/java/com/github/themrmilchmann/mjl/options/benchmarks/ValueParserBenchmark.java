@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares parsing the value of a {@code --option=value} fragment by copying it out of the fragment with parsing it in
+ * place.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueParserBenchmark {
+
+    @Param({ "--count=1048576", "--ratio=0.0625", "--ratio=3.14159e-7" })
+    public String fragment;
+
+    private int valueStart;
+
+    @Setup
+    public void setup() {
+        this.valueStart = this.fragment.indexOf('=') + 1;
+    }
+
+    @Benchmark
+    public double substring() {
+        String value = this.fragment.substring(this.valueStart);
+        return (this.fragment.charAt(2) == 'c') ? ValueParser.INT.parseInt(value) : ValueParser.DOUBLE.parseDouble(value);
+    }
+
+    @Benchmark
+    public double range() {
+        String fragment = this.fragment;
+        return (fragment.charAt(2) == 'c')
+            ? ValueParser.INT.parseInt(fragment, this.valueStart, fragment.length())
+            : ValueParser.DOUBLE.parseDouble(fragment, this.valueStart, fragment.length());
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package com.github.themrmilchmann.mjl.options.internal;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.lang.reflect.Field;
@@ -30,10 +31,11 @@ public final class FieldAccess {
         }
     }
 
-    public static void set(Field field, Object instance, Object value, MethodHandles.Lookup lookup) {
+    public static MethodHandle setter(Field field, MethodHandles.Lookup lookup) {
         try {
             VarHandle varHandle = lookup.unreflectVarHandle(field);
-            varHandle.set(instance, value);
+            MethodHandle hSetter = varHandle.toMethodHandle(VarHandle.AccessMode.SET);
+            return hSetter.asType(hSetter.type().changeParameterType(0, Object.class));
         } catch (Throwable t) {
             throw new RuntimeException(t);
         }
@@ -85,7 +85,7 @@ public final class Argument<T> {
     @Nullable
     private final T defaultValue;
 
-    private Argument(ValueParser<T> parser, boolean isOptional, @Nullable T defaultValue) {
+    Argument(ValueParser<T> parser, boolean isOptional, @Nullable T defaultValue) {
         this.parser = parser;
         this.isOptional = isOptional;
         this.defaultValue = defaultValue;
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options;
+
+/**
+ * A {@link ValueParser} specialization for {@code boolean} values.
+ *
+ * <p>Values that are parsed by a {@code BooleanValueParser} are stored without boxing and may be retrieved using
+ * {@link OptionSet#getBoolean(Option)} and {@link OptionSet#getBoolean(Argument)}. Generic accessors (such as
+ * {@link OptionSet#get(Option)}) box values on demand.</p>
+ *
+ * @since   0.4.0
+ *
+ * @author  Leon Linhart
+ */
+@FunctionalInterface
+public interface BooleanValueParser extends ValueParser<Boolean> {
+
+    /**
+     * Parse a {@code boolean} value from a given {@linkplain String}.
+     *
+     * @param string the {@code String} to be parsed
+     *
+     * @return  the parsed value
+     *
+     * @throws ParsingException if an error occurs while parsing
+     *
+     * @since   0.4.0
+     */
+    boolean parseBoolean(String string);
+
+    /**
+     * Parse a {@code boolean} value from the given range of a {@linkplain CharSequence}.
+     *
+     * <p>By default, this method delegates to {@link #parseBoolean(String)}. Implementations should override this method
+     * to parse the range in place.</p>
+     *
+     * @param src   the {@code CharSequence} that contains the value
+     * @param start the index of the first character of the value (inclusive)
+     * @param end   the index of the last character of the value (exclusive)
+     *
+     * @return  the parsed value
+     *
+     * @throws IndexOutOfBoundsException    if the range is out of bounds
+     * @throws ParsingException             if an error occurs while parsing
+     *
+     * @since   0.4.0
+     */
+    default boolean parseBoolean(CharSequence src, int start, int end) {
+        return this.parseBoolean(src.subSequence(start, end).toString());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This method delegates to {@link #parseBoolean(String)}.</p>
+     *
+     * @since   0.4.0
+     */
+    @Override
+    default Boolean parse(String string) {
+        return this.parseBoolean(string);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This method delegates to {@link #parseBoolean(CharSequence, int, int)}.</p>
+     *
+     * @since   0.4.0
+     */
+    @Override
+    default Boolean parse(CharSequence src, int start, int end) {
+        return this.parseBoolean(src, start, end);
+    }
+
+}
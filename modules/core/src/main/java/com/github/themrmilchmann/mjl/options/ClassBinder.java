@@ -0,0 +1,661 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import com.github.themrmilchmann.mjl.options.annotations.ArgumentHolder;
+import com.github.themrmilchmann.mjl.options.annotations.DefaultValueRef;
+import com.github.themrmilchmann.mjl.options.annotations.MarkerValueRef;
+import com.github.themrmilchmann.mjl.options.annotations.OptionHolder;
+import com.github.themrmilchmann.mjl.options.annotations.ValueParserRef;
+import com.github.themrmilchmann.mjl.options.annotations.VarargHolder;
+import com.github.themrmilchmann.mjl.options.annotations.WildcardHolder;
+import com.github.themrmilchmann.mjl.options.internal.FieldAccess;
+
+/**
+ * A {@code ClassBinder} is a compiled binding between an annotated data class and the {@link OptionPool} induced by it.
+ *
+ * <p>All reflective work (discovering the annotated fields, resolving references, building the pool and checking it
+ * for unreachable options) is done exactly once when the binder is {@link OptionParser#compile(Class,
+ * MethodHandles.Lookup) compiled}. Afterwards, parsing with a binder only involves tokenizing the input, parsing the
+ * values and injecting them into a fresh instance of the data class.</p>
+ *
+ * <p>Binders are immutable and may safely be shared between multiple threads.</p>
+ *
+ * @param <T>   the type of the data class
+ *
+ * @see OptionParser#compile(Class, MethodHandles.Lookup)
+ *
+ * @since   0.4.0
+ *
+ * @author  Leon Linhart
+ */
+public final class ClassBinder<T> {
+
+    /*
+     * Binders are cached per class and per lookup (that is, its lookup class and its access modes) to make sure that a
+     * binder compiled with a privileged lookup is never handed out to a caller with a less privileged one.
+     */
+    private static final ClassValue<ConcurrentMap<LookupKey, ClassBinder<?>>> CACHE = new ClassValue<ConcurrentMap<LookupKey, ClassBinder<?>>>() {
+
+        @Override
+        protected ConcurrentMap<LookupKey, ClassBinder<?>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+
+    };
+
+    @SuppressWarnings("unchecked")
+    static <T> ClassBinder<T> cached(Class<T> cls, MethodHandles.Lookup lookup) {
+        ConcurrentMap<LookupKey, ClassBinder<?>> binders = CACHE.get(Objects.requireNonNull(cls));
+        LookupKey key = new LookupKey(lookup);
+
+        ClassBinder<?> binder = binders.get(key);
+        if (binder == null) binder = binders.computeIfAbsent(key, it -> compile(cls, lookup));
+
+        return (ClassBinder<T>) binder;
+    }
+
+    static <T> ClassBinder<T> compile(Class<T> cls, MethodHandles.Lookup lookup) {
+        Objects.requireNonNull(cls);
+        Objects.requireNonNull(lookup);
+
+        List<Throwable> errors = new ArrayList<>();
+
+        TreeSet<ArgFieldWrapper> args = new TreeSet<>((alpha, beta) -> {
+            if (alpha != beta && alpha.index == beta.index) {
+                String msg = String.format("Duplicate argument index (%s) at field '%s' and '%s'", alpha.index, alpha.field.getName(), beta.field.getName());
+                errors.add(new IllegalArgumentException(msg));
+            }
+
+            return Integer.compare(alpha.index, beta.index);
+        });
+        List<OptFieldWrapper> opts = new ArrayList<>();
+        ArgFieldWrapper varargFieldWrapper = null;
+        Field wildcardField = null;
+
+        OptionPool.Builder bPool = OptionPool.builder();
+        MethodHandle hConstructor;
+
+        try {
+            try {
+                hConstructor = lookup.findConstructor(cls, MethodType.methodType(void.class));
+            } catch (Throwable t) {
+                hConstructor = lookup.in(cls).findConstructor(cls, MethodType.methodType(void.class));
+            }
+        } catch (Throwable t) {
+            throw new ParsingException("Failed to instantiate data class", t);
+        }
+
+        for (Field field : cls.getDeclaredFields()) {
+            ArgumentHolder argHolder = field.getDeclaredAnnotation(ArgumentHolder.class);
+            OptionHolder optHolder = field.getDeclaredAnnotation(OptionHolder.class);
+            VarargHolder varargHolder = field.getDeclaredAnnotation(VarargHolder.class);
+            WildcardHolder wildcardHolder = field.getDeclaredAnnotation(WildcardHolder.class);
+
+            int i = 0;
+            if (argHolder != null) i++;
+            if (optHolder != null) i++;
+            if (varargHolder != null) i++;
+            if (wildcardHolder != null) i++;
+
+            if (i > 1) throwAtField(field, errors, "Field must be at most one of: @ArgumentHolder, @OptionHolder, @VarargHolder, @WildcardHolder");
+
+            DefaultValueRef defaultValueRef = field.getDeclaredAnnotation(DefaultValueRef.class);
+            MarkerValueRef markerValueRef = field.getDeclaredAnnotation(MarkerValueRef.class);
+            ValueParserRef valueParserRef = field.getDeclaredAnnotation(ValueParserRef.class);
+
+            if (wildcardHolder != null) {
+                if (wildcardField != null) throwAtField(field, errors, "There must be at most one @WildcardHolder");
+
+                // Check configuration
+                if (defaultValueRef != null) throwAtField(field, errors, "@WildcardHolder may not have a @DefaultValueRef");
+                if (markerValueRef != null) throwAtField(field, errors, "@WildcardHolder may not have a @MarkerValueRef");
+                if (valueParserRef != null) throwAtField(field, errors, "@WildcardHolder may not have a @ValueParserRef");
+
+                wildcardField = field;
+            } else {
+                ValueParser<?> valueParser = null;
+
+                if (valueParserRef != null) {
+                    String ref = valueParserRef.value();
+                    valueParser = (ValueParser<?>) lookupRef(ref, lookup);
+                }
+
+                if (valueParser == null) {
+                    Class<?> type = field.getType();
+
+                    if (type == boolean.class) {
+                        valueParser = ValueParser.BOOLEAN;
+                    } else if (type == byte.class) {
+                        valueParser = ValueParser.BYTE;
+                    } else if (type == char.class) {
+                        valueParser = ValueParser.CHARACTER;
+                    } else if (type == short.class) {
+                        valueParser = ValueParser.SHORT;
+                    } else if (type == int.class) {
+                        valueParser = ValueParser.INT;
+                    } else if (type == long.class) {
+                        valueParser = ValueParser.LONG;
+                    } else if (type == float.class) {
+                        valueParser = ValueParser.FLOAT;
+                    } else if (type == double.class) {
+                        valueParser = ValueParser.DOUBLE;
+                    } else if (type == String.class) {
+                        valueParser = ValueParser.STRING;
+                    } else {
+                        throwAtField(field, errors, "Failed to infer ValueParser for field");
+                        continue;
+                    }
+                }
+
+                if (argHolder != null) {
+                    // Check configuration
+                    if (markerValueRef != null) throwAtField(field, errors, "@ArgumentHolder may not have a @MarkerValueRef");
+
+                    Argument.Builder<?> bArg = Argument.builder(valueParser)
+                        .optional(argHolder.optional());
+
+                    if (defaultValueRef != null) {
+                        String ref = defaultValueRef.value();
+                        Object value = lookupRef(ref, lookup);
+                        bArg.withDefaultValueInternal(value);
+                    }
+
+                    args.add(new ArgFieldWrapper(field, bArg.build(), argHolder.index()));
+                } else if (optHolder != null) {
+                    Option.Builder<?> bOpt = Option.builder(optHolder.longToken(), valueParser);
+                    if (optHolder.shortToken() != '\0') bOpt.withShortToken(optHolder.shortToken());
+
+                    if (markerValueRef != null) {
+                        String ref = markerValueRef.value();
+                        Object value = lookupRef(ref, lookup);
+                        bOpt.withMarkerValueInternal(value, markerValueRef.markerOnly());
+                    }
+
+                    if (defaultValueRef != null) {
+                        String ref = defaultValueRef.value();
+                        Object value = lookupRef(ref, lookup);
+                        bOpt.withDefaultValueInternal(value);
+                    }
+
+                    Option<?> opt = bOpt.build();
+                    bPool.withOption(opt);
+                    opts.add(new OptFieldWrapper(field, opt));
+                } else if (varargHolder != null) {
+                    if (varargFieldWrapper != null) throwAtField(field, errors, "There must be at most one @VarargHolder");
+
+                    Argument<?> arg = Argument.builder(valueParser).optional(varargHolder.optional()).build();
+                    varargFieldWrapper = new ArgFieldWrapper(field, arg, Integer.MAX_VALUE);
+                }
+            }
+        }
+
+        if (!errors.isEmpty()) throw new ClassPoolConfigurationException(errors);
+
+        for (ArgFieldWrapper wrapper : args) bPool.withArg(wrapper.arg);
+
+        if (varargFieldWrapper != null) {
+            bPool.withVarargArg(varargFieldWrapper.arg);
+            args.add(varargFieldWrapper);
+        }
+
+        OptionPool pool = bPool.build();
+
+        ArgBinding[] argBindings = new ArgBinding[args.size()];
+        OptBinding[] optBindings = new OptBinding[opts.size()];
+
+        int argIndex = 0;
+        for (ArgFieldWrapper wrapper : args) {
+            Injector injector = injectorFor(wrapper.field, errors, lookup);
+            argBindings[argIndex++] = new ArgBinding(wrapper.arg, pool.ordinalOf(wrapper.arg), injector);
+        }
+
+        int optIndex = 0;
+        for (OptFieldWrapper wrapper : opts) {
+            Injector injector = injectorFor(wrapper.field, errors, lookup);
+            optBindings[optIndex++] = new OptBinding(wrapper.opt, pool.ordinalOf(wrapper.opt), injector);
+        }
+
+        if (!errors.isEmpty()) throw new ClassPoolConfigurationException(errors);
+
+        return new ClassBinder<>(pool, hConstructor.asType(MethodType.methodType(Object.class)), argBindings, optBindings);
+    }
+
+    @Nullable
+    private static Injector injectorFor(Field field, List<Throwable> errors, MethodHandles.Lookup lookup) {
+        try {
+            return Injector.of(field, lookup);
+        } catch (RuntimeException e) {
+            errors.add(e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Object lookupRef(String ref, MethodHandles.Lookup lookup) {
+        Object value;
+
+        if (ref.contains("::")) {
+            String[] s = ref.split("::");
+            Class<?> cntCls;
+
+            try {
+                cntCls = Class.forName(s[0]);
+            } catch (ClassNotFoundException e) {
+                throw new ParsingException("Failed to resolve reference", e);
+            }
+
+            if (s[1].endsWith("()")) {
+                s[1] = s[1].substring(0, s[1].length() - 3);
+
+                try {
+                    Method method = cntCls.getDeclaredMethod(s[1]);
+                    MethodHandle hMethod = lookup.unreflect(method);
+                    value = hMethod.invokeExact();
+                } catch (Throwable t) {
+                    throw new ParsingException("Failed to resolve referenced method", t);
+                }
+            } else {
+                try {
+                    Field vpField = cntCls.getDeclaredField(s[1]);
+                    value = FieldAccess.getStatic(vpField, lookup);
+                } catch (Exception e) {
+                    throw new ParsingException("Failed to resolve referenced field", e);
+                }
+            }
+        } else {
+            try {
+                Class<?> vpCls = Class.forName(ref);
+                MethodHandle hVPCtr = lookup.findConstructor(vpCls, MethodType.methodType(vpCls));
+                value = (ValueParser<?>) hVPCtr.invokeExact();
+            } catch (Throwable t) {
+                throw new ParsingException("Failed to resolve reference", t);
+            }
+        }
+
+        return value;
+    }
+
+    private static void throwAtField(Field field, List<Throwable> errors, String msg) {
+        errors.add(new IllegalArgumentException(String.format("Field %s: %s", field.getName(), msg)));
+    }
+
+    private final OptionPool pool;
+    private final MethodHandle hConstructor;
+    private final ArgBinding[] args;
+    private final OptBinding[] opts;
+
+    /*
+     * The values are copied into the data object right away. Thus, a context per thread may safely be reused.
+     */
+    private final ThreadLocal<ParseContext> context;
+
+    private ClassBinder(OptionPool pool, MethodHandle hConstructor, ArgBinding[] args, OptBinding[] opts) {
+        this.pool = pool;
+        this.context = ThreadLocal.withInitial(() -> ParseContext.of(pool));
+        this.hConstructor = hConstructor;
+        this.args = args;
+        this.opts = opts;
+    }
+
+    /**
+     * Returns the {@link OptionPool pool} induced by the data class of this binder.
+     *
+     * @return  the pool induced by the data class of this binder
+     *
+     * @since   0.4.0
+     */
+    public OptionPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Parses parameters from the given input into a new instance of the data class.
+     *
+     * @param fragments the input to be parsed
+     *
+     * @return  a data object holding parsed values
+     *
+     * @throws ParsingException             if any error occurs during parsing
+     * @throws RestrictionViolatedException if any of the induced pool's restrictions have been violated
+     *
+     * @see #parseLine(String)
+     *
+     * @since   0.4.0
+     */
+    public T parseFragments(String... fragments) {
+        T instance = this.newInstance();
+        return this.bind(instance, this.context().parseFragments(fragments));
+    }
+
+    /**
+     * Parses parameters from the given input into a new instance of the data class.
+     *
+     * @param line  the input to be parsed
+     *
+     * @return  a data object holding parsed values
+     *
+     * @throws ParsingException             if any error occurs during parsing
+     * @throws RestrictionViolatedException if any of the induced pool's restrictions have been violated
+     *
+     * @see #parseFragments(String...)
+     *
+     * @since   0.4.0
+     */
+    public T parseLine(String line) {
+        T instance = this.newInstance();
+        return this.bind(instance, this.context().parseLine(line));
+    }
+
+    @SuppressWarnings("unchecked")
+    private T newInstance() {
+        try {
+            return (T) (Object) this.hConstructor.invokeExact();
+        } catch (Throwable t) {
+            throw new ParsingException("Failed to instantiate data class", t);
+        }
+    }
+
+    private ParseContext context() {
+        ParseContext context = this.context.get();
+        return context.isParsing ? ParseContext.of(this.pool) : context;
+    }
+
+    private T bind(T instance, OptionSet set) {
+        for (ArgBinding binding : this.args) {
+            if (set.isPresent(binding.ordinal)) {
+                binding.injector.inject(instance, set, binding.ordinal);
+            } else if (!binding.arg.isOptional()) {
+                throw new ParsingException("Required argument has not been specified");
+            }
+        }
+
+        for (OptBinding binding : this.opts) {
+            if (set.isPresent(binding.ordinal)) {
+                binding.injector.inject(instance, set, binding.ordinal);
+            }
+        }
+
+        return instance;
+    }
+
+    private static final class LookupKey {
+
+        private final Class<?> lookupClass;
+        private final int lookupModes;
+
+        private LookupKey(MethodHandles.Lookup lookup) {
+            this.lookupClass = lookup.lookupClass();
+            this.lookupModes = lookup.lookupModes();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.lookupClass.hashCode() + this.lookupModes;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+
+            if (obj instanceof LookupKey) {
+                LookupKey other = (LookupKey) obj;
+                return this.lookupClass == other.lookupClass && this.lookupModes == other.lookupModes;
+            }
+
+            return false;
+        }
+
+    }
+
+    private static final class ArgFieldWrapper {
+
+        private final Field field;
+        private final Argument<?> arg;
+        private final int index;
+
+        private ArgFieldWrapper(Field field, Argument<?> arg, int index) {
+            this.field = field;
+            this.arg = arg;
+            this.index = index;
+        }
+
+    }
+
+    private static final class OptFieldWrapper {
+
+        private final Field field;
+        private final Option<?> opt;
+
+        private OptFieldWrapper(Field field, Option<?> opt) {
+            this.field = field;
+            this.opt = opt;
+        }
+
+    }
+
+    private static final class ArgBinding {
+
+        private final Argument<?> arg;
+        private final int ordinal;
+        private final Injector injector;
+
+        private ArgBinding(Argument<?> arg, int ordinal, Injector injector) {
+            this.arg = arg;
+            this.ordinal = ordinal;
+            this.injector = injector;
+        }
+
+    }
+
+    private static final class OptBinding {
+
+        private final Option<?> opt;
+        private final int ordinal;
+        private final Injector injector;
+
+        private OptBinding(Option<?> opt, int ordinal, Injector injector) {
+            this.opt = opt;
+            this.ordinal = ordinal;
+            this.injector = injector;
+        }
+
+    }
+
+    /*
+     * An injector writes values into a single field using a setter that is bound to the exact type of the field. Access
+     * is checked once when the injector is created.
+     *
+     * Primitive fields use a specialized injector per type to avoid going through a generic (boxing) setter. Where
+     * possible, these injectors read unboxed values from the OptionSet directly.
+     */
+    private abstract static class Injector {
+
+        static Injector of(Field field, MethodHandles.Lookup lookup) {
+            MethodHandle hSetter = FieldAccess.setter(field, lookup);
+            Class<?> type = field.getType();
+
+            if (type == boolean.class) {
+                return new BooleanInjector(field, hSetter);
+            } else if (type == byte.class) {
+                return new ByteInjector(field, hSetter);
+            } else if (type == char.class) {
+                return new CharInjector(field, hSetter);
+            } else if (type == short.class) {
+                return new ShortInjector(field, hSetter);
+            } else if (type == int.class) {
+                return new IntInjector(field, hSetter);
+            } else if (type == long.class) {
+                return new LongInjector(field, hSetter);
+            } else if (type == float.class) {
+                return new FloatInjector(field, hSetter);
+            } else if (type == double.class) {
+                return new DoubleInjector(field, hSetter);
+            } else {
+                return new ObjectInjector(field, hSetter.asType(MethodType.methodType(void.class, Object.class, Object.class)));
+            }
+        }
+
+        private final Field field;
+        final MethodHandle hSetter;
+
+        Injector(Field field, MethodHandle hSetter) {
+            this.field = field;
+            this.hSetter = hSetter;
+        }
+
+        final void inject(Object instance, OptionSet set, int ordinal) {
+            try {
+                this.injectExact(instance, set, ordinal);
+            } catch (Throwable t) {
+                throw new RuntimeException(String.format("Failed to inject value %s into field %s of object %s.", set.valueAt(ordinal), this.field, instance), t);
+            }
+        }
+
+        abstract void injectExact(Object instance, OptionSet set, int ordinal) throws Throwable;
+
+    }
+
+    private static final class BooleanInjector extends Injector {
+
+        private BooleanInjector(Field field, MethodHandle hSetter) {
+            super(field, hSetter);
+        }
+
+        @Override
+        void injectExact(Object instance, OptionSet set, int ordinal) throws Throwable {
+            this.hSetter.invokeExact(instance, set.booleanAt(ordinal));
+        }
+
+    }
+
+    private static final class ByteInjector extends Injector {
+
+        private ByteInjector(Field field, MethodHandle hSetter) {
+            super(field, hSetter);
+        }
+
+        @Override
+        void injectExact(Object instance, OptionSet set, int ordinal) throws Throwable {
+            this.hSetter.invokeExact(instance, (byte) set.valueAt(ordinal));
+        }
+
+    }
+
+    private static final class CharInjector extends Injector {
+
+        private CharInjector(Field field, MethodHandle hSetter) {
+            super(field, hSetter);
+        }
+
+        @Override
+        void injectExact(Object instance, OptionSet set, int ordinal) throws Throwable {
+            this.hSetter.invokeExact(instance, (char) set.valueAt(ordinal));
+        }
+
+    }
+
+    private static final class ShortInjector extends Injector {
+
+        private ShortInjector(Field field, MethodHandle hSetter) {
+            super(field, hSetter);
+        }
+
+        @Override
+        void injectExact(Object instance, OptionSet set, int ordinal) throws Throwable {
+            this.hSetter.invokeExact(instance, (short) set.valueAt(ordinal));
+        }
+
+    }
+
+    private static final class IntInjector extends Injector {
+
+        private IntInjector(Field field, MethodHandle hSetter) {
+            super(field, hSetter);
+        }
+
+        @Override
+        void injectExact(Object instance, OptionSet set, int ordinal) throws Throwable {
+            this.hSetter.invokeExact(instance, set.intAt(ordinal));
+        }
+
+    }
+
+    private static final class LongInjector extends Injector {
+
+        private LongInjector(Field field, MethodHandle hSetter) {
+            super(field, hSetter);
+        }
+
+        @Override
+        void injectExact(Object instance, OptionSet set, int ordinal) throws Throwable {
+            this.hSetter.invokeExact(instance, set.longAt(ordinal));
+        }
+
+    }
+
+    private static final class FloatInjector extends Injector {
+
+        private FloatInjector(Field field, MethodHandle hSetter) {
+            super(field, hSetter);
+        }
+
+        @Override
+        void injectExact(Object instance, OptionSet set, int ordinal) throws Throwable {
+            this.hSetter.invokeExact(instance, (float) set.valueAt(ordinal));
+        }
+
+    }
+
+    private static final class DoubleInjector extends Injector {
+
+        private DoubleInjector(Field field, MethodHandle hSetter) {
+            super(field, hSetter);
+        }
+
+        @Override
+        void injectExact(Object instance, OptionSet set, int ordinal) throws Throwable {
+            this.hSetter.invokeExact(instance, set.doubleAt(ordinal));
+        }
+
+    }
+
+    private static final class ObjectInjector extends Injector {
+
+        private ObjectInjector(Field field, MethodHandle hSetter) {
+            super(field, hSetter);
+        }
+
+        @Override
+        void injectExact(Object instance, OptionSet set, int ordinal) throws Throwable {
+            this.hSetter.invokeExact(instance, set.valueAt(ordinal));
+        }
+
+    }
+
+}
\ No newline at end of file
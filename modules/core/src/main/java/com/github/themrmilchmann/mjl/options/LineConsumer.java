@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options;
+
+/**
+ * A {@code LineConsumer} receives the results of parsing the lines of a file.
+ *
+ * @see ParseContext#parseLines(java.nio.file.Path, LineConsumer)
+ *
+ * @since   0.4.0
+ *
+ * @author  Leon Linhart
+ */
+@FunctionalInterface
+public interface LineConsumer {
+
+    /**
+     * Receives the parsed values of a line.
+     *
+     * <p>The given set is a view that is only valid until this method returns.</p>
+     *
+     * @param lineNumber    the (one-based) number of the line
+     * @param set           a view of the parsed values
+     *
+     * @since   0.4.0
+     */
+    void accept(long lineNumber, OptionSet set);
+
+    /**
+     * Receives the failure that occurred while parsing a line.
+     *
+     * <p>By default, the given exception is rethrown (which aborts parsing).</p>
+     *
+     * @param lineNumber    the (one-based) number of the line
+     * @param exception     the failure that occurred while parsing the line
+     *
+     * @since   0.4.0
+     */
+    default void reject(long lineNumber, ParsingException exception) {
+        throw exception;
+    }
+
+}
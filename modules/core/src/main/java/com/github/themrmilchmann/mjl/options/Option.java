@@ -98,7 +98,7 @@ public final class Option<T> {
     private final T markerValue;
     private final boolean isMarkerOnly;
 
-    private Option(String longToken, @Nullable Character shortToken, ValueParser<T> parser, @Nullable T defaultValue, @Nullable T markerValue, boolean isMarkerOnly) {
+    Option(String longToken, @Nullable Character shortToken, ValueParser<T> parser, @Nullable T defaultValue, @Nullable T markerValue, boolean isMarkerOnly) {
         this.shortToken = shortToken;
         this.longToken = longToken;
         this.parser = parser;
@@ -239,7 +239,7 @@ public final class Option<T> {
 
         private Builder(String longToken, ValueParser<T> parser) {
             this.longToken = Objects.requireNonNull(longToken);
-            if (!longToken.matches(OptionParser.REGEX_LONG_TOKEN)) throw new IllegalArgumentException("Invalid long option token.");
+            if (!OptionParser.isLongToken(longToken)) throw new IllegalArgumentException("Invalid long option token.");
 
             this.parser = Objects.requireNonNull(parser);
         }
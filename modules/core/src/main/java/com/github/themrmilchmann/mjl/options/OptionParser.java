@@ -15,31 +15,26 @@
  */
 package com.github.themrmilchmann.mjl.options;
 
-import java.lang.invoke.MethodHandle;
+import java.io.IOException;
+import java.io.Reader;
 import java.lang.invoke.MethodHandles;
-import java.lang.invoke.MethodType;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
-import com.github.themrmilchmann.mjl.options.annotations.ArgumentHolder;
-import com.github.themrmilchmann.mjl.options.annotations.DefaultValueRef;
-import com.github.themrmilchmann.mjl.options.annotations.MarkerValueRef;
-import com.github.themrmilchmann.mjl.options.annotations.OptionHolder;
-import com.github.themrmilchmann.mjl.options.annotations.ValueParserRef;
-import com.github.themrmilchmann.mjl.options.annotations.VarargHolder;
-import com.github.themrmilchmann.mjl.options.annotations.WildcardHolder;
-import com.github.themrmilchmann.mjl.options.internal.FieldAccess;
+import com.github.themrmilchmann.mjl.options.internal.FragmentSource;
+import com.github.themrmilchmann.mjl.options.internal.FragmentTokenizer;
+import com.github.themrmilchmann.mjl.options.internal.TokenTrie;
 
 /**
  * Option parser interface.
@@ -50,12 +45,9 @@ import com.github.themrmilchmann.mjl.options.internal.FieldAccess;
  */
 public final class OptionParser {
 
+    /* Documents the syntax of long tokens (which are matched by #isLongToken and #scanLongToken). */
     static final String REGEX_LONG_TOKEN = "[A-Za-z]([A-Za-z0-9]|-|\\.)*";
 
-    /* Just used for parsing. This is not the actual spec compliant regex for options in general. */
-    private static final String REGEX_OPTION = "(?:--|-#|-)(" + REGEX_LONG_TOKEN + ")(?:=(.*))?";
-    private static final Pattern PATTERN_OPTION = Pattern.compile(REGEX_OPTION);
-
     /**
      * Parses parameters into an immutable set from the given input.
      *
@@ -69,32 +61,155 @@ public final class OptionParser {
      *
      * @see #parseFragments(Class, MethodHandles.Lookup, String...)
      * @see #parseLine(OptionPool, String)
+     * @see ParseContext
      *
      * @since   0.4.0
      */
     public static OptionSet parseFragments(OptionPool pool, String... fragments) {
-        OptionParser parser = new OptionParser(pool, fragments);
-        parser.parse();
+        return ParseContext.of(pool).parseFragments(fragments);
+    }
 
-        Map<Object, Object> values = Collections.unmodifiableMap(parser.values);
-        Map<String, String> dynamics = Collections.unmodifiableMap(parser.dynamics);
+    /**
+     * Parses parameters into an immutable set from the given input without throwing an exception if the input is
+     * invalid.
+     *
+     * @param pool      the pool of available parameters
+     * @param fragments the input to be parsed
+     *
+     * @return  the result holding an immutable set of parsed values, or the error that occurred during parsing
+     *
+     * @see #parseFragments(OptionPool, String...)
+     * @see ParseContext#tryParseFragments(String...)
+     *
+     * @since   0.4.0
+     */
+    public static ParseResult tryParseFragments(OptionPool pool, String... fragments) {
+        return ParseContext.of(pool).tryParseFragments(fragments);
+    }
 
-        Map<Option<?>, Object> options = values.entrySet().stream()
-            .filter(entry -> entry.getKey() instanceof Option)
-            .collect(Collectors.toMap(entry -> (Option<?>) entry.getKey(), Map.Entry::getValue));
+    /**
+     * Parses parameters into an immutable set from the given input without throwing an exception if the input is
+     * invalid.
+     *
+     * @param pool      the pool of available parameters
+     * @param line      the input to be parsed
+     *
+     * @return  the result holding an immutable set of parsed values, or the error that occurred during parsing
+     *
+     * @see #parseLine(OptionPool, CharSequence)
+     * @see ParseContext#tryParseLine(CharSequence)
+     *
+     * @since   0.4.0
+     */
+    public static ParseResult tryParseLine(OptionPool pool, CharSequence line) {
+        return ParseContext.of(pool).tryParseLine(line);
+    }
 
-        Set<Restriction> violatedRestrictions = pool.restrictions.stream()
-            .filter(restriction -> restriction.isViolatedBy(options.keySet()))
-            .collect(Collectors.toSet());
+    /**
+     * Parses each of the given inputs into an immutable set in parallel.
+     *
+     * <p>This method is a shortcut for {@code parseAll(pool, fragments.spliterator(), ForkJoinPool.commonPool())}. See
+     * {@link #parseAll(OptionPool, Spliterator, Executor)} for details.</p>
+     *
+     * @param pool      the pool of available parameters
+     * @param fragments the inputs to be parsed
+     *
+     * @return  the immutable sets of parsed values (in encounter order of the inputs)
+     *
+     * @throws ParsingException if any error occurs during parsing
+     * @throws RestrictionViolatedException if any of the given pool's restrictions have been violated
+     *
+     * @since   0.4.0
+     */
+    public static List<OptionSet> parseAll(OptionPool pool, Stream<String[]> fragments) {
+        return parseAll(pool, fragments.spliterator(), ForkJoinPool.commonPool());
+    }
 
-        if (!violatedRestrictions.isEmpty()) throw new RestrictionViolatedException(violatedRestrictions);
+    /**
+     * Parses each of the given inputs into an immutable set in parallel.
+     *
+     * <p>This method is a shortcut for {@code parseAll(pool, fragments, ForkJoinPool.commonPool())}. See
+     * {@link #parseAll(OptionPool, Spliterator, Executor)} for details.</p>
+     *
+     * @param pool      the pool of available parameters
+     * @param fragments the inputs to be parsed
+     *
+     * @return  the immutable sets of parsed values (in encounter order of the inputs)
+     *
+     * @throws ParsingException if any error occurs during parsing
+     * @throws RestrictionViolatedException if any of the given pool's restrictions have been violated
+     *
+     * @since   0.4.0
+     */
+    public static List<OptionSet> parseAll(OptionPool pool, Spliterator<String[]> fragments) {
+        return parseAll(pool, fragments, ForkJoinPool.commonPool());
+    }
 
-        return new OptionSet(pool, values, dynamics);
+    /**
+     * Parses each of the given inputs into an immutable set in parallel.
+     *
+     * <p>The given spliterator is {@link Spliterator#trySplit() split} into chunks that are parsed by tasks which are
+     * submitted to the given executor. Each task reuses a single {@link ParseContext} for all inputs of its chunk. The
+     * amount of parallelism depends on how well the spliterator splits. (Spliterators of arrays and lists split evenly.)
+     * This method blocks until all inputs have been parsed.</p>
+     *
+     * <p>If parsing any of the inputs fails, the exception for the first failed input (in encounter order) is rethrown.
+     * Tasks that have not yet been started are cancelled on a best-effort basis.</p>
+     *
+     * <p><b>This method must not be invoked by a thread of a bounded executor (other than a {@link ForkJoinPool}) that is
+     * passed to it</b>, since the invocation might otherwise wait for tasks that can never be run.</p>
+     *
+     * @param pool      the pool of available parameters
+     * @param fragments the inputs to be parsed
+     * @param executor  the executor that is used to run the parsing tasks
+     *
+     * @return  the immutable sets of parsed values (in encounter order of the inputs)
+     *
+     * @throws NullPointerException             if {@code null} is passed to any of the parameters
+     * @throws ParsingException                 if any error occurs during parsing
+     * @throws RestrictionViolatedException     if any of the given pool's restrictions have been violated
+     * @throws java.util.concurrent.RejectedExecutionException  if the executor rejects a task
+     *
+     * @since   0.4.0
+     */
+    public static List<OptionSet> parseAll(OptionPool pool, Spliterator<String[]> fragments, Executor executor) {
+        Objects.requireNonNull(pool);
+        Objects.requireNonNull(fragments);
+        Objects.requireNonNull(executor);
+
+        return ParallelParser.parseAll(pool, fragments, executor);
+    }
+
+    /**
+     * Compiles a reusable {@link ClassBinder binder} for the given data class.
+     *
+     * <p>Compiling a binder discovers the annotated fields of the given class, resolves all references and constructs
+     * (and checks) the induced {@link OptionPool}. The returned binder may be used to repeatedly parse input into
+     * instances of the data class without repeating any of this work.</p>
+     *
+     * @param <T>       the type of the data object
+     * @param cls       the type of the data object
+     * @param lookup    the lookup which will be used to construct the data object
+     *
+     * @return  a binder for the given data class
+     *
+     * @throws ClassPoolConfigurationException  if the data class is ill-formatted
+     * @throws NullPointerException             if {@code null} is passed to any of the parameters
+     *
+     * @see #parseFragments(Class, MethodHandles.Lookup, String...)
+     *
+     * @since   0.4.0
+     */
+    public static <T> ClassBinder<T> compile(Class<T> cls, MethodHandles.Lookup lookup) {
+        return ClassBinder.compile(cls, lookup);
     }
 
     /**
      * Constructs an {@link OptionPool} from the given class and parses parameters from the given input.
      *
+     * <p>The {@link ClassBinder binder} for the given class is {@link #compile(Class, MethodHandles.Lookup) compiled}
+     * once and cached for subsequent invocations with the same class and an equally privileged lookup.</p>
+     *
      * @param <T>       the type of the data object
      * @param cls       the type of the data object
      * @param lookup    the lookup which will be used to construct the data object
@@ -111,169 +226,8 @@ public final class OptionParser {
      *
      * @since   0.4.0
      */
-    @SuppressWarnings("unchecked")
     public static <T> T parseFragments(Class<T> cls, MethodHandles.Lookup lookup, String... fragments) {
-        List<Throwable> errors = new ArrayList<>();
-
-        TreeSet<ArgFieldWrapper> args = new TreeSet<>((alpha, beta) -> {
-            if (alpha.index == beta.index) {
-                String msg = String.format("Duplicate argument index (%s) at field '%s' and '%s'", alpha.index, alpha.field.getName(), beta.field.getName());
-                errors.add(new IllegalArgumentException(msg));
-            }
-
-            return Integer.compare(alpha.index, beta.index);
-        });
-        List<OptFieldWrapper> opts = new ArrayList<>();
-        ArgFieldWrapper varargFieldWrapper = null;
-        Field wildcardField = null;
-
-        OptionPool.Builder bPool = OptionPool.builder();
-        T instance;
-
-        try {
-            MethodHandle hConstructor;
-
-            try {
-                hConstructor = lookup.findConstructor(cls, MethodType.methodType(void.class));
-            } catch (Throwable t) {
-                hConstructor = lookup.in(cls).findConstructor(cls, MethodType.methodType(void.class));
-            }
-
-            instance = (T) hConstructor.invoke();
-        } catch (Throwable t) {
-            throw new ParsingException("Failed to instantiate data class", t);
-        }
-
-        for (Field field : cls.getDeclaredFields()) {
-            ArgumentHolder argHolder = field.getDeclaredAnnotation(ArgumentHolder.class);
-            OptionHolder optHolder = field.getDeclaredAnnotation(OptionHolder.class);
-            VarargHolder varargHolder = field.getDeclaredAnnotation(VarargHolder.class);
-            WildcardHolder wildcardHolder = field.getDeclaredAnnotation(WildcardHolder.class);
-
-            int i = 0;
-            if (argHolder != null) i++;
-            if (optHolder != null) i++;
-            if (varargHolder != null) i++;
-            if (wildcardHolder != null) i++;
-
-            if (i > 1) throwAtField(field, errors, "Field must be at most one of: @ArgumentHolder, @OptionHolder, @VarargHolder, @WildcardHolder");
-
-            DefaultValueRef defaultValueRef = field.getDeclaredAnnotation(DefaultValueRef.class);
-            MarkerValueRef markerValueRef = field.getDeclaredAnnotation(MarkerValueRef.class);
-            ValueParserRef valueParserRef = field.getDeclaredAnnotation(ValueParserRef.class);
-
-            if (wildcardHolder != null) {
-                if (wildcardField != null) throwAtField(field, errors, "There must be at most one @WildcardHolder");
-
-                // Check configuration
-                if (defaultValueRef != null) throwAtField(field, errors, "@WildcardHolder may not have a @DefaultValueRef");
-                if (markerValueRef != null) throwAtField(field, errors, "@WildcardHolder may not have a @MarkerValueRef");
-                if (valueParserRef != null) throwAtField(field, errors, "@WildcardHolder may not have a @ValueParserRef");
-
-                wildcardField = field;
-            } else {
-                ValueParser<?> valueParser = null;
-
-                if (valueParserRef != null) {
-                    String ref = valueParserRef.value();
-                    valueParser = (ValueParser<?>) lookupRef(ref, lookup);
-                }
-
-                if (valueParser == null) {
-                    Class<?> type = field.getType();
-
-                    if (type == boolean.class) {
-                        valueParser = ValueParser.BOOLEAN;
-                    } else if (type == byte.class) {
-                        valueParser = ValueParser.BYTE;
-                    } else if (type == char.class) {
-                        valueParser = ValueParser.CHARACTER;
-                    } else if (type == short.class) {
-                        valueParser = ValueParser.SHORT;
-                    } else if (type == int.class) {
-                        valueParser = ValueParser.INT;
-                    } else if (type == long.class) {
-                        valueParser = ValueParser.LONG;
-                    } else if (type == float.class) {
-                        valueParser = ValueParser.FLOAT;
-                    } else if (type == double.class) {
-                        valueParser = ValueParser.DOUBLE;
-                    } else if (type == String.class) {
-                        valueParser = ValueParser.STRING;
-                    } else {
-                        throwAtField(field, errors, "Failed to infer ValueParser for field");
-                        continue;
-                    }
-                }
-
-                if (argHolder != null) {
-                    // Check configuration
-                    if (markerValueRef != null) throwAtField(field, errors, "@WildcardHolder may not have a @MarkerValueRef");
-
-                    Argument.Builder<?> bArg = Argument.builder(valueParser)
-                        .optional(argHolder.optional());
-
-                    if (defaultValueRef != null) {
-                        String ref = defaultValueRef.value();
-                        Object value = lookupRef(ref, lookup);
-                        bArg.withDefaultValueInternal(value);
-                    }
-
-                    args.add(new ArgFieldWrapper(field, bArg.build(), argHolder.index()));
-                } else if (optHolder != null) {
-                    Option.Builder<?> bOpt = Option.builder(optHolder.longToken(), valueParser);
-                    if (optHolder.shortToken() != '\0') bOpt.withShortToken(optHolder.shortToken());
-
-                    if (markerValueRef != null) {
-                        String ref = markerValueRef.value();
-                        Object value = lookupRef(ref, lookup);
-                        bOpt.withMarkerValueInternal(value, markerValueRef.markerOnly());
-                    }
-
-                    if (defaultValueRef != null) {
-                        String ref = defaultValueRef.value();
-                        Object value = lookupRef(ref, lookup);
-                        bOpt.withDefaultValueInternal(value);
-                    }
-
-                    Option<?> opt = bOpt.build();
-                    bPool.withOption(opt);
-                    opts.add(new OptFieldWrapper(field, opt));
-                } else if (varargHolder != null) {
-                    if (varargFieldWrapper != null) throwAtField(field, errors, "There must be at most one @VarargHolder");
-
-                    Argument<?> arg = Argument.builder(valueParser).optional(varargHolder.optional()).build();
-                    varargFieldWrapper = new ArgFieldWrapper(field, arg, Integer.MAX_VALUE);
-                }
-            }
-        }
-
-        if (!errors.isEmpty()) throw new ClassPoolConfigurationException(errors);
-
-        for (ArgFieldWrapper wrapper : args) bPool.withArg(wrapper.arg);
-
-        if (varargFieldWrapper != null) {
-            bPool.withVarargArg(varargFieldWrapper.arg);
-            args.add(varargFieldWrapper);
-        }
-
-        OptionSet set = parseFragments(bPool.build(), fragments);
-
-        for (ArgFieldWrapper wrapper : args) {
-            if (set.isSet(wrapper.arg)) {
-                FieldAccess.set(wrapper.field, instance, set.get(wrapper.arg), lookup);
-            } else if (!wrapper.arg.isOptional()) {
-                throw new ParsingException("Required argument has not been specified");
-            }
-        }
-
-        for (OptFieldWrapper wrapper : opts) {
-            if (set.isSet(wrapper.opt)) {
-                FieldAccess.set(wrapper.field, instance, set.get(wrapper.opt), lookup);
-            }
-        }
-
-        return instance;
+        return ClassBinder.cached(cls, lookup).parseFragments(fragments);
     }
 
     /**
@@ -293,7 +247,122 @@ public final class OptionParser {
      * @since   0.4.0
      */
     public static OptionSet parseLine(OptionPool pool, String line) {
-        return parseFragments(pool, lineToFragments(line));
+        return parseLine(pool, (CharSequence) line);
+    }
+
+    /**
+     * Parses parameters into an immutable set from the given input.
+     *
+     * <p>The input is split into fragments lazily (as specified by {@link #lineToFragments(String)}) without
+     * materializing all fragments at once.</p>
+     *
+     * @param pool      the pool of available parameters
+     * @param line      the input to be parsed
+     *
+     * @return  an immutable set of parsed values
+     *
+     * @throws ParsingException if any error occurs during parsing
+     * @throws RestrictionViolatedException if any of the given pool's restrictions have been violated
+     *
+     * @see #parseLine(OptionPool, Reader)
+     * @see ParseContext#parseLine(CharSequence)
+     *
+     * @since   0.4.0
+     */
+    public static OptionSet parseLine(OptionPool pool, CharSequence line) {
+        return ParseContext.of(pool).parseLine(line);
+    }
+
+    /**
+     * Parses parameters into an immutable set from the UTF-8 encoded input between the given buffer's position and
+     * limit.
+     *
+     * <p>The input is tokenized in place and only values that are required as strings are decoded. See
+     * {@link ParseContext#parseLine(ByteBuffer)} for details.</p>
+     *
+     * @param pool      the pool of available parameters
+     * @param bytes     the input to be parsed
+     *
+     * @return  an immutable set of parsed values
+     *
+     * @throws ParsingException if any error occurs during parsing (including malformed UTF-8 input)
+     * @throws RestrictionViolatedException if any of the given pool's restrictions have been violated
+     *
+     * @see #parseLine(OptionPool, byte[], int, int)
+     * @see ParseContext#parseLine(ByteBuffer)
+     *
+     * @since   0.4.0
+     */
+    public static OptionSet parseLine(OptionPool pool, ByteBuffer bytes) {
+        return ParseContext.of(pool).parseLine(bytes);
+    }
+
+    /**
+     * Parses parameters into an immutable set from the UTF-8 encoded input in the given range of the given array.
+     *
+     * <p>The input is tokenized in place and only values that are required as strings are decoded. See
+     * {@link ParseContext#parseLine(ByteBuffer)} for details.</p>
+     *
+     * @param pool      the pool of available parameters
+     * @param bytes     the array that contains the input to be parsed
+     * @param offset    the index of the first byte of the input
+     * @param length    the length of the input (in bytes)
+     *
+     * @return  an immutable set of parsed values
+     *
+     * @throws IndexOutOfBoundsException if the range is out of the array's bounds
+     * @throws ParsingException if any error occurs during parsing (including malformed UTF-8 input)
+     * @throws RestrictionViolatedException if any of the given pool's restrictions have been violated
+     *
+     * @see ParseContext#parseLine(byte[], int, int)
+     *
+     * @since   0.4.0
+     */
+    public static OptionSet parseLine(OptionPool pool, byte[] bytes, int offset, int length) {
+        return ParseContext.of(pool).parseLine(bytes, offset, length);
+    }
+
+    /**
+     * Parses parameters into an immutable set from the given input.
+     *
+     * <p>The input is read until the end of the stream is reached and split into fragments lazily (as specified by
+     * {@link #lineToFragments(String)}). Line terminators are treated as whitespace. The reader is not closed.</p>
+     *
+     * @param pool      the pool of available parameters
+     * @param reader    the input to be parsed
+     *
+     * @return  an immutable set of parsed values
+     *
+     * @throws IOException      if an I/O error occurs while reading from the given reader
+     * @throws ParsingException if any error occurs during parsing
+     * @throws RestrictionViolatedException if any of the given pool's restrictions have been violated
+     *
+     * @see #parseLine(OptionPool, CharSequence)
+     * @see ParseContext#parseLine(Reader)
+     *
+     * @since   0.4.0
+     */
+    public static OptionSet parseLine(OptionPool pool, Reader reader) throws IOException {
+        return ParseContext.of(pool).parseLine(reader);
+    }
+
+    /**
+     * Parses each line of the given file.
+     *
+     * <p>This method is a shortcut for {@code ParseContext.of(pool).parseLines(file, consumer)}. See
+     * {@link ParseContext#parseLines(Path, LineConsumer)} for details.</p>
+     *
+     * @param pool      the pool of available parameters
+     * @param file      the file to be parsed
+     * @param consumer  the consumer for the results of the lines
+     *
+     * @throws IOException              if an I/O error occurs while reading the file, or if a line is too long
+     * @throws NullPointerException     if {@code null} is passed to any of the parameters
+     *
+     * @since   0.4.0
+     */
+    public static void parseLines(OptionPool pool, Path file, LineConsumer consumer) throws IOException {
+        ParseContext.of(pool).parseLines(file, consumer);
     }
 
     /**
@@ -316,56 +385,7 @@ public final class OptionParser {
      * @since   0.4.0
      */
     public static <T> T parseLine(Class<T> cls, MethodHandles.Lookup lookup, String line) {
-        return parseFragments(cls, lookup, lineToFragments(line));
-    }
-
-    @Nullable
-    private static Object lookupRef(String ref, MethodHandles.Lookup lookup) {
-        Object value;
-
-        if (ref.contains("::")) {
-            String[] s = ref.split("::");
-            Class<?> cntCls;
-
-            try {
-                cntCls = Class.forName(s[0]);
-            } catch (ClassNotFoundException e) {
-                throw new ParsingException("Failed to resolve reference", e);
-            }
-
-            if (s[1].endsWith("()")) {
-                s[1] = s[1].substring(0, s[1].length() - 3);
-
-                try {
-                    Method method = cntCls.getDeclaredMethod(s[1]);
-                    MethodHandle hMethod = lookup.unreflect(method);
-                    value = hMethod.invokeExact();
-                } catch (Throwable t) {
-                    throw new ParsingException("Failed to resolve referenced method", t);
-                }
-            } else {
-                try {
-                    Field vpField = cntCls.getDeclaredField(s[1]);
-                    value = FieldAccess.getStatic(vpField, lookup);
-                } catch (Exception e) {
-                    throw new ParsingException("Failed to resolve referenced field", e);
-                }
-            }
-        } else {
-            try {
-                Class<?> vpCls = Class.forName(ref);
-                MethodHandle hVPCtr = lookup.findConstructor(vpCls, MethodType.methodType(vpCls));
-                value = (ValueParser<?>) hVPCtr.invokeExact();
-            } catch (Throwable t) {
-                throw new ParsingException("Failed to resolve reference", t);
-            }
-        }
-
-        return value;
-    }
-
-    private static void throwAtField(Field field, List<Throwable> errors, String msg) {
-        errors.add(new IllegalArgumentException(String.format("Field %s: %s", field.getName(), msg)));
+        return ClassBinder.cached(cls, lookup).parseLine(line);
     }
 
     /**
@@ -386,204 +406,181 @@ public final class OptionParser {
      * @since   0.3.0
      */
     public static String[] lineToFragments(String line) {
-        // https://github.com/Project-Skara/jdk/blob/c2105ced865fba11fbf8d4a8e18a59fcb1fe10fd/src/java.base/windows/native/libjli/cmdtoargs.c#L203
-        List<String> argList = new ArrayList<>();
-        char[] cmd = line.toCharArray();
-
-        for (int i = 0; i < cmd.length; i++) {
-            StringBuilder argBuilder = new StringBuilder();
-            char prev = '\0';
-            int quotes = 0, slashes = 0;
-
-            if (Character.isWhitespace(cmd[i])) {
-                boolean inParam = false;
-
-                for (; i < cmd.length; i++) {
-                    if (Character.isWhitespace(cmd[i])) continue;
-
-                    inParam = true;
-                    break;
-                }
-
-                if (!inParam) break;
-            }
-
-            param: for (; i < cmd.length; i++) {
-                switch (cmd[i]) {
-                    case '"': {
-                        if (prev == '\\') {
-                            for (int j = 1; j < slashes; j += 2) {
-                                argBuilder.append(prev);
-                            }
-
-                            if (slashes % 2 == 1) {
-                                argBuilder.append(cmd[i]);
-                            } else {
-                                quotes++;
-                            }
-                        } else if (prev == '"' && quotes % 2 == 0) {
-                            quotes++;
-                            argBuilder.append(cmd[i]);
-                        } else if (quotes == 0) {
-                            quotes++; // starting quote
-                        } else {
-                            quotes--; // matching quote
-                        }
-
-                        slashes = 0;
-                    } break;
-                    case '\\': {
-                        slashes++;
-                    } break;
-                    default: {
-                        if (Character.isWhitespace(cmd[i])) {
-                            if (quotes % 2 == 1) {
-                                argBuilder.append(cmd[i]);
-                            } else {
-                                break param;
-                            }
-                        } else if (prev == '\\') {
-                            for (int j = 0; j < slashes; j++) {
-                                argBuilder.append(prev);
-                            }
-
-                            argBuilder.append(cmd[i]);
-                        } else {
-                            argBuilder.append(cmd[i]);
-                        }
+        FragmentTokenizer tokenizer = new FragmentTokenizer().reset(line);
+        List<String> fragments = new ArrayList<>();
 
-                        slashes = 0;
-                    }
-                }
-
-                prev = cmd[i];
-            }
-
-            argList.add(argBuilder.toString());
+        for (CharSequence fragment = tokenizer.next(); fragment != null; fragment = tokenizer.next()) {
+            fragments.add(fragment.toString());
         }
 
-        return argList.toArray(new String[0]);
+        return fragments.toArray(new String[0]);
     }
 
-    private final Map<Object, Object> values = new HashMap<>();
-    private final Map<String, String> dynamics = new HashMap<>();
+    private OptionParser() {}
 
-    private final OptionPool pool;
-    private final String[] parameters;
-
-    private OptionParser(OptionPool pool, String[] parameters) {
-        this.pool = pool;
-        this.parameters = parameters;
-    }
+    /*
+     * Errors are recorded in the context. The parser then unwinds by throwing a preallocated exception (which is cheap
+     * since it neither allocates nor captures a stack trace). The context decides how the error is reported.
+     */
+    static void parse(ParseContext context, FragmentSource fragments) {
+        OptionPool pool = context.pool;
+        OptionSet set = context.set;
+        Map<String, String> dynamics = context.dynamics;
 
-    private void parse() {
         boolean ignoreOptions = false;
         List<Object> varargValues = null;
         int argIndex = 0;
+        int fragmentIndex = -1;
 
-        for (int curIndex = 0; curIndex < this.parameters.length; curIndex++) {
-            String parameter = this.parameters[curIndex];
-            ParameterType type = this.parseParameterType(parameter, ignoreOptions);
+        for (CharSequence parameter = fragments.next(); parameter != null; parameter = fragments.next()) {
+            fragmentIndex++;
+            ParameterType type = parseParameterType(parameter, ignoreOptions);
 
             if (type == ParameterType.ARGUMENT) {
-                if (!this.pool.hasArgument(argIndex)) throw new ParsingException("No argument with index " + argIndex + " available in " + this.pool);
+                if (!pool.hasArgument(argIndex)) throw fail(context, ParseError.of(ParseError.Kind.UNEXPECTED_ARGUMENT, fragmentIndex, null, "No argument with index " + argIndex + " available in " + pool));
 
-                Argument<?> arg = this.pool.getArgument(argIndex);
-                String rawValue = this.parameters[curIndex];
-                Object value = Objects.requireNonNull(arg.parser.parse(rawValue));
+                Argument<?> arg = pool.getArgument(argIndex);
 
-                if (this.pool.getLastArgument() == arg && this.pool.isLastVararg()) {
+                if (pool.getLastArgument() == arg && pool.isLastVararg()) {
                     if (varargValues == null) {
                         varargValues = new ArrayList<>();
-                        this.values.put(arg, varargValues);
+                        set.put(argIndex, varargValues);
+                    }
+
+                    Object value;
+
+                    try {
+                        value = Objects.requireNonNull(arg.parser.parse(parameter, 0, parameter.length()), NULL_VALUE);
+                    } catch (RuntimeException e) {
+                        throw fail(context, ParseError.invalidValue(fragmentIndex, null, arg, e));
                     }
 
                     varargValues.add(value);
                 } else {
-                    this.values.put(arg, value);
+                    parseValue(context, fragmentIndex, null, arg, argIndex, arg.parser, parameter, 0, parameter.length());
                     argIndex++;
                 }
             } else if (type.isOption()) {
-                Matcher optionMatcher = PATTERN_OPTION.matcher(parameter);
-                if (!optionMatcher.matches()) throw new ParsingException("Illegal option format: " + parameter);
-
-                String tokens = optionMatcher.group(1);
-                String rawValue = optionMatcher.group(3);
+                int length = parameter.length();
+                int tokenStart = (type == ParameterType.OPTION_BY_SHORT_TOKEN) ? 1 : 2;
+                int tokenEnd = scanLongToken(parameter, tokenStart, length);
+                int valueStart = scanOptionValue(parameter, tokenStart, tokenEnd, length);
+                if (valueStart == ILLEGAL_OPTION_FORMAT) throw fail(context, ParseError.of(ParseError.Kind.ILLEGAL_FORMAT, fragmentIndex, null, "Illegal option format: " + parameter));
+
+                /*
+                 * The value is referenced as range of its fragment (and parsed in place) to avoid copying it. A value
+                 * that is specified in the next fragment remains valid while that fragment is consumed.
+                 */
+                CharSequence value = (valueStart != NO_VALUE) ? parameter : null;
+                int valueFrom = valueStart, valueTo = length;
 
                 if (type == ParameterType.OPTION_BY_LONG_TOKEN) {
-                    Option<?> opt = this.pool.getOption(tokens);
+                    int ordinal = pool.ordinalOf(parameter, tokenStart, tokenEnd);
 
-                    if (opt == null) throw new UnrecognizedOptionException(tokens);
-                    if (this.values.containsKey(opt)) throw new ParsingException("Duplicate option " + opt + ".");
-                    if (opt.isMarkerOnly() && rawValue != null) throw new ParsingException("Specified value for marker-only option in fragment '" + parameter + "'.");
+                    if (ordinal == TokenTrie.AMBIGUOUS) {
+                        String token = parameter.subSequence(tokenStart, tokenEnd).toString();
+                        throw fail(context, ParseError.of(ParseError.Kind.AMBIGUOUS_OPTION, fragmentIndex, null, "Ambiguous option --" + token + " (candidates: " + pool.getOptionsByPrefix(token) + ")."));
+                    } else if (ordinal < 0) {
+                        throw fail(context, ParseError.unrecognizedOption(fragmentIndex, parameter.subSequence(tokenStart, tokenEnd).toString()));
+                    }
 
-                    if (!opt.isMarkerOnly() && rawValue == null && !parameter.endsWith("=") && curIndex + 1 < this.parameters.length) {
-                        String nextParameter = this.parameters[curIndex + 1];
-                        ParameterType nextType = this.parseParameterType(nextParameter, ignoreOptions);
+                    Option<?> opt = (Option<?>) pool.getParameter(ordinal);
+                    if (set.isPresent(ordinal)) throw fail(context, ParseError.of(ParseError.Kind.DUPLICATE_OPTION, fragmentIndex, opt, "Duplicate option " + opt + "."));
+                    if (opt.isMarkerOnly() && value != null) throw fail(context, ParseError.of(ParseError.Kind.UNEXPECTED_VALUE, fragmentIndex, opt, "Specified value for marker-only option in fragment '" + parameter + "'."));
 
-                        if (nextType == ParameterType.ARGUMENT) {
-                            curIndex++;
-                            rawValue = nextParameter;
+                    if (!opt.isMarkerOnly() && value == null) {
+                        CharSequence nextParameter = fragments.peek();
+
+                        if (nextParameter != null && parseParameterType(nextParameter, ignoreOptions) == ParameterType.ARGUMENT) {
+                            value = nextParameter;
+                            valueFrom = 0;
+                            valueTo = nextParameter.length();
+                            fragments.next();
+                            fragmentIndex++;
                         }
                     }
 
-                    if (opt.isMarkerOnly() || (opt.hasMarkerValue() && (rawValue == null))) {
-                        this.values.put(opt, opt.getMarkerValue());
-                    } else if (rawValue == null) {
-                        throw new ParsingException("No value specified for fragment '--" + tokens + "'.");
+                    if (opt.isMarkerOnly() || (opt.hasMarkerValue() && (value == null))) {
+                        set.put(ordinal, opt.getMarkerValue());
+                    } else if (value == null) {
+                        throw fail(context, ParseError.of(ParseError.Kind.MISSING_VALUE, fragmentIndex, opt, "No value specified for fragment '" + parameter.subSequence(0, tokenEnd) + "'."));
                     } else {
-                        Object value = Objects.requireNonNull(opt.parser.parse(rawValue));
-                        this.values.put(opt, value);
+                        parseValue(context, fragmentIndex, opt, null, ordinal, opt.parser, value, valueFrom, valueTo);
                     }
                 } else if (type == ParameterType.OPTION_BY_SHORT_TOKEN) {
-                    List<Option<?>> opts = new ArrayList<>(tokens.length());
-
-                    for (char token : tokens.toCharArray()) {
-                        Option<?> opt = this.pool.getOption(token);
-                        if (opt == null) throw new UnrecognizedOptionException(tokens, token);
-                        if (this.values.containsKey(opt) || opts.contains(opt)) throw new ParsingException("Duplicate option " + opt + ".");
-                        if (opt.isMarkerOnly() && rawValue != null) throw new ParsingException("Specified value for marker-only option in fragment '" + parameter + "'.");
-
-                        opts.add(opt);
+                    /*
+                     * The chain is validated before any value is stored. Since each short token belongs to exactly one
+                     * option, duplicates in the chain are detected by their tokens. The chain has been scanned as long
+                     * token, so every recognized token is an ASCII letter and has a bit in [0, 'z' - 'A'].
+                     */
+                    long seen = 0;
+                    Option<?> regular = null;
+                    boolean hasMarkerOnly = false, isAllMarkerOnly = true;
+
+                    for (int i = tokenStart; i < tokenEnd; i++) {
+                        char token = parameter.charAt(i);
+                        int ordinal = pool.ordinalOf(token);
+                        if (ordinal < 0) throw fail(context, ParseError.unrecognizedOption(fragmentIndex, parameter.subSequence(tokenStart, tokenEnd).toString(), token));
+
+                        long bit = 1L << (token - 'A');
+                        boolean isDuplicate = (seen & bit) != 0;
+                        seen |= bit;
+
+                        Option<?> opt = (Option<?>) pool.getParameter(ordinal);
+                        if (isDuplicate || set.isPresent(ordinal)) throw fail(context, ParseError.of(ParseError.Kind.DUPLICATE_OPTION, fragmentIndex, opt, "Duplicate option " + opt + "."));
+                        if (opt.isMarkerOnly() && value != null) throw fail(context, ParseError.of(ParseError.Kind.UNEXPECTED_VALUE, fragmentIndex, opt, "Specified value for marker-only option in fragment '" + parameter + "'."));
+
+                        if (regular == null && !opt.hasMarkerValue()) regular = opt;
+                        hasMarkerOnly |= opt.isMarkerOnly();
+                        isAllMarkerOnly &= opt.isMarkerOnly();
                     }
 
-                    if (opts.stream().anyMatch(opt -> !opt.hasMarkerValue()) && opts.stream().anyMatch(Option::isMarkerOnly))
-                        throw new ParsingException("Regular options and marker-only options may not be chained!");
+                    if (regular != null && hasMarkerOnly) throw fail(context, ParseError.of(ParseError.Kind.ILLEGAL_CHAIN, fragmentIndex, regular, "Regular options and marker-only options may not be chained!"));
 
-                    if (opts.stream().noneMatch(Option::isMarkerOnly) && rawValue == null && !parameter.endsWith("=") && curIndex + 1 < this.parameters.length) {
-                        String nextParameter = this.parameters[curIndex + 1];
-                        ParameterType nextType = this.parseParameterType(nextParameter, ignoreOptions);
+                    if (!hasMarkerOnly && value == null) {
+                        CharSequence nextParameter = fragments.peek();
 
-                        if (nextType == ParameterType.ARGUMENT) {
-                            curIndex++;
-                            rawValue = nextParameter;
+                        if (nextParameter != null && parseParameterType(nextParameter, ignoreOptions) == ParameterType.ARGUMENT) {
+                            value = nextParameter;
+                            valueFrom = 0;
+                            valueTo = nextParameter.length();
+                            fragments.next();
+                            fragmentIndex++;
                         }
                     }
 
-                    if (opts.stream().allMatch(Option::isMarkerOnly) || (opts.stream().allMatch(Option::hasMarkerValue) && (rawValue == null))) {
-                        opts.forEach(opt -> this.values.put(opt, opt.getMarkerValue()));
-                    } else if (rawValue == null) {
-                        throw new ParsingException("No value specified for fragment '-" + tokens + "'.");
+                    if (isAllMarkerOnly || (regular == null && value == null)) {
+                        for (int i = tokenStart; i < tokenEnd; i++) {
+                            int ordinal = pool.ordinalOf(parameter.charAt(i));
+                            set.put(ordinal, ((Option<?>) pool.getParameter(ordinal)).getMarkerValue());
+                        }
+                    } else if (value == null) {
+                        throw fail(context, ParseError.of(ParseError.Kind.MISSING_VALUE, fragmentIndex, regular, "No value specified for fragment '" + parameter.subSequence(0, tokenEnd) + "'."));
                     } else {
-                        for (Option<?> opt : opts) {
-                            Object value = Objects.requireNonNull(opt.parser.parse(rawValue));
-                            this.values.put(opt, value);
+                        for (int i = tokenStart; i < tokenEnd; i++) {
+                            int ordinal = pool.ordinalOf(parameter.charAt(i));
+                            Option<?> opt = (Option<?>) pool.getParameter(ordinal);
+
+                            parseValue(context, fragmentIndex, opt, null, ordinal, opt.parser, value, valueFrom, valueTo);
                         }
                     }
                 } else if (type == ParameterType.WILDCARD_OPTION) {
-                    if (this.dynamics.containsKey(tokens)) throw new ParsingException("Duplicate dynamic option " + tokens + ".");
-
-                    if (rawValue == null && !parameter.endsWith("=") && curIndex + 1 < this.parameters.length) {
-                        String nextParameter = this.parameters[curIndex + 1];
-                        ParameterType nextType = this.parseParameterType(nextParameter, ignoreOptions);
-
-                        if (nextType == ParameterType.ARGUMENT) {
-                            curIndex++;
-                            rawValue = nextParameter;
+                    String tokens = parameter.subSequence(tokenStart, tokenEnd).toString();
+                    if (dynamics.containsKey(tokens)) throw fail(context, ParseError.of(ParseError.Kind.DUPLICATE_OPTION, fragmentIndex, null, "Duplicate dynamic option " + tokens + "."));
+
+                    if (value == null) {
+                        CharSequence nextParameter = fragments.peek();
+
+                        if (nextParameter != null && parseParameterType(nextParameter, ignoreOptions) == ParameterType.ARGUMENT) {
+                            value = nextParameter;
+                            valueFrom = 0;
+                            valueTo = nextParameter.length();
+                            fragments.next();
+                            fragmentIndex++;
                         }
                     }
 
-                    this.dynamics.put(tokens, rawValue);
+                    dynamics.put(tokens, (value != null) ? value.subSequence(valueFrom, valueTo).toString() : null);
                 } else {
                     throw new IllegalStateException("Internal parser error: Unhandled option parameter type");
                 }
@@ -591,17 +588,90 @@ public final class OptionParser {
                 ignoreOptions = true;
             }
         }
+
+        if (pool.restrictionChecker.findViolation(set.present) >= 0) {
+            Set<Restriction> violatedRestrictions = IntStream.range(0, pool.restrictions.length)
+                .filter(index -> pool.restrictionChecker.isViolated(index, set.present))
+                .mapToObj(index -> pool.restrictions[index])
+                .collect(Collectors.toSet());
+
+            throw fail(context, ParseError.restrictionViolated(violatedRestrictions));
+        }
+    }
+
+    /* The message for values that a ValueParser returned null for (which are reported as invalid values) */
+    private static final String NULL_VALUE = "ValueParser returned null";
+
+    private static ParseContext.Failure fail(ParseContext context, ParseError error) {
+        context.error = error;
+        return ParseContext.Failure.INSTANCE;
+    }
+
+    /*
+     * Parses the given range and stores the value in the given slot. Values of primitive specializations are stored
+     * unboxed. If the context parses values lazily, the raw value is stored instead.
+     */
+    private static void parseValue(ParseContext context, int fragmentIndex, @Nullable Option<?> opt, @Nullable Argument<?> arg, int ordinal, ValueParser<?> parser, CharSequence src, int start, int end) {
+        OptionSet set = context.set;
+
+        if (context.isLazy) {
+            set.putLazy(ordinal, parser, src.subSequence(start, end).toString());
+            return;
+        }
+
+        Object value = null;
+
+        try {
+            if (parser instanceof IntValueParser) {
+                set.putInt(ordinal, ((IntValueParser) parser).parseInt(src, start, end));
+                return;
+            } else if (parser instanceof LongValueParser) {
+                set.putLong(ordinal, ((LongValueParser) parser).parseLong(src, start, end));
+                return;
+            } else if (parser instanceof DoubleValueParser) {
+                set.putDouble(ordinal, ((DoubleValueParser) parser).parseDouble(src, start, end));
+                return;
+            } else if (parser instanceof BooleanValueParser) {
+                set.putBoolean(ordinal, ((BooleanValueParser) parser).parseBoolean(src, start, end));
+                return;
+            }
+
+            value = Objects.requireNonNull(parser.parse(src, start, end), NULL_VALUE);
+        } catch (RuntimeException e) {
+            throw fail(context, ParseError.invalidValue(fragmentIndex, opt, arg, e));
+        }
+
+        set.put(ordinal, value);
     }
 
-    private ParameterType parseParameterType(String parameter, boolean ignoreOptions) {
-        if (parameter.equals("--")) {
+    /*
+     * The fragment scanner below replaces the regular expressions that were previously used for classifying fragments
+     * and splitting options into their tokens and values. The scanner must accept exactly what the following regular
+     * expressions accept:
+     *
+     * - short token options: "-[^0.9].*"
+     * - options:             "(?:--|-#|-)(" + REGEX_LONG_TOKEN + ")(?:=(.*))?"
+     *
+     * Keep in mind that "." does not match line terminators.
+     */
+
+    private static final int NO_VALUE = -1;
+    private static final int ILLEGAL_OPTION_FORMAT = -2;
+
+    private static ParameterType parseParameterType(CharSequence parameter, boolean ignoreOptions) {
+        int length = parameter.length();
+        if (length < 2 || parameter.charAt(0) != '-') return ParameterType.ARGUMENT;
+
+        char c = parameter.charAt(1);
+
+        if (c == '-' && length == 2) {
             return ParameterType.ESCAPE_OPTION_PARSING;
         } else if (!ignoreOptions) {
-            if (parameter.startsWith("--")) {
+            if (c == '-') {
                 return ParameterType.OPTION_BY_LONG_TOKEN;
-            } else if (parameter.startsWith("-#")) {
+            } else if (c == '#') {
                 return ParameterType.WILDCARD_OPTION;
-            } else if (parameter.matches("-[^0.9].*")) {
+            } else if (c != '0' && c != '.' && c != '9' && !containsLineTerminator(parameter, 2, length)) {
                 return ParameterType.OPTION_BY_SHORT_TOKEN;
             }
         }
@@ -609,41 +679,71 @@ public final class OptionParser {
         return ParameterType.ARGUMENT;
     }
 
-    private enum ParameterType {
-        ARGUMENT,
-        OPTION_BY_LONG_TOKEN,
-        OPTION_BY_SHORT_TOKEN,
-        WILDCARD_OPTION,
-        ESCAPE_OPTION_PARSING;
+    /*
+     * Returns the index of the first character of the option value (that is, the character after the "="), NO_VALUE if
+     * there is no value, or ILLEGAL_OPTION_FORMAT if the fragment is malformed.
+     */
+    private static int scanOptionValue(CharSequence parameter, int tokenStart, int tokenEnd, int end) {
+        if (tokenStart == tokenEnd) return ILLEGAL_OPTION_FORMAT;
+        if (tokenEnd == end) return NO_VALUE;
+        if (parameter.charAt(tokenEnd) != '=' || containsLineTerminator(parameter, tokenEnd + 1, end)) return ILLEGAL_OPTION_FORMAT;
 
-        boolean isOption() {
-            return this == OPTION_BY_LONG_TOKEN || this == OPTION_BY_SHORT_TOKEN || this == WILDCARD_OPTION;
-        }
+        return tokenEnd + 1;
+    }
 
+    /*
+     * Returns the index after the longest long token (as specified by REGEX_LONG_TOKEN) that starts at the given index,
+     * or the given index if there is no such token.
+     */
+    static int scanLongToken(CharSequence s, int start, int end) {
+        if (start >= end || !isLetter(s.charAt(start))) return start;
+
+        int i = start + 1;
+        while (i < end && isLongTokenPart(s.charAt(i))) i++;
+
+        return i;
     }
 
-    private static final class ArgFieldWrapper {
+    /*
+     * Returns whether the given string is a valid long token (as specified by REGEX_LONG_TOKEN).
+     */
+    static boolean isLongToken(CharSequence s) {
+        int length = s.length();
+        return length != 0 && scanLongToken(s, 0, length) == length;
+    }
 
-        private final Field field;
-        private final Argument<?> arg;
-        private final int index;
+    private static boolean isLetter(char c) {
+        return ('A' <= c && c <= 'Z') || ('a' <= c && c <= 'z');
+    }
+
+    private static boolean isLongTokenPart(char c) {
+        return isLetter(c) || ('0' <= c && c <= '9') || c == '-' || c == '.';
+    }
 
-        private ArgFieldWrapper(Field field, Argument<?> arg, int index) {
-            this.field = field;
-            this.arg = arg;
-            this.index = index;
+    private static boolean containsLineTerminator(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            switch (s.charAt(i)) {
+                case '\n':
+                case '\r':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
+                    return true;
+            }
         }
 
+        return false;
     }
 
-    private static final class OptFieldWrapper {
-
-        private final Field field;
-        private final Option<?> opt;
+    private enum ParameterType {
+        ARGUMENT,
+        OPTION_BY_LONG_TOKEN,
+        OPTION_BY_SHORT_TOKEN,
+        WILDCARD_OPTION,
+        ESCAPE_OPTION_PARSING;
 
-        private OptFieldWrapper(Field field, Option<?> opt) {
-            this.field = field;
-            this.opt = opt;
+        boolean isOption() {
+            return this == OPTION_BY_LONG_TOKEN || this == OPTION_BY_SHORT_TOKEN || this == WILDCARD_OPTION;
         }
 
     }
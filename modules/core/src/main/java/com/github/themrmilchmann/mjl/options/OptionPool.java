@@ -16,14 +16,28 @@
 package com.github.themrmilchmann.mjl.options;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
+import com.github.themrmilchmann.mjl.options.internal.IdentityIndex;
 import com.github.themrmilchmann.mjl.options.internal.KNFFormula;
+import com.github.themrmilchmann.mjl.options.internal.ReachabilityProofCache;
+import com.github.themrmilchmann.mjl.options.internal.ReachabilitySession;
+import com.github.themrmilchmann.mjl.options.internal.RestrictionChecker;
+import com.github.themrmilchmann.mjl.options.internal.TokenTrie;
 
 /**
  * An {@code OptionPool} is a collection of available {@link Argument arguments} and {@link Option options}.
@@ -45,18 +59,143 @@ public final class OptionPool {
         return new OptionPool.Builder();
     }
 
-    private final Argument[] args;
+    /**
+     * Reads a pool from a snapshot that has been {@link #writeSnapshot(OutputStream, ValueParserRegistry) written}
+     * before.
+     *
+     * <p>Reading a snapshot restores the pool's compiled lookup tables and restrictions as is. Neither are tokens
+     * validated nor are reachability checks performed. Thus, reading a snapshot is considerably faster than building
+     * an equivalent pool. The {@link ValueParser parsers} of the pool's arguments and options are resolved by name
+     * through the given registry. The stream is read until its end is reached but is not closed.</p>
+     *
+     * <p><b>Snapshots must not be read from untrusted sources.</b> The checksum of a snapshot only protects against
+     * accidental corruption.</p>
+     *
+     * @param in        the stream to read the snapshot from
+     * @param registry  the registry that is used to resolve value parsers
+     *
+     * @return  the pool
+     *
+     * @throws IllegalArgumentException if the registry does not contain a parser that is referred to by the snapshot
+     * @throws IOException              if an I/O error occurs, if the snapshot is malformed, or if the snapshot has an
+     *                                  unsupported version
+     * @throws NullPointerException     if {@code null} is passed to any of the parameters
+     *
+     * @since   0.4.0
+     */
+    public static OptionPool readSnapshot(InputStream in, ValueParserRegistry registry) throws IOException {
+        return OptionPoolSnapshot.read(Objects.requireNonNull(in), Objects.requireNonNull(registry));
+    }
+
+    final Argument[] args;
     private final boolean isLastVararg;
-    private final Map<Character, Option<?>> optShortTokens;
-    private final Map<String, Option<?>> optLongTokens;
-    final Set<Restriction> restrictions;
+    final Restriction[] restrictions;
+    final RestrictionChecker restrictionChecker;
+
+    /*
+     * Every argument and option in the pool is assigned a stable ordinal that is used to index into the (array-based)
+     * storage of OptionSets. Arguments come first (in order), followed by the options in insertion order.
+     */
+    final Object[] parameters;
+    private final IdentityIndex ordinals;
+
+    /*
+     * Short tokens are resolved through a table that is indexed by the token directly. Tokens outside of the ASCII range
+     * are stored in a (much smaller) sorted table instead.
+     */
+    final int[] sTokenOrdinals;
+    final char[] sTokenKeysExt;
+    final int[] sTokenOrdinalsExt;
+
+    /* A trie of the long tokens that maps to the ordinals of the options and supports lookups by character ranges. */
+    final TokenTrie lTokens;
+    private final boolean isAbbreviationAllowed;
+
+    private OptionPool(Argument[] args, boolean isLastVararg, Map<Character, Option<?>> sTokens, Map<String, Option<?>> lTokens, Restriction[] restrictions, boolean isAbbreviationAllowed) {
+        this.args = args;
+        this.isLastVararg = isLastVararg;
+        this.restrictions = restrictions;
+        this.isAbbreviationAllowed = isAbbreviationAllowed;
+
+        this.parameters = new Object[args.length + lTokens.size()];
+        System.arraycopy(args, 0, this.parameters, 0, args.length);
+
+        String[] lTokenKeys = new String[lTokens.size()];
+        int[] lTokenOrdinals = new int[lTokens.size()];
+        int ordinal = args.length;
+
+        for (Map.Entry<String, Option<?>> entry : lTokens.entrySet()) {
+            this.parameters[ordinal] = entry.getValue();
+
+            lTokenKeys[ordinal - args.length] = entry.getKey();
+            lTokenOrdinals[ordinal - args.length] = ordinal++;
+        }
+
+        this.lTokens = new TokenTrie(lTokenKeys, lTokenOrdinals);
+        this.ordinals = new IdentityIndex(this.parameters);
+
+        this.sTokenOrdinals = new int[128];
+        Arrays.fill(this.sTokenOrdinals, -1);
+
+        char[] sTokenKeysExt = new char[sTokens.size()];
+        int sTokenExtCount = 0;
+
+        for (Map.Entry<Character, Option<?>> entry : sTokens.entrySet()) {
+            char token = entry.getKey();
+            int sTokenOrdinal = this.ordinals.indexOf(entry.getValue());
+
+            if (token < this.sTokenOrdinals.length) {
+                this.sTokenOrdinals[token] = sTokenOrdinal;
+            } else {
+                sTokenKeysExt[sTokenExtCount++] = token;
+            }
+        }
+
+        this.sTokenKeysExt = Arrays.copyOf(sTokenKeysExt, sTokenExtCount);
+        Arrays.sort(this.sTokenKeysExt);
+
+        this.sTokenOrdinalsExt = new int[sTokenExtCount];
+        for (int i = 0; i < sTokenExtCount; i++) this.sTokenOrdinalsExt[i] = this.ordinals.indexOf(sTokens.get(this.sTokenKeysExt[i]));
+
+        for (Restriction restriction : restrictions) {
+            for (Option<?> option : restriction.getOptions()) {
+                if (this.ordinals.indexOf(option) < 0) throw new IllegalStateException("Restriction refers to option that is not in the pool: " + option);
+            }
+        }
 
-    private OptionPool(Argument[] args, boolean isLastVararg, Map<Character, Option<?>> sTokens, Map<String, Option<?>> lTokens, Set<Restriction> restrictions) {
+        this.restrictionChecker = RestrictionChecker.compile(
+            Arrays.stream(restrictions).map(Restriction::getImpl).collect(Collectors.toList()),
+            this.ordinals::indexOf,
+            this.parameters.length
+        );
+    }
+
+    /*
+     * Restores a pool from its compiled lookup tables (see OptionPoolSnapshot).
+     */
+    OptionPool(
+        Argument[] args,
+        boolean isLastVararg,
+        Object[] parameters,
+        int[] sTokenOrdinals,
+        char[] sTokenKeysExt,
+        int[] sTokenOrdinalsExt,
+        TokenTrie lTokens,
+        Restriction[] restrictions,
+        RestrictionChecker restrictionChecker,
+        boolean isAbbreviationAllowed
+    ) {
         this.args = args;
         this.isLastVararg = isLastVararg;
-        this.optShortTokens = sTokens;
-        this.optLongTokens = lTokens;
+        this.parameters = parameters;
+        this.ordinals = new IdentityIndex(parameters);
+        this.sTokenOrdinals = sTokenOrdinals;
+        this.sTokenKeysExt = sTokenKeysExt;
+        this.sTokenOrdinalsExt = sTokenOrdinalsExt;
+        this.lTokens = lTokens;
         this.restrictions = restrictions;
+        this.restrictionChecker = restrictionChecker;
+        this.isAbbreviationAllowed = isAbbreviationAllowed;
     }
 
     /**
@@ -71,15 +210,7 @@ public final class OptionPool {
      * @since   0.1.0
      */
     public boolean contains(Argument<?> arg) {
-        Objects.requireNonNull(arg);
-
-        for (Argument e : this.args) {
-            if (e == arg) {
-                return true;
-            }
-        }
-
-        return false;
+        return this.indexOf(arg) >= 0;
     }
 
     /**
@@ -94,8 +225,7 @@ public final class OptionPool {
      * @since   0.1.0
      */
     public boolean contains(Option<?> option) {
-        Objects.requireNonNull(option);
-        return this.optLongTokens.containsValue(option);
+        return this.ordinals.indexOf(Objects.requireNonNull(option)) >= 0;
     }
 
     /**
@@ -131,7 +261,18 @@ public final class OptionPool {
      */
     @Nullable
     public Option<?> getOption(char token) {
-        return this.optShortTokens.get(token);
+        int ordinal = this.ordinalOf(token);
+        return (ordinal < 0) ? null : (Option<?>) this.parameters[ordinal];
+    }
+
+    /*
+     * Returns the ordinal of the option for the given short token, or -1 if there is no such option.
+     */
+    int ordinalOf(char token) {
+        if (token < this.sTokenOrdinals.length) return this.sTokenOrdinals[token];
+
+        int i = Arrays.binarySearch(this.sTokenKeysExt, token);
+        return (i < 0) ? -1 : this.sTokenOrdinalsExt[i];
     }
 
     /**
@@ -145,7 +286,67 @@ public final class OptionPool {
      */
     @Nullable
     public Option<?> getOption(String token) {
-        return this.optLongTokens.get(token);
+        int ordinal = this.lTokens.get(token, 0, token.length());
+        return (ordinal < 0) ? null : (Option<?>) this.parameters[ordinal];
+    }
+
+    /**
+     * Returns all options whose long token starts with the given prefix.
+     *
+     * <p>The options are ordered lexicographically by their long tokens. This may, for example, be used to implement
+     * shell completion.</p>
+     *
+     * @param prefix    the prefix of the long tokens
+     *
+     * @return  the options whose long token starts with the given prefix
+     *
+     * @throws NullPointerException if the given prefix is {@code null}
+     *
+     * @since   0.4.0
+     */
+    public List<Option<?>> getOptionsByPrefix(String prefix) {
+        int[] ordinals = this.lTokens.valuesByPrefix(prefix, 0, prefix.length());
+        List<Option<?>> options = new ArrayList<>(ordinals.length);
+
+        for (int ordinal : ordinals) options.add((Option<?>) this.parameters[ordinal]);
+        return Collections.unmodifiableList(options);
+    }
+
+    /**
+     * Returns whether or not unique prefixes of long tokens are accepted when parsing.
+     *
+     * @return  whether or not unique prefixes of long tokens are accepted when parsing
+     *
+     * @see Builder#withAbbreviations(boolean)
+     *
+     * @since   0.4.0
+     */
+    public boolean isAbbreviationAllowed() {
+        return this.isAbbreviationAllowed;
+    }
+
+    /*
+     * Returns the ordinal of the option for the long token in the given range of the given sequence (without
+     * extracting it), or -1 if there is no such option. If abbreviations are allowed, the token may be a unique prefix
+     * of a long token (or TokenTrie.AMBIGUOUS is returned if the prefix is not unique).
+     */
+    int ordinalOf(CharSequence s, int start, int end) {
+        return this.isAbbreviationAllowed ? this.lTokens.getByPrefix(s, start, end) : this.lTokens.get(s, start, end);
+    }
+
+    /* Returns the ordinal of the given argument or option, or -1 if it is not in this pool. */
+    int ordinalOf(Object parameter) {
+        return this.ordinals.indexOf(parameter);
+    }
+
+    /* Returns the argument or option with the given ordinal. */
+    Object getParameter(int ordinal) {
+        return this.parameters[ordinal];
+    }
+
+    /* Returns the number of arguments and options in this pool. */
+    int getParameterCount() {
+        return this.parameters.length;
     }
 
     /**
@@ -195,15 +396,8 @@ public final class OptionPool {
      * @since   0.1.0
      */
     public int indexOf(Argument<?> arg) {
-        Objects.requireNonNull(arg);
-
-        for (int i = 0; i < this.args.length; i++) {
-            if (this.args[i] == arg) {
-                return i;
-            }
-        }
-
-        return -1;
+        // Arguments are assigned the ordinals [0, args.length) in order.
+        return this.ordinals.indexOf(Objects.requireNonNull(arg));
     }
 
     /**
@@ -217,6 +411,30 @@ public final class OptionPool {
         return this.isLastVararg;
     }
 
+    /**
+     * Writes a versioned binary snapshot of this pool to the given stream.
+     *
+     * <p>The snapshot contains this pool's arguments and options, their default and marker values, and the compiled
+     * lookup tables and restrictions of this pool. The {@link ValueParser parsers} of arguments and options are
+     * referred to by their names in the given registry. Default and marker values must be strings or boxed primitives.
+     * The stream is not closed.</p>
+     *
+     * @param out       the stream to write the snapshot to
+     * @param registry  the registry that is used to name value parsers
+     *
+     * @throws IllegalArgumentException if the parser of an argument or option is not in the given registry, or if a
+     *                                  default or marker value is neither a string nor a boxed primitive
+     * @throws IOException              if an I/O error occurs
+     * @throws NullPointerException     if {@code null} is passed to any of the parameters
+     *
+     * @see #readSnapshot(InputStream, ValueParserRegistry)
+     *
+     * @since   0.4.0
+     */
+    public void writeSnapshot(OutputStream out, ValueParserRegistry registry) throws IOException {
+        OptionPoolSnapshot.write(this, Objects.requireNonNull(out), Objects.requireNonNull(registry));
+    }
+
     /**
      * A builder for an {@link OptionPool}.
      *
@@ -226,9 +444,20 @@ public final class OptionPool {
 
         private final List<Argument<?>> args = new ArrayList<>();
         private final Map<Character, Option<?>> sTokens = new HashMap<>();
-        private final Map<String, Option<?>> lTokens = new HashMap<>();
+        private final Map<String, Option<?>> lTokens = new LinkedHashMap<>();
+        private final Set<Option<?>> options = Collections.newSetFromMap(new IdentityHashMap<>());
         private final Set<Restriction> restrictions = new HashSet<>();
+        private final List<List<KNFFormula.Literal<Option<?>>>> clauses = new ArrayList<>();
+        private final ReachabilitySession<Option<?>> reachability = new ReachabilitySession<>();
+        private int reachabilityClauseCount;
         private boolean isLastVararg;
+        private boolean isAbbreviationAllowed;
+
+        @Nullable
+        private ReachabilityProofCache proofCache;
+
+        @Nullable
+        private OptionPool pool;
 
         private Builder() {}
 
@@ -236,22 +465,48 @@ public final class OptionPool {
          * Returns a new immutable {@linkplain OptionPool}.
          *
          * <p>This method performs extensive reachability checks and throws if one or more options are unreachable due
-         * to the restrictions in place.</p>
+         * to the restrictions in place. These checks are incremental: Only options that may have been affected by
+         * options and restrictions added since the last invocation are checked again.</p>
          *
-         * @return  a new immutable pool
+         * <p>If this builder has not been modified since the last invocation, the previously built pool is returned.</p>
+         *
+         * @return  an immutable pool
          *
          * @throws UnreachableOptionException   if one or more options are unreachable to due the restrictions in place
          *
          * @since   0.1.0
          */
         public OptionPool build() {
-            KNFFormula.Builder<Option<?>> formula = KNFFormula.builder(this.lTokens.values());
-            this.restrictions.stream().map(Restriction::getClauses).flatMap(Set::stream).forEach(formula::and);
+            if (this.pool != null) return this.pool;
+
+            byte[] fingerprint = null;
 
-            Set<Option<?>> unreachable = formula.calculateUnreachableOptions();
-            if (!unreachable.isEmpty()) throw new UnreachableOptionException(unreachable);
+            if (this.proofCache == null || !this.proofCache.contains(fingerprint = this.fingerprint())) {
+                // Options and clauses are added to the session lazily since they are not needed if a proof was cached.
+                this.lTokens.values().forEach(this.reachability::addVariable);
+
+                while (this.reachabilityClauseCount < this.clauses.size()) {
+                    this.reachability.addClause(this.clauses.get(this.reachabilityClauseCount++));
+                }
+
+                Set<Option<?>> unreachable = this.reachability.calculateUnreachable(this.lTokens.values());
+                if (!unreachable.isEmpty()) throw new UnreachableOptionException(unreachable);
+
+                if (this.proofCache != null) this.proofCache.put(fingerprint);
+            }
 
-            return new OptionPool(this.args.toArray(new Argument[0]), this.isLastVararg, this.sTokens, this.lTokens, this.restrictions);
+            return this.pool = new OptionPool(
+                this.args.toArray(new Argument[0]),
+                this.isLastVararg,
+                new HashMap<>(this.sTokens),
+                new LinkedHashMap<>(this.lTokens),
+                this.restrictions.toArray(new Restriction[0]),
+                this.isAbbreviationAllowed
+            );
+        }
+
+        private byte[] fingerprint() {
+            return ReachabilityProofCache.fingerprint(this.lTokens.values(), this.clauses, Option::getLongToken);
         }
 
         /**
@@ -268,6 +523,8 @@ public final class OptionPool {
             if (!this.args.isEmpty() && this.args.get(this.args.size() - 1).isOptional()) throw new IllegalStateException();
 
             this.args.add(arg);
+            this.pool = null;
+
             return this;
         }
 
@@ -283,6 +540,7 @@ public final class OptionPool {
         public Builder withVarargArg(Argument<?> arg) {
             this.withArg(arg);
             this.isLastVararg = true;
+            this.pool = null;
 
             return this;
         }
@@ -290,16 +548,86 @@ public final class OptionPool {
         /**
          * Adds an option for the option pool.
          *
+         * <p>An option replaces a previously added option with the same long token. Options that are referenced by a
+         * {@link #withRestriction(Restriction) restriction} cannot be replaced.</p>
+         *
          * @param opt   the option to add to this pool
          *
          * @return  this builder instance
          *
+         * @throws IllegalArgumentException if the option would replace an option that is referenced by a restriction
+         *
          * @since   0.1.0
          */
         public Builder withOption(Option<?> opt) {
+            Option<?> prev = this.lTokens.get(opt.getLongToken());
+
+            if (prev != null && prev != opt) {
+                for (Restriction restriction : this.restrictions) {
+                    if (restriction.getOptions().contains(prev)) throw new IllegalArgumentException("Cannot replace option " + prev + " since it is referenced by a restriction");
+                }
+            }
+
             this.lTokens.put(opt.getLongToken(), opt);
+
+            if (prev != null) {
+                this.options.remove(prev);
+                if (prev.getShortToken() != null) this.sTokens.remove(prev.getShortToken(), prev);
+            }
+
+            this.options.add(opt);
             if (opt.getShortToken() != null) this.sTokens.put(opt.getShortToken(), opt);
 
+            this.pool = null;
+            return this;
+        }
+
+        /**
+         * Sets whether or not unique prefixes of long tokens are accepted when parsing.
+         *
+         * <p>If abbreviations are allowed, an option may be specified by any prefix of its long token that is not a
+         * prefix of another option's long token (e.g. {@code --verb} for {@code --verbose}). A long token that matches
+         * exactly always takes precedence. Abbreviations are not allowed by default.</p>
+         *
+         * @param value whether or not unique prefixes of long tokens are accepted
+         *
+         * @return  this builder instance
+         *
+         * @since   0.4.0
+         */
+        public Builder withAbbreviations(boolean value) {
+            if (this.isAbbreviationAllowed != value) {
+                this.isAbbreviationAllowed = value;
+                this.pool = null;
+            }
+
+            return this;
+        }
+
+        /**
+         * Enables caching of reachability proofs in the given directory.
+         *
+         * <p>When building a pool, the reachability checks are skipped if the directory contains a proof that all
+         * options of an equivalent pool are reachable. Otherwise, a proof is stored in the directory once the checks
+         * succeeded. Pools are considered equivalent if they have options with the same long tokens and equivalent
+         * restrictions (regardless of the order in which options and restrictions were added).</p>
+         *
+         * <p>The cache may safely be shared between multiple processes. I/O errors are ignored and cause the
+         * reachability checks to be performed as usual.</p>
+         *
+         * <p><b>The cache directory must not be writable by untrusted parties.</b> A forged proof would allow building
+         * a pool with unreachable options.</p>
+         *
+         * @param directory the directory in which reachability proofs are stored
+         *
+         * @return  this builder instance
+         *
+         * @throws NullPointerException if the given directory is {@code null}
+         *
+         * @since   0.4.0
+         */
+        public Builder withProofCache(Path directory) {
+            this.proofCache = new ReachabilityProofCache(directory);
             return this;
         }
 
@@ -313,8 +641,13 @@ public final class OptionPool {
          * @since   0.4.0
          */
         public Builder withRestriction(Restriction restriction) {
-            if (!this.lTokens.values().containsAll(restriction.getOptions())) throw new IllegalArgumentException();
-            this.restrictions.add(restriction);
+            if (!this.options.containsAll(restriction.getOptions())) throw new IllegalArgumentException();
+
+            if (this.restrictions.add(restriction)) {
+                restriction.getClauses().forEach(clause -> this.clauses.add(new ArrayList<>(clause)));
+
+                this.pool = null;
+            }
 
             return this;
         }
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import com.github.themrmilchmann.mjl.options.internal.RestrictionChecker;
+import com.github.themrmilchmann.mjl.options.internal.RestrictionImpl;
+import com.github.themrmilchmann.mjl.options.internal.TokenTrie;
+
+/**
+ * Reads and writes binary snapshots of {@link OptionPool}s.
+ *
+ * <p>A snapshot contains the compiled lookup tables and restriction checks of a pool. Thus, reading a snapshot
+ * neither validates tokens nor performs reachability checks nor compiles restrictions. The format (all values are
+ * big-endian) is:</p>
+ *
+ * <pre>
+ * int      magic ("MJOP")
+ * int      version
+ * int      the CRC32 of the remaining content
+ * byte     flags (0x1: the last argument is a vararg, 0x2: abbreviations are allowed)
+ * int      the number of parser names, followed by the names
+ * int      the number of arguments, followed by the arguments (parser index, isOptional, default value)
+ * int      the number of options, followed by the options (long token, short token or '\0', parser index,
+ *          default value, marker value, isMarkerOnly)
+ * int[128] the ordinals for ASCII short tokens, followed by the sorted table of other short tokens
+ *          (length, tokens, ordinals)
+ *          the trie of long tokens (see TokenTrie#write)
+ * int      the number of restrictions, followed by the restrictions (see RestrictionImpl#write)
+ *          the compiled restrictions (see RestrictionChecker#write)
+ * </pre>
+ *
+ * <p>Strings are stored as their length (in bytes) followed by their UTF-8 encoding. Values are stored as a tag
+ * followed by the value. Only {@code null}, strings and boxed primitives are supported.</p>
+ *
+ * @author  Leon Linhart
+ */
+final class OptionPoolSnapshot {
+
+    private static final int MAGIC = 0x4D4A4F50;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+
+    private static final byte FLAG_VARARG = 0x1,
+                              FLAG_ABBREVIATIONS = 0x2;
+
+    private static final byte TAG_NULL      = 0,
+                              TAG_STRING    = 1,
+                              TAG_BOOLEAN   = 2,
+                              TAG_BYTE      = 3,
+                              TAG_SHORT     = 4,
+                              TAG_CHARACTER = 5,
+                              TAG_INT       = 6,
+                              TAG_LONG      = 7,
+                              TAG_FLOAT     = 8,
+                              TAG_DOUBLE    = 9;
+
+    static void write(OptionPool pool, OutputStream out, ValueParserRegistry registry) throws IOException {
+        /*
+         * The snapshot is encoded into memory first. Thus, nothing is written if the pool cannot be encoded (and the
+         * checksum can be computed before the content is written).
+         */
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        DataOutputStream data = new DataOutputStream(bytes);
+
+        data.writeByte((pool.isLastVararg() ? FLAG_VARARG : 0) | (pool.isAbbreviationAllowed() ? FLAG_ABBREVIATIONS : 0));
+
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> nameIndices = new HashMap<>();
+        int[] parserIndices = new int[pool.parameters.length];
+
+        for (int ordinal = 0; ordinal < pool.parameters.length; ordinal++) {
+            Object parameter = pool.parameters[ordinal];
+            ValueParser<?> parser = (parameter instanceof Argument) ? ((Argument<?>) parameter).parser : ((Option<?>) parameter).parser;
+
+            String name = registry.getName(parser);
+            if (name == null) throw new IllegalArgumentException("The parser of " + parameter + " is not in the registry");
+
+            Integer index = nameIndices.get(name);
+
+            if (index == null) {
+                nameIndices.put(name, index = names.size());
+                names.add(name);
+            }
+
+            parserIndices[ordinal] = index;
+        }
+
+        data.writeInt(names.size());
+        for (String name : names) writeString(data, name);
+
+        data.writeInt(pool.args.length);
+
+        for (int ordinal = 0; ordinal < pool.args.length; ordinal++) {
+            Argument<?> arg = pool.args[ordinal];
+
+            data.writeInt(parserIndices[ordinal]);
+            data.writeBoolean(arg.isOptional());
+            writeValue(data, arg.getDefaultValue(), arg);
+        }
+
+        data.writeInt(pool.parameters.length - pool.args.length);
+
+        for (int ordinal = pool.args.length; ordinal < pool.parameters.length; ordinal++) {
+            Option<?> opt = (Option<?>) pool.parameters[ordinal];
+
+            writeString(data, opt.getLongToken());
+            data.writeChar((opt.getShortToken() != null) ? opt.getShortToken() : '\0');
+            data.writeInt(parserIndices[ordinal]);
+            writeValue(data, opt.getDefaultValue(), opt);
+            writeValue(data, opt.getMarkerValue(), opt);
+            data.writeBoolean(opt.isMarkerOnly());
+        }
+
+        for (int ordinal : pool.sTokenOrdinals) data.writeInt(ordinal);
+
+        data.writeInt(pool.sTokenKeysExt.length);
+        for (char token : pool.sTokenKeysExt) data.writeChar(token);
+        for (int ordinal : pool.sTokenOrdinalsExt) data.writeInt(ordinal);
+
+        pool.lTokens.write(data);
+
+        data.writeInt(pool.restrictions.length);
+        for (Restriction restriction : pool.restrictions) restriction.getImpl().write(data, pool::ordinalOf);
+
+        pool.restrictionChecker.write(data);
+        data.flush();
+
+        byte[] content = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt((int) crc.getValue());
+        header.write(content);
+        header.flush();
+    }
+
+    static OptionPool read(InputStream in, ValueParserRegistry registry) throws IOException {
+        byte[] bytes = readFully(in);
+        if (bytes.length < HEADER_SIZE) throw new IOException("Malformed snapshot: Unexpected end of input");
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt() != MAGIC) throw new IOException("Not a snapshot of an OptionPool");
+
+        int version = buffer.getInt();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version: " + version + " (expected " + VERSION + ")");
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+        if (buffer.getInt() != (int) crc.getValue()) throw new IOException("Malformed snapshot: Checksum mismatch");
+
+        boolean isLastVararg, isAbbreviationAllowed;
+        String[] names;
+
+        try {
+            byte flags = buffer.get();
+            isLastVararg = (flags & FLAG_VARARG) != 0;
+            isAbbreviationAllowed = (flags & FLAG_ABBREVIATIONS) != 0;
+
+            names = new String[buffer.getInt()];
+            for (int i = 0; i < names.length; i++) names[i] = readString(buffer);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed snapshot", e);
+        }
+
+        // Resolved up front (and outside of the try-block) to distinguish a mismatching registry from malformed input
+        ValueParser<?>[] parsers = new ValueParser<?>[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+            parsers[i] = registry.get(names[i]);
+            if (parsers[i] == null) throw new IllegalArgumentException("No parser named " + names[i] + " in the registry");
+        }
+
+        try {
+            Argument<?>[] args = new Argument<?>[buffer.getInt()];
+            if (isLastVararg && args.length == 0) throw new IllegalArgumentException("Vararg pool without arguments");
+
+            for (int i = 0; i < args.length; i++) {
+                ValueParser<?> parser = parsers[buffer.getInt()];
+                boolean isOptional = buffer.get() != 0;
+
+                args[i] = newArgument(parser, isOptional, readValue(buffer));
+            }
+
+            int optionCount = buffer.getInt();
+            if (optionCount < 0) throw new IllegalArgumentException("Negative option count");
+
+            Object[] parameters = new Object[args.length + optionCount];
+            System.arraycopy(args, 0, parameters, 0, args.length);
+
+            for (int ordinal = args.length; ordinal < parameters.length; ordinal++) {
+                String longToken = readString(buffer);
+                char shortToken = buffer.getChar();
+                ValueParser<?> parser = parsers[buffer.getInt()];
+                Object defaultValue = readValue(buffer), markerValue = readValue(buffer);
+                boolean isMarkerOnly = buffer.get() != 0;
+
+                parameters[ordinal] = newOption(longToken, (shortToken != '\0') ? shortToken : null, parser, defaultValue, markerValue, isMarkerOnly);
+            }
+
+            int[] sTokenOrdinals = new int[128];
+            for (int i = 0; i < sTokenOrdinals.length; i++) sTokenOrdinals[i] = readOptionOrdinal(buffer, args.length, parameters.length, true);
+
+            char[] sTokenKeysExt = new char[buffer.getInt()];
+            for (int i = 0; i < sTokenKeysExt.length; i++) sTokenKeysExt[i] = buffer.getChar();
+
+            int[] sTokenOrdinalsExt = new int[sTokenKeysExt.length];
+            for (int i = 0; i < sTokenOrdinalsExt.length; i++) sTokenOrdinalsExt[i] = readOptionOrdinal(buffer, args.length, parameters.length, false);
+
+            TokenTrie lTokens = TokenTrie.read(buffer, parameters.length);
+
+            Restriction[] restrictions = new Restriction[buffer.getInt()];
+
+            for (int i = 0; i < restrictions.length; i++) {
+                restrictions[i] = new Restriction(RestrictionImpl.read(buffer, ordinal -> {
+                    if (ordinal < args.length || ordinal >= parameters.length) throw new IllegalArgumentException("Not an option: " + ordinal);
+                    return (Option<?>) parameters[ordinal];
+                }));
+            }
+
+            RestrictionChecker restrictionChecker = RestrictionChecker.read(buffer, parameters.length);
+            if (buffer.hasRemaining()) throw new IllegalArgumentException("Unexpected trailing data");
+
+            return new OptionPool(args, isLastVararg, parameters, sTokenOrdinals, sTokenKeysExt, sTokenOrdinalsExt, lTokens, restrictions, restrictionChecker, isAbbreviationAllowed);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed snapshot", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Argument<?> newArgument(ValueParser<?> parser, boolean isOptional, @Nullable Object defaultValue) {
+        return new Argument<>((ValueParser<Object>) parser, isOptional, defaultValue);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Option<?> newOption(String longToken, @Nullable Character shortToken, ValueParser<?> parser, @Nullable Object defaultValue, @Nullable Object markerValue, boolean isMarkerOnly) {
+        return new Option<>(longToken, shortToken, (ValueParser<Object>) parser, defaultValue, markerValue, isMarkerOnly);
+    }
+
+    private static int readOptionOrdinal(ByteBuffer buffer, int argCount, int parameterCount, boolean isOptional) {
+        int ordinal = buffer.getInt();
+        if ((ordinal != -1 || !isOptional) && (ordinal < argCount || ordinal >= parameterCount)) throw new IllegalArgumentException("Not an option: " + ordinal);
+
+        return ordinal;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+
+        for (int read; (read = in.read(buffer)) != -1; ) bytes.write(buffer, 0, read);
+        return bytes.toByteArray();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) throw new IllegalArgumentException("Invalid string length: " + length);
+
+        String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+
+        return s;
+    }
+
+    private static void writeString(DataOutputStream data, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    @Nullable
+    private static Object readValue(ByteBuffer buffer) {
+        byte tag = buffer.get();
+
+        switch (tag) {
+            case TAG_NULL: return null;
+            case TAG_STRING: return readString(buffer);
+            case TAG_BOOLEAN: return buffer.get() != 0;
+            case TAG_BYTE: return buffer.get();
+            case TAG_SHORT: return buffer.getShort();
+            case TAG_CHARACTER: return buffer.getChar();
+            case TAG_INT: return buffer.getInt();
+            case TAG_LONG: return buffer.getLong();
+            case TAG_FLOAT: return buffer.getFloat();
+            case TAG_DOUBLE: return buffer.getDouble();
+            default: throw new IllegalArgumentException("Unsupported value tag: " + tag);
+        }
+    }
+
+    private static void writeValue(DataOutputStream data, @Nullable Object value, Object parameter) throws IOException {
+        if (value == null) {
+            data.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            data.writeByte(TAG_STRING);
+            writeString(data, (String) value);
+        } else if (value instanceof Boolean) {
+            data.writeByte(TAG_BOOLEAN);
+            data.writeBoolean((Boolean) value);
+        } else if (value instanceof Byte) {
+            data.writeByte(TAG_BYTE);
+            data.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            data.writeByte(TAG_SHORT);
+            data.writeShort((Short) value);
+        } else if (value instanceof Character) {
+            data.writeByte(TAG_CHARACTER);
+            data.writeChar((Character) value);
+        } else if (value instanceof Integer) {
+            data.writeByte(TAG_INT);
+            data.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            data.writeByte(TAG_LONG);
+            data.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            data.writeByte(TAG_FLOAT);
+            data.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            data.writeByte(TAG_DOUBLE);
+            data.writeDouble((Double) value);
+        } else {
+            throw new IllegalArgumentException("Unsupported value of type " + value.getClass().getName() + " for " + parameter);
+        }
+    }
+
+    private OptionPoolSnapshot() {}
+
+}
@@ -16,7 +16,10 @@
 package com.github.themrmilchmann.mjl.options;
 
 import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.function.Supplier;
 
@@ -30,15 +33,144 @@ import java.util.function.Supplier;
 public final class OptionSet {
 
     private final OptionPool pool;
-    private final Map<Object, Object> values;
+
+    /*
+     * The values are stored by the ordinal of the respective argument or option. Since values might be null, presence
+     * is tracked separately using a bitset.
+     *
+     * Values that are parsed by a primitive specialization of ValueParser are stored unboxed in the primitives array
+     * instead. The kind of a slot determines where (and how) its value is stored.
+     *
+     * Values of a context with lazy values are stored as LazyValue that is resolved when the value is first requested.
+     */
+    private static final byte KIND_OBJECT   = 0,
+                              KIND_INT      = 1,
+                              KIND_LONG     = 2,
+                              KIND_DOUBLE   = 3,
+                              KIND_BOOLEAN  = 4,
+                              KIND_LAZY     = 5;
+
+    private final Object[] values;
+    private final long[] primitives;
+    private final byte[] kinds;
+    final long[] present;
+
     private final Map<String, String> dynamics;
 
-    OptionSet(OptionPool pool, Map<Object, Object> values, Map<String, String> dynamics) {
+    OptionSet(OptionPool pool, Map<String, String> dynamics) {
+        int count = pool.getParameterCount();
+
         this.pool = pool;
-        this.values = values;
+        this.values = new Object[count];
+        this.primitives = new long[count];
+        this.kinds = new byte[count];
+        this.present = new long[(count + 63) >>> 6];
         this.dynamics = dynamics;
     }
 
+    /*
+     * Creates an independent copy of the given set (e.g. of the view of a ParseContext).
+     */
+    OptionSet(OptionSet other) {
+        this.pool = other.pool;
+        this.values = other.values.clone();
+        this.primitives = other.primitives.clone();
+        this.kinds = other.kinds.clone();
+        this.present = other.present.clone();
+        this.dynamics = other.dynamics.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(other.dynamics));
+    }
+
+    boolean isPresent(int ordinal) {
+        return (this.present[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    void put(int ordinal, @Nullable Object value) {
+        this.values[ordinal] = value;
+        this.kinds[ordinal] = KIND_OBJECT;
+        this.present[ordinal >>> 6] |= (1L << ordinal);
+    }
+
+    void putLazy(int ordinal, ValueParser<?> parser, String rawValue) {
+        this.values[ordinal] = new LazyValue(parser, rawValue);
+        this.kinds[ordinal] = KIND_LAZY;
+        this.present[ordinal >>> 6] |= (1L << ordinal);
+    }
+
+    private void putPrimitive(int ordinal, long value, byte kind) {
+        this.primitives[ordinal] = value;
+        this.kinds[ordinal] = kind;
+        this.present[ordinal >>> 6] |= (1L << ordinal);
+    }
+
+    void putInt(int ordinal, int value) {
+        this.putPrimitive(ordinal, value, KIND_INT);
+    }
+
+    void putLong(int ordinal, long value) {
+        this.putPrimitive(ordinal, value, KIND_LONG);
+    }
+
+    void putDouble(int ordinal, double value) {
+        this.putPrimitive(ordinal, Double.doubleToRawLongBits(value), KIND_DOUBLE);
+    }
+
+    void putBoolean(int ordinal, boolean value) {
+        this.putPrimitive(ordinal, value ? 1 : 0, KIND_BOOLEAN);
+    }
+
+    void clear() {
+        long[] present = this.present;
+
+        for (int i = 0; i < present.length; i++) {
+            for (long word = present[i]; word != 0; word &= word - 1) {
+                this.values[(i << 6) + Long.numberOfTrailingZeros(word)] = null;
+            }
+
+            present[i] = 0;
+        }
+    }
+
+    private int ordinalOf(Object parameter) {
+        int ordinal = this.pool.ordinalOf(Objects.requireNonNull(parameter));
+        if (ordinal < 0) throw new IllegalArgumentException();
+
+        return ordinal;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    <T> T valueAt(int ordinal) {
+        switch (this.kinds[ordinal]) {
+            case KIND_INT: return (T) Integer.valueOf(this.intAt(ordinal));
+            case KIND_LONG: return (T) Long.valueOf(this.longAt(ordinal));
+            case KIND_DOUBLE: return (T) Double.valueOf(this.doubleAt(ordinal));
+            case KIND_BOOLEAN: return (T) Boolean.valueOf(this.booleanAt(ordinal));
+            case KIND_LAZY: return (T) ((LazyValue) this.values[ordinal]).get();
+            default: return (T) this.values[ordinal];
+        }
+    }
+
+    int intAt(int ordinal) {
+        return (this.kinds[ordinal] == KIND_INT) ? (int) this.primitives[ordinal] : (Integer) this.valueAt(ordinal);
+    }
+
+    long longAt(int ordinal) {
+        return (this.kinds[ordinal] == KIND_LONG) ? this.primitives[ordinal] : (Long) this.valueAt(ordinal);
+    }
+
+    double doubleAt(int ordinal) {
+        return (this.kinds[ordinal] == KIND_DOUBLE) ? Double.longBitsToDouble(this.primitives[ordinal]) : (Double) this.valueAt(ordinal);
+    }
+
+    boolean booleanAt(int ordinal) {
+        return (this.kinds[ordinal] == KIND_BOOLEAN) ? this.primitives[ordinal] != 0 : (Boolean) this.valueAt(ordinal);
+    }
+
+    private static <T> T defaultValue(@Nullable T defaultValue, Object parameter) {
+        if (defaultValue == null) throw new NoSuchElementException("No value available for " + parameter);
+        return defaultValue;
+    }
+
     /**
      * The {@link OptionPool pool} of available arguments and options for this set.
      *
@@ -69,11 +201,10 @@ public final class OptionSet {
      *
      * @since   0.1.0
      */
-    @SuppressWarnings({"unchecked"})
     @Nullable
     public <T> T get(Argument<T> arg) {
-        if (!this.pool.contains(Objects.requireNonNull(arg))) throw new IllegalArgumentException();
-        return this.values.containsKey(arg) ? (T) this.values.get(arg) : arg.getDefaultValue();
+        int ordinal = this.ordinalOf(arg);
+        return this.isPresent(ordinal) ? this.valueAt(ordinal) : arg.getDefaultValue();
     }
 
     /**
@@ -95,11 +226,10 @@ public final class OptionSet {
      *
      * @since   0.1.0
      */
-    @SuppressWarnings({"unchecked"})
     @Nullable
     public <T> T get(Option<T> opt) {
-        if (!this.pool.contains(Objects.requireNonNull(opt))) throw new IllegalArgumentException();
-        return this.values.containsKey(opt) ? (T) this.values.get(opt) : opt.getDefaultValue();
+        int ordinal = this.ordinalOf(opt);
+        return this.isPresent(ordinal) ? this.valueAt(ordinal) : opt.getDefaultValue();
     }
 
     /**
@@ -122,11 +252,10 @@ public final class OptionSet {
      *
      * @since   0.1.0
      */
-    @SuppressWarnings({"unchecked"})
     @Nullable
     public <T> T getOrElse(Argument<T> arg, @Nullable T other) {
-        if (this.pool.contains(Objects.requireNonNull(arg))) throw new IllegalArgumentException();
-        return this.values.containsKey(arg) ? (T) this.values.get(arg) : (arg.hasDefaultValue() ? arg.getDefaultValue() : other);
+        int ordinal = this.ordinalOf(arg);
+        return this.isPresent(ordinal) ? this.valueAt(ordinal) : (arg.hasDefaultValue() ? arg.getDefaultValue() : other);
     }
 
     /**
@@ -149,13 +278,12 @@ public final class OptionSet {
      *
      * @since   0.3.0
      */
-    @SuppressWarnings("unchecked")
     @Nullable
     public <T> T getOrElse(Argument<T> arg, Supplier<T> factory) {
-        if (this.pool.contains(Objects.requireNonNull(arg))) throw new IllegalArgumentException();
+        int ordinal = this.ordinalOf(arg);
         Objects.requireNonNull(factory);
 
-        return this.values.containsKey(arg) ? (T) this.values.get(arg) : (arg.hasDefaultValue() ? arg.getDefaultValue() : factory.get());
+        return this.isPresent(ordinal) ? this.valueAt(ordinal) : (arg.hasDefaultValue() ? arg.getDefaultValue() : factory.get());
     }
 
     /**
@@ -178,11 +306,10 @@ public final class OptionSet {
      *
      * @since   0.1.0
      */
-    @SuppressWarnings({"unchecked"})
     @Nullable
     public <T> T getOrElse(Option<T> opt, @Nullable T other) {
-        if (this.pool.contains(Objects.requireNonNull(opt))) throw new IllegalArgumentException();
-        return this.values.containsKey(opt) ? (T) this.values.get(opt) : (opt.hasDefaultValue() ? opt.getDefaultValue() : other);
+        int ordinal = this.ordinalOf(opt);
+        return this.isPresent(ordinal) ? this.valueAt(ordinal) : (opt.hasDefaultValue() ? opt.getDefaultValue() : other);
     }
 
     /**
@@ -205,13 +332,254 @@ public final class OptionSet {
      *
      * @since   0.3.0
      */
-    @SuppressWarnings("unchecked")
     @Nullable
     public <T> T getOrElse(Option<T> opt, Supplier<T> factory) {
-        if (this.pool.contains(Objects.requireNonNull(opt))) throw new IllegalArgumentException();
+        int ordinal = this.ordinalOf(opt);
         Objects.requireNonNull(factory);
 
-        return this.values.containsKey(opt) ? (T) this.values.get(opt) : (opt.hasDefaultValue() ? opt.getDefaultValue() : factory.get());
+        return this.isPresent(ordinal) ? this.valueAt(ordinal) : (opt.hasDefaultValue() ? opt.getDefaultValue() : factory.get());
+    }
+
+    /**
+     * Returns the {@code int} value for the given {@link Argument argument}.
+     *
+     * <ol>
+     *     <li>Returns the explicitly set value for the given argument (if available).</li>
+     *     <li>Returns the default value for the given argument (if available).</li>
+     *     <li>Throws a {@link NoSuchElementException}.</li>
+     * </ol>
+     *
+     * <p>Unlike {@link #get(Argument)}, this method does not box values that have been parsed by a
+     * {@link IntValueParser}.</p>
+     *
+     * @param arg   the argument to retrieve the value for
+     *
+     * @return  the value for the given argument
+     *
+     * @throws NullPointerException     if the given argument is {@code null}
+     * @throws IllegalArgumentException if the given argument is <em>not</em> in the pool that this set was created from
+     * @throws NoSuchElementException   if neither a value nor a default value is available for the given argument
+     *
+     * @since   0.4.0
+     */
+    public int getInt(Argument<Integer> arg) {
+        int ordinal = this.ordinalOf(arg);
+        return this.isPresent(ordinal) ? this.intAt(ordinal) : defaultValue(arg.getDefaultValue(), arg);
+    }
+
+    /**
+     * Returns the {@code int} value for the given {@link Option option}.
+     *
+     * <ol>
+     *     <li>Returns the explicitly set value for the given option (if available).</li>
+     *     <li>Returns the default value for the given option (if available).</li>
+     *     <li>Throws a {@link NoSuchElementException}.</li>
+     * </ol>
+     *
+     * <p>Unlike {@link #get(Option)}, this method does not box values that have been parsed by a
+     * {@link IntValueParser}.</p>
+     *
+     * @param opt   the option to retrieve the value for
+     *
+     * @return  the value for the given option
+     *
+     * @throws NullPointerException     if the given option is {@code null}
+     * @throws IllegalArgumentException if the given option is <em>not</em> in the pool that this set was created from
+     * @throws NoSuchElementException   if neither a value nor a default value is available for the given option
+     *
+     * @since   0.4.0
+     */
+    public int getInt(Option<Integer> opt) {
+        int ordinal = this.ordinalOf(opt);
+        return this.isPresent(ordinal) ? this.intAt(ordinal) : defaultValue(opt.getDefaultValue(), opt);
+    }
+
+    /**
+     * Returns the {@code long} value for the given {@link Argument argument}.
+     *
+     * <ol>
+     *     <li>Returns the explicitly set value for the given argument (if available).</li>
+     *     <li>Returns the default value for the given argument (if available).</li>
+     *     <li>Throws a {@link NoSuchElementException}.</li>
+     * </ol>
+     *
+     * <p>Unlike {@link #get(Argument)}, this method does not box values that have been parsed by a
+     * {@link LongValueParser}.</p>
+     *
+     * @param arg   the argument to retrieve the value for
+     *
+     * @return  the value for the given argument
+     *
+     * @throws NullPointerException     if the given argument is {@code null}
+     * @throws IllegalArgumentException if the given argument is <em>not</em> in the pool that this set was created from
+     * @throws NoSuchElementException   if neither a value nor a default value is available for the given argument
+     *
+     * @since   0.4.0
+     */
+    public long getLong(Argument<Long> arg) {
+        int ordinal = this.ordinalOf(arg);
+        return this.isPresent(ordinal) ? this.longAt(ordinal) : defaultValue(arg.getDefaultValue(), arg);
+    }
+
+    /**
+     * Returns the {@code long} value for the given {@link Option option}.
+     *
+     * <ol>
+     *     <li>Returns the explicitly set value for the given option (if available).</li>
+     *     <li>Returns the default value for the given option (if available).</li>
+     *     <li>Throws a {@link NoSuchElementException}.</li>
+     * </ol>
+     *
+     * <p>Unlike {@link #get(Option)}, this method does not box values that have been parsed by a
+     * {@link LongValueParser}.</p>
+     *
+     * @param opt   the option to retrieve the value for
+     *
+     * @return  the value for the given option
+     *
+     * @throws NullPointerException     if the given option is {@code null}
+     * @throws IllegalArgumentException if the given option is <em>not</em> in the pool that this set was created from
+     * @throws NoSuchElementException   if neither a value nor a default value is available for the given option
+     *
+     * @since   0.4.0
+     */
+    public long getLong(Option<Long> opt) {
+        int ordinal = this.ordinalOf(opt);
+        return this.isPresent(ordinal) ? this.longAt(ordinal) : defaultValue(opt.getDefaultValue(), opt);
+    }
+
+    /**
+     * Returns the {@code double} value for the given {@link Argument argument}.
+     *
+     * <ol>
+     *     <li>Returns the explicitly set value for the given argument (if available).</li>
+     *     <li>Returns the default value for the given argument (if available).</li>
+     *     <li>Throws a {@link NoSuchElementException}.</li>
+     * </ol>
+     *
+     * <p>Unlike {@link #get(Argument)}, this method does not box values that have been parsed by a
+     * {@link DoubleValueParser}.</p>
+     *
+     * @param arg   the argument to retrieve the value for
+     *
+     * @return  the value for the given argument
+     *
+     * @throws NullPointerException     if the given argument is {@code null}
+     * @throws IllegalArgumentException if the given argument is <em>not</em> in the pool that this set was created from
+     * @throws NoSuchElementException   if neither a value nor a default value is available for the given argument
+     *
+     * @since   0.4.0
+     */
+    public double getDouble(Argument<Double> arg) {
+        int ordinal = this.ordinalOf(arg);
+        return this.isPresent(ordinal) ? this.doubleAt(ordinal) : defaultValue(arg.getDefaultValue(), arg);
+    }
+
+    /**
+     * Returns the {@code double} value for the given {@link Option option}.
+     *
+     * <ol>
+     *     <li>Returns the explicitly set value for the given option (if available).</li>
+     *     <li>Returns the default value for the given option (if available).</li>
+     *     <li>Throws a {@link NoSuchElementException}.</li>
+     * </ol>
+     *
+     * <p>Unlike {@link #get(Option)}, this method does not box values that have been parsed by a
+     * {@link DoubleValueParser}.</p>
+     *
+     * @param opt   the option to retrieve the value for
+     *
+     * @return  the value for the given option
+     *
+     * @throws NullPointerException     if the given option is {@code null}
+     * @throws IllegalArgumentException if the given option is <em>not</em> in the pool that this set was created from
+     * @throws NoSuchElementException   if neither a value nor a default value is available for the given option
+     *
+     * @since   0.4.0
+     */
+    public double getDouble(Option<Double> opt) {
+        int ordinal = this.ordinalOf(opt);
+        return this.isPresent(ordinal) ? this.doubleAt(ordinal) : defaultValue(opt.getDefaultValue(), opt);
+    }
+
+    /**
+     * Returns the {@code boolean} value for the given {@link Argument argument}.
+     *
+     * <ol>
+     *     <li>Returns the explicitly set value for the given argument (if available).</li>
+     *     <li>Returns the default value for the given argument (if available).</li>
+     *     <li>Throws a {@link NoSuchElementException}.</li>
+     * </ol>
+     *
+     * <p>Unlike {@link #get(Argument)}, this method does not box values that have been parsed by a
+     * {@link BooleanValueParser}.</p>
+     *
+     * @param arg   the argument to retrieve the value for
+     *
+     * @return  the value for the given argument
+     *
+     * @throws NullPointerException     if the given argument is {@code null}
+     * @throws IllegalArgumentException if the given argument is <em>not</em> in the pool that this set was created from
+     * @throws NoSuchElementException   if neither a value nor a default value is available for the given argument
+     *
+     * @since   0.4.0
+     */
+    public boolean getBoolean(Argument<Boolean> arg) {
+        int ordinal = this.ordinalOf(arg);
+        return this.isPresent(ordinal) ? this.booleanAt(ordinal) : defaultValue(arg.getDefaultValue(), arg);
+    }
+
+    /**
+     * Returns the {@code boolean} value for the given {@link Option option}.
+     *
+     * <ol>
+     *     <li>Returns the explicitly set value for the given option (if available).</li>
+     *     <li>Returns the default value for the given option (if available).</li>
+     *     <li>Throws a {@link NoSuchElementException}.</li>
+     * </ol>
+     *
+     * <p>Unlike {@link #get(Option)}, this method does not box values that have been parsed by a
+     * {@link BooleanValueParser}.</p>
+     *
+     * @param opt   the option to retrieve the value for
+     *
+     * @return  the value for the given option
+     *
+     * @throws NullPointerException     if the given option is {@code null}
+     * @throws IllegalArgumentException if the given option is <em>not</em> in the pool that this set was created from
+     * @throws NoSuchElementException   if neither a value nor a default value is available for the given option
+     *
+     * @since   0.4.0
+     */
+    public boolean getBoolean(Option<Boolean> opt) {
+        int ordinal = this.ordinalOf(opt);
+        return this.isPresent(ordinal) ? this.booleanAt(ordinal) : defaultValue(opt.getDefaultValue(), opt);
+    }
+
+    /**
+     * Parses all values of this set that have not been parsed yet.
+     *
+     * <p>Values are only parsed lazily if this set has been created by a {@link ParseContext} with
+     * {@link ParseContext.Builder#withLazyValues(boolean) lazy values}. For other sets, this method has no effect.</p>
+     *
+     * @return  this set
+     *
+     * @throws RuntimeException if a {@link ValueParser} rejects a value (the exception thrown by the parser is rethrown
+     *                          as is)
+     *
+     * @since   0.4.0
+     */
+    public OptionSet validateAll() {
+        long[] present = this.present;
+
+        for (int i = 0; i < present.length; i++) {
+            for (long word = present[i]; word != 0; word &= word - 1) {
+                int ordinal = (i << 6) + Long.numberOfTrailingZeros(word);
+                if (this.kinds[ordinal] == KIND_LAZY) ((LazyValue) this.values[ordinal]).get();
+            }
+        }
+
+        return this;
     }
 
     /**
@@ -238,8 +606,7 @@ public final class OptionSet {
      * @since   0.1.0
      */
     public boolean isSet(Argument<?> arg) {
-        if (!this.pool.contains(Objects.requireNonNull(arg))) throw new IllegalArgumentException();
-        return this.values.containsKey(arg);
+        return this.isPresent(this.ordinalOf(arg));
     }
 
     /**
@@ -255,8 +622,66 @@ public final class OptionSet {
      * @since   0.1.0
      */
     public boolean isSet(Option<?> opt) {
-        if (!this.pool.contains(Objects.requireNonNull(opt))) throw new IllegalArgumentException();
-        return this.values.containsKey(opt);
+        return this.isPresent(this.ordinalOf(opt));
+    }
+
+    /*
+     * A value that is parsed once it is first requested.
+     *
+     * The outcome (i.e. either the value or the exception thrown by the parser) is computed at most once and then
+     * shared by all threads (and by all copies of the set).
+     */
+    private static final class LazyValue {
+
+        @Nullable
+        private ValueParser<?> parser;
+
+        @Nullable
+        private String rawValue;
+
+        @Nullable
+        private volatile Object value;
+
+        @Nullable
+        private RuntimeException failure;
+
+        LazyValue(ValueParser<?> parser, String rawValue) {
+            this.parser = parser;
+            this.rawValue = rawValue;
+        }
+
+        Object get() {
+            Object value = this.value;
+
+            if (value == null) {
+                synchronized (this) {
+                    value = this.value;
+
+                    if (value == null) {
+                        assert this.parser != null && this.rawValue != null;
+
+                        try {
+                            this.value = value = Objects.requireNonNull(this.parser.parse(this.rawValue));
+                        } catch (RuntimeException e) {
+                            this.failure = e;
+                            this.value = value = this;
+                        }
+
+                        this.parser = null;
+                        this.rawValue = null;
+                    }
+                }
+            }
+
+            /* The failure is published by the volatile write of the value. */
+            if (value == this) {
+                assert this.failure != null;
+                throw this.failure;
+            }
+
+            return value;
+        }
+
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parses batches of inputs in parallel.
+ *
+ * <p>The input is split into chunks (using {@link Spliterator#trySplit()}) that are parsed by independent tasks. Each
+ * task reuses a single {@link ParseContext} for all inputs of its chunk. The results of the chunks are joined in
+ * encounter order.</p>
+ *
+ * @author  Leon Linhart
+ */
+final class ParallelParser {
+
+    /* The number of chunks per worker (to compensate for uneven splits and chunks of varying cost) */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    static List<OptionSet> parseAll(OptionPool pool, Spliterator<String[]> fragments, Executor executor) {
+        int parallelism = (executor instanceof ForkJoinPool)
+            ? ((ForkJoinPool) executor).getParallelism()
+            : Runtime.getRuntime().availableProcessors();
+
+        List<Spliterator<String[]>> chunks = new ArrayList<>();
+        split(fragments, 32 - Integer.numberOfLeadingZeros(parallelism * CHUNKS_PER_WORKER - 1), chunks);
+
+        /*
+         * Each task creates its own context. Since there are only a few chunks per worker, this is cheap, and (unlike
+         * thread-local contexts) the contexts do not outlive the invocation in long-lived worker threads.
+         */
+        List<CompletableFuture<List<OptionSet>>> futures = new ArrayList<>(chunks.size());
+        for (Spliterator<String[]> chunk : chunks) futures.add(CompletableFuture.supplyAsync(() -> parseChunk(ParseContext.of(pool), chunk), executor));
+
+        List<OptionSet> results = new ArrayList<>();
+
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.addAll(futures.get(i).join());
+            } catch (CompletionException e) {
+                for (int j = i + 1; j < futures.size(); j++) futures.get(j).cancel(false);
+
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+
+                throw e;
+            }
+        }
+
+        return results;
+    }
+
+    /*
+     * Splits the given spliterator (up to the given depth) and adds the resulting chunks in encounter order.
+     */
+    private static void split(Spliterator<String[]> spliterator, int depth, List<Spliterator<String[]>> chunks) {
+        Spliterator<String[]> prefix = (depth > 0) ? spliterator.trySplit() : null;
+
+        if (prefix == null) {
+            chunks.add(spliterator);
+        } else {
+            split(prefix, depth - 1, chunks);
+            split(spliterator, depth - 1, chunks);
+        }
+    }
+
+    private static List<OptionSet> parseChunk(ParseContext context, Spliterator<String[]> chunk) {
+        long size = chunk.estimateSize();
+        List<OptionSet> results = new ArrayList<>((size < 1024) ? (int) size : 1024);
+
+        chunk.forEachRemaining(fragments -> results.add(new OptionSet(context.parseFragments(fragments))));
+        return results;
+    }
+
+    private ParallelParser() {}
+
+}
@@ -0,0 +1,553 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import com.github.themrmilchmann.mjl.options.internal.FragmentSource;
+import com.github.themrmilchmann.mjl.options.internal.FragmentTokenizer;
+import com.github.themrmilchmann.mjl.options.internal.MappedLineReader;
+
+/**
+ * A {@code ParseContext} is a reusable parser that is bound to a single {@link OptionPool}.
+ *
+ * <p>A context retains its storage between invocations. Once warmed up, parsing with a context does not allocate any
+ * memory besides the parsed values themselves (and values that inherently require allocation such as dynamic options
+ * and vararg lists). To achieve this, a context returns the same {@link OptionSet} for every successful invocation.
+ * <b>The returned set is a view of the context and is only valid until the next invocation of any parse method of the
+ * context.</b> Use {@link OptionParser#parseFragments(OptionPool, String...)} instead if the result must outlive
+ * subsequent parsing.</p>
+ *
+ * <p>A context is <em>not</em> thread-safe. A common pattern is to use one context per thread.</p>
+ *
+ * @since   0.4.0
+ *
+ * @author  Leon Linhart
+ */
+public final class ParseContext {
+
+    /**
+     * Returns a new {@code ParseContext} for the given {@link OptionPool pool}.
+     *
+     * @param pool  the pool of available parameters
+     *
+     * @return  a new context for the given pool
+     *
+     * @throws NullPointerException if the given pool is {@code null}
+     *
+     * @since   0.4.0
+     */
+    public static ParseContext of(OptionPool pool) {
+        return builder(pool).build();
+    }
+
+    /**
+     * Returns a builder for a {@code ParseContext} for the given {@link OptionPool pool}.
+     *
+     * @param pool  the pool of available parameters
+     *
+     * @return  a builder instance
+     *
+     * @throws NullPointerException if the given pool is {@code null}
+     *
+     * @since   0.4.0
+     */
+    public static Builder builder(OptionPool pool) {
+        return new Builder(Objects.requireNonNull(pool));
+    }
+
+    /* The maximum size of a single mapping of a file (and thus of a single line) */
+    private static final int MAPPING_WINDOW_SIZE = 1 << 30;
+
+    final OptionPool pool;
+
+    final Map<String, String> dynamics = new HashMap<>();
+    final OptionSet set;
+
+    private final FragmentSource.ArraySource arraySource = new FragmentSource.ArraySource();
+
+    @Nullable
+    private FragmentTokenizer tokenizer;
+
+    /* The buffer that wraps the array that was last passed to #parseLine(byte[], int, int) */
+    @Nullable
+    private ByteBuffer wrapper;
+
+    private final boolean isStackless;
+    final boolean isLazy;
+
+    private final ParseResult success;
+
+    /* The error that caused the last failure (see OptionParser#parse) */
+    @Nullable
+    ParseError error;
+
+    boolean isParsing;
+
+    private ParseContext(Builder builder) {
+        this.pool = builder.pool;
+        this.set = new OptionSet(this.pool, Collections.unmodifiableMap(this.dynamics));
+        this.isStackless = builder.isStackless;
+        this.isLazy = builder.isLazy;
+        this.success = new ParseResult(this.set, null);
+    }
+
+    /**
+     * Returns the {@link OptionPool pool} this context is bound to.
+     *
+     * @return  the pool this context is bound to
+     *
+     * @since   0.4.0
+     */
+    public OptionPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Parses parameters from the given input.
+     *
+     * <p>The returned set is only valid until the next invocation of any parse method of this context.</p>
+     *
+     * @param fragments the input to be parsed
+     *
+     * @return  a view of the parsed values
+     *
+     * @throws IllegalStateException        if this context is already parsing (that is, if this method is reentered
+     *                                      by a {@link ValueParser})
+     * @throws ParsingException             if any error occurs during parsing
+     * @throws RestrictionViolatedException if any of the pool's restrictions have been violated
+     *
+     * @see #parseLine(String)
+     *
+     * @since   0.4.0
+     */
+    public OptionSet parseFragments(String... fragments) {
+        if (this.isParsing) throw new IllegalStateException("Context is already in use");
+        return this.parse(this.arraySource.reset(fragments));
+    }
+
+    /**
+     * Parses parameters from the given input.
+     *
+     * <p>The returned set is only valid until the next invocation of any parse method of this context.</p>
+     *
+     * @param line  the input to be parsed
+     *
+     * @return  a view of the parsed values
+     *
+     * @throws IllegalStateException        if this context is already parsing (that is, if this method is reentered
+     *                                      by a {@link ValueParser})
+     * @throws ParsingException             if any error occurs during parsing
+     * @throws RestrictionViolatedException if any of the pool's restrictions have been violated
+     *
+     * @see #parseFragments(String...)
+     * @see OptionParser#lineToFragments(String)
+     *
+     * @since   0.4.0
+     */
+    public OptionSet parseLine(String line) {
+        return this.parseLine((CharSequence) line);
+    }
+
+    /**
+     * Parses parameters from the given input.
+     *
+     * <p>The input is split into fragments lazily (as specified by {@link OptionParser#lineToFragments(String)}) without
+     * materializing all fragments at once. The given sequence must not be modified while it is being parsed.</p>
+     *
+     * <p>The returned set is only valid until the next invocation of any parse method of this context.</p>
+     *
+     * @param line  the input to be parsed
+     *
+     * @return  a view of the parsed values
+     *
+     * @throws IllegalStateException        if this context is already parsing (that is, if this method is reentered
+     *                                      by a {@link ValueParser})
+     * @throws ParsingException             if any error occurs during parsing
+     * @throws RestrictionViolatedException if any of the pool's restrictions have been violated
+     *
+     * @see #parseLine(Reader)
+     *
+     * @since   0.4.0
+     */
+    public OptionSet parseLine(CharSequence line) {
+        if (this.isParsing) throw new IllegalStateException("Context is already in use");
+        return this.parse(this.tokenizer().reset(line));
+    }
+
+    /**
+     * Parses parameters from the UTF-8 encoded input between the given buffer's position and limit.
+     *
+     * <p>The input is split into fragments in place (as specified by {@link OptionParser#lineToFragments(String)})
+     * without decoding it into a string first. Option tokens are matched against the pool without decoding them, and
+     * values are only decoded if a {@link ValueParser} requires them as string. (The predefined parsers for primitive
+     * values parse them in place.) The buffer is accessed using absolute indices only. Thus, its position and limit are
+     * not modified. The buffer's content must not be modified while it is being parsed.</p>
+     *
+     * <p>The returned set is only valid until the next invocation of any parse method of this context.</p>
+     *
+     * @param bytes the input to be parsed
+     *
+     * @return  a view of the parsed values
+     *
+     * @throws IllegalStateException        if this context is already parsing (that is, if this method is reentered
+     *                                      by a {@link ValueParser})
+     * @throws ParsingException             if any error occurs during parsing (including malformed UTF-8 input)
+     * @throws RestrictionViolatedException if any of the pool's restrictions have been violated
+     *
+     * @see #parseLine(byte[], int, int)
+     *
+     * @since   0.4.0
+     */
+    public OptionSet parseLine(ByteBuffer bytes) {
+        if (this.isParsing) throw new IllegalStateException("Context is already in use");
+        return this.parse(this.tokenizer().reset(bytes, bytes.position(), bytes.limit()));
+    }
+
+    /**
+     * Parses parameters from the UTF-8 encoded input in the given range of the given array.
+     *
+     * <p>See {@link #parseLine(ByteBuffer)} for details.</p>
+     *
+     * <p>The returned set is only valid until the next invocation of any parse method of this context.</p>
+     *
+     * @param bytes     the array that contains the input to be parsed
+     * @param offset    the index of the first byte of the input
+     * @param length    the length of the input (in bytes)
+     *
+     * @return  a view of the parsed values
+     *
+     * @throws IllegalStateException        if this context is already parsing (that is, if this method is reentered
+     *                                      by a {@link ValueParser})
+     * @throws IndexOutOfBoundsException    if the range is out of the array's bounds
+     * @throws ParsingException             if any error occurs during parsing (including malformed UTF-8 input)
+     * @throws RestrictionViolatedException if any of the pool's restrictions have been violated
+     *
+     * @since   0.4.0
+     */
+    public OptionSet parseLine(byte[] bytes, int offset, int length) {
+        if (this.isParsing) throw new IllegalStateException("Context is already in use");
+        return this.parse(this.tokenizer().reset(this.wrap(bytes, offset, length), offset, offset + length));
+    }
+
+    /**
+     * Parses parameters from the given input.
+     *
+     * <p>The input is read until the end of the stream is reached and split into fragments lazily (as specified by
+     * {@link OptionParser#lineToFragments(String)}). Thus, the memory required for tokenizing the input is bounded by
+     * the length of the longest fragment. Line terminators are treated as whitespace. The reader is not closed.</p>
+     *
+     * <p>The returned set is only valid until the next invocation of any parse method of this context.</p>
+     *
+     * @param reader    the input to be parsed
+     *
+     * @return  a view of the parsed values
+     *
+     * @throws IllegalStateException        if this context is already parsing (that is, if this method is reentered
+     *                                      by a {@link ValueParser})
+     * @throws IOException                  if an I/O error occurs while reading from the given reader
+     * @throws ParsingException             if any error occurs during parsing
+     * @throws RestrictionViolatedException if any of the pool's restrictions have been violated
+     *
+     * @see #parseLine(CharSequence)
+     *
+     * @since   0.4.0
+     */
+    public OptionSet parseLine(Reader reader) throws IOException {
+        if (this.isParsing) throw new IllegalStateException("Context is already in use");
+
+        try {
+            return this.parse(this.tokenizer().reset(reader));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parses parameters from the given input without throwing an exception if the input is invalid.
+     *
+     * <p>The set of a successful result is only valid until the next invocation of any parse method of this
+     * context.</p>
+     *
+     * @param fragments the input to be parsed
+     *
+     * @return  the result holding a view of the parsed values, or the error that occurred during parsing
+     *
+     * @throws IllegalStateException    if this context is already parsing (that is, if this method is reentered by a
+     *                                  {@link ValueParser})
+     *
+     * @see #parseFragments(String...)
+     *
+     * @since   0.4.0
+     */
+    public ParseResult tryParseFragments(String... fragments) {
+        if (this.isParsing) throw new IllegalStateException("Context is already in use");
+        return this.tryParse(this.arraySource.reset(fragments));
+    }
+
+    /**
+     * Parses parameters from the given input without throwing an exception if the input is invalid.
+     *
+     * <p>The set of a successful result is only valid until the next invocation of any parse method of this
+     * context.</p>
+     *
+     * @param line  the input to be parsed
+     *
+     * @return  the result holding a view of the parsed values, or the error that occurred during parsing
+     *
+     * @throws IllegalStateException    if this context is already parsing (that is, if this method is reentered by a
+     *                                  {@link ValueParser})
+     *
+     * @see #parseLine(CharSequence)
+     *
+     * @since   0.4.0
+     */
+    public ParseResult tryParseLine(CharSequence line) {
+        if (this.isParsing) throw new IllegalStateException("Context is already in use");
+        return this.tryParse(this.tokenizer().reset(line));
+    }
+
+    /**
+     * Parses parameters from the UTF-8 encoded input between the given buffer's position and limit without throwing an
+     * exception if the input is invalid.
+     *
+     * <p>The set of a successful result is only valid until the next invocation of any parse method of this
+     * context.</p>
+     *
+     * @param bytes the input to be parsed
+     *
+     * @return  the result holding a view of the parsed values, or the error that occurred during parsing
+     *
+     * @throws IllegalStateException    if this context is already parsing (that is, if this method is reentered by a
+     *                                  {@link ValueParser})
+     *
+     * @see #parseLine(ByteBuffer)
+     *
+     * @since   0.4.0
+     */
+    public ParseResult tryParseLine(ByteBuffer bytes) {
+        if (this.isParsing) throw new IllegalStateException("Context is already in use");
+        return this.tryParse(this.tokenizer().reset(bytes, bytes.position(), bytes.limit()));
+    }
+
+    /**
+     * Parses each line of the given file.
+     *
+     * <p>The file is memory-mapped and each line is tokenized in place (as specified by
+     * {@link OptionParser#lineToFragments(String)}) without copying it into a string. The file must be encoded in
+     * UTF-8. Lines are delimited by line feeds ({@code '\n'}). A trailing carriage return is ignored. Blank lines are
+     * skipped (but still counted). Lines must not be longer than 1GB.</p>
+     *
+     * <p>The result of each line is passed to the given consumer: The set of parsed values of a line is passed to
+     * {@link LineConsumer#accept(long, OptionSet)} and is only valid until that method returns. Failures are passed
+     * to {@link LineConsumer#reject(long, ParsingException)}. (Malformed UTF-8 input and exceptions thrown by
+     * {@link ValueParser}s are reported as {@link ParsingException} for the affected line.)</p>
+     *
+     * @param file      the file to be parsed
+     * @param consumer  the consumer for the results of the lines
+     *
+     * @throws IllegalStateException    if this context is already parsing
+     * @throws IOException              if an I/O error occurs while reading the file, or if a line is too long
+     * @throws NullPointerException     if {@code null} is passed to any of the parameters
+     *
+     * @see OptionParser#parseLines(OptionPool, Path, LineConsumer)
+     *
+     * @since   0.4.0
+     */
+    public void parseLines(Path file, LineConsumer consumer) throws IOException {
+        Objects.requireNonNull(consumer);
+        if (this.isParsing) throw new IllegalStateException("Context is already in use");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedLineReader lines = new MappedLineReader(channel, MAPPING_WINDOW_SIZE);
+            FragmentTokenizer tokenizer = this.tokenizer();
+
+            for (long lineNumber = 1; lines.next(); lineNumber++) {
+                try {
+                    /*
+                     * The tokenizer is reset for every line since it might have been used by the consumer (to parse
+                     * unrelated input with this context) in the meantime.
+                     */
+                    if (tokenizer.reset(lines.buffer(), lines.start(), lines.end()).peek() == null) continue;
+                } catch (ParsingException e) {
+                    consumer.reject(lineNumber, e);
+                    continue;
+                }
+
+                ParseResult result = this.tryParse(tokenizer);
+
+                if (result.isSuccess()) {
+                    consumer.accept(lineNumber, this.set);
+                } else {
+                    consumer.reject(lineNumber, result.getError().toException(!this.isStackless));
+                }
+            }
+        }
+    }
+
+    private FragmentTokenizer tokenizer() {
+        if (this.tokenizer == null) this.tokenizer = new FragmentTokenizer();
+        return this.tokenizer;
+    }
+
+    /*
+     * The wrapper is reused if the same array is parsed repeatedly (e.g. the receive buffer of a connection).
+     */
+    private ByteBuffer wrap(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > bytes.length - length) throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array length " + bytes.length);
+
+        ByteBuffer wrapper = this.wrapper;
+        if (wrapper == null || wrapper.array() != bytes) this.wrapper = wrapper = ByteBuffer.wrap(bytes);
+
+        return wrapper;
+    }
+
+    /*
+     * Callers must check that this context is not already parsing before resetting any source.
+     */
+    private OptionSet parse(FragmentSource fragments) {
+        ParseResult result = this.tryParse(fragments);
+        if (result.isSuccess()) return this.set;
+
+        ParseError error = result.getError();
+
+        // Exceptions thrown by value parsers are rethrown as is.
+        RuntimeException cause = error.getCause();
+        if (cause != null) throw cause;
+
+        throw error.toException(!this.isStackless);
+    }
+
+    private ParseResult tryParse(FragmentSource fragments) {
+        this.isParsing = true;
+
+        try {
+            this.set.clear();
+            if (!this.dynamics.isEmpty()) this.dynamics.clear();
+
+            OptionParser.parse(this, fragments);
+            return this.success;
+        } catch (Failure e) {
+            assert this.error != null;
+
+            ParseResult result = new ParseResult(null, this.error);
+            this.error = null;
+
+            return result;
+        } catch (ParsingException e) {
+            // Thrown by the source of fragments
+            return new ParseResult(null, ParseError.malformedInput(e));
+        } finally {
+            this.isParsing = false;
+        }
+    }
+
+    /**
+     * A builder for a {@link ParseContext}.
+     *
+     * @since   0.4.0
+     */
+    public static final class Builder {
+
+        private final OptionPool pool;
+        private boolean isStackless;
+        private boolean isLazy;
+
+        private Builder(OptionPool pool) {
+            this.pool = pool;
+        }
+
+        /**
+         * Sets whether exceptions thrown by the context omit their stack traces.
+         *
+         * <p>Creating a stack trace typically dominates the cost of a failed invocation. Omitting it is useful if
+         * failures are expected and handled close to the invocation (where the stack trace would not provide any
+         * additional information). Exceptions thrown by {@link ValueParser}s are not affected. Defaults to
+         * {@code false}.</p>
+         *
+         * @param value whether exceptions thrown by the context omit their stack traces
+         *
+         * @return  this builder instance
+         *
+         * @see ParseContext#tryParseFragments(String...)
+         *
+         * @since   0.4.0
+         */
+        public Builder withStacklessExceptions(boolean value) {
+            this.isStackless = value;
+            return this;
+        }
+
+        /**
+         * Sets whether values are parsed lazily.
+         *
+         * <p>If enabled, the context stores the raw values of arguments and options instead of parsing them
+         * immediately. A value is parsed when it is first requested from the {@link OptionSet set} (and at most once,
+         * even if the set is accessed concurrently). Thus, exceptions thrown by {@link ValueParser}s are deferred to
+         * the first access of the respective value. Use {@link OptionSet#validateAll()} to parse all values at once.
+         * Values of vararg arguments are always parsed immediately. Defaults to {@code false}.</p>
+         *
+         * <p>This is useful for pools with many parameters (or with expensive value parsers) of which only a few are
+         * accessed.</p>
+         *
+         * @param value whether values are parsed lazily
+         *
+         * @return  this builder instance
+         *
+         * @since   0.4.0
+         */
+        public Builder withLazyValues(boolean value) {
+            this.isLazy = value;
+            return this;
+        }
+
+        /**
+         * Returns a new {@link ParseContext} with the configuration of this builder.
+         *
+         * @return  a new context
+         *
+         * @since   0.4.0
+         */
+        public ParseContext build() {
+            return new ParseContext(this);
+        }
+
+    }
+
+    /*
+     * Thrown by the parser to unwind after an error has been recorded in the context.
+     */
+    static final class Failure extends RuntimeException {
+
+        static final Failure INSTANCE = new Failure();
+
+        private Failure() {
+            super(null, null, false, false);
+        }
+
+    }
+
+}
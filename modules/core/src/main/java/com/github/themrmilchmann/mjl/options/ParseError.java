@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options;
+
+import java.util.Collections;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * A {@code ParseError} describes why parsing failed.
+ *
+ * <p>Unlike a {@link ParsingException}, an error does not capture a stack trace and is thus cheap to create.</p>
+ *
+ * @see ParseResult
+ *
+ * @since   0.4.0
+ *
+ * @author  Leon Linhart
+ */
+public final class ParseError {
+
+    /**
+     * The kinds of errors that may occur during parsing.
+     *
+     * @since   0.4.0
+     */
+    public enum Kind {
+        /** The input could not be decoded (e.g. malformed UTF-8 input). */
+        MALFORMED_INPUT,
+        /** An argument was specified but the pool has no (further) arguments. */
+        UNEXPECTED_ARGUMENT,
+        /** A fragment that starts like an option is malformed. */
+        ILLEGAL_FORMAT,
+        /** An option is not recognized. */
+        UNRECOGNIZED_OPTION,
+        /** An abbreviated option token is the prefix of multiple options. */
+        AMBIGUOUS_OPTION,
+        /** An option (or dynamic option) was specified more than once. */
+        DUPLICATE_OPTION,
+        /** A value was specified for a marker-only option. */
+        UNEXPECTED_VALUE,
+        /** No value was specified for an option that requires one. */
+        MISSING_VALUE,
+        /** Regular and marker-only options were chained. */
+        ILLEGAL_CHAIN,
+        /** A {@link ValueParser} rejected a value. */
+        INVALID_VALUE,
+        /** At least one of the pool's restrictions has been violated. */
+        RESTRICTION_VIOLATED
+    }
+
+    static ParseError of(Kind kind, int fragmentIndex, @Nullable Option<?> option, String message) {
+        return new ParseError(kind, fragmentIndex, option, null, message, null, null, '\0', Collections.emptySet());
+    }
+
+    static ParseError unrecognizedOption(int fragmentIndex, String token) {
+        return new ParseError(Kind.UNRECOGNIZED_OPTION, fragmentIndex, null, null, "Unrecognized option --" + token, null, token, '\0', Collections.emptySet());
+    }
+
+    static ParseError unrecognizedOption(int fragmentIndex, String tokens, char token) {
+        return new ParseError(Kind.UNRECOGNIZED_OPTION, fragmentIndex, null, null, "Unrecognized option -" + token + " in -" + tokens, null, tokens, token, Collections.emptySet());
+    }
+
+    static ParseError invalidValue(int fragmentIndex, @Nullable Option<?> option, @Nullable Argument<?> argument, RuntimeException cause) {
+        String message = "Invalid value for " + ((option != null) ? option : argument) + ((cause.getMessage() != null) ? ": " + cause.getMessage() : "");
+        return new ParseError(Kind.INVALID_VALUE, fragmentIndex, option, argument, message, cause, null, '\0', Collections.emptySet());
+    }
+
+    static ParseError malformedInput(ParsingException cause) {
+        return new ParseError(Kind.MALFORMED_INPUT, -1, null, null, String.valueOf(cause.getMessage()), cause, null, '\0', Collections.emptySet());
+    }
+
+    static ParseError restrictionViolated(Set<Restriction> restrictions) {
+        return new ParseError(Kind.RESTRICTION_VIOLATED, -1, null, null, "Violated restrictions: " + restrictions, null, null, '\0', restrictions);
+    }
+
+    private final Kind kind;
+    private final int fragmentIndex;
+
+    @Nullable
+    private final Option<?> option;
+
+    @Nullable
+    private final Argument<?> argument;
+
+    private final String message;
+
+    @Nullable
+    private final RuntimeException cause;
+
+    /* The token(s) of an unrecognized option, and the unrecognized short token (if any) */
+    @Nullable
+    private final String tokens;
+    private final char token;
+
+    private final Set<Restriction> restrictions;
+
+    private ParseError(
+        Kind kind,
+        int fragmentIndex,
+        @Nullable Option<?> option,
+        @Nullable Argument<?> argument,
+        String message,
+        @Nullable RuntimeException cause,
+        @Nullable String tokens,
+        char token,
+        Set<Restriction> restrictions
+    ) {
+        this.kind = kind;
+        this.fragmentIndex = fragmentIndex;
+        this.option = option;
+        this.argument = argument;
+        this.message = message;
+        this.cause = cause;
+        this.tokens = tokens;
+        this.token = token;
+        this.restrictions = restrictions;
+    }
+
+    /**
+     * Returns the kind of this error.
+     *
+     * @return  the kind of this error
+     *
+     * @since   0.4.0
+     */
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Returns the (zero-based) index of the fragment that caused this error, or {@code -1} if the error cannot be
+     * attributed to a single fragment (as is the case for {@link Kind#RESTRICTION_VIOLATED violated restrictions} and
+     * {@link Kind#MALFORMED_INPUT malformed input}).
+     *
+     * <p>When parsing a line, the index refers to the fragments the line is split into.</p>
+     *
+     * @return  the index of the fragment that caused this error, or {@code -1}
+     *
+     * @since   0.4.0
+     */
+    public int getFragmentIndex() {
+        return this.fragmentIndex;
+    }
+
+    /**
+     * Returns the option this error refers to, or {@code null} if this error does not refer to a known option.
+     *
+     * @return  the option this error refers to, or {@code null}
+     *
+     * @since   0.4.0
+     */
+    @Nullable
+    public Option<?> getOption() {
+        return this.option;
+    }
+
+    /**
+     * Returns the argument this error refers to, or {@code null} if this error does not refer to an argument.
+     *
+     * @return  the argument this error refers to, or {@code null}
+     *
+     * @since   0.4.0
+     */
+    @Nullable
+    public Argument<?> getArgument() {
+        return this.argument;
+    }
+
+    /**
+     * Returns a detailed message describing this error.
+     *
+     * @return  a detailed message describing this error
+     *
+     * @since   0.4.0
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * Returns the exception that was thrown by a {@link ValueParser} for {@link Kind#INVALID_VALUE invalid values} (or
+     * while decoding {@link Kind#MALFORMED_INPUT malformed input}), or {@code null}.
+     *
+     * @return  the exception that caused this error, or {@code null}
+     *
+     * @since   0.4.0
+     */
+    @Nullable
+    public RuntimeException getCause() {
+        return this.cause;
+    }
+
+    /**
+     * Returns the restrictions that have been violated (if this error is of kind {@link Kind#RESTRICTION_VIOLATED}), or
+     * an empty set.
+     *
+     * @return  the restrictions that have been violated
+     *
+     * @since   0.4.0
+     */
+    public Set<Restriction> getViolatedRestrictions() {
+        return this.restrictions;
+    }
+
+    /**
+     * Returns a new exception for this error.
+     *
+     * <p>The type of the exception is the same as the type of the exception that would have been thrown when parsing the
+     * same input with a throwing method (such as {@link ParseContext#parseFragments(String...)}). The only exception to
+     * this rule are exceptions thrown by {@link ValueParser}s: Throwing methods rethrow these as is, whereas this
+     * method wraps them in a {@code ParsingException} (unless they already are one).</p>
+     *
+     * @return  a new exception for this error
+     *
+     * @since   0.4.0
+     */
+    public ParsingException toException() {
+        return this.toException(true);
+    }
+
+    ParsingException toException(boolean writableStackTrace) {
+        switch (this.kind) {
+            case UNRECOGNIZED_OPTION:
+                assert this.tokens != null;
+
+                return (this.token == '\0')
+                    ? new UnrecognizedOptionException(this.tokens, writableStackTrace)
+                    : new UnrecognizedOptionException(this.tokens, this.token, writableStackTrace);
+            case RESTRICTION_VIOLATED:
+                return new RestrictionViolatedException(this.restrictions, writableStackTrace);
+            case MALFORMED_INPUT:
+            case INVALID_VALUE:
+                if (this.cause instanceof ParsingException) return (ParsingException) this.cause;
+                return new ParsingException(this.message, this.cause, writableStackTrace);
+            default:
+                return new ParsingException(this.message, this.cause, writableStackTrace);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ParseError{" + this.kind + ", fragment=" + this.fragmentIndex + ", message=" + this.message + "}";
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options;
+
+import javax.annotation.Nullable;
+
+/**
+ * The result of parsing an input. A result either holds the {@link OptionSet set} of parsed values or an
+ * {@link ParseError error}.
+ *
+ * @see ParseContext#tryParseFragments(String...)
+ * @see OptionParser#tryParseFragments(OptionPool, String...)
+ *
+ * @since   0.4.0
+ *
+ * @author  Leon Linhart
+ */
+public final class ParseResult {
+
+    @Nullable
+    private final OptionSet set;
+
+    @Nullable
+    private final ParseError error;
+
+    ParseResult(@Nullable OptionSet set, @Nullable ParseError error) {
+        assert (set == null) != (error == null);
+
+        this.set = set;
+        this.error = error;
+    }
+
+    /**
+     * Returns whether parsing succeeded.
+     *
+     * @return  whether parsing succeeded
+     *
+     * @since   0.4.0
+     */
+    public boolean isSuccess() {
+        return this.set != null;
+    }
+
+    /**
+     * Returns the set of parsed values.
+     *
+     * @return  the set of parsed values
+     *
+     * @throws IllegalStateException    if parsing failed
+     *
+     * @since   0.4.0
+     */
+    public OptionSet getOptionSet() {
+        if (this.set == null) throw new IllegalStateException("Parsing failed: " + this.error);
+        return this.set;
+    }
+
+    /**
+     * Returns the error that occurred during parsing.
+     *
+     * @return  the error that occurred during parsing
+     *
+     * @throws IllegalStateException    if parsing succeeded
+     *
+     * @since   0.4.0
+     */
+    public ParseError getError() {
+        if (this.error == null) throw new IllegalStateException("Parsing succeeded");
+        return this.error;
+    }
+
+    /**
+     * Returns the set of parsed values, or throws an exception for the error that occurred during parsing.
+     *
+     * @return  the set of parsed values
+     *
+     * @throws ParsingException if parsing failed
+     *
+     * @see ParseError#toException()
+     *
+     * @since   0.4.0
+     */
+    public OptionSet getOrThrow() {
+        if (this.set == null) {
+            assert this.error != null;
+            throw this.error.toException();
+        }
+
+        return this.set;
+    }
+
+    @Override
+    public String toString() {
+        return (this.set != null) ? "ParseResult{success}" : "ParseResult{" + this.error + "}";
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package com.github.themrmilchmann.mjl.options;
 
+import javax.annotation.Nullable;
+
 /**
  * A {@code ParsingException} indicates failure while {@link OptionParser parsing} a command.
  *
@@ -56,4 +58,18 @@ public class ParsingException extends RuntimeException {
         super(message, cause);
     }
 
-}
\ No newline at end of file
+    /**
+     * Creates a new {@code ParsingException}.
+     *
+     * @param message               a detailed error message
+     * @param cause                 the cause
+     * @param writableStackTrace    whether the stack trace should be writable (Exceptions without a stack trace are
+     *                              considerably cheaper to create.)
+     *
+     * @since   0.4.0
+     */
+    protected ParsingException(@Nullable String message, @Nullable Throwable cause, boolean writableStackTrace) {
+        super(message, cause, writableStackTrace, writableStackTrace);
+    }
+
+}
@@ -126,7 +126,7 @@ public final class Restriction {
 
     private final RestrictionImpl impl;
 
-    private Restriction(RestrictionImpl impl) {
+    Restriction(RestrictionImpl impl) {
         this.impl = impl;
     }
 
@@ -167,6 +167,10 @@ public final class Restriction {
         return this.impl.getOptions();
     }
 
+    RestrictionImpl getImpl() {
+        return this.impl;
+    }
+
     Set<Set<KNFFormula.Literal<Option<?>>>> getClauses() {
         return this.impl.getClauses();
     }
@@ -28,7 +28,8 @@ public final class RestrictionViolatedException extends ParsingException {
 
     private Set<Restriction> restrictions;
 
-    RestrictionViolatedException(Set<Restriction> restrictions) {
+    RestrictionViolatedException(Set<Restriction> restrictions, boolean writableStackTrace) {
+        super(null, null, writableStackTrace);
         this.restrictions = restrictions;
     }
 
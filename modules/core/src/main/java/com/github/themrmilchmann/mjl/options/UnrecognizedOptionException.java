@@ -28,15 +28,15 @@ public final class UnrecognizedOptionException extends ParsingException {
     private final String identifier;
     private final String unrecognized;
 
-    UnrecognizedOptionException(String identifier) {
-        super();
-        this.identifier = String.format("--%s", identifier);
+    UnrecognizedOptionException(String identifier, boolean writableStackTrace) {
+        super(null, null, writableStackTrace);
+        this.identifier = "--" + identifier;
         this.unrecognized = identifier;
     }
 
-    UnrecognizedOptionException(String identifier, char unrecognized) {
-        super();
-        this.identifier = String.format("-%s", identifier);
+    UnrecognizedOptionException(String identifier, char unrecognized, boolean writableStackTrace) {
+        super(null, null, writableStackTrace);
+        this.identifier = "-" + identifier;
         this.unrecognized = String.valueOf(unrecognized);
     }
 
@@ -15,10 +15,14 @@
  */
 package com.github.themrmilchmann.mjl.options;
 
+import com.github.themrmilchmann.mjl.options.internal.Numbers;
+
 /**
  * A {@code ValueParser} provides a conversion method to convert a {@linkplain String} to a value.
  *
- * <p>This class contains predefined parsers for frequently used primitives.</p>
+ * <p>This class contains predefined parsers for frequently used primitives. Parsers for {@code int}, {@code long},
+ * {@code double} and {@code boolean} values should implement the respective specialization ({@link IntValueParser},
+ * {@link LongValueParser}, {@link DoubleValueParser} and {@link BooleanValueParser}) to avoid boxing.</p>
  *
  * @param <T>   the type of the parsed value
  *
@@ -32,9 +36,24 @@ public interface ValueParser<T> {
     /**
      * A simple parser for parsing {@code Boolean} values.
      *
+     * <p>This parser interprets {@code "1"} and {@code "true"} (regardless of casing) as {@code true}, and any other
+     * value as {@code false}. Ranges are parsed in place.</p>
+     *
      * @since   0.1.0
      */
-    ValueParser<Boolean> BOOLEAN = (it) -> it.equals("1") || it.equalsIgnoreCase("true");
+    BooleanValueParser BOOLEAN = new BooleanValueParser() {
+
+        @Override
+        public boolean parseBoolean(String string) {
+            return string.equals("1") || string.equalsIgnoreCase("true");
+        }
+
+        @Override
+        public boolean parseBoolean(CharSequence src, int start, int end) {
+            return Numbers.parseBoolean(src, start, end);
+        }
+
+    };
 
     /**
      * A simple parser for parsing {@code Byte} values.
@@ -68,20 +87,44 @@ public interface ValueParser<T> {
     /**
      * A simple parser for parsing {@code Integer} values.
      *
-     * <p>This parser delegates to {@link Integer#valueOf(String)}.</p>
+     * <p>This parser delegates to {@link Integer#parseInt(String)}. Ranges are parsed in place (with the same semantics).</p>
      *
      * @since   0.1.0
      */
-    ValueParser<Integer> INT = Integer::valueOf;
+    IntValueParser INT = new IntValueParser() {
+
+        @Override
+        public int parseInt(String string) {
+            return Integer.parseInt(string);
+        }
+
+        @Override
+        public int parseInt(CharSequence src, int start, int end) {
+            return Numbers.parseInt(src, start, end);
+        }
+
+    };
 
     /**
      * A simple parser for parsing {@code Long} values.
      *
-     * <p>This parser delegates to {@link Long#valueOf(String)}.</p>
+     * <p>This parser delegates to {@link Long#parseLong(String)}. Ranges are parsed in place (with the same semantics).</p>
      *
      * @since   0.1.0
      */
-    ValueParser<Long> LONG = Long::valueOf;
+    LongValueParser LONG = new LongValueParser() {
+
+        @Override
+        public long parseLong(String string) {
+            return Long.parseLong(string);
+        }
+
+        @Override
+        public long parseLong(CharSequence src, int start, int end) {
+            return Numbers.parseLong(src, start, end);
+        }
+
+    };
 
     /**
      * A simple parser for parsing {@code Float} values.
@@ -95,11 +138,23 @@ public interface ValueParser<T> {
     /**
      * A simple parser for parsing {@code Double} values.
      *
-     * <p>This parser delegates to {@link Double#valueOf(String)}.</p>
+     * <p>This parser delegates to {@link Double#parseDouble(String)}. Ranges are parsed in place (with the same semantics).</p>
      *
      * @since   0.1.0
      */
-    ValueParser<Double> DOUBLE = Double::valueOf;
+    DoubleValueParser DOUBLE = new DoubleValueParser() {
+
+        @Override
+        public double parseDouble(String string) {
+            return Double.parseDouble(string);
+        }
+
+        @Override
+        public double parseDouble(CharSequence src, int start, int end) {
+            return Numbers.parseDouble(src, start, end);
+        }
+
+    };
 
     /**
      * A simple parser for parsing {@code String} values.
@@ -124,4 +179,26 @@ public interface ValueParser<T> {
      */
     T parse(String string);
 
+    /**
+     * Parse a value from the given range of a {@linkplain CharSequence}.
+     *
+     * <p>This method enables parsing values in place (e.g. the value of a {@code --option=value} fragment) without
+     * copying them. By default, this method delegates to {@link #parse(String)}. Implementations should override this
+     * method if they can parse the range in place.</p>
+     *
+     * @param src   the {@code CharSequence} that contains the value
+     * @param start the index of the first character of the value (inclusive)
+     * @param end   the index of the last character of the value (exclusive)
+     *
+     * @return  the parsed value (must not be {@code null})
+     *
+     * @throws IndexOutOfBoundsException    if the range is out of bounds
+     * @throws ParsingException             if an error occurs while parsing
+     *
+     * @since   0.4.0
+     */
+    default T parse(CharSequence src, int start, int end) {
+        return this.parse(src.subSequence(start, end).toString());
+    }
+
 }
\ No newline at end of file
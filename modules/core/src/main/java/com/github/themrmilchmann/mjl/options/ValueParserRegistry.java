@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * A {@code ValueParserRegistry} assigns unique names to {@link ValueParser}s.
+ *
+ * <p>Since parsers are arbitrary code, they cannot be stored in an {@link OptionPool#writeSnapshot(OutputStream,
+ * ValueParserRegistry) snapshot} of a pool. Instead, a snapshot refers to parsers by their names, and the parsers are
+ * resolved through a registry when the snapshot is {@link OptionPool#readSnapshot(InputStream, ValueParserRegistry)
+ * read}. Parsers are compared by identity.</p>
+ *
+ * <p>Every registry contains the predefined parsers of {@link ValueParser} (named after their respective constants,
+ * e.g. {@code "INT"} for {@link ValueParser#INT}).</p>
+ *
+ * @since   0.4.0
+ *
+ * @author  Leon Linhart
+ */
+public final class ValueParserRegistry {
+
+    private static final ValueParserRegistry DEFAULT = builder().build();
+
+    /**
+     * Returns a registry that contains only the predefined parsers.
+     *
+     * @return  a registry that contains only the predefined parsers
+     *
+     * @since   0.4.0
+     */
+    public static ValueParserRegistry defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a builder for a {@code ValueParserRegistry}.
+     *
+     * @return  a builder instance
+     *
+     * @since   0.4.0
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final Map<String, ValueParser<?>> parsers;
+    private final Map<ValueParser<?>, String> names;
+
+    private ValueParserRegistry(Builder builder) {
+        this.parsers = new HashMap<>(builder.parsers);
+        this.names = new IdentityHashMap<>(builder.names);
+    }
+
+    /**
+     * Returns the parser with the given name, or {@code null} if there is no such parser.
+     *
+     * @param name  the name of the parser
+     *
+     * @return  the parser with the given name, or {@code null}
+     *
+     * @throws NullPointerException if the given name is {@code null}
+     *
+     * @since   0.4.0
+     */
+    @Nullable
+    public ValueParser<?> get(String name) {
+        return this.parsers.get(Objects.requireNonNull(name));
+    }
+
+    /**
+     * Returns the name of the given parser, or {@code null} if the parser is not in this registry.
+     *
+     * @param parser    the parser
+     *
+     * @return  the name of the given parser, or {@code null}
+     *
+     * @throws NullPointerException if the given parser is {@code null}
+     *
+     * @since   0.4.0
+     */
+    @Nullable
+    public String getName(ValueParser<?> parser) {
+        return this.names.get(Objects.requireNonNull(parser));
+    }
+
+    /**
+     * A builder for a {@link ValueParserRegistry}.
+     *
+     * @since   0.4.0
+     */
+    public static final class Builder {
+
+        private final Map<String, ValueParser<?>> parsers = new HashMap<>();
+        private final Map<ValueParser<?>, String> names = new IdentityHashMap<>();
+
+        private Builder() {
+            this.withParser("BOOLEAN", ValueParser.BOOLEAN);
+            this.withParser("BYTE", ValueParser.BYTE);
+            this.withParser("CHARACTER", ValueParser.CHARACTER);
+            this.withParser("SHORT", ValueParser.SHORT);
+            this.withParser("INT", ValueParser.INT);
+            this.withParser("LONG", ValueParser.LONG);
+            this.withParser("FLOAT", ValueParser.FLOAT);
+            this.withParser("DOUBLE", ValueParser.DOUBLE);
+            this.withParser("STRING", ValueParser.STRING);
+        }
+
+        /**
+         * Returns a new immutable {@linkplain ValueParserRegistry}.
+         *
+         * @return  a new immutable registry
+         *
+         * @since   0.4.0
+         */
+        public ValueParserRegistry build() {
+            return new ValueParserRegistry(this);
+        }
+
+        /**
+         * Adds the given parser with the given name.
+         *
+         * @param name      the name of the parser
+         * @param parser    the parser
+         *
+         * @return  this builder instance
+         *
+         * @throws IllegalArgumentException if the name is empty, or if either the name or the parser is already in the
+         *                                  registry
+         * @throws NullPointerException     if {@code null} is passed to any of the parameters
+         *
+         * @since   0.4.0
+         */
+        public Builder withParser(String name, ValueParser<?> parser) {
+            if (name.isEmpty()) throw new IllegalArgumentException("The name of a parser must not be empty.");
+            if (this.parsers.containsKey(name)) throw new IllegalArgumentException("Duplicate name: " + name);
+            if (this.names.containsKey(Objects.requireNonNull(parser))) throw new IllegalArgumentException("Duplicate parser: " + name + " (already registered as " + this.names.get(parser) + ")");
+
+            this.parsers.put(name, parser);
+            this.names.put(parser, name);
+
+            return this;
+        }
+
+    }
+
+}
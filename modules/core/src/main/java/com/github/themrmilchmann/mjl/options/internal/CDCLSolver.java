@@ -0,0 +1,558 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.internal;
+
+import java.util.Arrays;
+
+/**
+ * A conflict-driven clause-learning SAT solver.
+ *
+ * <p>Variables are identified by non-negative integers. Literals are encoded as integers where {@code 2 * v} is the
+ * positive and {@code 2 * v + 1} is the negative literal of variable {@code v} (see {@link #pos(int)} and
+ * {@link #neg(int)}).</p>
+ *
+ * <p>The solver uses two watched literals per clause, first-UIP conflict analysis with non-chronological backjumping,
+ * activity-based branching, phase saving, and Luby restarts. {@link #solve(int...) Solving} under assumptions is
+ * supported. Since assumptions are treated as decisions, all learned clauses are implied by the formula itself and are
+ * retained across invocations.</p>
+ *
+ * <p>Branching prefers assigning {@code true} to variables that have not been assigned before. (For reachability
+ * analysis, this tends to produce models in which many variables are true.)</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class CDCLSolver {
+
+    public static int pos(int var) {
+        return var << 1;
+    }
+
+    public static int neg(int var) {
+        return (var << 1) | 1;
+    }
+
+    private static final byte UNDEF = 0, TRUE = 1, FALSE = -1;
+
+    private static final int RESTART_BASE = 100;
+    private static final double VAR_DECAY = 0.95;
+
+    private int varCount;
+
+    /* Per variable */
+    private byte[] values;
+    private boolean[] polarity;
+    private int[] levels;
+    private int[][] reasons;
+    private double[] activity;
+    private boolean[] seen;
+    private boolean[] model;
+
+    /* Per literal: the clauses watching the literal (that is, clauses that must be visited when it becomes false) */
+    private int[][][] watches;
+    private int[] watchCounts;
+
+    private int[] trail;
+    private int trailSize;
+    private int[] trailLimits;
+    private int decisionLevel;
+    private int propagationHead;
+
+    /* A binary max-heap of variables ordered by activity */
+    private int[] heap;
+    private int heapSize;
+    private int[] heapIndices;
+
+    private double varIncrement = 1.0;
+    private boolean isOkay = true;
+
+    private int learnedCount;
+    private long conflictCount;
+
+    private int[] learnBuffer = new int[16];
+
+    public CDCLSolver(int varCount) {
+        this.values = new byte[0];
+        this.polarity = new boolean[0];
+        this.levels = new int[0];
+        this.reasons = new int[0][];
+        this.activity = new double[0];
+        this.seen = new boolean[0];
+        this.model = new boolean[0];
+        this.watches = new int[0][][];
+        this.watchCounts = new int[0];
+        this.trail = new int[0];
+        this.trailLimits = new int[0];
+        this.heap = new int[0];
+        this.heapIndices = new int[0];
+
+        for (int i = 0; i < varCount; i++) this.newVariable();
+    }
+
+    /**
+     * Adds a new variable to this solver.
+     *
+     * @return  the new variable
+     */
+    public int newVariable() {
+        int var = this.varCount++;
+
+        if (var == this.values.length) {
+            int capacity = Math.max(8, var * 2);
+
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.polarity = Arrays.copyOf(this.polarity, capacity);
+            this.levels = Arrays.copyOf(this.levels, capacity);
+            this.reasons = Arrays.copyOf(this.reasons, capacity);
+            this.activity = Arrays.copyOf(this.activity, capacity);
+            this.seen = Arrays.copyOf(this.seen, capacity);
+            this.model = Arrays.copyOf(this.model, capacity);
+            this.watches = Arrays.copyOf(this.watches, capacity * 2);
+            this.watchCounts = Arrays.copyOf(this.watchCounts, capacity * 2);
+            this.trail = Arrays.copyOf(this.trail, capacity);
+            this.trailLimits = Arrays.copyOf(this.trailLimits, capacity);
+            this.heap = Arrays.copyOf(this.heap, capacity);
+            this.heapIndices = Arrays.copyOf(this.heapIndices, capacity);
+        }
+
+        this.polarity[var] = true;
+        this.heapIndices[var] = -1;
+        this.heapInsert(var);
+
+        return var;
+    }
+
+    public int getVariableCount() {
+        return this.varCount;
+    }
+
+    public int getLearnedClauseCount() {
+        return this.learnedCount;
+    }
+
+    public long getConflictCount() {
+        return this.conflictCount;
+    }
+
+    /**
+     * Returns {@code false} if the formula is known to be unsatisfiable (regardless of assumptions).
+     *
+     * @return  {@code false} if the formula is known to be unsatisfiable
+     */
+    public boolean isOkay() {
+        return this.isOkay;
+    }
+
+    /**
+     * Adds a clause (a disjunction of the given literals) to the formula.
+     *
+     * @param literals  the literals of the clause
+     *
+     * @return  {@code false} if the formula is known to be unsatisfiable after adding the clause
+     */
+    public boolean addClause(int... literals) {
+        if (!this.isOkay) return false;
+        this.cancelUntil(0);
+
+        int[] clause = literals.clone();
+        Arrays.sort(clause);
+
+        int size = 0;
+        int prev = -1;
+
+        for (int literal : clause) {
+            if ((literal >>> 1) >= this.varCount) throw new IllegalArgumentException("Unknown variable: " + (literal >>> 1));
+
+            byte value = this.valueOf(literal);
+            if (value == TRUE || literal == (prev ^ 1)) return true; // Satisfied at the root level or tautology
+            if (value == FALSE || literal == prev) continue; // False at the root level or duplicate
+
+            clause[size++] = prev = literal;
+        }
+
+        if (size == 0) {
+            return this.isOkay = false;
+        } else if (size == 1) {
+            this.enqueue(clause[0], null);
+            return this.isOkay = (this.propagate() == null);
+        }
+
+        this.attach(Arrays.copyOf(clause, size));
+        return true;
+    }
+
+    /**
+     * Returns whether the formula is satisfiable under the given assumptions.
+     *
+     * <p>If the formula is satisfiable, the found model may be queried using {@link #modelValue(int)}.</p>
+     *
+     * @param assumptions   the literals to assume to be true
+     *
+     * @return  whether the formula is satisfiable under the given assumptions
+     */
+    public boolean solve(int... assumptions) {
+        if (!this.isOkay) return false;
+        this.cancelUntil(0);
+
+        int restarts = 0;
+        long conflictBudget = luby(restarts) * RESTART_BASE;
+        long conflicts = 0;
+
+        while (true) {
+            int[] conflict = this.propagate();
+
+            if (conflict != null) {
+                this.conflictCount++;
+                conflicts++;
+
+                if (this.decisionLevel == 0) {
+                    this.isOkay = false;
+                    return false;
+                }
+
+                int size = this.analyze(conflict);
+                int backtrackLevel = this.levels[this.learnBuffer[1] >>> 1];
+                if (size == 1) backtrackLevel = 0;
+
+                this.cancelUntil(backtrackLevel);
+
+                if (size == 1) {
+                    this.enqueue(this.learnBuffer[0], null);
+                } else {
+                    int[] learned = Arrays.copyOf(this.learnBuffer, size);
+                    this.attach(learned);
+                    this.learnedCount++;
+                    this.enqueue(learned[0], learned);
+                }
+
+                this.varIncrement /= VAR_DECAY;
+            } else {
+                if (conflicts >= conflictBudget) {
+                    this.cancelUntil(0);
+
+                    conflicts = 0;
+                    conflictBudget = luby(++restarts) * RESTART_BASE;
+                    continue;
+                }
+
+                int next = -1;
+
+                while (this.decisionLevel < assumptions.length) {
+                    int assumption = assumptions[this.decisionLevel];
+                    byte value = this.valueOf(assumption);
+
+                    if (value == TRUE) {
+                        this.newDecisionLevel();
+                    } else if (value == FALSE) {
+                        this.cancelUntil(0);
+                        return false;
+                    } else {
+                        next = assumption;
+                        break;
+                    }
+                }
+
+                if (next == -1) {
+                    next = this.pickBranchLiteral();
+
+                    if (next == -1) {
+                        for (int var = 0; var < this.varCount; var++) this.model[var] = (this.values[var] == TRUE);
+
+                        this.cancelUntil(0);
+                        return true;
+                    }
+                }
+
+                this.newDecisionLevel();
+                this.enqueue(next, null);
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the given variable in the model that was found by the last successful invocation of
+     * {@link #solve(int...)}.
+     *
+     * @param var   the variable
+     *
+     * @return  the value of the variable in the last model
+     */
+    public boolean modelValue(int var) {
+        return this.model[var];
+    }
+
+    private byte valueOf(int literal) {
+        byte value = this.values[literal >>> 1];
+        return ((literal & 1) == 0) ? value : (byte) -value;
+    }
+
+    private void newDecisionLevel() {
+        this.trailLimits[this.decisionLevel++] = this.trailSize;
+    }
+
+    private void enqueue(int literal, int[] reason) {
+        int var = literal >>> 1;
+
+        this.values[var] = ((literal & 1) == 0) ? TRUE : FALSE;
+        this.levels[var] = this.decisionLevel;
+        this.reasons[var] = reason;
+        this.trail[this.trailSize++] = literal;
+    }
+
+    private void cancelUntil(int level) {
+        if (this.decisionLevel <= level) return;
+
+        int limit = this.trailLimits[level];
+
+        for (int i = this.trailSize - 1; i >= limit; i--) {
+            int var = this.trail[i] >>> 1;
+
+            this.polarity[var] = (this.values[var] == TRUE);
+            this.values[var] = UNDEF;
+            this.reasons[var] = null;
+            if (this.heapIndices[var] < 0) this.heapInsert(var);
+        }
+
+        this.trailSize = limit;
+        this.propagationHead = limit;
+        this.decisionLevel = level;
+    }
+
+    private void attach(int[] clause) {
+        this.watch(clause[0], clause);
+        this.watch(clause[1], clause);
+    }
+
+    private void watch(int literal, int[] clause) {
+        int[][] watches = this.watches[literal];
+        int count = this.watchCounts[literal];
+
+        if (watches == null) {
+            this.watches[literal] = watches = new int[4][];
+        } else if (count == watches.length) {
+            this.watches[literal] = watches = Arrays.copyOf(watches, count * 2);
+        }
+
+        watches[count] = clause;
+        this.watchCounts[literal] = count + 1;
+    }
+
+    /*
+     * Propagates all enqueued assignments and returns a conflicting clause, or null. The implied literal of a reason
+     * clause is always at index 0.
+     */
+    private int[] propagate() {
+        while (this.propagationHead < this.trailSize) {
+            int falseLiteral = this.trail[this.propagationHead++] ^ 1;
+
+            int[][] watches = this.watches[falseLiteral];
+            int count = this.watchCounts[falseLiteral];
+            int i = 0, j = 0;
+
+            while (i < count) {
+                int[] clause = watches[i++];
+
+                if (clause[0] == falseLiteral) {
+                    clause[0] = clause[1];
+                    clause[1] = falseLiteral;
+                }
+
+                if (this.valueOf(clause[0]) == TRUE) {
+                    watches[j++] = clause;
+                    continue;
+                }
+
+                boolean isRewatched = false;
+
+                for (int k = 2; k < clause.length; k++) {
+                    if (this.valueOf(clause[k]) != FALSE) {
+                        clause[1] = clause[k];
+                        clause[k] = falseLiteral;
+                        this.watch(clause[1], clause);
+
+                        isRewatched = true;
+                        break;
+                    }
+                }
+
+                if (isRewatched) continue;
+
+                watches[j++] = clause;
+
+                if (this.valueOf(clause[0]) == FALSE) {
+                    while (i < count) watches[j++] = watches[i++];
+                    this.watchCounts[falseLiteral] = j;
+                    this.propagationHead = this.trailSize;
+
+                    return clause;
+                }
+
+                this.enqueue(clause[0], clause);
+            }
+
+            this.watchCounts[falseLiteral] = j;
+        }
+
+        return null;
+    }
+
+    /*
+     * Derives a first-UIP clause from the given conflict and stores it in the learn buffer. The asserting literal is
+     * stored at index 0 and a literal of the highest remaining decision level at index 1.
+     *
+     * Returns the size of the learned clause.
+     */
+    private int analyze(int[] conflict) {
+        int size = 1;
+        int pathCount = 0;
+        int literal = -1;
+        int index = this.trailSize - 1;
+        int[] clause = conflict;
+
+        do {
+            for (int k = (literal == -1) ? 0 : 1; k < clause.length; k++) {
+                int q = clause[k];
+                int var = q >>> 1;
+
+                if (!this.seen[var] && this.levels[var] > 0) {
+                    this.bumpActivity(var);
+                    this.seen[var] = true;
+
+                    if (this.levels[var] >= this.decisionLevel) {
+                        pathCount++;
+                    } else {
+                        if (size == this.learnBuffer.length) this.learnBuffer = Arrays.copyOf(this.learnBuffer, size * 2);
+                        this.learnBuffer[size++] = q;
+                    }
+                }
+            }
+
+            while (!this.seen[this.trail[index--] >>> 1]);
+
+            literal = this.trail[index + 1];
+            clause = this.reasons[literal >>> 1];
+            this.seen[literal >>> 1] = false;
+            pathCount--;
+        } while (pathCount > 0);
+
+        this.learnBuffer[0] = literal ^ 1;
+
+        int maxIndex = 1;
+
+        for (int i = 1; i < size; i++) {
+            this.seen[this.learnBuffer[i] >>> 1] = false;
+            if (this.levels[this.learnBuffer[i] >>> 1] > this.levels[this.learnBuffer[maxIndex] >>> 1]) maxIndex = i;
+        }
+
+        if (size > 1) {
+            int tmp = this.learnBuffer[1];
+            this.learnBuffer[1] = this.learnBuffer[maxIndex];
+            this.learnBuffer[maxIndex] = tmp;
+        }
+
+        return size;
+    }
+
+    private int pickBranchLiteral() {
+        while (this.heapSize > 0) {
+            int var = this.heapRemoveMax();
+            if (this.values[var] == UNDEF) return this.polarity[var] ? pos(var) : neg(var);
+        }
+
+        return -1;
+    }
+
+    private void bumpActivity(int var) {
+        if ((this.activity[var] += this.varIncrement) > 1e100) {
+            for (int i = 0; i < this.varCount; i++) this.activity[i] *= 1e-100;
+            this.varIncrement *= 1e-100;
+        }
+
+        if (this.heapIndices[var] >= 0) this.heapPercolateUp(this.heapIndices[var]);
+    }
+
+    private static long luby(int x) {
+        int size = 1, seq = 0;
+
+        while (size < x + 1) {
+            seq++;
+            size = 2 * size + 1;
+        }
+
+        while (size - 1 != x) {
+            size = (size - 1) >> 1;
+            seq--;
+            x = x % size;
+        }
+
+        return 1L << seq;
+    }
+
+    private void heapInsert(int var) {
+        this.heap[this.heapSize] = var;
+        this.heapIndices[var] = this.heapSize;
+        this.heapPercolateUp(this.heapSize++);
+    }
+
+    private int heapRemoveMax() {
+        int var = this.heap[0];
+        int last = this.heap[--this.heapSize];
+
+        this.heapIndices[var] = -1;
+
+        if (this.heapSize > 0) {
+            this.heap[0] = last;
+            this.heapIndices[last] = 0;
+            this.heapPercolateDown(0);
+        }
+
+        return var;
+    }
+
+    private void heapPercolateUp(int i) {
+        int var = this.heap[i];
+
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (this.activity[this.heap[parent]] >= this.activity[var]) break;
+
+            this.heap[i] = this.heap[parent];
+            this.heapIndices[this.heap[i]] = i;
+            i = parent;
+        }
+
+        this.heap[i] = var;
+        this.heapIndices[var] = i;
+    }
+
+    private void heapPercolateDown(int i) {
+        int var = this.heap[i];
+
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= this.heapSize) break;
+            if (child + 1 < this.heapSize && this.activity[this.heap[child + 1]] > this.activity[this.heap[child]]) child++;
+            if (this.activity[this.heap[child]] <= this.activity[var]) break;
+
+            this.heap[i] = this.heap[child];
+            this.heapIndices[this.heap[i]] = i;
+            i = child;
+        }
+
+        this.heap[i] = var;
+        this.heapIndices[var] = i;
+    }
+
+}
@@ -15,9 +15,9 @@
  */
 package com.github.themrmilchmann.mjl.options.internal;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
-import javax.annotation.Nullable;
 
 /**
  * <b>Do NOT use this interface in external code. It is strictly UNSUPPORTED and WILL BREAK when using this library as
@@ -42,38 +42,25 @@ public final class FieldAccess {
         }
     }
 
-    public static void set(Field field, Object instance, @Nullable Object value, MethodHandles.Lookup lookup) {
+    /*
+     * Returns a setter for the given (non-static) field with the type (Object, <field type>)void.
+     *
+     * The field is made accessible only for the duration of this call. The returned handle does not perform any further
+     * access checks.
+     */
+    public static MethodHandle setter(Field field, MethodHandles.Lookup lookup) {
         boolean wasAccessible = field.isAccessible();
 
         if (!wasAccessible) field.setAccessible(true);
 
-        Class<?> type = field.getType();
-
         try {
-            if (type == boolean.class) {
-                field.setBoolean(instance, (boolean) value);
-            } else if (type == byte.class) {
-                field.setByte(instance, (byte) value);
-            } else if (type == char.class) {
-                field.setChar(instance, (char) value);
-            } else if (type == short.class) {
-                field.setShort(instance, (short) value);
-            } else if (type == int.class) {
-                field.setInt(instance, (int) value);
-            } else if (type == long.class) {
-                field.setLong(instance, (long) value);
-            } else if (type == float.class) {
-                field.setFloat(instance, (float) value);
-            } else if (type == double.class) {
-                field.setDouble(instance, (double) value);
-            } else {
-                field.set(instance, value);
-            }
-        } catch (IllegalArgumentException | IllegalAccessException | NullPointerException | ExceptionInInitializerError e) {
-            throw new RuntimeException(String.format("Failed to inject value %s into field %s of object %s.", value, field, instance), e);
+            MethodHandle hSetter = lookup.unreflectSetter(field);
+            return hSetter.asType(hSetter.type().changeParameterType(0, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(String.format("Failed to access field %s.", field), e);
+        } finally {
+            if (!wasAccessible) field.setAccessible(false);
         }
-
-        if (!wasAccessible) field.setAccessible(false);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.internal;
+
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * A sequence of fragments that is consumed by the parser with a lookahead of a single fragment.
+ *
+ * <p>Sources may reuse the storage of fragments. A fragment returned by either method is only guaranteed to be valid
+ * until the fragment after the next one is requested. (That is, a fragment remains valid while the subsequent fragment
+ * is {@link #peek() peeked} at and consumed.)</p>
+ *
+ * @author  Leon Linhart
+ */
+public interface FragmentSource {
+
+    /**
+     * Returns the next fragment and advances this source, or returns {@code null} if there are no more fragments.
+     *
+     * @return  the next fragment, or {@code null}
+     */
+    @Nullable
+    CharSequence next();
+
+    /**
+     * Returns the next fragment without advancing this source, or {@code null} if there are no more fragments.
+     *
+     * @return  the next fragment, or {@code null}
+     */
+    @Nullable
+    CharSequence peek();
+
+    /**
+     * A {@link FragmentSource} over an array of fragments.
+     */
+    final class ArraySource implements FragmentSource {
+
+        private String[] fragments = new String[0];
+        private int index;
+
+        /**
+         * Resets this source to the given fragments.
+         *
+         * @param fragments the fragments
+         *
+         * @return  this source
+         */
+        public ArraySource reset(String[] fragments) {
+            this.fragments = fragments;
+            this.index = 0;
+
+            return this;
+        }
+
+        @Nullable
+        @Override
+        public CharSequence next() {
+            return (this.index < this.fragments.length) ? Objects.requireNonNull(this.fragments[this.index++]) : null;
+        }
+
+        @Nullable
+        @Override
+        public CharSequence peek() {
+            return (this.index < this.fragments.length) ? Objects.requireNonNull(this.fragments[this.index]) : null;
+        }
+
+    }
+
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.internal;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+import com.github.themrmilchmann.mjl.options.ParsingException;
+
+/**
+ * A {@link FragmentSource} that lazily splits a line into fragments (as specified by
+ * {@code OptionParser#lineToFragments(String)}).
+ *
+ * <p>The tokenizer uses two alternating buffers for fragments. Thus, its memory usage is bounded by the length of the
+ * longest fragment (rather than the length of the line). If the input is a {@link CharSequence} and a fragment does
+ * not require unescaping, the fragment is a view of the input instead. The same applies to UTF-8 encoded input in a
+ * {@link ByteBuffer} if the fragment is ASCII. Other fragments are decoded into the buffers.</p>
+ *
+ * <p>Errors that occur while reading from a {@link Reader} are rethrown as {@link UncheckedIOException}. Malformed
+ * UTF-8 input is reported as {@link ParsingException}.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class FragmentTokenizer implements FragmentSource {
+
+    private static final int EOF = -1;
+
+    @Nullable
+    private CharSequence chars;
+
+    @Nullable
+    private ByteBuffer bytes;
+
+    /* The index (in the input) of the next character, the index of the last character read, and the end of the input */
+    private int position, mark, length;
+
+    /* The low surrogate of a supplementary character that has been decoded, or 0 */
+    private char pendingLowSurrogate;
+
+    @Nullable
+    private Reader reader;
+    @Nullable
+    private char[] buffer;
+    private int bufferPosition, bufferLimit;
+
+    private final Fragment[] fragments = { new Fragment(), new Fragment() };
+    private int fragmentIndex;
+
+    @Nullable
+    private CharSequence peeked;
+    private boolean hasPeeked;
+
+    /**
+     * Resets this tokenizer to the given input.
+     *
+     * @param chars the input
+     *
+     * @return  this tokenizer
+     */
+    public FragmentTokenizer reset(CharSequence chars) {
+        this.reset();
+        this.chars = chars;
+        this.length = chars.length();
+
+        return this;
+    }
+
+    /**
+     * Resets this tokenizer to the UTF-8 encoded input in the given range of the given buffer.
+     *
+     * <p>The buffer is accessed using absolute indices only. Thus, its position and limit are not modified.</p>
+     *
+     * @param bytes the input
+     * @param start the index of the first byte of the input (inclusive)
+     * @param end   the index of the last byte of the input (exclusive)
+     *
+     * @return  this tokenizer
+     */
+    public FragmentTokenizer reset(ByteBuffer bytes, int start, int end) {
+        if (start < 0 || end > bytes.limit() || start > end) throw new IndexOutOfBoundsException();
+
+        this.reset();
+        this.bytes = bytes;
+        this.position = start;
+        this.length = end;
+
+        return this;
+    }
+
+    /**
+     * Resets this tokenizer to the given input.
+     *
+     * @param reader    the input
+     *
+     * @return  this tokenizer
+     */
+    public FragmentTokenizer reset(Reader reader) {
+        this.reset();
+        this.reader = reader;
+        if (this.buffer == null) this.buffer = new char[8192];
+
+        return this;
+    }
+
+    private void reset() {
+        this.chars = null;
+        this.bytes = null;
+        this.position = this.mark = this.length = 0;
+        this.pendingLowSurrogate = 0;
+        this.reader = null;
+        this.bufferPosition = this.bufferLimit = 0;
+        this.peeked = null;
+        this.hasPeeked = false;
+
+        // Release references to the previous input.
+        for (Fragment fragment : this.fragments) {
+            fragment.source = null;
+            fragment.bytes = null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public CharSequence next() {
+        if (this.hasPeeked) {
+            this.hasPeeked = false;
+            return this.peeked;
+        }
+
+        return this.read();
+    }
+
+    @Nullable
+    @Override
+    public CharSequence peek() {
+        if (!this.hasPeeked) {
+            this.peeked = this.read();
+            this.hasPeeked = true;
+        }
+
+        return this.peeked;
+    }
+
+    private int nextChar() {
+        this.mark = this.position;
+
+        if (this.chars != null) return (this.position < this.length) ? this.chars.charAt(this.position++) : EOF;
+        if (this.bytes != null) return this.nextUTF8Char();
+        if (this.reader == null) return EOF;
+
+        if (this.bufferPosition == this.bufferLimit) {
+            assert this.buffer != null;
+
+            try {
+                int read;
+                do { read = this.reader.read(this.buffer); } while (read == 0);
+
+                if (read < 0) {
+                    this.reader = null;
+                    return EOF;
+                }
+
+                this.bufferPosition = 0;
+                this.bufferLimit = read;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return this.buffer[this.bufferPosition++];
+    }
+
+    /*
+     * Decodes the next character. Supplementary characters are returned as two consecutive surrogates. The accepted
+     * byte sequences are exactly the well-formed sequences as specified by the Unicode standard (Table 3-7).
+     */
+    private int nextUTF8Char() {
+        assert this.bytes != null;
+
+        if (this.pendingLowSurrogate != 0) {
+            char c = this.pendingLowSurrogate;
+            this.pendingLowSurrogate = 0;
+
+            return c;
+        }
+
+        if (this.position >= this.length) return EOF;
+
+        int b0 = this.bytes.get(this.position++) & 0xFF;
+        if (b0 < 0x80) return b0;
+
+        int min = 0x80, max = 0xBF, count;
+        int cp;
+
+        if (0xC2 <= b0 && b0 <= 0xDF) {
+            count = 1;
+            cp = b0 & 0x1F;
+        } else if (0xE0 <= b0 && b0 <= 0xEF) {
+            if (b0 == 0xE0) min = 0xA0;
+            if (b0 == 0xED) max = 0x9F; // Surrogates
+
+            count = 2;
+            cp = b0 & 0x0F;
+        } else if (0xF0 <= b0 && b0 <= 0xF4) {
+            if (b0 == 0xF0) min = 0x90;
+            if (b0 == 0xF4) max = 0x8F;
+
+            count = 3;
+            cp = b0 & 0x07;
+        } else {
+            throw this.malformedInput();
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (this.position >= this.length) throw this.malformedInput();
+
+            int b = this.bytes.get(this.position++) & 0xFF;
+            if (b < min || b > max) throw this.malformedInput();
+
+            cp = (cp << 6) | (b & 0x3F);
+            min = 0x80;
+            max = 0xBF;
+        }
+
+        if (Character.isBmpCodePoint(cp)) return cp;
+
+        this.pendingLowSurrogate = Character.lowSurrogate(cp);
+        return Character.highSurrogate(cp);
+    }
+
+    private ParsingException malformedInput() {
+        return new ParsingException("Malformed UTF-8 input at index " + this.mark);
+    }
+
+    /*
+     * https://github.com/Project-Skara/jdk/blob/c2105ced865fba11fbf8d4a8e18a59fcb1fe10fd/src/java.base/windows/native/libjli/cmdtoargs.c#L203
+     *
+     * Keep in sync with the specification of OptionParser#lineToFragments.
+     */
+    @Nullable
+    private CharSequence read() {
+        int c;
+        do { c = this.nextChar(); } while (c != EOF && Character.isWhitespace(c));
+
+        if (c == EOF) return null;
+
+        Fragment fragment = this.fragments[this.fragmentIndex];
+        this.fragmentIndex ^= 1;
+
+        /*
+         * As long as no quotation mark or backslash (or non-ASCII character, for byte input) has been encountered, the
+         * fragment is a view of the input (if possible).
+         */
+        boolean isView = (this.chars != null || this.bytes != null);
+        int start = this.mark, end = EOF;
+
+        fragment.builder.setLength(0);
+
+        char prev = '\0';
+        int quotes = 0, slashes = 0;
+
+        param: for (; c != EOF; c = this.nextChar()) {
+            if (isView && (c == '"' || c == '\\' || (this.bytes != null && c >= 0x80))) {
+                this.appendView(fragment.builder, start, this.mark);
+                isView = false;
+            }
+
+            switch (c) {
+                case '"': {
+                    if (prev == '\\') {
+                        for (int j = 1; j < slashes; j += 2) {
+                            fragment.builder.append(prev);
+                        }
+
+                        if (slashes % 2 == 1) {
+                            fragment.builder.append((char) c);
+                        } else {
+                            quotes++;
+                        }
+                    } else if (prev == '"' && quotes % 2 == 0) {
+                        quotes++;
+                        fragment.builder.append((char) c);
+                    } else if (quotes == 0) {
+                        quotes++; // starting quote
+                    } else {
+                        quotes--; // matching quote
+                    }
+
+                    slashes = 0;
+                } break;
+                case '\\': {
+                    slashes++;
+                } break;
+                default: {
+                    if (Character.isWhitespace(c)) {
+                        if (quotes % 2 == 1) {
+                            fragment.builder.append((char) c);
+                        } else {
+                            end = this.mark;
+                            break param;
+                        }
+                    } else if (prev == '\\') {
+                        for (int j = 0; j < slashes; j++) {
+                            fragment.builder.append(prev);
+                        }
+
+                        fragment.builder.append((char) c);
+                    } else if (!isView) {
+                        fragment.builder.append((char) c);
+                    }
+
+                    slashes = 0;
+                }
+            }
+
+            prev = (char) c;
+        }
+
+        fragment.source = null;
+        fragment.bytes = null;
+
+        if (isView) {
+            fragment.source = this.chars;
+            fragment.bytes = this.bytes;
+            fragment.start = start;
+            fragment.end = (end == EOF) ? this.position : end;
+        }
+
+        return fragment;
+    }
+
+    private void appendView(StringBuilder builder, int start, int end) {
+        if (this.chars != null) {
+            builder.append(this.chars, start, end);
+        } else {
+            assert this.bytes != null;
+            for (int i = start; i < end; i++) builder.append((char) this.bytes.get(i));
+        }
+    }
+
+    /*
+     * A fragment is either a view of a range of the input (characters, or ASCII bytes) or the content of its builder.
+     */
+    private static final class Fragment implements CharSequence {
+
+        private final StringBuilder builder = new StringBuilder();
+
+        @Nullable
+        private CharSequence source;
+
+        @Nullable
+        private ByteBuffer bytes;
+
+        private int start, end;
+
+        private byte[] scratch = new byte[64];
+
+        @Override
+        public int length() {
+            return (this.source != null || this.bytes != null) ? this.end - this.start : this.builder.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (this.source != null || this.bytes != null) {
+                if (index < 0 || index >= this.end - this.start) throw new IndexOutOfBoundsException();
+                return (this.source != null) ? this.source.charAt(this.start + index) : (char) this.bytes.get(this.start + index);
+            }
+
+            return this.builder.charAt(index);
+        }
+
+        /*
+         * Fragments are only valid temporarily. Thus, subsequences are always copied.
+         */
+        @Override
+        public String subSequence(int start, int end) {
+            if (this.source != null || this.bytes != null) {
+                if (start < 0 || end > this.end - this.start || start > end) throw new IndexOutOfBoundsException();
+                return this.toString(this.start + start, this.start + end);
+            }
+
+            return this.builder.substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return (this.source != null || this.bytes != null) ? this.toString(this.start, this.end) : this.builder.toString();
+        }
+
+        private String toString(int start, int end) {
+            if (this.source != null) return this.source.subSequence(start, end).toString();
+
+            assert this.bytes != null;
+
+            if (this.bytes.hasArray()) {
+                return new String(this.bytes.array(), this.bytes.arrayOffset() + start, end - start, StandardCharsets.ISO_8859_1);
+            }
+
+            // Direct buffers are copied to a scratch array first. (Strings are created from ASCII bytes without
+            // widening them to chars.)
+            int length = end - start;
+            if (this.scratch.length < length) this.scratch = new byte[Math.max(length, 2 * this.scratch.length)];
+
+            for (int i = 0; i < length; i++) this.scratch[i] = this.bytes.get(start + i);
+            return new String(this.scratch, 0, length, StandardCharsets.ISO_8859_1);
+        }
+
+    }
+
+}
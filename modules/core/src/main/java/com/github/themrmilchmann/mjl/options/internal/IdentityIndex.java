@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.internal;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable mapping from objects (compared by identity) to their index in an array.
+ *
+ * <p>If an object is contained multiple times, its first index is used. The index is implemented as open addressing
+ * table with linear probing that maps directly to primitive indices. Thus, lookups neither allocate nor box.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class IdentityIndex {
+
+    private final Object[] keys;
+    private final int[] indices;
+
+    public IdentityIndex(Object[] elements) {
+        int capacity = Integer.highestOneBit(Math.max(elements.length, 1) * 4 - 1) << 1;
+        this.keys = new Object[capacity];
+        this.indices = new int[capacity];
+
+        int mask = capacity - 1;
+
+        for (int index = 0; index < elements.length; index++) {
+            Object element = elements[index];
+
+            int i = hash(element) & mask;
+            while (this.keys[i] != null && this.keys[i] != element) i = (i + 1) & mask;
+
+            if (this.keys[i] == null) {
+                this.keys[i] = element;
+                this.indices[i] = index;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the given object, or {@code -1} if the object is not in this index.
+     *
+     * @param o the object to lookup
+     *
+     * @return  the index of the given object, or {@code -1}
+     */
+    public int indexOf(@Nullable Object o) {
+        if (o == null) return -1;
+
+        int mask = this.keys.length - 1;
+
+        for (int i = hash(o) & mask; this.keys[i] != null; i = (i + 1) & mask) {
+            if (this.keys[i] == o) return this.indices[i];
+        }
+
+        return -1;
+    }
+
+    private static int hash(Object o) {
+        int h = System.identityHashCode(o);
+        return h ^ (h >>> 16);
+    }
+
+}
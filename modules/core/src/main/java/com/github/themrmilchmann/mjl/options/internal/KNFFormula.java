@@ -15,16 +15,11 @@
  */
 package com.github.themrmilchmann.mjl.options.internal;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Deque;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
 import java.util.StringJoiner;
 import java.util.function.Function;
@@ -46,9 +41,15 @@ public final class KNFFormula<T> {
         this.clauses = clauses;
     }
 
-    private Set<T> calculateUnreachableOptions(Set<T> unreachable) {
-        modifiedDPLL(this.clauses, unreachable);
-        return unreachable;
+    /*
+     * Returns all variables X for which the formula is unsatisfiable under the assumption J(X) = 1.
+     */
+    private Set<T> calculateUnreachableOptions(Collection<T> vars) {
+        ReachabilitySession<T> session = new ReachabilitySession<>();
+        vars.forEach(session::addVariable);
+        this.clauses.forEach(session::addClause);
+
+        return session.calculateUnreachable(vars);
     }
 
     public String toBooleanString() {
@@ -71,105 +72,6 @@ public final class KNFFormula<T> {
         return stringJoiner.toString();
     }
 
-    /*
-     * A modified version of the DPLL algorithm that checks for a given formula if there is at least one
-     * interpretation J for each variable X in which J(X) = 1.
-     *
-     * (Thus the algorithm is technically a _harder_ satisfiability check.)
-     */
-    private static <T> boolean modifiedDPLL(List<List<Literal<T>>> clauses, Set<T> unreachable) {
-        Deque<Pair<List<List<Literal<T>>>, Set<T>>> stack = new ArrayDeque<>();
-        stack.push(new Pair<>(clauses, unreachable));
-
-        while (!stack.isEmpty()) {
-            Pair<List<List<Literal<T>>>, Set<T>> pair = stack.pop();
-            List<List<Literal<T>>> localClauses = pair.first;
-            Set<T> localUnreachable = pair.second;
-
-            if (localClauses.isEmpty()) {
-                /*
-                 * If the formula is satisfiable under the current assumption, the options reachable under this
-                 * assumption are reachable in at least one valid model. Thus the - now - reachable options need
-                 * to be propagated upwards.
-                 */
-                unreachable.removeIf(var -> !localUnreachable.contains(var));
-                if (unreachable.isEmpty()) return true;
-
-                continue;
-            }
-
-            if (localClauses.stream().anyMatch(List::isEmpty)) continue;
-
-            Optional<List<Literal<T>>> unitClause;
-            Optional<Literal<T>> pureLiteral;
-
-            if ((unitClause = localClauses.parallelStream().filter(clause -> clause.size() == 1).findAny()).isPresent()) {
-                /*
-                 * If there is only a single literal in a clause, the literal needs to be true for the formula to be
-                 * clause (and thus the formula) to be satisfiable.
-                 *
-                 * As a consequence all clauses containing the literal can be eliminated and the compliment of the
-                 * literal can be eliminated from all remaining clauses.
-                 */
-                List<Literal<T>> clause = unitClause.get();
-
-                @SuppressWarnings("OptionalGetWithoutIsPresent")
-                Literal<T> literal = clause.stream().findFirst().get();
-
-                if (literal.pos) localUnreachable.remove(literal.var);
-
-                localClauses.removeIf(itClause -> itClause.contains(literal));
-                localClauses.forEach(itClause -> itClause.remove(literal.compliment()));
-                stack.push(pair);
-            } else if ((pureLiteral = localClauses.stream()
-                // Create a stream of literals
-                .flatMap(List::stream)
-                // Filter literals that are in more than one clause
-                .distinct()
-                // Collect all literals by their variable
-                .collect(Collectors.groupingBy(literal -> literal.var))
-                .values()
-                .stream()
-                // Filter all variables that are only present in one literal (= that exist in pure form)
-                .filter(literals -> literals.size() == 1)
-                .map(literals -> literals.get(0))
-                .findAny()
-            ).isPresent()) {
-                Literal<T> literal = pureLiteral.get();
-                if (literal.pos) localUnreachable.remove(literal.var);
-
-                localClauses.removeIf(clause -> clause.contains(literal));
-                stack.push(pair);
-            } else {
-                Optional<Map.Entry<List<Literal<T>>, Long>> shortestClause = localClauses.stream()
-                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting())).entrySet().stream()
-                    .min((a, b) -> Long.compare(b.getValue(), a.getValue()));
-
-                @SuppressWarnings("OptionalGetWithoutIsPresent")
-                Literal<T> literal = shortestClause.get().getKey().stream().findFirst().get();
-
-                for (boolean value : new boolean[] { true, false }) {
-                    List<List<Literal<T>>> _clauses = localClauses.stream().map(ArrayList::new).collect(Collectors.toList());
-                    Set<T> _unreachable = new HashSet<>(localUnreachable);
-
-                    if (value) {
-                        // Assume the literal is true
-                        _clauses.removeIf(clause -> clause.contains(literal));
-                        _clauses.forEach(clause -> clause.remove(literal.compliment()));
-                    } else {
-                        // Assume the literal is false
-                        _clauses.removeIf(clause -> clause.contains(literal.compliment()));
-                        _clauses.forEach(clause -> clause.remove(literal));
-                    }
-
-                    stack.push(new Pair<>(_clauses, _unreachable));
-                }
-            }
-        }
-
-        return false;
-    }
-
     public static <T> String clauseToBooleanString(List<Literal<T>> clause) {
         return "(" + clauseToString(clause, " \u2228 ") + ")";
     }
@@ -211,7 +113,7 @@ public final class KNFFormula<T> {
 
         public Set<T> calculateUnreachableOptions() {
             KNFFormula<T> formula = this.build();
-            return formula.calculateUnreachableOptions(new HashSet<>(this.vars));
+            return formula.calculateUnreachableOptions(this.vars);
         }
 
     }
@@ -226,8 +128,8 @@ public final class KNFFormula<T> {
             return new Literal<>(var, false);
         }
 
-        private T var;
-        private boolean pos;
+        final T var;
+        final boolean pos;
 
         private Literal(T var, boolean pos) {
             this.var = var;
@@ -263,16 +165,4 @@ public final class KNFFormula<T> {
 
     }
 
-    private static final class Pair<L, R> {
-
-        private final L first;
-        private final R second;
-
-        private Pair(L first, R second) {
-            this.first = first;
-            this.second = second;
-        }
-
-    }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import javax.annotation.Nullable;
+
+/**
+ * Iterates over the lines of a file by mapping it into memory.
+ *
+ * <p>The file is mapped in windows of a fixed maximum size (since a single mapping is limited to 2GB). Lines are
+ * delimited by line feeds ({@code '\n'}). A trailing carriage return is not part of a line. The line feed after the last
+ * line is optional.</p>
+ *
+ * <p>Lines are not copied. Instead, the current line is the range {@code [start(), end())} of the current
+ * {@link #buffer() buffer}.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class MappedLineReader {
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+
+    @Nullable
+    private MappedByteBuffer window;
+    private long windowOffset;
+    private int position, start, end;
+
+    /**
+     * Creates a new reader for the given channel.
+     *
+     * @param channel       the channel to read from (which must support mapping in read-only mode)
+     * @param windowSize    the maximum size of a single mapping (and thus of a single line, including its delimiter)
+     *
+     * @throws IOException  if an I/O error occurs
+     */
+    public MappedLineReader(FileChannel channel, int windowSize) throws IOException {
+        if (windowSize <= 0) throw new IllegalArgumentException();
+
+        this.channel = channel;
+        this.size = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return  whether there is a next line
+     *
+     * @throws IOException  if an I/O error occurs, or if a line is longer than the window size
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (this.window == null || this.position >= this.window.limit()) {
+                long offset = (this.window == null) ? 0 : this.windowOffset + this.position;
+                if (offset >= this.size) return false;
+
+                this.map(offset);
+            }
+
+            MappedByteBuffer window = this.window;
+            int limit = window.limit();
+
+            for (int i = this.position; i < limit; i++) {
+                if (window.get(i) == '\n') {
+                    this.setLine(this.position, i);
+                    this.position = i + 1;
+
+                    return true;
+                }
+            }
+
+            if (this.windowOffset + limit == this.size) {
+                this.setLine(this.position, limit);
+                this.position = limit;
+
+                return true;
+            } else if (this.position == 0) {
+                throw new IOException("Line at offset " + this.windowOffset + " exceeds the maximum length of " + this.windowSize + " bytes");
+            }
+
+            // The line continues beyond the window. Remap to start at the line.
+            this.map(this.windowOffset + this.position);
+        }
+    }
+
+    /**
+     * Returns the buffer that contains the current line.
+     *
+     * @return  the buffer that contains the current line
+     */
+    public ByteBuffer buffer() {
+        if (this.window == null) throw new IllegalStateException();
+        return this.window;
+    }
+
+    /**
+     * Returns the index of the first byte of the current line in the {@link #buffer() buffer}.
+     *
+     * @return  the index of the first byte of the current line
+     */
+    public int start() {
+        return this.start;
+    }
+
+    /**
+     * Returns the index after the last byte of the current line in the {@link #buffer() buffer}.
+     *
+     * @return  the index after the last byte of the current line
+     */
+    public int end() {
+        return this.end;
+    }
+
+    private void map(long offset) throws IOException {
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(this.windowSize, this.size - offset));
+        this.windowOffset = offset;
+        this.position = 0;
+    }
+
+    private void setLine(int start, int end) {
+        assert this.window != null;
+
+        this.start = start;
+        this.end = (end > start && this.window.get(end - 1) == '\r') ? end - 1 : end;
+    }
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.internal;
+
+/**
+ * Allocation-free parsing of primitive values from ranges of {@link CharSequence}s.
+ *
+ * <p>Each method has the exact semantics of its JDK counterpart (e.g. {@link Integer#parseInt(String)}). Common inputs
+ * are parsed by a fast path that does not allocate. All other inputs (including invalid ones) are delegated to the
+ * JDK. Thus, the results and the exceptions thrown for invalid inputs are identical.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class Numbers {
+
+    /* The maximum number of significant digits for which the mantissa of a double is exact (10^15 < 2^53). */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    /* The maximum power of ten that is exactly representable as double. */
+    private static final int MAX_EXACT_POW10 = 22;
+
+    private static final double[] POW10 = new double[MAX_EXACT_POW10 + 1];
+    private static final long[] LONG_POW10 = new long[MAX_EXACT_DIGITS + 1];
+
+    static {
+        double d = 1.0D;
+        for (int i = 0; i < POW10.length; i++, d *= 10.0D) POW10[i] = d;
+
+        long l = 1L;
+        for (int i = 0; i < LONG_POW10.length; i++, l *= 10L) LONG_POW10[i] = l;
+    }
+
+    /**
+     * Parses an {@code int} value with the semantics of {@link Integer#parseInt(String)}.
+     *
+     * @param src   the source of the characters
+     * @param start the index of the first character (inclusive)
+     * @param end   the index of the last character (exclusive)
+     *
+     * @return  the parsed value
+     *
+     * @throws IndexOutOfBoundsException    if the range is out of bounds
+     * @throws NumberFormatException        if the range does not contain a parsable {@code int}
+     */
+    public static int parseInt(CharSequence src, int start, int end) {
+        checkRange(src, start, end);
+
+        int i = start, limit = -Integer.MAX_VALUE;
+        boolean isNegative = false;
+
+        if (i < end) {
+            char c = src.charAt(i);
+
+            if (c == '-') {
+                isNegative = true;
+                limit = Integer.MIN_VALUE;
+                i++;
+            } else if (c == '+') {
+                i++;
+            }
+        }
+
+        if (i == end) return Integer.parseInt(src.subSequence(start, end).toString());
+
+        // Accumulating negatively avoids surprises near MAX_VALUE (see Integer#parseInt).
+        int multmin = limit / 10, result = 0;
+
+        for (; i < end; i++) {
+            int digit = src.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multmin) return Integer.parseInt(src.subSequence(start, end).toString());
+
+            result *= 10;
+            if (result < limit + digit) return Integer.parseInt(src.subSequence(start, end).toString());
+
+            result -= digit;
+        }
+
+        return isNegative ? result : -result;
+    }
+
+    /**
+     * Parses a {@code long} value with the semantics of {@link Long#parseLong(String)}.
+     *
+     * @param src   the source of the characters
+     * @param start the index of the first character (inclusive)
+     * @param end   the index of the last character (exclusive)
+     *
+     * @return  the parsed value
+     *
+     * @throws IndexOutOfBoundsException    if the range is out of bounds
+     * @throws NumberFormatException        if the range does not contain a parsable {@code long}
+     */
+    public static long parseLong(CharSequence src, int start, int end) {
+        checkRange(src, start, end);
+
+        int i = start;
+        long limit = -Long.MAX_VALUE;
+        boolean isNegative = false;
+
+        if (i < end) {
+            char c = src.charAt(i);
+
+            if (c == '-') {
+                isNegative = true;
+                limit = Long.MIN_VALUE;
+                i++;
+            } else if (c == '+') {
+                i++;
+            }
+        }
+
+        if (i == end) return Long.parseLong(src.subSequence(start, end).toString());
+
+        long multmin = limit / 10, result = 0;
+
+        for (; i < end; i++) {
+            int digit = src.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multmin) return Long.parseLong(src.subSequence(start, end).toString());
+
+            result *= 10;
+            if (result < limit + digit) return Long.parseLong(src.subSequence(start, end).toString());
+
+            result -= digit;
+        }
+
+        return isNegative ? result : -result;
+    }
+
+    /**
+     * Parses a {@code double} value with the semantics of {@link Double#parseDouble(String)}.
+     *
+     * <p>Decimal inputs with at most 15 significant digits and a small exponent are converted using Clinger's fast path:
+     * Both the mantissa and the power of ten are exactly representable as {@code double}, and thus a single (correctly
+     * rounded) multiplication or division yields the correctly rounded result. All other inputs (including hexadecimal
+     * inputs, {@code NaN} and {@code Infinity}) are delegated to the JDK.</p>
+     *
+     * @param src   the source of the characters
+     * @param start the index of the first character (inclusive)
+     * @param end   the index of the last character (exclusive)
+     *
+     * @return  the parsed value
+     *
+     * @throws IndexOutOfBoundsException    if the range is out of bounds
+     * @throws NumberFormatException        if the range does not contain a parsable {@code double}
+     */
+    public static double parseDouble(CharSequence src, int start, int end) {
+        checkRange(src, start, end);
+
+        // Leading and trailing whitespace is ignored (see String#trim).
+        int from = start, to = end;
+        while (from < to && src.charAt(from) <= ' ') from++;
+        while (from < to && src.charAt(to - 1) <= ' ') to--;
+
+        int i = from;
+        boolean isNegative = false;
+
+        if (i < to) {
+            char c = src.charAt(i);
+
+            if (c == '-') {
+                isNegative = true;
+                i++;
+            } else if (c == '+') {
+                i++;
+            }
+        }
+
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean hasDigits = false, hasPoint = false;
+
+        for (; i < to; i++) {
+            char c = src.charAt(i);
+
+            if ('0' <= c && c <= '9') {
+                hasDigits = true;
+
+                if (mantissa == 0 && c == '0') {
+                    // Leading zeros are not significant.
+                    if (hasPoint) scale--;
+                    continue;
+                }
+
+                if (digits == MAX_EXACT_DIGITS) return Double.parseDouble(src.subSequence(start, end).toString());
+
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (hasPoint) scale--;
+            } else if (c == '.' && !hasPoint) {
+                hasPoint = true;
+            } else {
+                break;
+            }
+        }
+
+        if (!hasDigits) return Double.parseDouble(src.subSequence(start, end).toString());
+
+        if (i < to && (src.charAt(i) == 'e' || src.charAt(i) == 'E')) {
+            i++;
+            boolean isNegativeExponent = false;
+
+            if (i < to) {
+                char c = src.charAt(i);
+
+                if (c == '-') {
+                    isNegativeExponent = true;
+                    i++;
+                } else if (c == '+') {
+                    i++;
+                }
+            }
+
+            int exponent = 0, exponentDigits = 0;
+
+            for (; i < to && '0' <= src.charAt(i) && src.charAt(i) <= '9'; i++, exponentDigits++) {
+                // Saturate (any exponent this large is delegated anyway unless the mantissa is zero)
+                if (exponent < 100_000) exponent = exponent * 10 + (src.charAt(i) - '0');
+            }
+
+            if (exponentDigits == 0) return Double.parseDouble(src.subSequence(start, end).toString());
+            scale += isNegativeExponent ? -exponent : exponent;
+        }
+
+        if (i < to) {
+            char c = src.charAt(i);
+            if (c == 'f' || c == 'F' || c == 'd' || c == 'D') i++;
+        }
+
+        if (i != to) return Double.parseDouble(src.subSequence(start, end).toString());
+
+        double value;
+
+        if (mantissa == 0) {
+            value = 0.0D;
+        } else if (0 <= scale && scale <= MAX_EXACT_POW10) {
+            value = (double) mantissa * POW10[scale];
+        } else if (-MAX_EXACT_POW10 <= scale && scale < 0) {
+            value = (double) mantissa / POW10[-scale];
+        } else if (MAX_EXACT_POW10 < scale && scale <= MAX_EXACT_POW10 + MAX_EXACT_DIGITS - digits) {
+            // Moving some of the scale into the mantissa keeps it exact.
+            value = (double) (mantissa * LONG_POW10[scale - MAX_EXACT_POW10]) * POW10[MAX_EXACT_POW10];
+        } else {
+            return Double.parseDouble(src.subSequence(start, end).toString());
+        }
+
+        return isNegative ? -value : value;
+    }
+
+    /**
+     * Parses a {@code boolean} value. A range is interpreted as {@code true} if it is {@code "1"} or equal to
+     * {@code "true"} ignoring case (see {@link String#equalsIgnoreCase(String)}).
+     *
+     * @param src   the source of the characters
+     * @param start the index of the first character (inclusive)
+     * @param end   the index of the last character (exclusive)
+     *
+     * @return  the parsed value
+     *
+     * @throws IndexOutOfBoundsException    if the range is out of bounds
+     */
+    public static boolean parseBoolean(CharSequence src, int start, int end) {
+        checkRange(src, start, end);
+
+        switch (end - start) {
+            case 1: return src.charAt(start) == '1';
+            case 4: {
+                for (int i = 0; i < 4; i++) {
+                    if (!equalsIgnoreCase(src.charAt(start + i), "true".charAt(i))) return false;
+                }
+
+                return true;
+            }
+            default: return false;
+        }
+    }
+
+    /*
+     * Compares two chars like String#equalsIgnoreCase.
+     */
+    private static boolean equalsIgnoreCase(char c1, char c2) {
+        if (c1 == c2) return true;
+
+        char u1 = Character.toUpperCase(c1), u2 = Character.toUpperCase(c2);
+        return u1 == u2 || Character.toLowerCase(u1) == Character.toLowerCase(u2);
+    }
+
+    private static void checkRange(CharSequence src, int start, int end) {
+        if (start < 0 || start > end || end > src.length()) throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + src.length());
+    }
+
+    private Numbers() {}
+
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.internal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * An on-disk cache of formulas that have been proven to have no unreachable variables.
+ *
+ * <p>Formulas are identified by a {@link #fingerprint(Collection, Collection, Function) fingerprint}. A proof is stored
+ * as a file named after the fingerprint that contains the fingerprint itself. Proofs are written to a temporary file
+ * first and then moved to their final location. Thus, concurrent processes never observe partially written proofs.
+ * (Files with unexpected content are ignored.)</p>
+ *
+ * <p>The cache is best-effort: I/O errors are ignored and simply result in cache misses.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class ReachabilityProofCache {
+
+    private static final String FORMAT = "mjl-options/reachability-proof/1";
+    private static final String SUFFIX = ".proof";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Returns a 128-bit fingerprint of the given formula.
+     *
+     * <p>The fingerprint is canonical: It does not depend on the order of variables, clauses, or literals and ignores
+     * duplicates.</p>
+     *
+     * <p>The fingerprint is a MurmurHash3 of a canonical encoding of the formula. A cryptographic hash function is not
+     * needed since proofs could be forged by anyone with write access to the cache directory anyway, and initializing
+     * one is considerably more expensive than most reachability checks in a freshly started JVM.</p>
+     *
+     * @param vars      the variables of the formula
+     * @param clauses   the clauses of the formula
+     * @param names     a function that returns a unique name for each variable
+     * @param <T>       the type of the variables
+     *
+     * @return  the fingerprint of the formula
+     */
+    public static <T> byte[] fingerprint(Collection<T> vars, Collection<? extends Collection<KNFFormula.Literal<T>>> clauses, Function<T, String> names) {
+        /*
+         * Variables are identified by the rank of their name. Thus, clauses can be canonicalized by sorting their
+         * encoded literals and then sorting the clauses themselves.
+         *
+         * (This is implemented without streams to keep the overhead in freshly started JVMs low.)
+         */
+        Map<T, String> varNames = new HashMap<>();
+
+        for (T var : vars) {
+            if (!varNames.containsKey(var)) varNames.put(var, names.apply(var));
+        }
+
+        for (Collection<KNFFormula.Literal<T>> clause : clauses) {
+            for (KNFFormula.Literal<T> literal : clause) {
+                if (!varNames.containsKey(literal.var)) varNames.put(literal.var, names.apply(literal.var));
+            }
+        }
+
+        String[] sortedNames = new TreeSet<>(varNames.values()).toArray(new String[0]);
+        Map<String, Integer> ranks = new HashMap<>();
+        for (int i = 0; i < sortedNames.length; i++) ranks.put(sortedNames[i], i);
+
+        int[] canonicalVars = new int[vars.size()];
+        int varCount = 0;
+
+        for (T var : vars) canonicalVars[varCount++] = ranks.get(varNames.get(var));
+        canonicalVars = sortedDistinct(canonicalVars);
+
+        int[][] canonicalClauses = new int[clauses.size()][];
+        int clauseCount = 0;
+
+        for (Collection<KNFFormula.Literal<T>> clause : clauses) {
+            int[] literals = new int[clause.size()];
+            int i = 0;
+
+            for (KNFFormula.Literal<T> literal : clause) {
+                int rank = ranks.get(varNames.get(literal.var));
+                literals[i++] = literal.pos ? CDCLSolver.pos(rank) : CDCLSolver.neg(rank);
+            }
+
+            canonicalClauses[clauseCount++] = sortedDistinct(literals);
+        }
+
+        Arrays.sort(canonicalClauses, ReachabilityProofCache::compare);
+
+        Encoder encoder = new Encoder();
+        encoder.write(FORMAT.getBytes(StandardCharsets.UTF_8));
+        encoder.write(sortedNames.length);
+
+        for (String name : sortedNames) encoder.write(name.getBytes(StandardCharsets.UTF_8));
+
+        encoder.write(canonicalVars);
+
+        int[] prev = null;
+        int distinctClauseCount = 0;
+
+        for (int[] clause : canonicalClauses) {
+            if (prev == null || !Arrays.equals(prev, clause)) distinctClauseCount++;
+            prev = clause;
+        }
+
+        encoder.write(distinctClauseCount);
+        prev = null;
+
+        for (int[] clause : canonicalClauses) {
+            if (prev == null || !Arrays.equals(prev, clause)) encoder.write(clause);
+            prev = clause;
+        }
+
+        return murmur3(encoder.bytes, encoder.size);
+    }
+
+    private static int[] sortedDistinct(int[] values) {
+        Arrays.sort(values);
+        int size = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[i - 1]) values[size++] = values[i];
+        }
+
+        return (size == values.length) ? values : Arrays.copyOf(values, size);
+    }
+
+    private static int compare(int[] a, int[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            if (a[i] != b[i]) return Integer.compare(a[i], b[i]);
+        }
+
+        return Integer.compare(a.length, b.length);
+    }
+
+    /*
+     * MurmurHash3 (x64, 128-bit) with seed 0.
+     */
+    private static byte[] murmur3(byte[] data, int length) {
+        final long c1 = 0x87c37b91114253d5L, c2 = 0x4cf5ad432745937fL;
+        long h1 = 0, h2 = 0;
+
+        int blocks = length >>> 4;
+
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLongLE(data, i << 4), k2 = getLongLE(data, (i << 4) + 8);
+
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        int tail = blocks << 4;
+        long k1 = 0, k2 = 0;
+
+        for (int i = length - tail - 1; i >= 8; i--) k2 ^= (data[tail + i] & 0xFFL) << ((i - 8) << 3);
+        if (length - tail > 8) {
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+        }
+
+        for (int i = Math.min(length - tail, 8) - 1; i >= 0; i--) k1 ^= (data[tail + i] & 0xFFL) << (i << 3);
+        if (length - tail > 0) {
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+        }
+
+        h1 ^= length; h2 ^= length;
+        h1 += h2; h2 += h1;
+        h1 = fmix64(h1); h2 = fmix64(h2);
+        h1 += h2; h2 += h1;
+
+        byte[] hash = new byte[16];
+
+        for (int i = 0; i < 8; i++) {
+            hash[i] = (byte) (h1 >>> (i << 3));
+            hash[i + 8] = (byte) (h2 >>> (i << 3));
+        }
+
+        return hash;
+    }
+
+    private static long getLongLE(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) value = (value << 8) | (data[offset + i] & 0xFFL);
+
+        return value;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+
+        return k;
+    }
+
+    /*
+     * A growable buffer for the canonical encoding of a formula. Values are prefixed by their length to make
+     * concatenations unambiguous.
+     */
+    private static final class Encoder {
+
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        private void write(int value) {
+            if (this.size + 4 > this.bytes.length) this.bytes = Arrays.copyOf(this.bytes, Math.max(this.size + 4, this.bytes.length * 2));
+
+            this.bytes[this.size++] = (byte) (value >>> 24);
+            this.bytes[this.size++] = (byte) (value >>> 16);
+            this.bytes[this.size++] = (byte) (value >>> 8);
+            this.bytes[this.size++] = (byte) value;
+        }
+
+        private void write(byte[] values) {
+            this.write(values.length);
+
+            if (this.size + values.length > this.bytes.length) this.bytes = Arrays.copyOf(this.bytes, Math.max(this.size + values.length, this.bytes.length * 2));
+
+            System.arraycopy(values, 0, this.bytes, this.size, values.length);
+            this.size += values.length;
+        }
+
+        private void write(int[] values) {
+            this.write(values.length);
+            for (int value : values) this.write(value);
+        }
+
+    }
+
+    public static String toHexString(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(bytes[i] >>> 4) & 0xF];
+            chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+
+        return new String(chars);
+    }
+
+    private final Path directory;
+
+    public ReachabilityProofCache(Path directory) {
+        this.directory = Objects.requireNonNull(directory);
+    }
+
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Returns whether a proof for the formula with the given fingerprint is present.
+     *
+     * @param fingerprint   the fingerprint of the formula
+     *
+     * @return  whether a proof for the formula is present
+     */
+    public boolean contains(byte[] fingerprint) {
+        String name = toHexString(fingerprint);
+        Path file = this.directory.resolve(name + SUFFIX);
+
+        try {
+            return Files.isRegularFile(file) && Arrays.equals(Files.readAllBytes(file), content(name));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stores a proof for the formula with the given fingerprint.
+     *
+     * @param fingerprint   the fingerprint of the formula
+     */
+    public void put(byte[] fingerprint) {
+        String name = toHexString(fingerprint);
+        Path file = this.directory.resolve(name + SUFFIX);
+        Path tmp = null;
+
+        try {
+            Files.createDirectories(this.directory);
+
+            tmp = Files.createTempFile(this.directory, name, ".tmp");
+            Files.write(tmp, content(name));
+
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            tmp = null;
+        } catch (IOException ignored) {
+            // The proof is simply not cached. (Another process might have stored it concurrently.)
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private static byte[] content(String name) {
+        return (FORMAT + "\n" + name + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+}
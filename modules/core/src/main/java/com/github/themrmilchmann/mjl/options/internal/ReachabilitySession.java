@@ -0,0 +1,398 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An incremental reachability analysis for a growing formula in conjunctive normal form.
+ *
+ * <p>A variable X is reachable if the formula is satisfiable under the assumption J(X) = 1. Results are retained
+ * between {@link #calculateUnreachable(Collection) queries}, and only variables that might have been affected by a
+ * change are checked again:</p>
+ *
+ * <ul>
+ * <li>Adding a variable only requires checking the new variable.</li>
+ * <li>Adding a clause can never make an unreachable variable reachable. A reachable variable only needs to be checked
+ * again if the model that witnessed its reachability does not satisfy the new clause.</li>
+ * </ul>
+ *
+ * <p>Variables are partitioned into components of variables that are (transitively) connected by clauses. Since
+ * components do not share any variables, each component is solved independently (and in parallel, if there are enough
+ * components to be checked). If any component is unsatisfiable (or if the formula contains an empty clause), the formula
+ * is unsatisfiable and all variables are unreachable.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class ReachabilitySession<T> {
+
+    private static final int PARALLELISM_THRESHOLD = 16;
+
+    private static final byte UNKNOWN = 0, REACHABLE = 1, UNREACHABLE = 2;
+
+    private final Map<T, Integer> indices = new HashMap<>();
+    private final List<T> variables = new ArrayList<>();
+
+    /* Union-find over the variables (the root of a component is the index of the component) */
+    private int[] parents = new int[8];
+    private Component[] components = new Component[8];
+
+    /* The index of each variable in its component */
+    private int[] locals = new int[8];
+
+    /* Whether an empty clause has been added (which does not belong to any component) */
+    private boolean isUnsatisfiable;
+
+    /**
+     * Adds the given variable to this session (unless it is already known).
+     *
+     * @param var   the variable to add
+     */
+    public void addVariable(T var) {
+        this.indexOf(var);
+    }
+
+    /**
+     * Adds the given clause (a disjunction of the given literals) to this session.
+     *
+     * @param clause    the clause to add
+     */
+    public void addClause(List<KNFFormula.Literal<T>> clause) {
+        int[] literals = new int[clause.size()];
+        int root = -1;
+
+        for (int i = 0; i < literals.length; i++) {
+            KNFFormula.Literal<T> literal = clause.get(i);
+            int index = this.indexOf(literal.var);
+
+            literals[i] = literal.pos ? CDCLSolver.pos(index) : CDCLSolver.neg(index);
+            root = (root == -1) ? this.find(index) : this.union(root, this.find(index));
+        }
+
+        if (root != -1) {
+            this.components[root].addClause(literals, this.locals);
+        } else {
+            // An empty clause cannot be satisfied.
+            this.isUnsatisfiable = true;
+        }
+    }
+
+    /**
+     * Returns all of the given variables that are not reachable.
+     *
+     * @param vars  the variables to check
+     *
+     * @return  the unreachable variables
+     */
+    public Set<T> calculateUnreachable(Collection<T> vars) {
+        List<Component> dirty = new ArrayList<>();
+
+        for (int var = 0; var < this.variables.size(); var++) {
+            Component component = this.components[var];
+            if (component == null || !component.isDirty) continue;
+
+            if (component.solver == null) {
+                component.check();
+            } else {
+                dirty.add(component);
+            }
+        }
+
+        if (dirty.size() >= PARALLELISM_THRESHOLD) {
+            dirty.parallelStream().forEach(Component::check);
+        } else {
+            dirty.forEach(Component::check);
+        }
+
+        boolean isUnsatisfiable = this.isUnsatisfiable;
+
+        for (int var = 0; var < this.variables.size(); var++) {
+            Component component = this.components[var];
+
+            if (component != null && component.isUnsatisfiable) {
+                isUnsatisfiable = true;
+                break;
+            }
+        }
+
+        Set<T> unreachable = new HashSet<>();
+
+        for (T var : vars) {
+            Integer index = this.indices.get(var);
+            if (index == null) throw new IllegalArgumentException("Unknown variable: " + var);
+
+            if (isUnsatisfiable || this.components[this.find(index)].states[this.locals[index]] == UNREACHABLE) unreachable.add(var);
+        }
+
+        return unreachable;
+    }
+
+    private int indexOf(T var) {
+        Integer index = this.indices.get(var);
+        if (index != null) return index;
+
+        int newIndex = this.variables.size();
+        this.indices.put(var, newIndex);
+        this.variables.add(var);
+
+        if (newIndex == this.parents.length) {
+            this.parents = Arrays.copyOf(this.parents, newIndex * 2);
+            this.components = Arrays.copyOf(this.components, newIndex * 2);
+            this.locals = Arrays.copyOf(this.locals, newIndex * 2);
+        }
+
+        this.parents[newIndex] = newIndex;
+
+        Component component = this.components[newIndex] = new Component();
+        this.locals[newIndex] = component.addVariable(newIndex);
+
+        return newIndex;
+    }
+
+    private int find(int var) {
+        while (this.parents[var] != var) {
+            this.parents[var] = this.parents[this.parents[var]];
+            var = this.parents[var];
+        }
+
+        return var;
+    }
+
+    /*
+     * Merges the components with the given roots (by adding the smaller component to the larger one) and returns the
+     * root of the merged component.
+     */
+    private int union(int a, int b) {
+        if (a == b) return a;
+
+        if (this.components[a].size < this.components[b].size) {
+            int tmp = a;
+            a = b;
+            b = tmp;
+        }
+
+        Component target = this.components[a], source = this.components[b];
+        target.merge(source, this.locals);
+
+        this.parents[b] = a;
+        this.components[b] = null;
+
+        return a;
+    }
+
+    /*
+     * A set of variables that are (transitively) connected by clauses together with the clauses over them. Literals
+     * in stored clauses refer to the global variable indices, while the solver uses the local indices of variables.
+     */
+    private static final class Component {
+
+        private int[] vars = new int[1];
+        private int size;
+
+        private final List<int[]> clauses = new ArrayList<>();
+        private CDCLSolver solver;
+
+        private byte[] states = new byte[1];
+
+        /* The index of the model that witnessed the reachability of each reachable variable. */
+        private int[] witnesses = new int[1];
+
+        /* The models found so far as bitsets (or null if a model has been invalidated by a clause). */
+        private final List<long[]> models = new ArrayList<>();
+
+        private int unknownCount;
+        private boolean isDirty, isUnsatisfiable;
+
+        private int addVariable(int var) {
+            int local = this.size++;
+
+            if (local == this.vars.length) {
+                this.vars = Arrays.copyOf(this.vars, local * 2);
+                this.states = Arrays.copyOf(this.states, local * 2);
+                this.witnesses = Arrays.copyOf(this.witnesses, local * 2);
+            }
+
+            this.vars[local] = var;
+            this.unknownCount++;
+            this.isDirty = true;
+
+            if (this.solver != null) this.solver.newVariable();
+            return local;
+        }
+
+        private void addClause(int[] literals, int[] locals) {
+            this.clauses.add(literals);
+            this.isDirty = true;
+
+            if (this.solver == null) {
+                this.solver = new CDCLSolver(this.size);
+
+                // Variables of a component without clauses are reachable without a witnessing model.
+                for (int var = 0; var < this.size; var++) {
+                    if (this.states[var] == REACHABLE) {
+                        this.states[var] = UNKNOWN;
+                        this.unknownCount++;
+                    }
+                }
+            }
+
+            int[] localLiterals = toLocal(literals, locals);
+            this.solver.addClause(localLiterals);
+
+            for (int i = 0; i < this.models.size(); i++) {
+                long[] model = this.models.get(i);
+                if (model == null || satisfies(model, localLiterals)) continue;
+
+                this.models.set(i, null);
+
+                for (int var = 0; var < this.size; var++) {
+                    if (this.states[var] == REACHABLE && this.witnesses[var] == i) {
+                        this.states[var] = UNKNOWN;
+                        this.unknownCount++;
+                    }
+                }
+            }
+        }
+
+        /*
+         * Moves all variables and clauses of the given component into this component.
+         *
+         * Unreachable variables remain unreachable, but since the models of either component are not models of the
+         * merged component, all reachable variables need to be checked again.
+         */
+        private void merge(Component other, int[] locals) {
+            for (int var = 0; var < this.size; var++) {
+                if (this.states[var] == REACHABLE) {
+                    this.states[var] = UNKNOWN;
+                    this.unknownCount++;
+                }
+            }
+
+            this.models.clear();
+
+            if (this.solver == null && !other.clauses.isEmpty()) this.solver = new CDCLSolver(this.size);
+
+            for (int i = 0; i < other.size; i++) {
+                int var = other.vars[i];
+                int local = locals[var] = this.addVariable(var);
+
+                if (other.states[i] == UNREACHABLE) {
+                    this.states[local] = UNREACHABLE;
+                    this.unknownCount--;
+
+                    this.solver.addClause(CDCLSolver.neg(local));
+                }
+            }
+
+            for (int[] literals : other.clauses) {
+                this.clauses.add(literals);
+                this.solver.addClause(toLocal(literals, locals));
+            }
+
+            this.isUnsatisfiable |= other.isUnsatisfiable;
+            this.isDirty = true;
+        }
+
+        private void check() {
+            if (this.solver == null) {
+                // Without any clauses, every variable is reachable.
+                for (int var = 0; var < this.size; var++) this.states[var] = REACHABLE;
+                this.unknownCount = 0;
+                this.isDirty = false;
+
+                return;
+            }
+
+            if (this.unknownCount > 0) {
+                for (int var = 0; var < this.size; var++) {
+                    if (this.states[var] == UNKNOWN) this.check(var);
+                }
+            }
+
+            if (!this.isUnsatisfiable) {
+                boolean hasReachable = false;
+
+                for (int var = 0; var < this.size; var++) {
+                    if (this.states[var] == REACHABLE) {
+                        hasReachable = true;
+                        break;
+                    }
+                }
+
+                this.isUnsatisfiable = !hasReachable && !this.solver.solve();
+            }
+
+            this.isDirty = false;
+        }
+
+        private void check(int var) {
+            if (this.solver.solve(CDCLSolver.pos(var))) {
+                long[] model = new long[(this.size + 63) >>> 6];
+                int modelIndex = this.models.size();
+
+                for (int i = 0; i < this.size; i++) {
+                    if (!this.solver.modelValue(i)) continue;
+
+                    model[i >>> 6] |= 1L << i;
+
+                    if (this.states[i] == UNKNOWN) {
+                        this.states[i] = REACHABLE;
+                        this.witnesses[i] = modelIndex;
+                        this.unknownCount--;
+                    }
+                }
+
+                this.models.add(model);
+            } else {
+                this.states[var] = UNREACHABLE;
+                this.unknownCount--;
+
+                // The variable is false in every model. Adding this as a unit clause simplifies subsequent queries.
+                this.solver.addClause(CDCLSolver.neg(var));
+            }
+        }
+
+        private static int[] toLocal(int[] literals, int[] locals) {
+            int[] localLiterals = new int[literals.length];
+
+            for (int i = 0; i < literals.length; i++) {
+                localLiterals[i] = (locals[literals[i] >>> 1] << 1) | (literals[i] & 1);
+            }
+
+            return localLiterals;
+        }
+
+    }
+
+    private static boolean satisfies(long[] model, int[] literals) {
+        for (int literal : literals) {
+            int var = literal >>> 1;
+            boolean value = (var >>> 6) < model.length && (model[var >>> 6] & (1L << var)) != 0;
+
+            if (value == ((literal & 1) == 0)) return true;
+        }
+
+        return false;
+    }
+
+}
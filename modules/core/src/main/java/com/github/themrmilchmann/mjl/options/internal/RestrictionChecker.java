@@ -0,0 +1,426 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.internal;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+import com.github.themrmilchmann.mjl.options.Option;
+
+/**
+ * A compiled form of a list of restrictions that checks them against a bitset of present options (indexed by ordinal).
+ *
+ * <p>Each restriction is compiled to (sparse) bitmasks over the ordinals of its options and is indexed by an option
+ * that must be present for the restriction to be violated:</p>
+ * <ul>
+ * <li>An implication is indexed by its trigger with the lowest ordinal (or checked unconditionally if it has no
+ * triggers).</li>
+ * <li>A mutual implication is indexed by all of its members but only evaluated for its lowest present member.</li>
+ * </ul>
+ *
+ * <p>Thus, checking a bitset only touches the restrictions of present options and evaluates each of them at most once.
+ * The cost of a check does not depend on the total number of restrictions.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class RestrictionChecker {
+
+    public static RestrictionChecker compile(List<RestrictionImpl> restrictions, ToIntFunction<Option<?>> ordinals, int parameterCount) {
+        Check[] checks = new Check[restrictions.size()];
+        List<Integer> unconditional = new ArrayList<>();
+
+        List<List<Integer>> byOrdinal = new ArrayList<>(Collections.nCopies(parameterCount, null));
+
+        for (int i = 0; i < checks.length; i++) {
+            RestrictionImpl restriction = restrictions.get(i);
+            Check check;
+
+            if (restriction instanceof RestrictionImpl.ImplyPresence) {
+                RestrictionImpl.ImplyPresence implication = (RestrictionImpl.ImplyPresence) restriction;
+                Mask triggers = Mask.of(implication.triggers, ordinals);
+
+                check = new ImplicationCheck(
+                    triggers,
+                    Mask.of(implication.targets, ordinals),
+                    implication.limiters.isEmpty() ? null : Mask.of(implication.limiters, ordinals),
+                    implication.shouldBePresent
+                );
+
+                if (triggers.isEmpty()) {
+                    unconditional.add(i);
+                } else {
+                    index(byOrdinal, triggers.lowest(), i);
+                }
+            } else if (restriction instanceof RestrictionImpl.MutualImplication) {
+                RestrictionImpl.MutualImplication implication = (RestrictionImpl.MutualImplication) restriction;
+                Mask members = Mask.of(implication.options, ordinals);
+
+                check = new MutualImplicationCheck(members, implication.options.size(), implication.shouldBePresent);
+                for (Option<?> member : implication.options) index(byOrdinal, ordinals.applyAsInt(member), i);
+            } else {
+                throw new IllegalArgumentException("Unsupported restriction: " + restriction);
+            }
+
+            checks[i] = check;
+        }
+
+        int[] offsets = new int[parameterCount + 1];
+        for (int i = 0; i < parameterCount; i++) offsets[i + 1] = offsets[i] + (byOrdinal.get(i) != null ? byOrdinal.get(i).size() : 0);
+
+        int[] indices = new int[offsets[parameterCount]];
+
+        for (int i = 0; i < parameterCount; i++) {
+            List<Integer> indexed = byOrdinal.get(i);
+            if (indexed == null) continue;
+
+            for (int j = 0; j < indexed.size(); j++) indices[offsets[i] + j] = indexed.get(j);
+        }
+
+        return new RestrictionChecker(checks, unconditional.stream().mapToInt(Integer::intValue).toArray(), offsets, indices);
+    }
+
+    /**
+     * Reads a checker that has been {@link #write(DataOutput) written} before.
+     *
+     * @param in              the buffer to read from
+     * @param parameterCount    the number of parameters (which bounds the ordinals)
+     *
+     * @return  the checker
+     *
+     * @throws IllegalArgumentException if the checker is malformed
+     */
+    public static RestrictionChecker read(ByteBuffer in, int parameterCount) {
+        int wordCount = (parameterCount + 63) >>> 6;
+        Check[] checks = new Check[in.getInt()];
+
+        for (int i = 0; i < checks.length; i++) {
+            byte kind = in.get();
+
+            switch (kind) {
+                case ImplicationCheck.KIND: {
+                    Mask triggers = Mask.read(in, wordCount), targets = Mask.read(in, wordCount);
+                    Mask limiters = (in.get() != 0) ? Mask.read(in, wordCount) : null;
+
+                    checks[i] = new ImplicationCheck(triggers, targets, limiters, in.get() != 0);
+                    break;
+                }
+                case MutualImplicationCheck.KIND: {
+                    Mask members = Mask.read(in, wordCount);
+                    checks[i] = new MutualImplicationCheck(members, in.getInt(), in.get() != 0);
+                    break;
+                }
+                default: throw new IllegalArgumentException("Unsupported check: " + kind);
+            }
+        }
+
+        int[] unconditional = readInts(in, checks.length), offsets = readInts(in, Integer.MAX_VALUE), indices = readInts(in, checks.length);
+        if (offsets.length != parameterCount + 1 || offsets[0] != 0 || offsets[parameterCount] != indices.length) throw new IllegalArgumentException("Malformed index");
+
+        for (int i = 0; i < parameterCount; i++) {
+            if (offsets[i] > offsets[i + 1]) throw new IllegalArgumentException("Malformed index");
+        }
+
+        return new RestrictionChecker(checks, unconditional, offsets, indices);
+    }
+
+    /*
+     * Reads an array of integers in [0, bound).
+     */
+    private static int[] readInts(ByteBuffer in, int bound) {
+        int[] array = new int[in.getInt()];
+
+        in.asIntBuffer().get(array);
+        in.position(in.position() + 4 * array.length);
+
+        for (int value : array) {
+            if (value < 0 || value >= bound) throw new IllegalArgumentException("Value out of bounds: " + value);
+        }
+
+        return array;
+    }
+
+    private static void writeInts(DataOutput out, int[] array) throws IOException {
+        out.writeInt(array.length);
+        for (int value : array) out.writeInt(value);
+    }
+
+    private static void index(List<List<Integer>> byOrdinal, int ordinal, int restriction) {
+        List<Integer> indexed = byOrdinal.get(ordinal);
+        if (indexed == null) byOrdinal.set(ordinal, indexed = new ArrayList<>(2));
+
+        indexed.add(restriction);
+    }
+
+    private final Check[] checks;
+    private final int[] unconditional;
+
+    /* The indices of the restrictions that are indexed by ordinal o are in indices[offsets[o], offsets[o + 1]). */
+    private final int[] offsets;
+    private final int[] indices;
+
+    private RestrictionChecker(Check[] checks, int[] unconditional, int[] offsets, int[] indices) {
+        this.checks = checks;
+        this.unconditional = unconditional;
+        this.offsets = offsets;
+        this.indices = indices;
+    }
+
+    /**
+     * Writes the compiled checks and the index of this checker to the given output.
+     *
+     * @param out   the output to write to
+     *
+     * @throws IOException  if an I/O error occurs
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(this.checks.length);
+        for (Check check : this.checks) check.write(out);
+
+        writeInts(out, this.unconditional);
+        writeInts(out, this.offsets);
+        writeInts(out, this.indices);
+    }
+
+    /**
+     * Returns the index of a restriction that is violated by the given bitset of present options, or {@code -1} if no
+     * restriction is violated.
+     *
+     * @param present   the bitset of present options
+     *
+     * @return  the index of a violated restriction, or {@code -1}
+     */
+    public int findViolation(long[] present) {
+        for (int index : this.unconditional) {
+            if (this.checks[index].isViolatedBy(present)) return index;
+        }
+
+        if (this.indices.length == 0) return -1;
+
+        for (int word = 0; word < present.length; word++) {
+            for (long bits = present[word]; bits != 0; bits &= bits - 1) {
+                int ordinal = (word << 6) + Long.numberOfTrailingZeros(bits);
+
+                for (int i = this.offsets[ordinal]; i < this.offsets[ordinal + 1]; i++) {
+                    int index = this.indices[i];
+                    Check check = this.checks[index];
+
+                    if (check.isEntry(ordinal, present) && check.isViolatedBy(present)) return index;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns whether the restriction with the given index is violated by the given bitset of present options.
+     *
+     * @param index     the index of the restriction
+     * @param present   the bitset of present options
+     *
+     * @return  whether the restriction is violated
+     */
+    public boolean isViolated(int index, long[] present) {
+        return this.checks[index].isViolatedBy(present);
+    }
+
+    private abstract static class Check {
+
+        boolean isEntry(int ordinal, long[] present) {
+            return true;
+        }
+
+        abstract boolean isViolatedBy(long[] present);
+
+        abstract void write(DataOutput out) throws IOException;
+
+    }
+
+    private static final class ImplicationCheck extends Check {
+
+        static final byte KIND = 0;
+
+        private final Mask triggers, targets;
+        private final Mask limiters;
+        private final boolean shouldBePresent;
+
+        private ImplicationCheck(Mask triggers, Mask targets, Mask limiters, boolean shouldBePresent) {
+            this.triggers = triggers;
+            this.targets = targets;
+            this.limiters = limiters;
+            this.shouldBePresent = shouldBePresent;
+        }
+
+        @Override
+        boolean isViolatedBy(long[] present) {
+            if (!this.triggers.isContainedIn(present)) return false;
+            if (this.limiters != null && this.limiters.isContainedIn(present)) return false;
+
+            return this.shouldBePresent ? !this.targets.isContainedIn(present) : this.targets.intersects(present);
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeByte(KIND);
+            this.triggers.write(out);
+            this.targets.write(out);
+
+            out.writeBoolean(this.limiters != null);
+            if (this.limiters != null) this.limiters.write(out);
+
+            out.writeBoolean(this.shouldBePresent);
+        }
+
+    }
+
+    private static final class MutualImplicationCheck extends Check {
+
+        static final byte KIND = 1;
+
+        private final Mask members;
+        private final int size;
+        private final boolean shouldBePresent;
+
+        private MutualImplicationCheck(Mask members, int size, boolean shouldBePresent) {
+            this.members = members;
+            this.size = size;
+            this.shouldBePresent = shouldBePresent;
+        }
+
+        @Override
+        boolean isEntry(int ordinal, long[] present) {
+            return this.members.lowestIn(present) == ordinal;
+        }
+
+        @Override
+        boolean isViolatedBy(long[] present) {
+            int count = this.members.countIn(present);
+            return this.shouldBePresent ? (count != 0 && count != this.size) : count > 1;
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeByte(KIND);
+            this.members.write(out);
+            out.writeInt(this.size);
+            out.writeBoolean(this.shouldBePresent);
+        }
+
+    }
+
+    /*
+     * A sparse bitmask that only stores the non-zero words.
+     */
+    private static final class Mask {
+
+        static Mask of(Set<Option<?>> options, ToIntFunction<Option<?>> ordinals) {
+            int[] sorted = options.stream().mapToInt(ordinals).sorted().toArray();
+
+            int[] words = new int[sorted.length];
+            long[] bits = new long[sorted.length];
+            int count = 0;
+
+            for (int ordinal : sorted) {
+                int word = ordinal >>> 6;
+                if (count == 0 || words[count - 1] != word) words[count++] = word;
+
+                bits[count - 1] |= 1L << ordinal;
+            }
+
+            return new Mask(Arrays.copyOf(words, count), Arrays.copyOf(bits, count));
+        }
+
+        static Mask read(ByteBuffer in, int wordCount) {
+            int count = in.getInt();
+            int[] words = new int[count];
+            long[] bits = new long[count];
+
+            for (int i = 0; i < count; i++) {
+                words[i] = in.getInt();
+                bits[i] = in.getLong();
+
+                if (words[i] < 0 || words[i] >= wordCount) throw new IllegalArgumentException("Word out of bounds: " + words[i]);
+            }
+
+            return new Mask(words, bits);
+        }
+
+        private final int[] words;
+        private final long[] bits;
+
+        private Mask(int[] words, long[] bits) {
+            this.words = words;
+            this.bits = bits;
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeInt(this.words.length);
+
+            for (int i = 0; i < this.words.length; i++) {
+                out.writeInt(this.words[i]);
+                out.writeLong(this.bits[i]);
+            }
+        }
+
+        boolean isEmpty() {
+            return this.words.length == 0;
+        }
+
+        int lowest() {
+            return (this.words[0] << 6) + Long.numberOfTrailingZeros(this.bits[0]);
+        }
+
+        boolean isContainedIn(long[] present) {
+            for (int i = 0; i < this.words.length; i++) {
+                if ((present[this.words[i]] & this.bits[i]) != this.bits[i]) return false;
+            }
+
+            return true;
+        }
+
+        boolean intersects(long[] present) {
+            for (int i = 0; i < this.words.length; i++) {
+                if ((present[this.words[i]] & this.bits[i]) != 0) return true;
+            }
+
+            return false;
+        }
+
+        int countIn(long[] present) {
+            int count = 0;
+            for (int i = 0; i < this.words.length; i++) count += Long.bitCount(present[this.words[i]] & this.bits[i]);
+
+            return count;
+        }
+
+        int lowestIn(long[] present) {
+            for (int i = 0; i < this.words.length; i++) {
+                long bits = present[this.words[i]] & this.bits[i];
+                if (bits != 0) return (this.words[i] << 6) + Long.numberOfTrailingZeros(bits);
+            }
+
+            return -1;
+        }
+
+    }
+
+}
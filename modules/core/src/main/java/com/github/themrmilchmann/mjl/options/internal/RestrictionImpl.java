@@ -15,9 +15,15 @@
  */
 package com.github.themrmilchmann.mjl.options.internal;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import com.github.themrmilchmann.mjl.options.Option;
@@ -29,16 +35,77 @@ import com.github.themrmilchmann.mjl.options.Option;
  */
 public abstract class RestrictionImpl {
 
+    private static final byte KIND_IMPLY_PRESENCE = 0,
+                              KIND_MUTUAL_IMPLICATION = 1;
+
+    /**
+     * Reads a restriction that has been {@link #write(DataOutput, ToIntFunction) written} before.
+     *
+     * @param in        the buffer to read from
+     * @param options   a function that returns the option for an ordinal
+     *
+     * @return  the restriction
+     *
+     * @throws IllegalArgumentException if the restriction is malformed
+     */
+    public static RestrictionImpl read(ByteBuffer in, IntFunction<Option<?>> options) {
+        byte kind = in.get();
+
+        switch (kind) {
+            case KIND_IMPLY_PRESENCE: {
+                Set<Option<?>> triggers = readOptions(in, options), targets = readOptions(in, options), limiters = readOptions(in, options);
+                return new ImplyPresence(triggers, targets, limiters, in.get() != 0);
+            }
+            case KIND_MUTUAL_IMPLICATION: {
+                Set<Option<?>> members = readOptions(in, options);
+                return new MutualImplication(members, in.get() != 0);
+            }
+            default: throw new IllegalArgumentException("Unsupported restriction: " + kind);
+        }
+    }
+
+    private static Set<Option<?>> readOptions(ByteBuffer in, IntFunction<Option<?>> options) {
+        int count = in.getInt();
+        Set<Option<?>> set = new HashSet<>();
+
+        for (int i = 0; i < count; i++) set.add(options.apply(in.getInt()));
+        return set;
+    }
+
+    /*
+     * Options are written as their (sorted) ordinals.
+     */
+    private static void writeOptions(DataOutput out, Set<Option<?>> options, ToIntFunction<Option<?>> ordinals) throws IOException {
+        int[] sorted = new int[options.size()];
+        int i = 0;
+
+        for (Option<?> option : options) sorted[i++] = ordinals.applyAsInt(option);
+        Arrays.sort(sorted);
+
+        out.writeInt(sorted.length);
+        for (int ordinal : sorted) out.writeInt(ordinal);
+    }
+
     public abstract boolean appliesTo(Set<Option<?>> options);
     public abstract boolean isViolatedBy(Set<Option<?>> options);
 
     public abstract Set<Set<KNFFormula.Literal<Option<?>>>> getClauses();
     public abstract Set<Option<?>> getOptions();
 
+    /**
+     * Writes this restriction to the given output.
+     *
+     * @param out       the output to write to
+     * @param ordinals  a function that returns the ordinal of an option
+     *
+     * @throws IOException  if an I/O error occurs
+     */
+    public abstract void write(DataOutput out, ToIntFunction<Option<?>> ordinals) throws IOException;
+
     public static final class ImplyPresence extends RestrictionImpl {
 
-        private final Set<Option<?>> triggers, targets, limiters;
-        private final boolean shouldBePresent;
+        final Set<Option<?>> triggers, targets, limiters;
+        final boolean shouldBePresent;
 
         public ImplyPresence(Set<Option<?>> triggers, Set<Option<?>> targets, Set<Option<?>> limiters, boolean shouldBePresent) {
             this.triggers = triggers;
@@ -49,13 +116,18 @@ public abstract class RestrictionImpl {
 
         @Override
         public boolean appliesTo(Set<Option<?>> options) {
-            return options.containsAll(this.triggers) && !options.containsAll(this.limiters);
+            return options.containsAll(this.triggers) && (this.limiters.isEmpty() || !options.containsAll(this.limiters));
         }
 
         @Override
         public boolean isViolatedBy(Set<Option<?>> options) {
             if (!this.appliesTo(options)) return false;
-            return this.shouldBePresent ? this.targets.stream().anyMatch(it -> !options.contains(it)) : this.targets.stream().anyMatch(options::contains);
+
+            for (Option<?> target : this.targets) {
+                if (options.contains(target) != this.shouldBePresent) return true;
+            }
+
+            return false;
         }
 
         /*
@@ -106,6 +178,15 @@ public abstract class RestrictionImpl {
             clauses.add(clause);
         }
 
+        @Override
+        public void write(DataOutput out, ToIntFunction<Option<?>> ordinals) throws IOException {
+            out.writeByte(KIND_IMPLY_PRESENCE);
+            writeOptions(out, this.triggers, ordinals);
+            writeOptions(out, this.targets, ordinals);
+            writeOptions(out, this.limiters, ordinals);
+            out.writeBoolean(this.shouldBePresent);
+        }
+
         @Override
         public Set<Option<?>> getOptions() {
             return Stream.concat(Stream.concat(this.triggers.stream(), this.targets.stream()), this.limiters.stream()).collect(Collectors.toSet());
@@ -136,8 +217,8 @@ public abstract class RestrictionImpl {
 
     public static final class MutualImplication extends RestrictionImpl {
 
-        private final Set<Option<?>> options;
-        private final boolean shouldBePresent;
+        final Set<Option<?>> options;
+        final boolean shouldBePresent;
 
         public MutualImplication(Set<Option<?>> options, boolean shouldBePresent) {
             this.options = options;
@@ -151,38 +232,56 @@ public abstract class RestrictionImpl {
 
         @Override
         public boolean isViolatedBy(Set<Option<?>> options) {
-            return this.options.stream().filter(options::contains).count() > 1;
+            int count = 0;
+
+            for (Option<?> option : this.options) {
+                if (options.contains(option)) count++;
+            }
+
+            return this.shouldBePresent ? (count != 0 && count != this.options.size()) : count > 1;
         }
 
         /*
          * (A => B ^ C ^ D) ^ (B => A ^ C ^ D) ^ (C => A ^ B ^ D) ^ (D => A ^ B ^ C)
          * <=> (-A v (B ^ C ^ D)) ^ ...
          * <=> (-A v B) ^ (-A v C) ^ (-A v D) ^ ...
+         *
+         * and respectively for mutual exclusion:
+         *
+         * (A => -B ^ -C ^ -D) ^ ...
+         * <=> (-A v -B) ^ (-A v -C) ^ (-A v -D) ^ ...
          */
         @Override
         public Set<Set<KNFFormula.Literal<Option<?>>>> getClauses() {
             Set<Set<KNFFormula.Literal<Option<?>>>> clauses = new HashSet<>();
 
             for (Option<?> target : this.options) {
-                Set<KNFFormula.Literal<Option<?>>> clause = new HashSet<>();
-                clause.add(KNFFormula.Literal.neg(target));
-
                 for (Option<?> trigger : this.options) {
                     if (trigger == target) continue;
 
+                    Set<KNFFormula.Literal<Option<?>>> clause = new HashSet<>();
+                    clause.add(KNFFormula.Literal.neg(target));
+
                     if (this.shouldBePresent) {
                         clause.add(KNFFormula.Literal.pos(trigger));
                     } else {
                         clause.add(KNFFormula.Literal.neg(trigger));
                     }
-                }
 
-                clauses.add(clause);
+                    clauses.add(clause);
+                }
             }
 
             return clauses;
         }
 
+        @Override
+        public void write(DataOutput out, ToIntFunction<Option<?>> ordinals) throws IOException {
+            out.writeByte(KIND_MUTUAL_IMPLICATION);
+            writeOptions(out, this.options, ordinals);
+            out.writeBoolean(this.shouldBePresent);
+        }
+
         @Override
         public Set<Option<?>> getOptions() {
             return this.options;
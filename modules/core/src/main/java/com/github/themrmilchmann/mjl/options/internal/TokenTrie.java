@@ -0,0 +1,266 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.internal;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An immutable trie that maps strings to non-negative integer values.
+ *
+ * <p>The trie is packed into flat arrays: Nodes are stored in pre-order and children are sorted by their label. Thus,
+ * the subtree of a node {@code n} occupies the range {@code [n, n + size[n])}, the first child of a node is stored at
+ * {@code n + 1}, and its next sibling at {@code n + size[n]}. Lookups operate on character ranges directly and neither
+ * allocate nor box.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class TokenTrie {
+
+    /**
+     * The value returned by {@link #getByPrefix(CharSequence, int, int)} if the prefix is shared by multiple keys.
+     */
+    public static final int AMBIGUOUS = -2;
+
+    private static final int NO_VALUE = -1;
+
+    private final char[] labels;
+    private final int[] sizes;
+
+    /* The value of each node, or NO_VALUE if the node does not terminate a key */
+    private final int[] values;
+
+    /* The value of the only key in the subtree of each node, NO_VALUE if there is none, or AMBIGUOUS */
+    private final int[] uniqueValues;
+
+    /**
+     * Creates a new trie.
+     *
+     * @param keys      the keys (which must be distinct)
+     * @param values    the values for the keys (which must be non-negative)
+     */
+    public TokenTrie(String[] keys, int[] values) {
+        if (keys.length != values.length) throw new IllegalArgumentException();
+
+        Integer[] order = new Integer[keys.length];
+        int capacity = 1;
+
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = i;
+            capacity += keys[i].length();
+        }
+
+        Arrays.sort(order, (alpha, beta) -> keys[alpha].compareTo(keys[beta]));
+
+        String[] sortedKeys = new String[keys.length];
+        int[] sortedValues = new int[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            sortedKeys[i] = keys[order[i]];
+            sortedValues[i] = values[order[i]];
+
+            if (i > 0 && sortedKeys[i].equals(sortedKeys[i - 1])) throw new IllegalArgumentException("Duplicate key: " + sortedKeys[i]);
+            if (sortedValues[i] < 0) throw new IllegalArgumentException("Negative value: " + sortedValues[i]);
+        }
+
+        Builder builder = new Builder(capacity);
+        builder.build(sortedKeys, sortedValues, 0, keys.length, 0, '\0');
+
+        this.labels = Arrays.copyOf(builder.labels, builder.count);
+        this.sizes = Arrays.copyOf(builder.sizes, builder.count);
+        this.values = Arrays.copyOf(builder.values, builder.count);
+        this.uniqueValues = Arrays.copyOf(builder.uniqueValues, builder.count);
+    }
+
+    private TokenTrie(char[] labels, int[] sizes, int[] values, int[] uniqueValues) {
+        this.labels = labels;
+        this.sizes = sizes;
+        this.values = values;
+        this.uniqueValues = uniqueValues;
+    }
+
+    /**
+     * Reads a trie that has been {@link #write(DataOutput) written} before.
+     *
+     * @param in    the buffer to read from
+     * @param bound the (exclusive) upper bound for the values of the trie
+     *
+     * @return  the trie
+     *
+     * @throws IllegalArgumentException if the trie is malformed
+     */
+    public static TokenTrie read(ByteBuffer in, int bound) {
+        int count = in.getInt();
+
+        char[] labels = new char[count];
+        int[] sizes = new int[count], values = new int[count], uniqueValues = new int[count];
+
+        in.asCharBuffer().get(labels);
+        in.position(in.position() + 2 * count);
+
+        for (int[] array : new int[][] { sizes, values, uniqueValues }) {
+            in.asIntBuffer().get(array);
+            in.position(in.position() + 4 * count);
+        }
+
+        if (count == 0 || sizes[0] != count) throw new IllegalArgumentException("Malformed trie");
+
+        for (int node = 0; node < count; node++) {
+            if (sizes[node] < 1 || sizes[node] > count - node) throw new IllegalArgumentException("Malformed trie");
+            if (values[node] < NO_VALUE || values[node] >= bound) throw new IllegalArgumentException("Value out of bounds: " + values[node]);
+            if (uniqueValues[node] < AMBIGUOUS || uniqueValues[node] >= bound) throw new IllegalArgumentException("Value out of bounds: " + uniqueValues[node]);
+        }
+
+        return new TokenTrie(labels, sizes, values, uniqueValues);
+    }
+
+    /**
+     * Writes the packed arrays of this trie to the given output.
+     *
+     * @param out   the output to write to
+     *
+     * @throws IOException  if an I/O error occurs
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(this.labels.length);
+        for (char label : this.labels) out.writeChar(label);
+
+        for (int[] array : new int[][] { this.sizes, this.values, this.uniqueValues }) {
+            for (int value : array) out.writeInt(value);
+        }
+    }
+
+    /**
+     * Returns the value for the key in the given range of the given sequence, or {@code -1} if there is no such key.
+     *
+     * @param s     the sequence
+     * @param start the index of the first character of the key (inclusive)
+     * @param end   the index of the last character of the key (exclusive)
+     *
+     * @return  the value for the key, or {@code -1}
+     */
+    public int get(CharSequence s, int start, int end) {
+        int node = this.find(s, start, end);
+        return (node < 0) ? NO_VALUE : this.values[node];
+    }
+
+    /**
+     * Returns the value for the key in the given range of the given sequence, or the value of the only key that starts
+     * with the range.
+     *
+     * @param s     the sequence
+     * @param start the index of the first character of the prefix (inclusive)
+     * @param end   the index of the last character of the prefix (exclusive)
+     *
+     * @return  the value for the key that matches exactly, the value of the only key with the given prefix, {@code -1}
+     *          if there is no key with the given prefix, or {@link #AMBIGUOUS}
+     */
+    public int getByPrefix(CharSequence s, int start, int end) {
+        int node = this.find(s, start, end);
+        if (node < 0) return NO_VALUE;
+
+        return (this.values[node] != NO_VALUE) ? this.values[node] : this.uniqueValues[node];
+    }
+
+    /**
+     * Returns the values of all keys that start with the given range of the given sequence (in lexicographic order of
+     * the keys).
+     *
+     * @param s     the sequence
+     * @param start the index of the first character of the prefix (inclusive)
+     * @param end   the index of the last character of the prefix (exclusive)
+     *
+     * @return  the values of all keys with the given prefix
+     */
+    public int[] valuesByPrefix(CharSequence s, int start, int end) {
+        int node = this.find(s, start, end);
+        if (node < 0) return new int[0];
+
+        int[] result = new int[this.sizes[node]];
+        int count = 0;
+
+        for (int i = node; i < node + this.sizes[node]; i++) {
+            if (this.values[i] != NO_VALUE) result[count++] = this.values[i];
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /*
+     * Returns the node for the given range, or -1 if there is no such node.
+     */
+    private int find(CharSequence s, int start, int end) {
+        int node = 0;
+
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            int limit = node + this.sizes[node];
+            int child = node + 1;
+
+            while (child < limit && this.labels[child] < c) child += this.sizes[child];
+            if (child >= limit || this.labels[child] != c) return -1;
+
+            node = child;
+        }
+
+        return node;
+    }
+
+    private static final class Builder {
+
+        private final char[] labels;
+        private final int[] sizes, values, uniqueValues;
+        private int count;
+
+        private Builder(int capacity) {
+            this.labels = new char[capacity];
+            this.sizes = new int[capacity];
+            this.values = new int[capacity];
+            this.uniqueValues = new int[capacity];
+        }
+
+        /*
+         * Builds the subtree for the given range of sorted keys (which share a common prefix of the given length).
+         */
+        private void build(String[] keys, int[] values, int from, int to, int depth, char label) {
+            int node = this.count++;
+            this.labels[node] = label;
+            this.values[node] = NO_VALUE;
+
+            if (from < to && keys[from].length() == depth) this.values[node] = values[from++];
+
+            this.uniqueValues[node] = (to - from + (this.values[node] != NO_VALUE ? 1 : 0) > 1)
+                ? AMBIGUOUS
+                : ((from < to) ? values[from] : this.values[node]);
+
+            while (from < to) {
+                char c = keys[from].charAt(depth);
+                int next = from + 1;
+
+                while (next < to && keys[next].charAt(depth) == c) next++;
+
+                this.build(keys, values, from, next, depth + 1, c);
+                from = next;
+            }
+
+            this.sizes[node] = this.count - node;
+        }
+
+    }
+
+}
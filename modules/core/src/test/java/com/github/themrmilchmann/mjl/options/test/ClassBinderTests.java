@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.test;
+
+import java.lang.invoke.MethodHandles;
+import com.github.themrmilchmann.mjl.options.ClassBinder;
+import com.github.themrmilchmann.mjl.options.ClassPoolConfigurationException;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.ParsingException;
+import com.github.themrmilchmann.mjl.options.annotations.ArgumentHolder;
+import com.github.themrmilchmann.mjl.options.annotations.MarkerValueRef;
+import com.github.themrmilchmann.mjl.options.annotations.OptionHolder;
+import com.github.themrmilchmann.mjl.options.annotations.VarargHolder;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public final class ClassBinderTests {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    @Test
+    public void testCompile() {
+        ClassBinder<Data> binder = OptionParser.compile(Data.class, LOOKUP);
+        assertEquals(binder.getPool().getArgumentCount(), 1);
+        assertNotNull(binder.getPool().getOption("count"));
+        assertNotNull(binder.getPool().getOption('v'));
+    }
+
+    @Test
+    public void testCompile_IllFormatted() {
+        expectThrows(ClassPoolConfigurationException.class, () -> OptionParser.compile(IllFormattedData.class, LOOKUP));
+    }
+
+    @Test
+    public void testCompile_ArgumentMarker() {
+        ClassPoolConfigurationException e = expectThrows(ClassPoolConfigurationException.class, () -> OptionParser.compile(ArgumentMarkerData.class, LOOKUP));
+        assertTrue(e.getErrors().stream().anyMatch(it -> it.getMessage().contains("@ArgumentHolder may not have a @MarkerValueRef")), e.getErrors().toString());
+    }
+
+    @Test
+    public void testParseFragments() {
+        ClassBinder<Data> binder = OptionParser.compile(Data.class, LOOKUP);
+
+        Data data = binder.parseFragments("--count=3", "-v", "input");
+        assertEquals(data.input, "input");
+        assertEquals(data.count, 3);
+        assertEquals(data.byteValue, (byte) 7);
+        assertTrue(data.verbose);
+
+        Data other = binder.parseLine("--count 5 --byte 1 other");
+        assertNotSame(other, data);
+        assertEquals(other.input, "other");
+        assertEquals(other.count, 5);
+        assertEquals(other.byteValue, (byte) 1);
+        assertFalse(other.verbose);
+    }
+
+    @Test
+    public void testParseFragments_RequiredArgument() {
+        ClassBinder<Data> binder = OptionParser.compile(Data.class, LOOKUP);
+        expectThrows(ParsingException.class, () -> binder.parseFragments("--count=3"));
+    }
+
+    @Test
+    public void testParseFragments_Cached() {
+        for (int i = 0; i < 3; i++) {
+            Data data = OptionParser.parseFragments(Data.class, LOOKUP, "--count=" + i, "input" + i);
+            assertEquals(data.input, "input" + i);
+            assertEquals(data.count, i);
+        }
+    }
+
+    public static final class Data {
+
+        @ArgumentHolder(index = 0)
+        String input;
+
+        @OptionHolder(longToken = "count")
+        int count;
+
+        @OptionHolder(longToken = "byte")
+        byte byteValue = 7;
+
+        @OptionHolder(longToken = "verbose", shortToken = 'v')
+        @MarkerValueRef(value = "java.lang.Boolean::TRUE", markerOnly = true)
+        boolean verbose;
+
+    }
+
+    public static final class IllFormattedData {
+
+        @ArgumentHolder(index = 0)
+        @OptionHolder(longToken = "both")
+        String both;
+
+        @VarargHolder
+        Object unknown;
+
+    }
+
+    public static final class ArgumentMarkerData {
+
+        @ArgumentHolder(index = 0)
+        @MarkerValueRef("java.lang.Boolean::TRUE")
+        boolean marker;
+
+    }
+
+}
@@ -15,10 +15,16 @@
  */
 package com.github.themrmilchmann.mjl.options.test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import com.github.themrmilchmann.mjl.options.internal.KNFFormula;
+import com.github.themrmilchmann.mjl.options.internal.ReachabilityProofCache;
+import com.github.themrmilchmann.mjl.options.internal.ReachabilitySession;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.*;
@@ -64,4 +70,248 @@ public final class KNFFormulaTests {
         assertEquals(formula.toSetString(), "{{\u00ACA, B}, {A, B}, {D, C, \u00ACB}}");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCalculateUnreachableOptions() {
+        Set<String> unreachable = KNFFormula.builder(tau, false).calculateUnreachableOptions();
+        assertTrue(unreachable.isEmpty());
+
+        // Mutual exclusion
+        unreachable = KNFFormula.builder(tau, false)
+            .and(listOf(KNFFormula.Literal.neg(A), KNFFormula.Literal.neg(B)))
+            .and(listOf(KNFFormula.Literal.neg(B), KNFFormula.Literal.neg(C)))
+            .and(listOf(KNFFormula.Literal.neg(A), KNFFormula.Literal.neg(C)))
+            .calculateUnreachableOptions();
+        assertTrue(unreachable.isEmpty());
+
+        // A => B, A => -B
+        unreachable = KNFFormula.builder(tau, false)
+            .and(listOf(KNFFormula.Literal.neg(A), KNFFormula.Literal.pos(B)))
+            .and(listOf(KNFFormula.Literal.neg(A), KNFFormula.Literal.neg(B)))
+            .calculateUnreachableOptions();
+        assertEquals(unreachable, Collections.singleton(A));
+
+        // D => C, C => B, B => A, A => -D
+        unreachable = KNFFormula.builder(tau, false)
+            .and(listOf(KNFFormula.Literal.neg(D), KNFFormula.Literal.pos(C)))
+            .and(listOf(KNFFormula.Literal.neg(C), KNFFormula.Literal.pos(B)))
+            .and(listOf(KNFFormula.Literal.neg(B), KNFFormula.Literal.pos(A)))
+            .and(listOf(KNFFormula.Literal.neg(A), KNFFormula.Literal.neg(D)))
+            .calculateUnreachableOptions();
+        assertEquals(unreachable, Collections.singleton(D));
+
+        // All variables are required
+        unreachable = KNFFormula.builder(tau, true)
+            .and(listOf(KNFFormula.Literal.neg(A), KNFFormula.Literal.neg(B)))
+            .calculateUnreachableOptions();
+        assertEquals(unreachable, new HashSet<>(tau));
+    }
+
+    @Test
+    public void testCalculateUnreachableOptions_Random() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 500; round++) {
+            int varCount = 1 + random.nextInt(10);
+            List<Integer> vars = new ArrayList<>();
+            for (int i = 0; i < varCount; i++) vars.add(i);
+
+            List<List<KNFFormula.Literal<Integer>>> clauses = new ArrayList<>();
+            List<int[]> rawClauses = new ArrayList<>();
+            int clauseCount = random.nextInt(varCount * 4);
+
+            for (int i = 0; i < clauseCount; i++) {
+                // Occasionally generate an empty clause (which makes the formula unsatisfiable).
+                int[] raw = new int[(random.nextInt(50) == 0) ? 0 : 1 + random.nextInt(3)];
+                List<KNFFormula.Literal<Integer>> clause = new ArrayList<>();
+
+                for (int j = 0; j < raw.length; j++) {
+                    int var = random.nextInt(varCount);
+                    boolean pos = random.nextBoolean();
+
+                    raw[j] = pos ? (var + 1) : -(var + 1);
+                    clause.add(pos ? KNFFormula.Literal.pos(var) : KNFFormula.Literal.neg(var));
+                }
+
+                clauses.add(clause);
+                rawClauses.add(raw);
+            }
+
+            KNFFormula.Builder<Integer> builder = KNFFormula.builder(vars, false);
+            clauses.forEach(builder::and);
+
+            assertEquals(builder.calculateUnreachableOptions(), bruteForceUnreachable(varCount, rawClauses), "Round " + round);
+        }
+    }
+
+    @Test
+    public void testReachabilitySession_Incremental() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 100; round++) {
+            ReachabilitySession<Integer> session = new ReachabilitySession<>();
+            List<Integer> vars = new ArrayList<>();
+            List<int[]> rawClauses = new ArrayList<>();
+
+            for (int step = 0; step < 30; step++) {
+                if (vars.isEmpty() || (vars.size() < 10 && random.nextInt(4) == 0)) {
+                    vars.add(vars.size());
+                    session.addVariable(vars.size() - 1);
+                } else {
+                    int[] raw = new int[1 + random.nextInt(3)];
+                    List<KNFFormula.Literal<Integer>> clause = new ArrayList<>();
+
+                    for (int j = 0; j < raw.length; j++) {
+                        int var = random.nextInt(vars.size());
+                        boolean pos = random.nextInt(3) != 0;
+
+                        raw[j] = pos ? (var + 1) : -(var + 1);
+                        clause.add(pos ? KNFFormula.Literal.pos(var) : KNFFormula.Literal.neg(var));
+                    }
+
+                    session.addClause(clause);
+                    rawClauses.add(raw);
+                }
+
+                if (random.nextBoolean()) {
+                    assertEquals(session.calculateUnreachable(vars), bruteForceUnreachable(vars.size(), rawClauses), "Round " + round + ", step " + step);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCalculateUnreachableOptions_Components() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 20; round++) {
+            int componentCount = 1 + random.nextInt(40);
+            List<Integer> vars = new ArrayList<>();
+            List<List<KNFFormula.Literal<Integer>>> clauses = new ArrayList<>();
+            Set<Integer> expected = new HashSet<>();
+            boolean isUnsatisfiable = false;
+
+            for (int component = 0; component < componentCount; component++) {
+                int offset = vars.size();
+                int varCount = 1 + random.nextInt(5);
+                for (int i = 0; i < varCount; i++) vars.add(offset + i);
+
+                List<int[]> rawClauses = new ArrayList<>();
+                int clauseCount = random.nextInt(varCount * 2);
+
+                for (int i = 0; i < clauseCount; i++) {
+                    int[] raw = new int[1 + random.nextInt(2)];
+                    List<KNFFormula.Literal<Integer>> clause = new ArrayList<>();
+
+                    for (int j = 0; j < raw.length; j++) {
+                        int var = random.nextInt(varCount);
+                        boolean pos = random.nextInt(4) != 0;
+
+                        raw[j] = pos ? (var + 1) : -(var + 1);
+                        clause.add(pos ? KNFFormula.Literal.pos(offset + var) : KNFFormula.Literal.neg(offset + var));
+                    }
+
+                    clauses.add(clause);
+                    rawClauses.add(raw);
+                }
+
+                Set<Integer> unreachable = bruteForceUnreachable(varCount, rawClauses);
+                unreachable.forEach(var -> expected.add(offset + var));
+
+                if (unreachable.size() == varCount && !bruteForceSatisfiable(varCount, rawClauses)) isUnsatisfiable = true;
+            }
+
+            if (isUnsatisfiable) expected.addAll(vars);
+
+            KNFFormula.Builder<Integer> builder = KNFFormula.builder(vars, false);
+            Collections.shuffle(clauses, random);
+            clauses.forEach(builder::and);
+
+            assertEquals(builder.calculateUnreachableOptions(), expected, "Round " + round);
+        }
+    }
+
+    @Test
+    public void testCalculateUnreachableOptions_UnsatisfiableComponent() {
+        // (A v B) ^ (A v -B) ^ (-A v B) ^ (-A v -B) is unsatisfiable, thus C and D are unreachable too.
+        Set<String> unreachable = KNFFormula.builder(tau, false)
+            .and(listOf(KNFFormula.Literal.pos(A), KNFFormula.Literal.pos(B)))
+            .and(listOf(KNFFormula.Literal.pos(A), KNFFormula.Literal.neg(B)))
+            .and(listOf(KNFFormula.Literal.neg(A), KNFFormula.Literal.pos(B)))
+            .and(listOf(KNFFormula.Literal.neg(A), KNFFormula.Literal.neg(B)))
+            .and(listOf(KNFFormula.Literal.neg(C), KNFFormula.Literal.pos(D)))
+            .calculateUnreachableOptions();
+        assertEquals(unreachable, new HashSet<>(tau));
+    }
+
+    @Test
+    public void testFingerprint() {
+        List<List<KNFFormula.Literal<String>>> clauses = listOf(
+            listOf(KNFFormula.Literal.neg(A), KNFFormula.Literal.pos(B)),
+            listOf(KNFFormula.Literal.pos(C), KNFFormula.Literal.neg(D), KNFFormula.Literal.neg(A))
+        );
+        byte[] fingerprint = ReachabilityProofCache.fingerprint(tau, clauses, String::toString);
+
+        List<List<KNFFormula.Literal<String>>> reordered = listOf(
+            listOf(KNFFormula.Literal.neg(A), KNFFormula.Literal.pos(C), KNFFormula.Literal.neg(D)),
+            listOf(KNFFormula.Literal.pos(B), KNFFormula.Literal.neg(A)),
+            listOf(KNFFormula.Literal.pos(B), KNFFormula.Literal.neg(A))
+        );
+        assertEquals(ReachabilityProofCache.fingerprint(listOf(D, C, B, A), reordered, String::toString), fingerprint);
+
+        List<List<KNFFormula.Literal<String>>> modified = listOf(
+            listOf(KNFFormula.Literal.neg(A), KNFFormula.Literal.pos(B)),
+            listOf(KNFFormula.Literal.pos(C), KNFFormula.Literal.pos(D), KNFFormula.Literal.neg(A))
+        );
+        assertNotEquals(ReachabilityProofCache.fingerprint(tau, modified, String::toString), fingerprint);
+        assertNotEquals(ReachabilityProofCache.fingerprint(listOf(A, B, C), clauses, String::toString), fingerprint);
+
+        // Names are encoded unambiguously.
+        assertNotEquals(
+            ReachabilityProofCache.fingerprint(listOf("ab", "c"), Collections.emptyList(), String::toString),
+            ReachabilityProofCache.fingerprint(listOf("a", "bc"), Collections.emptyList(), String::toString)
+        );
+    }
+
+    private static boolean bruteForceSatisfiable(int varCount, List<int[]> clauses) {
+        for (int model = 0; model < (1 << varCount); model++) {
+            if (isSatisfiedBy(model, clauses)) return true;
+        }
+
+        return false;
+    }
+
+    private static Set<Integer> bruteForceUnreachable(int varCount, List<int[]> clauses) {
+        Set<Integer> unreachable = new HashSet<>();
+        for (int i = 0; i < varCount; i++) unreachable.add(i);
+
+        for (int model = 0; model < (1 << varCount); model++) {
+            if (!isSatisfiedBy(model, clauses)) continue;
+
+            for (int i = 0; i < varCount; i++) {
+                if (((model >>> i) & 1) == 1) unreachable.remove(i);
+            }
+        }
+
+        return unreachable;
+    }
+
+    private static boolean isSatisfiedBy(int model, List<int[]> clauses) {
+        for (int[] clause : clauses) {
+            boolean isClauseSatisfied = false;
+
+            for (int literal : clause) {
+                int var = Math.abs(literal) - 1;
+
+                if (((model >>> var) & 1) == (literal > 0 ? 1 : 0)) {
+                    isClauseSatisfied = true;
+                    break;
+                }
+            }
+
+            if (!isClauseSatisfied) return false;
+        }
+
+        return true;
+    }
+
+}
@@ -15,7 +15,16 @@
  */
 package com.github.themrmilchmann.mjl.options.test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import com.github.themrmilchmann.mjl.options.Argument;
 import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.OptionSet;
+import com.github.themrmilchmann.mjl.options.ValueParser;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -46,4 +55,44 @@ public final class LineToFragmentsTests {
         assertEquals(fragments, expected);
     }
 
-}
\ No newline at end of file
+    private static final Argument<String> VARARG = Argument.builder(ValueParser.STRING).optional(true).build();
+    private static final OptionPool VARARG_POOL = OptionPool.builder().withVarargArg(VARARG).build();
+
+    @Test(dataProvider = "vectors")
+    public void testParseLine_CharSequence(String line, String[] expected) {
+        assertEquals(varargs(OptionParser.parseLine(VARARG_POOL, new StringBuilder(line))), Arrays.asList(expected));
+    }
+
+    @Test(dataProvider = "vectors")
+    public void testParseLine_Reader(String line, String[] expected) throws IOException {
+        assertEquals(varargs(OptionParser.parseLine(VARARG_POOL, new StringReader(line))), Arrays.asList(expected));
+    }
+
+    @Test
+    public void testParseLine_Whitespace() throws IOException {
+        String line = " \t\"a b\"\n\n c\r\n";
+        List<String> expected = Arrays.asList("a b", "c");
+
+        assertEquals(varargs(OptionParser.parseLine(VARARG_POOL, line)), expected);
+        assertEquals(varargs(OptionParser.parseLine(VARARG_POOL, new StringReader(line))), expected);
+        assertEquals(varargs(OptionParser.parseLine(VARARG_POOL, "  ")), Collections.emptyList());
+    }
+
+    @Test
+    public void testParseLine_LongFragment() throws IOException {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) value.append(i % 10).append(' ');
+
+        String line = "a \"" + value + "\" b";
+        List<String> expected = Arrays.asList("a", value.toString(), "b");
+
+        assertEquals(varargs(OptionParser.parseLine(VARARG_POOL, line)), expected);
+        assertEquals(varargs(OptionParser.parseLine(VARARG_POOL, new StringReader(line))), expected);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> varargs(OptionSet set) {
+        return set.isSet(VARARG) ? (List<String>) (Object) set.get(VARARG) : Collections.emptyList();
+    }
+
+}
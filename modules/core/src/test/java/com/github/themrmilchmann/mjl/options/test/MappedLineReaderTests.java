@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import com.github.themrmilchmann.mjl.options.internal.MappedLineReader;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public final class MappedLineReaderTests {
+
+    @DataProvider(name = "windowSizes")
+    private static Object[][] windowSizes() {
+        return new Object[][] { { 7 }, { 8 }, { 9 }, { 16 }, { 1 << 20 } };
+    }
+
+    @Test(dataProvider = "windowSizes")
+    public void testLines(int windowSize) throws IOException {
+        List<String> lines = readLines("abc\r\n\nfour\n12345\r\nlast", windowSize);
+        assertEquals(lines, Arrays.asList("abc", "", "four", "12345", "last"));
+    }
+
+    @Test
+    public void testLines_TrailingLineFeed() throws IOException {
+        assertEquals(readLines("a\nb\n", 3), Arrays.asList("a", "b"));
+        assertEquals(readLines("", 3), Arrays.asList());
+        assertEquals(readLines("\n", 3), Arrays.asList(""));
+    }
+
+    @Test
+    public void testLines_TooLong() {
+        expectThrows(IOException.class, () -> readLines("a\nabcdef\nb", 4));
+    }
+
+    private static List<String> readLines(String content, int windowSize) throws IOException {
+        Path file = Files.createTempFile("mjl-options", ".txt");
+
+        try {
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedLineReader reader = new MappedLineReader(channel, windowSize);
+                List<String> lines = new ArrayList<>();
+
+                while (reader.next()) {
+                    ByteBuffer buffer = reader.buffer();
+                    byte[] bytes = new byte[reader.end() - reader.start()];
+                    for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(reader.start() + i);
+
+                    lines.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+
+                return lines;
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
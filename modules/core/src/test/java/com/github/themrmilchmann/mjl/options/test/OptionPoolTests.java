@@ -0,0 +1,438 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import com.github.themrmilchmann.mjl.options.Argument;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.OptionSet;
+import com.github.themrmilchmann.mjl.options.ParseResult;
+import com.github.themrmilchmann.mjl.options.Restriction;
+import com.github.themrmilchmann.mjl.options.RestrictionViolatedException;
+import com.github.themrmilchmann.mjl.options.UnreachableOptionException;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import com.github.themrmilchmann.mjl.options.ValueParserRegistry;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public final class OptionPoolTests {
+
+    @Test
+    public void testContainsAndIndexOf() {
+        Argument<String> arg0 = Argument.build(ValueParser.STRING), arg1 = Argument.build(ValueParser.STRING);
+        Option<String> opt = Option.build("option", ValueParser.STRING);
+
+        OptionPool pool = OptionPool.builder()
+            .withArg(arg0)
+            .withArg(arg1)
+            .withOption(opt)
+            .build();
+
+        assertTrue(pool.contains(arg0));
+        assertTrue(pool.contains(arg1));
+        assertTrue(pool.contains(opt));
+        assertFalse(pool.contains(Argument.build(ValueParser.STRING)));
+        assertFalse(pool.contains(Option.build("option", ValueParser.STRING)));
+
+        assertEquals(pool.indexOf(arg0), 0);
+        assertEquals(pool.indexOf(arg1), 1);
+        assertEquals(pool.indexOf(Argument.build(ValueParser.STRING)), -1);
+
+        expectThrows(NullPointerException.class, () -> pool.contains((Option<?>) null));
+        expectThrows(NullPointerException.class, () -> pool.indexOf(null));
+    }
+
+    @Test
+    public void testContains_Replaced() {
+        Option<String> opt = Option.build("option", ValueParser.STRING), replacement = Option.build("option", ValueParser.STRING);
+
+        OptionPool.Builder builder = OptionPool.builder()
+            .withOption(opt)
+            .withOption(replacement);
+
+        expectThrows(IllegalArgumentException.class, () -> builder.withRestriction(Restriction.mutuallyRequire(opt, replacement)));
+
+        OptionPool pool = builder.build();
+        assertFalse(pool.contains(opt));
+        assertTrue(pool.contains(replacement));
+    }
+
+    @Test
+    public void testWithOption_ReplaceRestricted() {
+        Option<String> alpha = Option.build("alpha", ValueParser.STRING), beta = Option.build("beta", ValueParser.STRING);
+        Option<String> replacement = Option.build("alpha", ValueParser.STRING);
+
+        OptionPool.Builder builder = OptionPool.builder()
+            .withOption(alpha)
+            .withOption(beta)
+            .withRestriction(Restriction.mutuallyExclude(alpha, beta));
+
+        expectThrows(IllegalArgumentException.class, () -> builder.withOption(replacement));
+
+        // The builder is left unmodified and re-adding the same option is fine.
+        OptionPool pool = builder.withOption(alpha).build();
+        assertSame(pool.getOption("alpha"), alpha);
+        expectThrows(RestrictionViolatedException.class, () -> OptionParser.parseFragments(pool, "--alpha=a", "--beta=b"));
+    }
+
+    @Test
+    public void testGetOption_LongToken() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 100; round++) {
+            Map<String, Option<?>> options = new HashMap<>();
+            OptionPool.Builder builder = OptionPool.builder();
+
+            for (int i = random.nextInt(16); i >= 0; i--) {
+                Option<String> opt = Option.build(randomToken(random), ValueParser.STRING);
+                options.put(opt.getLongToken(), opt);
+                builder.withOption(opt);
+            }
+
+            OptionPool pool = builder.build();
+
+            for (int i = 0; i < 50; i++) {
+                String token = randomToken(random);
+                assertSame(pool.getOption(token), options.get(token), token);
+
+                List<String> expected = options.keySet().stream()
+                    .filter(it -> it.startsWith(token))
+                    .sorted()
+                    .collect(Collectors.toList());
+
+                List<String> actual = pool.getOptionsByPrefix(token).stream()
+                    .map(Option::getLongToken)
+                    .collect(Collectors.toList());
+
+                assertEquals(actual, expected, token);
+            }
+
+            for (Option<?> opt : options.values()) assertSame(pool.getOption(opt.getLongToken()), opt);
+        }
+    }
+
+    private static String randomToken(Random random) {
+        // A small alphabet to produce lots of shared prefixes
+        StringBuilder token = new StringBuilder().append((char) ('a' + random.nextInt(3)));
+        for (int i = random.nextInt(4); i > 0; i--) token.append("ab-".charAt(random.nextInt(3)));
+
+        return token.toString();
+    }
+
+    @Test
+    public void testGetOption_ShortToken() {
+        Option<String> ascii = Option.builder("ascii", ValueParser.STRING).withShortToken('a').build();
+        Option<String> nonAscii = Option.builder("non-ascii", ValueParser.STRING).withShortToken('\u00e4').build();
+        Option<String> replaced = Option.builder("replaced", ValueParser.STRING).withShortToken('r').build();
+
+        OptionPool pool = OptionPool.builder()
+            .withOption(ascii)
+            .withOption(nonAscii)
+            .withOption(replaced)
+            .withOption(Option.build("replaced", ValueParser.STRING))
+            .build();
+
+        assertSame(pool.getOption('a'), ascii);
+        assertSame(pool.getOption('\u00e4'), nonAscii);
+        assertNull(pool.getOption('b'));
+        assertNull(pool.getOption('\u00f6'));
+
+        // The short token of a replaced option must not resolve to the replaced option.
+        assertNull(pool.getOption('r'));
+    }
+
+    @Test
+    public void testGetOptionsByPrefix() {
+        Option<String> verbose = Option.build("verbose", ValueParser.STRING), version = Option.build("version", ValueParser.STRING);
+        Option<String> output = Option.build("output", ValueParser.STRING);
+
+        OptionPool pool = OptionPool.builder()
+            .withOption(version)
+            .withOption(output)
+            .withOption(verbose)
+            .build();
+
+        assertEquals(pool.getOptionsByPrefix(""), Arrays.asList(output, verbose, version));
+        assertEquals(pool.getOptionsByPrefix("ver"), Arrays.asList(verbose, version));
+        assertEquals(pool.getOptionsByPrefix("verb"), Collections.singletonList(verbose));
+        assertEquals(pool.getOptionsByPrefix("version"), Collections.singletonList(version));
+        assertEquals(pool.getOptionsByPrefix("versions"), Collections.emptyList());
+        assertEquals(pool.getOptionsByPrefix("x"), Collections.emptyList());
+
+        expectThrows(NullPointerException.class, () -> pool.getOptionsByPrefix(null));
+    }
+
+    @Test
+    public void testBuild_Abbreviations() {
+        Option<String> opt = Option.build("option", ValueParser.STRING);
+        OptionPool.Builder builder = OptionPool.builder().withOption(opt);
+
+        OptionPool pool = builder.build();
+        assertFalse(pool.isAbbreviationAllowed());
+        assertSame(builder.withAbbreviations(false).build(), pool);
+
+        OptionPool abbreviating = builder.withAbbreviations(true).build();
+        assertNotSame(abbreviating, pool);
+        assertTrue(abbreviating.isAbbreviationAllowed());
+
+        // Abbreviations only affect parsing.
+        assertNull(abbreviating.getOption("opt"));
+    }
+
+    @Test
+    public void testBuild_Reachability() {
+        Option<String> a = Option.build("a", ValueParser.STRING),
+            b = Option.build("b", ValueParser.STRING),
+            c = Option.build("c", ValueParser.STRING);
+
+        for (int i = 0; i < 20; i++) {
+            OptionPool.builder()
+                .withOption(a)
+                .withOption(b)
+                .withOption(c)
+                .withRestriction(Restriction.mutuallyExclude(a, b))
+                .withRestriction(Restriction.mutuallyExclude(b, c))
+                .withRestriction(Restriction.implyPresenceOf(Collections.singleton(c), Collections.singleton(a)))
+                .build();
+        }
+    }
+
+    @Test
+    public void testBuild_Unreachable() {
+        Option<String> a = Option.build("a", ValueParser.STRING),
+            b = Option.build("b", ValueParser.STRING),
+            c = Option.build("c", ValueParser.STRING);
+
+        UnreachableOptionException e = expectThrows(UnreachableOptionException.class, () -> OptionPool.builder()
+            .withOption(a)
+            .withOption(b)
+            .withRestriction(Restriction.implyAbsenceOf(Collections.singleton(a), Collections.singleton(a)))
+            .build());
+        assertEquals(e.getUnreachableOptions(), Collections.singleton(a));
+
+        e = expectThrows(UnreachableOptionException.class, () -> OptionPool.builder()
+            .withOption(a)
+            .withOption(b)
+            .withOption(c)
+            .withRestriction(Restriction.mutuallyExclude(b, c))
+            .withRestriction(Restriction.implyPresenceOf(Collections.singleton(a), Collections.singleton(b)))
+            .withRestriction(Restriction.implyPresenceOf(Collections.singleton(a), Collections.singleton(c)))
+            .build());
+        assertEquals(e.getUnreachableOptions(), Collections.singleton(a));
+    }
+
+    @Test
+    public void testBuild_Incremental() {
+        Option<String> a = Option.build("a", ValueParser.STRING),
+            b = Option.build("b", ValueParser.STRING),
+            c = Option.build("c", ValueParser.STRING);
+
+        OptionPool.Builder builder = OptionPool.builder()
+            .withOption(a)
+            .withOption(b)
+            .withRestriction(Restriction.implyPresenceOf(Collections.singleton(a), Collections.singleton(b)));
+
+        OptionPool pool = builder.build();
+        assertSame(builder.build(), pool);
+
+        builder.withOption(c).withRestriction(Restriction.mutuallyExclude(b, c));
+        assertNotSame(builder.build(), pool);
+        assertTrue(builder.build().contains(c));
+
+        builder.withRestriction(Restriction.implyPresenceOf(Collections.singleton(c), Collections.singleton(a)));
+        UnreachableOptionException e = expectThrows(UnreachableOptionException.class, builder::build);
+        assertEquals(e.getUnreachableOptions(), Collections.singleton(c));
+    }
+
+    @Test
+    public void testBuild_ProofCache() throws IOException {
+        Path directory = Files.createTempDirectory("mjl-options");
+
+        try {
+            Option<String> a = Option.build("a", ValueParser.STRING),
+                b = Option.build("b", ValueParser.STRING),
+                c = Option.build("c", ValueParser.STRING);
+
+            OptionPool pool = OptionPool.builder()
+                .withOption(a)
+                .withOption(b)
+                .withOption(c)
+                .withRestriction(Restriction.mutuallyExclude(a, b))
+                .withRestriction(Restriction.implyPresenceOf(Collections.singleton(c), Collections.singleton(a)))
+                .withProofCache(directory)
+                .build();
+            assertTrue(pool.contains(c));
+            assertEquals(countFiles(directory), 1);
+
+            // Equivalent pool with different options (and a different order)
+            Option<Integer> otherA = Option.build("a", ValueParser.INT),
+                otherB = Option.build("b", ValueParser.INT),
+                otherC = Option.build("c", ValueParser.INT);
+
+            pool = OptionPool.builder()
+                .withOption(otherC)
+                .withOption(otherB)
+                .withOption(otherA)
+                .withRestriction(Restriction.implyPresenceOf(Collections.singleton(otherC), Collections.singleton(otherA)))
+                .withRestriction(Restriction.mutuallyExclude(otherB, otherA))
+                .withProofCache(directory)
+                .build();
+            assertTrue(pool.contains(otherC));
+            assertEquals(countFiles(directory), 1);
+
+            // Unreachable options must not be cached.
+            expectThrows(UnreachableOptionException.class, () -> OptionPool.builder()
+                .withOption(a)
+                .withOption(b)
+                .withOption(c)
+                .withRestriction(Restriction.mutuallyExclude(a, c))
+                .withRestriction(Restriction.implyPresenceOf(Collections.singleton(c), Collections.singleton(a)))
+                .withProofCache(directory)
+                .build());
+            assertEquals(countFiles(directory), 1);
+
+            // A pool with different restrictions is cached separately.
+            OptionPool.builder()
+                .withOption(a)
+                .withOption(b)
+                .withRestriction(Restriction.mutuallyExclude(a, b))
+                .withProofCache(directory)
+                .build();
+            assertEquals(countFiles(directory), 2);
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+            }
+
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testSnapshot() throws IOException {
+        ValueParser<String> upper = String::toUpperCase;
+        ValueParserRegistry registry = ValueParserRegistry.builder().withParser("upper", upper).build();
+
+        Option<String> a = Option.builder("alpha", upper).withShortToken('a').withDefaultValue("A").build();
+        Option<Integer> b = Option.builder("beta", ValueParser.INT).withShortToken('b').withMarkerValue(42).build();
+        Option<Boolean> c = Option.builder("gamma", ValueParser.BOOLEAN).withShortToken('\u00e7').withMarkerValue(true, true).build();
+        Option<Boolean> d = Option.builder("delta", ValueParser.BOOLEAN).withShortToken('c').withMarkerValue(true, true).build();
+        Option<Double> e = Option.builder("gamut", ValueParser.DOUBLE).withShortToken('c').withDefaultValue(0.5).build();
+
+        OptionPool pool = OptionPool.builder()
+            .withArg(Argument.builder(upper).build())
+            .withVarargArg(Argument.builder(ValueParser.LONG).optional(true).withDefaultValue(7L).build())
+            .withOption(a)
+            .withOption(b)
+            .withOption(c)
+            .withOption(d)
+            .withOption(e)
+            .withRestriction(Restriction.mutuallyExclude(c, d))
+            .withRestriction(Restriction.implyPresenceOfUnless(Collections.singleton(a), Collections.singleton(b), Collections.singleton(e)))
+            .withAbbreviations(true)
+            .build();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pool.writeSnapshot(out, registry);
+        byte[] snapshot = out.toByteArray();
+
+        OptionPool restored = OptionPool.readSnapshot(new ByteArrayInputStream(snapshot), registry);
+        assertEquals(restored.getArgumentCount(), 2);
+        assertTrue(restored.isLastVararg());
+        assertTrue(restored.isAbbreviationAllowed());
+        assertEquals(restored.getArgument(1).getDefaultValue(), 7L);
+
+        Option<?> restoredA = restored.getOption("alpha");
+        assertNotNull(restoredA);
+        assertEquals(restoredA.getShortToken(), Character.valueOf('a'));
+        assertEquals(restoredA.getDefaultValue(), "A");
+        assertEquals(restored.getOption("beta").getMarkerValue(), 42);
+        assertTrue(restored.getOption("gamma").isMarkerOnly());
+        assertSame(restored.getOption('\u00e7'), restored.getOption("gamma"));
+
+        // The short token of an option that has been shadowed (by an option with the same short token) stays shadowed.
+        assertSame(restored.getOption('c'), restored.getOption("gamut"));
+        assertEquals(restored.getOptionsByPrefix("gam").size(), 2);
+
+        for (String line : new String[] {
+            "x 1 2 3", "x --alp=y -b 3", "x --alpha=y", "x --alpha=y --gamut=1.5", "x -\u00e7 --delta", "x --gam", "x --delta", "x --nope", "x -b"
+        }) {
+            ParseResult expected = OptionParser.tryParseLine(pool, line), actual = OptionParser.tryParseLine(restored, line);
+            assertEquals(actual.isSuccess(), expected.isSuccess(), line);
+
+            if (expected.isSuccess()) {
+                OptionSet expectedSet = expected.getOptionSet(), actualSet = actual.getOptionSet();
+
+                for (int i = 0; i < pool.getArgumentCount(); i++) {
+                    assertEquals(actualSet.get(restored.getArgument(i)), expectedSet.get(pool.getArgument(i)), line);
+                }
+
+                for (Option<?> opt : pool.getOptionsByPrefix("")) {
+                    Option<?> restoredOpt = restored.getOption(opt.getLongToken());
+                    assertNotNull(restoredOpt);
+
+                    assertEquals(actualSet.isSet(restoredOpt), expectedSet.isSet(opt), line);
+                    assertEquals(actualSet.get(restoredOpt), expectedSet.get(opt), line);
+                }
+            } else {
+                assertEquals(actual.getError().getKind(), expected.getError().getKind(), line);
+            }
+        }
+
+        // Writing a restored pool yields the same snapshot.
+        out.reset();
+        restored.writeSnapshot(out, registry);
+        assertEquals(out.toByteArray(), snapshot);
+
+        expectThrows(IllegalArgumentException.class, () -> pool.writeSnapshot(new ByteArrayOutputStream(), ValueParserRegistry.defaults()));
+        expectThrows(IllegalArgumentException.class, () -> OptionPool.readSnapshot(new ByteArrayInputStream(snapshot), ValueParserRegistry.defaults()));
+        expectThrows(IllegalArgumentException.class, () -> OptionPool.builder()
+            .withOption(Option.builder("list", string -> Collections.singletonList(string)).withDefaultValue(Collections.emptyList()).build())
+            .build()
+            .writeSnapshot(new ByteArrayOutputStream(), ValueParserRegistry.defaults()));
+
+        byte[] corrupted = snapshot.clone();
+        corrupted[corrupted.length / 2] ^= 1;
+        expectThrows(IOException.class, () -> OptionPool.readSnapshot(new ByteArrayInputStream(corrupted), registry));
+        expectThrows(IOException.class, () -> OptionPool.readSnapshot(new ByteArrayInputStream(Arrays.copyOf(snapshot, snapshot.length - 1)), registry));
+
+        byte[] unsupported = snapshot.clone();
+        unsupported[7] = 2;
+        assertTrue(expectThrows(IOException.class, () -> OptionPool.readSnapshot(new ByteArrayInputStream(unsupported), registry)).getMessage().contains("version"));
+    }
+
+    private static long countFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.test;
+
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+import com.github.themrmilchmann.mjl.options.Argument;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.OptionSet;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public final class OptionSetTests {
+
+    private static final Argument<String> ARG = Argument.builder(ValueParser.STRING).optional(true).build();
+    private static final Option<String> OPT_DEFAULT = Option.builder("default", ValueParser.STRING).withDefaultValue("default").build();
+    private static final Option<?>[] OPTS = new Option<?>[150];
+
+    private static final OptionPool POOL;
+
+    static {
+        OptionPool.Builder builder = OptionPool.builder()
+            .withArg(ARG)
+            .withOption(OPT_DEFAULT);
+
+        for (int i = 0; i < OPTS.length; i++) builder.withOption(OPTS[i] = Option.build("option" + i, ValueParser.INT));
+        POOL = builder.build();
+    }
+
+    @Test
+    public void testGet() {
+        OptionSet set = OptionParser.parseFragments(POOL, "--option0=0", "--option63=63", "--option64", "64", "--option149=149", "arg");
+
+        for (int i = 0; i < OPTS.length; i++) {
+            boolean isSet = (i == 0 || i == 63 || i == 64 || i == 149);
+
+            assertEquals(set.isSet(OPTS[i]), isSet);
+            assertEquals(set.get(OPTS[i]), isSet ? i : null);
+        }
+
+        assertTrue(set.isSet(ARG));
+        assertEquals(set.get(ARG), "arg");
+        assertFalse(set.isSet(OPT_DEFAULT));
+        assertEquals(set.get(OPT_DEFAULT), "default");
+    }
+
+    @Test
+    public void testGetOrElse() {
+        @SuppressWarnings("unchecked")
+        Option<Integer> opt0 = (Option<Integer>) OPTS[0], opt1 = (Option<Integer>) OPTS[1];
+
+        OptionSet set = OptionParser.parseFragments(POOL, "--option0=0");
+        assertEquals(set.getOrElse(opt0, 42), Integer.valueOf(0));
+        assertEquals(set.getOrElse(opt1, 42), Integer.valueOf(42));
+        assertEquals(set.getOrElse(opt1, (Supplier<Integer>) () -> 42), Integer.valueOf(42));
+        assertEquals(set.getOrElse(OPT_DEFAULT, "other"), "default");
+        assertEquals(set.getOrElse(ARG, "other"), "other");
+        assertEquals(set.getOrElse(ARG, (Supplier<String>) () -> "other"), "other");
+    }
+
+    @Test
+    public void testForeignParameter() {
+        OptionSet set = OptionParser.parseFragments(POOL);
+
+        expectThrows(IllegalArgumentException.class, () -> set.get(Option.build("option0", ValueParser.INT)));
+        expectThrows(IllegalArgumentException.class, () -> set.getOrElse(Option.build("option0", ValueParser.INT), 0));
+        expectThrows(IllegalArgumentException.class, () -> set.isSet(Argument.build(ValueParser.STRING)));
+        expectThrows(NullPointerException.class, () -> set.get((Option<?>) null));
+    }
+
+    @Test
+    public void testPrimitiveAccessors() {
+        Argument<Double> arg = Argument.build(ValueParser.DOUBLE);
+        Option<Integer> optInt = Option.builder("int", ValueParser.INT).withMarkerValue(7).build();
+        Option<Integer> optBoxed = Option.build("boxed", (ValueParser<Integer>) Integer::valueOf);
+        Option<Long> optLong = Option.builder("long", ValueParser.LONG).withDefaultValue(42L).build();
+        Option<Long> optMissing = Option.build("missing", ValueParser.LONG);
+        Option<Boolean> optBoolean = Option.build("boolean", ValueParser.BOOLEAN);
+
+        OptionPool pool = OptionPool.builder()
+            .withArg(arg)
+            .withOption(optInt)
+            .withOption(optBoxed)
+            .withOption(optLong)
+            .withOption(optMissing)
+            .withOption(optBoolean)
+            .build();
+
+        OptionSet set = OptionParser.parseFragments(pool, "--boxed=3", "--int", "--boolean=true", "0.5");
+        assertEquals(set.getInt(optInt), 7);
+        assertEquals(set.getInt(optBoxed), 3);
+        assertEquals(set.getLong(optLong), 42L);
+        assertTrue(set.getBoolean(optBoolean));
+        assertEquals(set.getDouble(arg), 0.5);
+        expectThrows(NoSuchElementException.class, () -> set.getLong(optMissing));
+
+        assertEquals(set.get(optBoolean), Boolean.TRUE);
+        assertEquals(set.get(arg), Double.valueOf(0.5));
+
+        OptionSet other = OptionParser.parseFragments(pool, "--int=-1", "--long", "-9223372036854775808", "--", "-1e300");
+        assertEquals(other.getInt(optInt), -1);
+        assertEquals(other.get(optInt), Integer.valueOf(-1));
+        assertEquals(other.getLong(optLong), Long.MIN_VALUE);
+        assertEquals(other.getDouble(arg), -1e300);
+        expectThrows(NoSuchElementException.class, () -> other.getBoolean(optBoolean));
+    }
+
+}
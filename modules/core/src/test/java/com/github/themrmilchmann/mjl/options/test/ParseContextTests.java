@@ -0,0 +1,276 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.github.themrmilchmann.mjl.options.Argument;
+import com.github.themrmilchmann.mjl.options.LineConsumer;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.OptionSet;
+import com.github.themrmilchmann.mjl.options.ParseContext;
+import com.github.themrmilchmann.mjl.options.ParsingException;
+import com.github.themrmilchmann.mjl.options.Restriction;
+import com.github.themrmilchmann.mjl.options.RestrictionViolatedException;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public final class ParseContextTests {
+
+    private static final Argument<String> ARG = Argument.builder(ValueParser.STRING).optional(true).build();
+    private static final Option<String> OPT_A = Option.build("a", ValueParser.STRING);
+    private static final Option<String> OPT_B = Option.build("b", ValueParser.STRING);
+    private static final Option<String> OPT_C = Option.build("c", ValueParser.STRING);
+
+    private static final OptionPool POOL = OptionPool.builder()
+        .withArg(ARG)
+        .withOption(OPT_A)
+        .withOption(OPT_B)
+        .withOption(OPT_C)
+        .withRestriction(Restriction.implyPresenceOfUnless(Collections.singleton(OPT_A), Collections.singleton(OPT_B), Collections.singleton(OPT_C)))
+        .build();
+
+    @Test
+    public void testReuse() {
+        ParseContext context = ParseContext.of(POOL);
+        assertSame(context.getPool(), POOL);
+
+        OptionSet set = context.parseFragments("--a=1", "--b", "2", "-#dynamic=3", "arg");
+        assertEquals(set.get(OPT_A), "1");
+        assertEquals(set.get(OPT_B), "2");
+        assertEquals(set.get(ARG), "arg");
+        assertEquals(set.getDynamicOptions().get("dynamic"), "3");
+
+        OptionSet other = context.parseLine("--b=4");
+        assertSame(other, set);
+        assertFalse(other.isSet(OPT_A));
+        assertEquals(other.get(OPT_B), "4");
+        assertFalse(other.isSet(ARG));
+        assertTrue(other.getDynamicOptions().isEmpty());
+    }
+
+    @Test
+    public void testReuseAfterFailure() {
+        ParseContext context = ParseContext.of(POOL);
+
+        expectThrows(RestrictionViolatedException.class, () -> context.parseFragments("--a=1"));
+        expectThrows(ParsingException.class, () -> context.parseFragments("--b=1", "--b=2"));
+
+        OptionSet set = context.parseFragments("--a=1", "--c=2");
+        assertEquals(set.get(OPT_A), "1");
+        assertFalse(set.isSet(OPT_B));
+    }
+
+    @Test
+    public void testReentrance() {
+        ParseContext[] context = new ParseContext[1];
+        Option<String> opt = Option.build("reentrant", it -> context[0].parseFragments().toString());
+
+        context[0] = ParseContext.of(OptionPool.builder().withOption(opt).build());
+        expectThrows(IllegalStateException.class, () -> context[0].parseFragments("--reentrant=value"));
+    }
+
+    @Test
+    public void testParseLine_Reader() throws IOException {
+        ParseContext context = ParseContext.of(POOL);
+
+        // Yields a single character per read to exercise refills in the middle of fragments.
+        Reader reader = new StringReader("--a \"x y\" --b=\"2 3\" arg") {
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 1));
+            }
+
+        };
+
+        OptionSet set = context.parseLine(reader);
+        assertEquals(set.get(OPT_A), "x y");
+        assertEquals(set.get(OPT_B), "2 3");
+        assertEquals(set.get(ARG), "arg");
+
+        OptionSet other = context.parseLine(new StringBuilder("--a 1 --c 2"));
+        assertSame(other, set);
+        assertEquals(other.get(OPT_A), "1");
+        assertEquals(other.get(OPT_C), "2");
+    }
+
+    @Test
+    public void testParseLine_ReaderFailure() throws IOException {
+        ParseContext context = ParseContext.of(POOL);
+        IOException exception = new IOException();
+
+        Reader reader = new Reader() {
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                throw exception;
+            }
+
+            @Override
+            public void close() {}
+
+        };
+
+        assertSame(expectThrows(IOException.class, () -> context.parseLine(reader)), exception);
+        assertEquals(context.parseLine("--b=1").get(OPT_B), "1");
+    }
+
+    @Test
+    public void testParseLine_Bytes() {
+        Option<Integer> optInt = Option.build("int", ValueParser.INT);
+        OptionPool pool = OptionPool.builder()
+            .withArg(ARG)
+            .withOption(OPT_B)
+            .withOption(optInt)
+            .build();
+
+        ParseContext context = ParseContext.of(pool);
+        byte[] line = "xx--int=-42 --b \"\u00e4 \uD83D\uDE00\" \u00dfyy".getBytes(StandardCharsets.UTF_8);
+
+        OptionSet set = context.parseLine(line, 2, line.length - 4);
+        assertEquals(set.getInt(optInt), -42);
+        assertEquals(set.get(OPT_B), "\u00e4 \uD83D\uDE00");
+        assertEquals(set.get(ARG), "\u00df");
+
+        // Heap and direct buffers are parsed between their position and limit (which remain unchanged).
+        for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(line.length), ByteBuffer.allocateDirect(line.length) }) {
+            buffer.put(line).position(2).limit(line.length - 2);
+
+            set = context.parseLine(buffer);
+            assertEquals(set.getInt(optInt), -42);
+            assertEquals(set.get(OPT_B), "\u00e4 \uD83D\uDE00");
+            assertEquals(set.get(ARG), "\u00df");
+            assertEquals(buffer.position(), 2);
+            assertEquals(buffer.limit(), line.length - 2);
+        }
+
+        set = OptionParser.parseLine(pool, ByteBuffer.wrap("--b=x\\\"y".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(set.get(OPT_B), "x\"y");
+
+        expectThrows(ParsingException.class, () -> context.parseLine(new byte[] { '-', '-', 'b', '=', (byte) 0xC3 }, 0, 5));
+        expectThrows(NumberFormatException.class, () -> OptionParser.parseLine(pool, "--int=x".getBytes(StandardCharsets.UTF_8), 0, 7));
+        expectThrows(IndexOutOfBoundsException.class, () -> context.parseLine(line, 2, line.length));
+        assertFalse(context.tryParseLine(ByteBuffer.wrap(new byte[] { '-', '-', 'x' })).isSuccess());
+    }
+
+    @Test
+    public void testParseLines() throws IOException {
+        Path file = Files.createTempFile("mjl-options", ".txt");
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write("--a=1 --c 2 first\r\n".getBytes(StandardCharsets.UTF_8));
+            out.write("\n  \t\n".getBytes(StandardCharsets.UTF_8));
+            out.write("--b \"\u00e4 \uD83D\uDE00\" \u00df\n".getBytes(StandardCharsets.UTF_8));
+            out.write("--a=1\n".getBytes(StandardCharsets.UTF_8));
+            out.write(new byte[] { '-', '-', 'b', '=', (byte) 0xC3, '\n' });
+            out.write("--b=\"x\\\"y\" last".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try {
+            List<String> results = new ArrayList<>();
+
+            OptionParser.parseLines(POOL, file, new LineConsumer() {
+
+                @Override
+                public void accept(long lineNumber, OptionSet set) {
+                    results.add(lineNumber + ": " + set.getOrElse(OPT_A, (String) null) + ", " + set.getOrElse(OPT_B, (String) null) + ", " + set.getOrElse(OPT_C, (String) null) + ", " + set.getOrElse(ARG, (String) null));
+                }
+
+                @Override
+                public void reject(long lineNumber, ParsingException exception) {
+                    results.add(lineNumber + ": " + exception.getClass().getSimpleName());
+                }
+
+            });
+
+            assertEquals(results, Arrays.asList(
+                "1: 1, null, 2, first",
+                "4: null, \u00e4 \uD83D\uDE00, null, \u00df",
+                "5: RestrictionViolatedException",
+                "6: ParsingException",
+                "7: null, x\"y, null, last"
+            ));
+
+            // By default, failures are rethrown.
+            expectThrows(RestrictionViolatedException.class, () -> ParseContext.of(POOL).parseLines(file, (lineNumber, set) -> {}));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLazyValues() throws InterruptedException {
+        AtomicInteger invocations = new AtomicInteger();
+        Option<Integer> opt = Option.build("lazy", string -> {
+            invocations.incrementAndGet();
+            return Integer.parseInt(string);
+        });
+        Option<Integer> optInt = Option.build("int", ValueParser.INT);
+        Option<Integer> optInvalid = Option.build("invalid", ValueParser.INT);
+
+        OptionPool pool = OptionPool.builder()
+            .withOption(opt)
+            .withOption(optInt)
+            .withOption(optInvalid)
+            .build();
+
+        ParseContext context = ParseContext.builder(pool).withLazyValues(true).build();
+
+        // Failures are deferred until the value is requested.
+        OptionSet set = context.parseFragments("--lazy=42", "--int=7", "--invalid=x");
+        assertEquals(invocations.get(), 0);
+        assertTrue(set.isSet(opt));
+
+        int[] results = new int[4];
+        Thread[] threads = new Thread[results.length];
+
+        for (int i = 0; i < threads.length; i++) {
+            int index = i;
+            (threads[i] = new Thread(() -> results[index] = set.getInt(opt))).start();
+        }
+
+        for (Thread thread : threads) thread.join();
+        assertEquals(results, new int[] { 42, 42, 42, 42 });
+
+        assertEquals(set.get(opt), Integer.valueOf(42));
+        assertEquals(invocations.get(), 1);
+        assertEquals(set.getInt(optInt), 7);
+
+        NumberFormatException e = expectThrows(NumberFormatException.class, () -> set.get(optInvalid));
+        assertSame(expectThrows(NumberFormatException.class, set::validateAll), e);
+
+        // Eager parsing is unaffected.
+        expectThrows(NumberFormatException.class, () -> ParseContext.of(pool).parseFragments("--lazy=42", "--invalid=x"));
+        assertEquals(ParseContext.of(pool).parseFragments("--lazy=1").validateAll().getInt(opt), 1);
+    }
+
+}
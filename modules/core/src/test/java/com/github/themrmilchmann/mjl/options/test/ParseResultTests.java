@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.test;
+
+import java.util.Collections;
+import com.github.themrmilchmann.mjl.options.Argument;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.OptionParser;
+import com.github.themrmilchmann.mjl.options.OptionPool;
+import com.github.themrmilchmann.mjl.options.ParseContext;
+import com.github.themrmilchmann.mjl.options.ParseError;
+import com.github.themrmilchmann.mjl.options.ParseResult;
+import com.github.themrmilchmann.mjl.options.ParsingException;
+import com.github.themrmilchmann.mjl.options.Restriction;
+import com.github.themrmilchmann.mjl.options.RestrictionViolatedException;
+import com.github.themrmilchmann.mjl.options.UnrecognizedOptionException;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public final class ParseResultTests {
+
+    private static final Argument<String> ARG = Argument.builder(ValueParser.STRING).optional(true).build();
+    private static final Option<Integer> OPT_COUNT = Option.builder("count", ValueParser.INT).withShortToken('c').build();
+    private static final Option<Boolean> OPT_FLAG = Option.builder("flag", ValueParser.BOOLEAN).withShortToken('f').withMarkerValue(true, true).build();
+    private static final Option<String> OPT_NAME = Option.builder("name", ValueParser.STRING).withShortToken('n').build();
+    private static final Option<String> OPT_NICK = Option.build("nick", ValueParser.STRING);
+
+    private static final OptionPool POOL = OptionPool.builder()
+        .withArg(ARG)
+        .withOption(OPT_COUNT)
+        .withOption(OPT_FLAG)
+        .withOption(OPT_NAME)
+        .withOption(OPT_NICK)
+        .withRestriction(Restriction.implyPresenceOf(Collections.singleton(OPT_NICK), Collections.singleton(OPT_NAME)))
+        .withAbbreviations(true)
+        .build();
+
+    @DataProvider(name = "errors")
+    private static Object[][] errors() {
+        return new Object[][] {
+            { new String[] { "a", "b" },                        ParseError.Kind.UNEXPECTED_ARGUMENT,    1,  null },
+            { new String[] { "--count=1", "--=x" },             ParseError.Kind.ILLEGAL_FORMAT,         1,  null },
+            { new String[] { "--unknown" },                     ParseError.Kind.UNRECOGNIZED_OPTION,    0,  null },
+            { new String[] { "--count", "1", "-xc" },           ParseError.Kind.UNRECOGNIZED_OPTION,    2,  null },
+            { new String[] { "--n=x" },                         ParseError.Kind.AMBIGUOUS_OPTION,       0,  null },
+            { new String[] { "--count", "1", "-c", "2" },       ParseError.Kind.DUPLICATE_OPTION,       2,  OPT_COUNT },
+            { new String[] { "--flag=true" },                   ParseError.Kind.UNEXPECTED_VALUE,       0,  OPT_FLAG },
+            { new String[] { "a", "--name" },                   ParseError.Kind.MISSING_VALUE,          1,  OPT_NAME },
+            { new String[] { "-fn", "x" },                      ParseError.Kind.ILLEGAL_CHAIN,          0,  OPT_NAME },
+            { new String[] { "--name", "x", "--count", "y" },   ParseError.Kind.INVALID_VALUE,          3,  OPT_COUNT },
+            { new String[] { "--nick", "x" },                   ParseError.Kind.RESTRICTION_VIOLATED,   -1, null }
+        };
+    }
+
+    @Test(dataProvider = "errors")
+    public void testTryParseFragments(String[] fragments, ParseError.Kind kind, int fragmentIndex, Option<?> option) {
+        ParseResult result = OptionParser.tryParseFragments(POOL, fragments);
+        assertFalse(result.isSuccess());
+        expectThrows(IllegalStateException.class, result::getOptionSet);
+
+        ParseError error = result.getError();
+        assertEquals(error.getKind(), kind);
+        assertEquals(error.getFragmentIndex(), fragmentIndex);
+        assertSame(error.getOption(), option);
+        assertNotNull(error.getMessage());
+
+        // The throwing methods fail with an equivalent exception.
+        ParsingException expected = error.toException();
+        Class<? extends RuntimeException> type = (kind == ParseError.Kind.INVALID_VALUE) ? NumberFormatException.class : expected.getClass();
+        expectThrows(type, () -> OptionParser.parseFragments(POOL, fragments));
+        expectThrows(ParsingException.class, result::getOrThrow);
+    }
+
+    @Test
+    public void testTryParseFragments_Success() {
+        ParseContext context = ParseContext.of(POOL);
+
+        ParseResult result = context.tryParseFragments("--count", "3", "-f", "arg");
+        assertTrue(result.isSuccess());
+        expectThrows(IllegalStateException.class, result::getError);
+        assertEquals(result.getOptionSet().getInt(OPT_COUNT), 3);
+        assertSame(result.getOrThrow(), result.getOptionSet());
+
+        ParseResult failure = context.tryParseLine("--count x");
+        assertEquals(failure.getError().getKind(), ParseError.Kind.INVALID_VALUE);
+        assertSame(failure.getError().getArgument(), null);
+        assertTrue(failure.getError().getCause() instanceof NumberFormatException);
+
+        assertEquals(context.tryParseLine("\"with space\"").getOptionSet().get(ARG), "with space");
+    }
+
+    @Test
+    public void testTryParseFragments_NullValue() {
+        ValueParser<String> nullParser = value -> null;
+        Option<String> opt = Option.build("value", nullParser);
+        Argument<String> vararg = Argument.build(nullParser);
+
+        OptionPool pool = OptionPool.builder()
+            .withVarargArg(vararg)
+            .withOption(opt)
+            .withOption(OPT_NAME)
+            .build();
+
+        for (ParseResult result : new ParseResult[] {
+            OptionParser.tryParseFragments(pool, "--value", "x"),
+            ParseContext.of(pool).tryParseFragments("--value", "x")
+        }) {
+            ParseError error = result.getError();
+            assertEquals(error.getKind(), ParseError.Kind.INVALID_VALUE);
+            assertEquals(error.getFragmentIndex(), 1);
+            assertSame(error.getOption(), opt);
+            assertTrue(error.getCause() instanceof NullPointerException);
+        }
+
+        for (ParseResult result : new ParseResult[] {
+            OptionParser.tryParseFragments(pool, "--name=x", "y"),
+            ParseContext.of(pool).tryParseFragments("--name=x", "y")
+        }) {
+            ParseError error = result.getError();
+            assertEquals(error.getKind(), ParseError.Kind.INVALID_VALUE);
+            assertEquals(error.getFragmentIndex(), 1);
+            assertSame(error.getArgument(), vararg);
+            assertTrue(error.getCause() instanceof NullPointerException);
+        }
+    }
+
+    @Test
+    public void testErrorDetails() {
+        ParseError unrecognized = OptionParser.tryParseFragments(POOL, "-cx").getError();
+        UnrecognizedOptionException e = (UnrecognizedOptionException) unrecognized.toException();
+        assertEquals(e.getIdentifier(), "-cx");
+        assertEquals(e.getUnrecognized(), "x");
+
+        ParseError violated = OptionParser.tryParseFragments(POOL, "--nick", "x").getError();
+        assertEquals(violated.getViolatedRestrictions().size(), 1);
+        assertEquals(((RestrictionViolatedException) violated.toException()).getViolatedRestrictions(), violated.getViolatedRestrictions());
+
+        ParseError invalid = OptionParser.tryParseFragments(POOL, "not-an-arg", "extra").getError();
+        assertNull(invalid.getCause());
+    }
+
+    @Test
+    public void testStacklessExceptions() {
+        ParseContext stackless = ParseContext.builder(POOL).withStacklessExceptions(true).build();
+        ParseContext regular = ParseContext.builder(POOL).build();
+
+        assertEquals(expectThrows(UnrecognizedOptionException.class, () -> stackless.parseFragments("--unknown")).getStackTrace().length, 0);
+        assertEquals(expectThrows(RestrictionViolatedException.class, () -> stackless.parseFragments("--nick", "x")).getStackTrace().length, 0);
+        assertEquals(expectThrows(ParsingException.class, () -> stackless.parseFragments("a", "b")).getStackTrace().length, 0);
+
+        assertNotEquals(expectThrows(ParsingException.class, () -> regular.parseFragments("a", "b")).getStackTrace().length, 0);
+
+        // The context remains usable after failures.
+        assertEquals(stackless.parseFragments("--name", "x").get(OPT_NAME), "x");
+    }
+
+}
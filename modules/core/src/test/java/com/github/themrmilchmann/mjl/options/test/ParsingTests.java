@@ -15,13 +15,25 @@
  */
 package com.github.themrmilchmann.mjl.options.test;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import com.github.themrmilchmann.mjl.options.Argument;
 import com.github.themrmilchmann.mjl.options.Option;
 import com.github.themrmilchmann.mjl.options.OptionParser;
 import com.github.themrmilchmann.mjl.options.OptionPool;
 import com.github.themrmilchmann.mjl.options.OptionSet;
+import com.github.themrmilchmann.mjl.options.ParseContext;
 import com.github.themrmilchmann.mjl.options.ParsingException;
+import com.github.themrmilchmann.mjl.options.UnrecognizedOptionException;
 import com.github.themrmilchmann.mjl.options.ValueParser;
 import org.testng.annotations.BeforeGroups;
 import org.testng.annotations.DataProvider;
@@ -59,7 +71,7 @@ public final class ParsingTests {
 
     @DataProvider(name = "value0")
     private static Object[][] dataValue0() {
-        return new Object[][] { { ParseFun.PARSE }, { ParseFun.PARSE_LINE } };
+        return new Object[][] { { ParseFun.PARSE }, { ParseFun.PARSE_LINE }, { ParseFun.PARSE_CONTEXT }, { ParseFun.PARSE_ALL } };
     }
 
     @DataProvider(name = "value1")
@@ -70,7 +82,13 @@ public final class ParsingTests {
             { ParseFun.PARSE, "longer value" },
             { ParseFun.PARSE_LINE, "longer value" },
             { ParseFun.PARSE, ""  /* empty value */ },
-            { ParseFun.PARSE_LINE, ""  /* empty value */ }
+            { ParseFun.PARSE_LINE, ""  /* empty value */ },
+            { ParseFun.PARSE_CONTEXT, "value" },
+            { ParseFun.PARSE_CONTEXT, "longer value" },
+            { ParseFun.PARSE_CONTEXT, ""  /* empty value */ },
+            { ParseFun.PARSE_ALL, "value" },
+            { ParseFun.PARSE_ALL, "longer value" },
+            { ParseFun.PARSE_ALL, ""  /* empty value */ }
         };
     }
 
@@ -325,11 +343,138 @@ public final class ParsingTests {
         assertEquals(set.get(arg0), value);
     }
 
+    @Test(groups = TEST_GROUPS_PARSING)
+    public void sec36ParseArgument_LeadingHyphen() {
+        for (String value : new String[] { "-", "-0", "-9", "-.5", "-a\nb" }) {
+            OptionSet set = OptionParser.parseFragments(argPool, value);
+            assertEquals(set.get(arg0), value);
+        }
+    }
+
+    @Test(groups = TEST_GROUPS_PARSING)
+    public void implParseIllegalOptionFormat() {
+        for (String fragment : new String[] { "---regular", "--1", "-#", "-#-dynamic", "--regular+", "--regular=a\nb" }) {
+            expectThrows(ParsingException.class, () -> OptionParser.parseFragments(optPool, fragment));
+        }
+    }
+
+    @Test(groups = TEST_GROUPS_PARSING, dataProvider = "value0")
+    public void implParseDuplicateChain(ParseFun parseFun) {
+        expectThrows(ParsingException.class, () -> parseFun.parse(optPool, "-mnm"));
+        expectThrows(ParsingException.class, () -> parseFun.parse(optPool, "-m", "-nm"));
+        expectThrows(UnrecognizedOptionException.class, () -> parseFun.parse(optPool, "-mx"));
+
+        OptionSet set = parseFun.parse(optPool, "-mn");
+        assertEquals(set.get(optMarker), "markerValue");
+        assertEquals(set.get(optMarkerAlt), "markerValueAlt");
+    }
+
+    @Test(groups = TEST_GROUPS_PARSING, dataProvider = "value0")
+    public void implParseDuplicateChain_Case(ParseFun parseFun) {
+        Option<String> lowerA = Option.builder("lowerA", ValueParser.STRING).withShortToken('a').withMarkerValue("a").build();
+        Option<String> upperA = Option.builder("upperA", ValueParser.STRING).withShortToken('A').withMarkerValue("A").build();
+        Option<String> lowerZ = Option.builder("lowerZ", ValueParser.STRING).withShortToken('z').withMarkerValue("z").build();
+        Option<String> umlaut = Option.builder("umlaut", ValueParser.STRING).withShortToken('\u00E4').withMarkerValue("\u00E4").build();
+
+        OptionPool pool = OptionPool.builder()
+            .withOption(lowerA)
+            .withOption(upperA)
+            .withOption(lowerZ)
+            .withOption(umlaut)
+            .build();
+
+        OptionSet set = parseFun.parse(pool, "-aAz");
+        assertEquals(set.get(lowerA), "a");
+        assertEquals(set.get(upperA), "A");
+        assertEquals(set.get(lowerZ), "z");
+
+        expectThrows(ParsingException.class, () -> parseFun.parse(pool, "-zAz"));
+
+        // Short tokens are resolved from chains of ASCII letters only.
+        expectThrows(ParsingException.class, () -> parseFun.parse(pool, "-\u00E4"));
+        assertSame(pool.getOption('\u00E4'), umlaut);
+    }
+
+    @Test(groups = TEST_GROUPS_PARSING, dataProvider = "value0")
+    public void implParseAbbreviation(ParseFun parseFun) {
+        Option<String> verbose = Option.build("verbose", ValueParser.STRING), version = Option.build("version", ValueParser.STRING);
+        Option<String> ver = Option.build("ver", ValueParser.STRING);
+
+        OptionPool.Builder builder = OptionPool.builder()
+            .withOption(verbose)
+            .withOption(version)
+            .withAbbreviations(true);
+
+        OptionPool pool = builder.build();
+
+        OptionSet set = parseFun.parse(pool, "--verb=a", "--versi", "b");
+        assertEquals(set.get(verbose), "a");
+        assertEquals(set.get(version), "b");
+
+        expectThrows(ParsingException.class, () -> parseFun.parse(pool, "--ver=a"));
+        expectThrows(UnrecognizedOptionException.class, () -> parseFun.parse(pool, "--verbosely=a"));
+
+        // Exact matches take precedence over abbreviations.
+        OptionPool exactPool = builder.withOption(ver).build();
+        assertEquals(parseFun.parse(exactPool, "--ver=a").get(ver), "a");
+
+        // Abbreviations are opt-in.
+        OptionPool strictPool = builder.withAbbreviations(false).build();
+        expectThrows(UnrecognizedOptionException.class, () -> parseFun.parse(strictPool, "--verb=a"));
+    }
+
+    @Test
+    public void testParseAll() throws InterruptedException {
+        Option<Integer> opt = Option.build("value", ValueParser.INT);
+        OptionPool pool = OptionPool.builder().withOption(opt).build();
+
+        String[][] inputs = IntStream.range(0, 10_000)
+            .mapToObj(i -> (i % 3 == 0) ? new String[] { "--value", String.valueOf(i), "-#dynamic=" + i } : new String[] { "--value=" + i })
+            .toArray(String[][]::new);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            for (List<OptionSet> sets : Arrays.asList(
+                OptionParser.parseAll(pool, Arrays.stream(inputs)),
+                OptionParser.parseAll(pool, Arrays.stream(inputs).filter(it -> true).spliterator(), executor),
+                OptionParser.parseAll(pool, Arrays.spliterator(inputs), new ForkJoinPool(2))
+            )) {
+                assertEquals(sets.size(), inputs.length);
+
+                for (int i = 0; i < inputs.length; i++) {
+                    assertEquals(sets.get(i).getInt(opt), i);
+                    assertEquals(sets.get(i).getDynamicOptions().get("dynamic"), (i % 3 == 0) ? String.valueOf(i) : null);
+                }
+            }
+
+            assertTrue(OptionParser.parseAll(pool, Stream.empty()).isEmpty());
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    @Test
+    public void testParseAll_Failure() {
+        Option<Integer> opt = Option.build("value", ValueParser.INT);
+        OptionPool pool = OptionPool.builder().withOption(opt).build();
+
+        String[][] inputs = IntStream.range(0, 10_000)
+            .mapToObj(i -> new String[] { (i == 4321) ? "--first" : ((i == 9876) ? "--second" : "--value=" + i) })
+            .toArray(String[][]::new);
+
+        UnrecognizedOptionException e = expectThrows(UnrecognizedOptionException.class, () -> OptionParser.parseAll(pool, Arrays.stream(inputs)));
+        assertEquals(e.getIdentifier(), "--first");
+    }
+
     @FunctionalInterface
     private interface ParseFun {
 
         ParseFun PARSE = new Impl$Parse();
         ParseFun PARSE_LINE = new Impl$ParseLine();
+        ParseFun PARSE_CONTEXT = new Impl$ParseContext();
+        ParseFun PARSE_ALL = new Impl$ParseAll();
 
         OptionSet parse(OptionPool pool, String... s);
 
@@ -373,6 +518,45 @@ public final class ParsingTests {
 
         }
 
+        class Impl$ParseContext implements ParseFun {
+
+            /*
+             * The result of a context is only valid until it is reused. Some tests compare two results. Thus, two
+             * contexts are used in an alternating fashion for each pool.
+             */
+            private final Map<OptionPool, ParseContext[]> contexts = new IdentityHashMap<>();
+            private int invocations;
+
+            @Override
+            public OptionSet parse(OptionPool pool, String... s) {
+                ParseContext[] contexts = this.contexts.computeIfAbsent(pool, it -> new ParseContext[] { ParseContext.of(it), ParseContext.of(it) });
+                return contexts[this.invocations++ & 1].parseFragments(s);
+            }
+
+            @Override
+            public String toString() {
+                return "parseContext";
+            }
+
+        }
+
+        class Impl$ParseAll implements ParseFun {
+
+            @Override
+            public OptionSet parse(OptionPool pool, String... s) {
+                List<OptionSet> sets = OptionParser.parseAll(pool, Stream.<String[]>of(s));
+                assertEquals(sets.size(), 1);
+
+                return sets.get(0);
+            }
+
+            @Override
+            public String toString() {
+                return "parseAll";
+            }
+
+        }
+
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018-2020 Leon Linhart
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.themrmilchmann.mjl.options.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import com.github.themrmilchmann.mjl.options.Option;
+import com.github.themrmilchmann.mjl.options.Restriction;
+import com.github.themrmilchmann.mjl.options.ValueParser;
+import com.github.themrmilchmann.mjl.options.internal.RestrictionChecker;
+import com.github.themrmilchmann.mjl.options.internal.RestrictionImpl;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public final class RestrictionTests {
+
+    private static final Option<String> A = Option.build("a", ValueParser.STRING);
+    private static final Option<String> B = Option.build("b", ValueParser.STRING);
+    private static final Option<String> C = Option.build("c", ValueParser.STRING);
+
+    private static Set<Option<?>> setOf(Option<?>... options) {
+        return new HashSet<>(Arrays.asList(options));
+    }
+
+    @Test
+    public void testImplyPresenceOf() {
+        Restriction restriction = Restriction.implyPresenceOf(setOf(A), setOf(B));
+        assertFalse(restriction.isViolatedBy(setOf()));
+        assertTrue(restriction.isViolatedBy(setOf(A)));
+        assertFalse(restriction.isViolatedBy(setOf(A, B)));
+        assertFalse(restriction.isViolatedBy(setOf(B)));
+    }
+
+    @Test
+    public void testImplyPresenceOfUnless() {
+        Restriction restriction = Restriction.implyPresenceOfUnless(setOf(A), setOf(B), setOf(C));
+        assertTrue(restriction.isViolatedBy(setOf(A)));
+        assertFalse(restriction.isViolatedBy(setOf(A, C)));
+        assertFalse(restriction.isViolatedBy(setOf(A, B)));
+    }
+
+    @Test
+    public void testImplyAbsenceOf() {
+        Restriction restriction = Restriction.implyAbsenceOf(setOf(A), setOf(B));
+        assertFalse(restriction.isViolatedBy(setOf(A)));
+        assertTrue(restriction.isViolatedBy(setOf(A, B)));
+        assertFalse(restriction.isViolatedBy(setOf(B)));
+    }
+
+    @Test
+    public void testMutuallyExclude() {
+        Restriction restriction = Restriction.mutuallyExclude(A, B, C);
+        assertFalse(restriction.isViolatedBy(setOf()));
+        assertFalse(restriction.isViolatedBy(setOf(A)));
+        assertTrue(restriction.isViolatedBy(setOf(A, C)));
+        assertTrue(restriction.isViolatedBy(setOf(A, B, C)));
+    }
+
+    @Test
+    public void testMutuallyRequire() {
+        Restriction restriction = Restriction.mutuallyRequire(A, B, C);
+        assertFalse(restriction.isViolatedBy(setOf()));
+        assertTrue(restriction.isViolatedBy(setOf(A)));
+        assertTrue(restriction.isViolatedBy(setOf(A, C)));
+        assertFalse(restriction.isViolatedBy(setOf(A, B, C)));
+    }
+
+    @Test
+    public void testCompiledChecker() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 50; round++) {
+            int count = 1 + random.nextInt(200);
+            Option<?>[] options = new Option<?>[count];
+            Map<Option<?>, Integer> ordinals = new IdentityHashMap<>();
+
+            for (int i = 0; i < count; i++) {
+                options[i] = Option.build("option" + i, ValueParser.STRING);
+                ordinals.put(options[i], i);
+            }
+
+            List<RestrictionImpl> restrictions = new ArrayList<>();
+
+            for (int i = random.nextInt(50); i > 0; i--) {
+                switch (random.nextInt(3)) {
+                    case 0:
+                        restrictions.add(new RestrictionImpl.ImplyPresence(
+                            randomSubset(random, options, random.nextInt(3)),
+                            randomSubset(random, options, 1 + random.nextInt(3)),
+                            randomSubset(random, options, random.nextInt(2)),
+                            random.nextBoolean()
+                        ));
+                        break;
+                    case 1:
+                        restrictions.add(new RestrictionImpl.MutualImplication(randomSubset(random, options, 2 + random.nextInt(3)), false));
+                        break;
+                    default:
+                        restrictions.add(new RestrictionImpl.MutualImplication(randomSubset(random, options, 2 + random.nextInt(3)), true));
+                }
+            }
+
+            RestrictionChecker checker = RestrictionChecker.compile(restrictions, ordinals::get, count);
+
+            for (int sample = 0; sample < 100; sample++) {
+                Set<Option<?>> present = randomSubset(random, options, random.nextInt(Math.min(count, 8) + 1));
+                long[] bits = new long[(count + 63) >>> 6];
+                for (Option<?> option : present) bits[ordinals.get(option) >>> 6] |= 1L << ordinals.get(option);
+
+                boolean anyViolated = false;
+
+                for (int i = 0; i < restrictions.size(); i++) {
+                    boolean isViolated = restrictions.get(i).isViolatedBy(present);
+                    assertEquals(checker.isViolated(i, bits), isViolated);
+
+                    anyViolated |= isViolated;
+                }
+
+                int violation = checker.findViolation(bits);
+                assertEquals(violation >= 0, anyViolated);
+                if (violation >= 0) assertTrue(restrictions.get(violation).isViolatedBy(present));
+            }
+        }
+    }
+
+    private static Set<Option<?>> randomSubset(Random random, Option<?>[] options, int size) {
+        List<Option<?>> shuffled = new ArrayList<>(Arrays.asList(options));
+        Collections.shuffle(shuffled, random);
+
+        return new HashSet<>(shuffled.subList(0, Math.min(size, shuffled.size())));
+    }
+
+}
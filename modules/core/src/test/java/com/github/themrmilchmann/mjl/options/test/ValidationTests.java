@@ -15,6 +15,7 @@
  */
 package com.github.themrmilchmann.mjl.options.test;
 
+import java.util.regex.Pattern;
 import com.github.themrmilchmann.mjl.options.Argument;
 import com.github.themrmilchmann.mjl.options.Option;
 import com.github.themrmilchmann.mjl.options.ValueParser;
@@ -59,6 +60,26 @@ public final class ValidationTests {
         expectThrows(IllegalArgumentException.class, () -> Option.builder(".invalid", ValueParser.STRING));
     }
 
+    @Test(groups = TEST_GROUPS_VALIDATION)
+    public void sec2ValidateLongOptionToken_Regex() {
+        Pattern regex = Pattern.compile("[A-Za-z]([A-Za-z0-9]|-|\\.)*");
+        String alphabet = "aZ09-._= \u00E4\u0130";
+
+        for (char c0 : alphabet.toCharArray()) {
+            for (char c1 : alphabet.toCharArray()) {
+                for (char c2 : alphabet.toCharArray()) {
+                    String token = new String(new char[] { c0, c1, c2 });
+
+                    if (regex.matcher(token).matches()) {
+                        assertNotNull(Option.builder(token, ValueParser.STRING), token);
+                    } else {
+                        expectThrows(IllegalArgumentException.class, () -> Option.builder(token, ValueParser.STRING));
+                    }
+                }
+            }
+        }
+    }
+
     @Test(groups = TEST_GROUPS_VALIDATION)
     public void sec2ValidateShortOptionToken() {
         assertNotNull(Option.builder("token", ValueParser.STRING).withShortToken('A'));
@@ -15,8 +15,12 @@
  */
 package com.github.themrmilchmann.mjl.options.test;
 
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import com.github.themrmilchmann.mjl.options.ParsingException;
 import com.github.themrmilchmann.mjl.options.ValueParser;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.*;
@@ -42,4 +46,72 @@ public final class ValueParserTests {
         assertThrows(ParsingException.class, () -> parser.parse("Butterstute"));
     }
 
-}
\ No newline at end of file
+    @DataProvider
+    public static Object[][] provideRangeInputs() {
+        return new Object[][] {
+            { "0" }, { "-0" }, { "+0" }, { "1" }, { "-1" }, { "42" }, { "007" }, { "" }, { "-" }, { "+" }, { " 1" }, { "1 " },
+            { "2147483647" }, { "2147483648" }, { "-2147483648" }, { "-2147483649" },
+            { "9223372036854775807" }, { "9223372036854775808" }, { "-9223372036854775808" }, { "-9223372036854775809" },
+            { "\u0661\u0662" }, { "1_000" }, { "0x10" }, { "1.5" }, { ".5" }, { "5." }, { "." }, { "-.5e-3" }, { "1e" },
+            { "1e+" }, { "1E10" }, { "1.5f" }, { "1.5D" }, { "1.5x" }, { "1d5" }, { " \t3.25\n" }, { "NaN" }, { "-Infinity" },
+            { "0x1.8p1" }, { "0.1" }, { "0.30000000000000004" }, { "123456789012345" }, { "1234567890123456" },
+            { "1e22" }, { "1e23" }, { "12e30" }, { "1e-22" }, { "1e-23" }, { "4.9e-324" }, { "1.7976931348623157e308" },
+            { "0e999999999999" }, { "1e999999999999" }, { "000000000000000000000001.5" }, { "0.000000000000000000001" },
+            { "true" }, { "TRUE" }, { "tRuE" }, { "truee" }, { "false" }
+        };
+    }
+
+    @Test(dataProvider = "provideRangeInputs")
+    public static void testParseRange(String input) {
+        String src = "--x=" + input + "--";
+        int start = 4, end = 4 + input.length();
+
+        assertSameOutcome(s -> ValueParser.INT.parseInt(s), () -> ValueParser.INT.parseInt(src, start, end), input);
+        assertSameOutcome(s -> ValueParser.LONG.parseLong(s), () -> ValueParser.LONG.parseLong(src, start, end), input);
+        assertSameOutcome(s -> Double.doubleToRawLongBits(ValueParser.DOUBLE.parseDouble(s)), () -> Double.doubleToRawLongBits(ValueParser.DOUBLE.parseDouble(src, start, end)), input);
+        assertEquals(ValueParser.BOOLEAN.parseBoolean(src, start, end), ValueParser.BOOLEAN.parseBoolean(input));
+
+        // The generic overload unboxes the specialization.
+        assertSameOutcome(ValueParser.INT::parse, () -> ValueParser.INT.parse(src, start, end), input);
+    }
+
+    @Test
+    public static void testParseRange$DOUBLE_Random() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            String input;
+
+            switch (i % 3) {
+                case 0: input = Double.toString(Double.longBitsToDouble(random.nextLong())); break;
+                case 1: input = (random.nextInt(2_000_000) - 1_000_000) + "." + random.nextInt(1_000_000); break;
+                default: input = random.nextInt(1_000_000_000) + "e" + (random.nextInt(60) - 30);
+            }
+
+            assertEquals(Double.doubleToRawLongBits(ValueParser.DOUBLE.parseDouble(input, 0, input.length())), Double.doubleToRawLongBits(Double.parseDouble(input)), input);
+        }
+    }
+
+    @Test
+    public static void testParseRange_Default() {
+        ValueParser<String> parser = String::toUpperCase;
+        assertEquals(parser.parse("--x=abc", 4, 7), "ABC");
+        assertThrows(IndexOutOfBoundsException.class, () -> parser.parse("abc", 2, 4));
+        assertThrows(IndexOutOfBoundsException.class, () -> ValueParser.INT.parseInt("123", 2, 1));
+    }
+
+    private static <T> void assertSameOutcome(Function<String, T> expected, Supplier<T> actual, String input) {
+        T expectedValue;
+
+        try {
+            expectedValue = expected.apply(input);
+        } catch (NumberFormatException e) {
+            NumberFormatException actualException = expectThrows(NumberFormatException.class, actual::get);
+            assertEquals(actualException.getMessage(), e.getMessage());
+            return;
+        }
+
+        assertEquals(actual.get(), expectedValue, input);
+    }
+
+}